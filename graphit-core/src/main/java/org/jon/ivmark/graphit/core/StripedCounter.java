@@ -0,0 +1,113 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter split into a number of cells, each updated by a subset of the
+ * threads, so that concurrent updates rarely contend for the same cache
+ * line. Reading the value sums the cells, which is O(number of cells).
+ *
+ * @author jon
+ *
+ */
+public final class StripedCounter {
+
+    /**
+     * The distance between two cells, in longs, keeping each cell on its own
+     * cache line.
+     */
+    private static final int PADDING = 16;
+
+    private final AtomicLongArray cells;
+    private final int mask;
+
+    /**
+     * Creates a new counter with one cell per expected concurrent writer.
+     */
+    public StripedCounter() {
+        this(ConcurrencyConstants.DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * Creates a new counter with at least <code>concurrencyLevel</code> cells.
+     */
+    public StripedCounter(int concurrencyLevel) {
+        Preconditions.checkArgument(concurrencyLevel > 0, "Illegal concurrency level");
+        int numCells = Integer.highestOneBit(concurrencyLevel);
+        if (numCells < concurrencyLevel) {
+            numCells <<= 1;
+        }
+        this.mask = numCells - 1;
+        this.cells = new AtomicLongArray(numCells * PADDING);
+    }
+
+    /**
+     * Adds one to this counter.
+     */
+    public void increment() {
+        add(1);
+    }
+
+    /**
+     * Subtracts one from this counter.
+     */
+    public void decrement() {
+        add(-1);
+    }
+
+    /**
+     * Adds a (possibly negative) delta to this counter.
+     */
+    public void add(long delta) {
+        cells.getAndAdd(cellOffset(), delta);
+    }
+
+    /**
+     * Gets the current value of this counter. Updates made concurrently with
+     * this call may or may not be included.
+     */
+    public long sum() {
+        long sum = 0;
+        for (int i = 0; i <= mask; i++) {
+            sum += cells.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    /**
+     * Gets the current value of this counter as an int.
+     */
+    public int intValue() {
+        return (int) sum();
+    }
+
+    private int cellOffset() {
+        long id = Thread.currentThread().getId();
+        int hash = (int) (id ^ (id >>> 32));
+        hash ^= (hash >>> 7) ^ (hash >>> 4);
+        return (hash & mask) * PADDING;
+    }
+
+    @Override
+    public String toString() {
+        return Long.toString(sum());
+    }
+}
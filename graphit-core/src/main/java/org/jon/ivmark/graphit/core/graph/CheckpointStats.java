@@ -0,0 +1,109 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph;
+
+/**
+ * Immutable statistics about the checkpoints of a {@link PropertyGraphImpl}.
+ *
+ * @author jon
+ *
+ */
+public final class CheckpointStats {
+
+    private final int checkpoints;
+    private final int failures;
+    private final long lastCheckpointTime;
+    private final long lastDurationMillis;
+    private final long lastSize;
+    private final long totalDurationMillis;
+
+    CheckpointStats() {
+        this(0, 0, 0, 0, 0, 0);
+    }
+
+    private CheckpointStats(int checkpoints, int failures, long lastCheckpointTime,
+                            long lastDurationMillis, long lastSize, long totalDurationMillis) {
+        this.checkpoints = checkpoints;
+        this.failures = failures;
+        this.lastCheckpointTime = lastCheckpointTime;
+        this.lastDurationMillis = lastDurationMillis;
+        this.lastSize = lastSize;
+        this.totalDurationMillis = totalDurationMillis;
+    }
+
+    CheckpointStats withCheckpoint(long durationMillis, long size) {
+        return new CheckpointStats(checkpoints + 1, failures, System.currentTimeMillis(),
+                                   durationMillis, size, totalDurationMillis + durationMillis);
+    }
+
+    CheckpointStats withFailure() {
+        return new CheckpointStats(checkpoints, failures + 1, lastCheckpointTime,
+                                   lastDurationMillis, lastSize, totalDurationMillis);
+    }
+
+    /**
+     * Gets the number of successful checkpoints.
+     */
+    public int getCheckpoints() {
+        return checkpoints;
+    }
+
+    /**
+     * Gets the number of failed background checkpoints.
+     */
+    public int getFailures() {
+        return failures;
+    }
+
+    /**
+     * Gets the time when the last successful checkpoint finished, in millis
+     * since the epoch, or zero if there has been no checkpoint.
+     */
+    public long getLastCheckpointTime() {
+        return lastCheckpointTime;
+    }
+
+    /**
+     * Gets the duration of the last successful checkpoint.
+     */
+    public long getLastDurationMillis() {
+        return lastDurationMillis;
+    }
+
+    /**
+     * Gets the size in bytes of the graph file written by the last successful
+     * checkpoint.
+     */
+    public long getLastSize() {
+        return lastSize;
+    }
+
+    /**
+     * Gets the total duration of all successful checkpoints.
+     */
+    public long getTotalDurationMillis() {
+        return totalDurationMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "CheckpointStats [checkpoints=" + checkpoints + ", failures=" + failures
+            + ", lastCheckpointTime=" + lastCheckpointTime + ", lastDurationMillis="
+            + lastDurationMillis + ", lastSize=" + lastSize + ", totalDurationMillis="
+            + totalDurationMillis + "]";
+    }
+}
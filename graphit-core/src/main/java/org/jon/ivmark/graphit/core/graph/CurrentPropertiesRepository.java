@@ -0,0 +1,71 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jon.ivmark.graphit.core.graph;
+
+import org.jon.ivmark.graphit.core.properties.Properties;
+import org.jon.ivmark.graphit.core.properties.repository.PropertiesRepository;
+import org.jon.ivmark.graphit.core.properties.repository.PropertiesUpdate;
+
+/**
+ * A {@link PropertiesRepository} forwarding to the repo currently used by a
+ * graph. Properties handles are bound to this repo, so that they keep
+ * writing to the right repo when the graph wraps its repos, e.g. when an
+ * index is created or the mutation log is opened.
+ *
+ * @author jon
+ *
+ * @param <T>
+ *            The generic type of the id of each entry in this repo.
+ */
+abstract class CurrentPropertiesRepository<T> implements PropertiesRepository<T> {
+
+    /**
+     * Gets the repo currently used.
+     */
+    protected abstract PropertiesRepository<T> current();
+
+    @Override
+    public Properties getProperties(T id) {
+        return current().getProperties(id);
+    }
+
+    @Override
+    public void saveProperties(T id, Properties properties) {
+        current().saveProperties(id, properties);
+    }
+
+    @Override
+    public Properties removeProperties(T id) {
+        return current().removeProperties(id);
+    }
+
+    @Override
+    public void setProperty(T id, String key, Object value) {
+        current().setProperty(id, key, value);
+    }
+
+    @Override
+    public void removeProperty(T id, String key) {
+        current().removeProperty(id, key);
+    }
+
+    @Override
+    public void updateProperties(T id, PropertiesUpdate update) {
+        current().updateProperties(id, update);
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph;
+
+/**
+ * The file formats in which a {@link PropertyGraphImpl} can be persisted in
+ * its data dir.
+ *
+ * @author jon
+ *
+ */
+public enum GraphFileFormat {
+
+    /**
+     * Human readable json, see {@link PropertyGraphJsonUtils}.
+     */
+    JSON("json"),
+
+    /**
+     * Compact binary snapshot, see {@link PropertyGraphSnapshotUtils}.
+     */
+    SNAPSHOT("snapshot");
+
+    private final String extension;
+
+    private GraphFileFormat(String extension) {
+        this.extension = extension;
+    }
+
+    /**
+     * Gets the file name extension used for this format.
+     */
+    public String getExtension() {
+        return extension;
+    }
+}
@@ -17,6 +17,7 @@
 package org.jon.ivmark.graphit.core.graph;
 
 import com.google.common.base.Preconditions;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeSortOrder;
 import org.jon.ivmark.graphit.core.graph.edge.EdgeType;
 import org.jon.ivmark.graphit.core.graph.edge.EdgeTypes;
 import org.jon.ivmark.graphit.core.graph.node.NodeType;
@@ -140,6 +141,18 @@ public final class GraphMetadata {
         return this;
     }
 
+    /**
+     * Creates and adds an edge type, optionally keeping edge weights inline in
+     * the edge vectors.
+     *
+     * @see EdgeType#EdgeType(String, EdgeSortOrder, boolean)
+     */
+    public EdgeType createEdgeType(String name, EdgeSortOrder sortOrder, boolean inlineWeights) {
+        EdgeType edgeType = new EdgeType(name, sortOrder, inlineWeights);
+        edgeTypes.add(edgeType);
+        return edgeType;
+    }
+
     @Override
     public String toString() {
         return "GraphMetadata [graphName=" + graphName + ", nodeTypes=" + nodeTypes
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph;
+
+import org.jon.ivmark.graphit.core.ConcurrencyConstants;
+import org.jon.ivmark.graphit.core.properties.Properties;
+import org.jon.ivmark.graphit.core.properties.repository.PropertiesRepository;
+import org.jon.ivmark.graphit.core.properties.repository.PropertiesUpdate;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link PropertiesRepository} logging all writes to a {@link MutationLog}
+ * after delegating them to another repo.
+ *
+ * Each write and its log record are made while holding a lock striped on the
+ * id, so writes to the same entry are logged in the order they were applied.
+ * Waiting for the record to be synced happens after releasing the lock.
+ *
+ * @author jon
+ *
+ * @param <T>
+ *            The generic type of the id of each entry in this repo.
+ */
+class LoggedPropertiesRepository<T> implements PropertiesRepository<T> {
+
+    private final PropertiesRepository<T> repo;
+    private final MutationLog mutationLog;
+    private final ReentrantLock[] locks;
+
+    LoggedPropertiesRepository(PropertiesRepository<T> repo, MutationLog mutationLog) {
+        this.repo = repo;
+        this.mutationLog = mutationLog;
+        this.locks = new ReentrantLock[ConcurrencyConstants.DEFAULT_CONCURRENCY_LEVEL];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Gets the repo writes are delegated to.
+     */
+    PropertiesRepository<T> getDelegate() {
+        return repo;
+    }
+
+    @Override
+    public Properties getProperties(T id) {
+        return repo.getProperties(id);
+    }
+
+    @Override
+    public void saveProperties(T id, Properties properties) {
+        long record;
+        ReentrantLock lock = lock(id);
+        try {
+            repo.saveProperties(id, properties);
+            record = mutationLog.appendSaveProperties(id, properties);
+        } finally {
+            lock.unlock();
+        }
+        mutationLog.awaitSync(record);
+    }
+
+    @Override
+    public Properties removeProperties(T id) {
+        Properties properties;
+        long record;
+        ReentrantLock lock = lock(id);
+        try {
+            properties = repo.removeProperties(id);
+            record = mutationLog.appendRemoveProperties(id);
+        } finally {
+            lock.unlock();
+        }
+        mutationLog.awaitSync(record);
+        return properties;
+    }
+
+    @Override
+    public void setProperty(T id, String key, Object value) {
+        long record;
+        ReentrantLock lock = lock(id);
+        try {
+            repo.setProperty(id, key, value);
+            record = mutationLog.appendSetProperty(id, key, value);
+        } finally {
+            lock.unlock();
+        }
+        mutationLog.awaitSync(record);
+    }
+
+    @Override
+    public void removeProperty(T id, String key) {
+        long record;
+        ReentrantLock lock = lock(id);
+        try {
+            repo.removeProperty(id, key);
+            record = mutationLog.appendRemoveProperty(id, key);
+        } finally {
+            lock.unlock();
+        }
+        mutationLog.awaitSync(record);
+    }
+
+    @Override
+    public void updateProperties(final T id, final PropertiesUpdate update) {
+        final long[] record = new long[1];
+        ReentrantLock lock = lock(id);
+        try {
+            repo.updateProperties(id, new PropertiesUpdate() {
+
+                @Override
+                public void apply(Properties properties) {
+                    update.apply(properties);
+                    // Logged as one record holding the updated properties,
+                    // read within the same write as the update
+                    record[0] = mutationLog.appendSaveProperties(id, properties);
+                }
+            });
+        } finally {
+            lock.unlock();
+        }
+        mutationLog.awaitSync(record[0]);
+    }
+
+    private ReentrantLock lock(T id) {
+        ReentrantLock lock = locks[(id.hashCode() & 0x7fffffff) % locks.length];
+        lock.lock();
+        return lock;
+    }
+}
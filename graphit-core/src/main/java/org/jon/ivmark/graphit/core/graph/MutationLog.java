@@ -0,0 +1,970 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.type.TypeReference;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeId;
+import org.jon.ivmark.graphit.core.graph.edge.EdgePrimitive;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeSortOrder;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeType;
+import org.jon.ivmark.graphit.core.graph.edge.repository.EdgePrimitivesRepository;
+import org.jon.ivmark.graphit.core.graph.exception.GraphException;
+import org.jon.ivmark.graphit.core.graph.node.NodeId;
+import org.jon.ivmark.graphit.core.graph.node.NodeType;
+import org.jon.ivmark.graphit.core.graph.node.repository.NodeIdRepository;
+import org.jon.ivmark.graphit.core.io.util.FileSyncUtils;
+import org.jon.ivmark.graphit.core.properties.Properties;
+import org.jon.ivmark.graphit.core.properties.repository.PropertiesRepository;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of the mutations of a {@link PropertyGraphImpl}, used to
+ * recover the mutations made since the graph was last persisted.
+ *
+ * Each mutation is appended as a checksummed record to an in-memory buffer.
+ * The buffer is written to disk by whichever thread syncs first, which group
+ * commits all records buffered so far with a single write and fsync. With a
+ * sync interval of zero every mutation waits until its record is on disk.
+ * With a positive sync interval a background thread syncs the log, and a
+ * crash may lose the mutations of the last interval.
+ *
+ * The log is split into numbered segment files. {@link #rotate()} starts a
+ * new segment, after which the older segments may be deleted once the graph
+ * has been persisted. Replaying is idempotent, so segments may be replayed on
+ * top of a graph file that already contains some of their mutations, and
+ * replaying a segment stops at its first torn or corrupt record.
+ *
+ * Single mutations are appended by the graph while holding a lock striped on
+ * the id of the mutated node or edge, so mutations of the same node or edge
+ * are logged in the order they were applied, and the appending thread waits
+ * for the record with {@link #awaitSync(long)} after releasing the lock. The
+ * id of a removed edge is not reused until its removal has been logged, so
+ * mutations of different edges never share an id in the log.
+ *
+ * @author jon
+ *
+ */
+final class MutationLog implements Flushable, Closeable {
+
+    private static final String SUFFIX = ".log";
+
+    private static final byte DEFINE_NODE_TYPE = 1;
+    private static final byte DEFINE_EDGE_TYPE = 2;
+    private static final byte ADD_NODE = 3;
+    private static final byte REMOVE_NODE = 4;
+    private static final byte ADD_EDGE = 5;
+    private static final byte REMOVE_EDGE = 6;
+    private static final byte SET_EDGE_WEIGHT = 7;
+    private static final byte SET_PROPERTY = 8;
+    private static final byte REMOVE_PROPERTY = 9;
+    private static final byte SAVE_PROPERTIES = 10;
+    private static final byte REMOVE_PROPERTIES = 11;
+
+    private static final byte NODE = 0;
+    private static final byte EDGE = 1;
+
+    // Each record starts with its length and checksum
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_RECORD_SIZE = 1 << 26;
+    // Buffered bytes written without waiting for the next background sync
+    private static final int MAX_BUFFERED_BYTES = 1 << 22;
+    private static final int BUFFER_SIZE = 1 << 16;
+    // Edges of a batch appended without letting other threads append
+    private static final int EDGE_BATCH_SIZE = 1 << 12;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> PROPERTIES_TYPE =
+        new TypeReference<Map<String, Object>>() {
+        };
+
+    private final File dir;
+    private final String prefix;
+    private final long syncIntervalMillis;
+    private final long maxSegmentSize;
+    private final Runnable segmentFullCallback;
+    private final ScheduledExecutorService syncer;
+
+    private final Object appendLock = new Object();
+    private final Object syncLock = new Object();
+
+    // Guarded by appendLock
+    private RecordBuffer buffer = new RecordBuffer();
+    private final Set<String> loggedNodeTypes = new HashSet<String>();
+    private final Set<String> loggedEdgeTypes = new HashSet<String>();
+    private long appended;
+
+    // Guarded by syncLock
+    private RecordBuffer spare = new RecordBuffer();
+    private FileChannel channel;
+    private long segment;
+    private long written;
+
+    private volatile long synced;
+    private volatile int bufferedBytes;
+    private volatile long segmentSize;
+    private volatile boolean segmentFull;
+    private volatile boolean closed;
+    private volatile IOException failure;
+
+    /**
+     * Opens a log in a new segment, numbered after any existing segments.
+     *
+     * @param dir
+     *            The directory of the segment files.
+     * @param prefix
+     *            The prefix of the segment file names.
+     * @param syncIntervalMillis
+     *            The interval between background syncs, or zero to sync each
+     *            mutation before returning.
+     * @param maxSegmentSize
+     *            The segment size in bytes after which the callback is run.
+     * @param segmentFullCallback
+     *            Run, once per segment, by the first mutation making the
+     *            segment exceed the max size. May be null.
+     */
+    MutationLog(File dir, String prefix, long syncIntervalMillis, long maxSegmentSize,
+                Runnable segmentFullCallback) throws IOException {
+        Preconditions.checkArgument(syncIntervalMillis >= 0, "Invalid sync interval.");
+        Preconditions.checkArgument(maxSegmentSize > 0, "Invalid max segment size.");
+        this.dir = dir;
+        this.prefix = prefix;
+        this.syncIntervalMillis = syncIntervalMillis;
+        this.maxSegmentSize = maxSegmentSize;
+        this.segmentFullCallback = segmentFullCallback;
+
+        List<File> segments = segments(dir, prefix);
+        this.segment =
+            segments.isEmpty() ? 0 : segmentNumber(segments.get(segments.size() - 1), prefix) + 1;
+        this.channel = openSegment(segment);
+
+        if (syncIntervalMillis > 0) {
+            syncer = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("mutation-log-%d").build());
+            syncer.scheduleWithFixedDelay(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        flush();
+                    } catch (IOException e) {
+                        failure = e;
+                    }
+                }
+            }, syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            syncer = null;
+        }
+    }
+
+    private FileChannel openSegment(long segmentNumber) throws IOException {
+        File file = new File(dir, prefix + "." + segmentNumber + SUFFIX);
+        FileChannel segmentChannel = new RandomAccessFile(file, "rw").getChannel();
+        try {
+            // Records synced to the segment are lost with it if its directory
+            // entry is not durable
+            FileSyncUtils.syncDir(dir);
+        } catch (IOException e) {
+            segmentChannel.close();
+            throw e;
+        }
+        return segmentChannel;
+    }
+
+    /**
+     * Gets the segment files of a log, ordered by segment number.
+     */
+    static List<File> segments(File dir, final String prefix) {
+        File[] files = dir.listFiles(new FileFilter() {
+
+            @Override
+            public boolean accept(File file) {
+                return segmentNumber(file, prefix) >= 0;
+            }
+        });
+        if (files == null) {
+            return Collections.emptyList();
+        }
+        List<File> segments = Arrays.asList(files);
+        Collections.sort(segments, new Comparator<File>() {
+
+            @Override
+            public int compare(File file1, File file2) {
+                long segment1 = segmentNumber(file1, prefix);
+                long segment2 = segmentNumber(file2, prefix);
+                return segment1 < segment2 ? -1 : (segment1 == segment2 ? 0 : 1);
+            }
+        });
+        return segments;
+    }
+
+    /**
+     * Gets the number of a segment file, or -1 if the file is not a segment of
+     * the log with the provided prefix.
+     */
+    private static long segmentNumber(File file, String prefix) {
+        String name = file.getName();
+        if (!name.startsWith(prefix + ".") || !name.endsWith(SUFFIX)) {
+            return -1;
+        }
+        String number = name.substring(prefix.length() + 1, name.length() - SUFFIX.length());
+        if (number.isEmpty() || number.length() > 18) {
+            return -1;
+        }
+        for (int i = 0; i < number.length(); i++) {
+            if (!Character.isDigit(number.charAt(i))) {
+                return -1;
+            }
+        }
+        return Long.parseLong(number);
+    }
+
+    /**
+     * Gets the number of the segment currently appended to.
+     */
+    long getSegment() {
+        synchronized (syncLock) {
+            return segment;
+        }
+    }
+
+    /**
+     * Gets the number of bytes written to the current segment.
+     */
+    long size() {
+        return segmentSize;
+    }
+
+    /**
+     * Appends a record of adding a node, and returns it to be passed to
+     * {@link #awaitSync(long)}.
+     */
+    long appendAddNode(int index, NodeId nodeId) {
+        synchronized (appendLock) {
+            logNodeType(nodeId.getNodeType());
+            buffer.startRecord(ADD_NODE);
+            buffer.writeInt(index);
+            writeNodeId(nodeId);
+            return endRecord();
+        }
+    }
+
+    /**
+     * Appends a record of removing a node, and returns it to be passed to
+     * {@link #awaitSync(long)}.
+     */
+    long appendRemoveNode(int index) {
+        synchronized (appendLock) {
+            buffer.startRecord(REMOVE_NODE);
+            buffer.writeInt(index);
+            return endRecord();
+        }
+    }
+
+    /**
+     * Appends a record of adding an edge, and returns it to be passed to
+     * {@link #awaitSync(long)}.
+     */
+    long appendAddEdge(EdgeId edgeId, int startNodeIndex, int endNodeIndex, float weight) {
+        synchronized (appendLock) {
+            appendEdge(edgeId, startNodeIndex, endNodeIndex, weight);
+            return appended;
+        }
+    }
+
+    /**
+     * Logs a batch of edges with consecutive indexes.
+     */
+    void addEdges(EdgeType edgeType, int firstEdgeIndex, int[] startNodeIndexes,
+                  int[] endNodeIndexes, float[] weights, int size) {
+        addEdges(edgeType, firstEdgeIndex, null, startNodeIndexes, endNodeIndexes, weights, size);
+    }
+
+    /**
+     * Logs a batch of edges with the provided indexes.
+     */
+    void addEdges(EdgeType edgeType, int[] edgeIndexes, int[] startNodeIndexes,
+                  int[] endNodeIndexes, float[] weights, int size) {
+        addEdges(edgeType, 0, edgeIndexes, startNodeIndexes, endNodeIndexes, weights, size);
+    }
+
+    /**
+     * Appends the edges of a batch in chunks of a fixed size, syncing each
+     * chunk as a single mutation would be synced, so that large batches
+     * neither buffer all of their records nor block other threads from
+     * appending while they are encoded.
+     */
+    private void addEdges(EdgeType edgeType, int firstEdgeIndex, int[] edgeIndexes,
+                          int[] startNodeIndexes, int[] endNodeIndexes, float[] weights,
+                          int size) {
+        for (int from = 0; from < size; from += EDGE_BATCH_SIZE) {
+            int to = Math.min(size, from + EDGE_BATCH_SIZE);
+            long record;
+            synchronized (appendLock) {
+                for (int i = from; i < to; i++) {
+                    int edgeIndex = edgeIndexes == null ? firstEdgeIndex + i : edgeIndexes[i];
+                    appendEdge(new EdgeId(edgeType, edgeIndex), startNodeIndexes[i],
+                               endNodeIndexes[i], weights[i]);
+                }
+                record = appended;
+            }
+            awaitSync(record);
+        }
+    }
+
+    private void appendEdge(EdgeId edgeId, int startNodeIndex, int endNodeIndex, float weight) {
+        logEdgeType(edgeId.getEdgeType());
+        buffer.startRecord(ADD_EDGE);
+        writeEdgeId(edgeId);
+        buffer.writeInt(startNodeIndex);
+        buffer.writeInt(endNodeIndex);
+        buffer.writeFloat(weight);
+        endRecord();
+    }
+
+    /**
+     * Appends a record of removing an edge, and returns it to be passed to
+     * {@link #awaitSync(long)}.
+     */
+    long appendRemoveEdge(EdgeId edgeId) {
+        synchronized (appendLock) {
+            logEdgeType(edgeId.getEdgeType());
+            buffer.startRecord(REMOVE_EDGE);
+            writeEdgeId(edgeId);
+            return endRecord();
+        }
+    }
+
+    /**
+     * Appends a record of setting the weight of an edge, and returns it to be
+     * passed to {@link #awaitSync(long)}.
+     */
+    long appendSetEdgeWeight(EdgeId edgeId, float weight) {
+        synchronized (appendLock) {
+            logEdgeType(edgeId.getEdgeType());
+            buffer.startRecord(SET_EDGE_WEIGHT);
+            writeEdgeId(edgeId);
+            buffer.writeFloat(weight);
+            return endRecord();
+        }
+    }
+
+    /**
+     * Appends a record of setting a property of a node or an edge, and
+     * returns it to be passed to {@link #awaitSync(long)}.
+     */
+    long appendSetProperty(Object id, String key, Object value) {
+        byte[] json = toJson(value);
+        long record;
+        synchronized (appendLock) {
+            logTypeOf(id);
+            buffer.startRecord(SET_PROPERTY);
+            writeEntityId(id);
+            buffer.writeString(key);
+            buffer.writeBytes(json);
+            record = endRecord();
+        }
+        return record;
+    }
+
+    /**
+     * Appends a record of removing a property of a node or an edge, and
+     * returns it to be passed to {@link #awaitSync(long)}.
+     */
+    long appendRemoveProperty(Object id, String key) {
+        long record;
+        synchronized (appendLock) {
+            logTypeOf(id);
+            buffer.startRecord(REMOVE_PROPERTY);
+            writeEntityId(id);
+            buffer.writeString(key);
+            record = endRecord();
+        }
+        return record;
+    }
+
+    /**
+     * Appends a record of replacing all properties of a node or an edge, and
+     * returns it to be passed to {@link #awaitSync(long)}.
+     */
+    long appendSaveProperties(Object id, Properties properties) {
+        byte[] json = toJson(properties == null ? null : properties.asPropertyMap());
+        long record;
+        synchronized (appendLock) {
+            logTypeOf(id);
+            buffer.startRecord(SAVE_PROPERTIES);
+            writeEntityId(id);
+            buffer.writeBytes(json);
+            record = endRecord();
+        }
+        return record;
+    }
+
+    /**
+     * Appends a record of removing all properties of a node or an edge, and
+     * returns it to be passed to {@link #awaitSync(long)}.
+     */
+    long appendRemoveProperties(Object id) {
+        long record;
+        synchronized (appendLock) {
+            logTypeOf(id);
+            buffer.startRecord(REMOVE_PROPERTIES);
+            writeEntityId(id);
+            record = endRecord();
+        }
+        return record;
+    }
+
+    private static byte[] toJson(Object value) {
+        try {
+            return OBJECT_MAPPER.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new GraphException("Failed to serialize property value.", e);
+        }
+    }
+
+    /**
+     * Logs the definition of a node type the first time it is used in a
+     * segment, so that each segment may be replayed on its own.
+     */
+    private void logNodeType(NodeType nodeType) {
+        if (loggedNodeTypes.add(nodeType.name())) {
+            buffer.startRecord(DEFINE_NODE_TYPE);
+            buffer.writeString(nodeType.name());
+            endRecord();
+        }
+    }
+
+    private void logEdgeType(EdgeType edgeType) {
+        if (loggedEdgeTypes.add(edgeType.name())) {
+            buffer.startRecord(DEFINE_EDGE_TYPE);
+            buffer.writeString(edgeType.name());
+            buffer.writeString(edgeType.getSortOrder().name());
+            buffer.writeBoolean(edgeType.hasInlineWeights());
+            endRecord();
+        }
+    }
+
+    private void logTypeOf(Object id) {
+        if (id instanceof NodeId) {
+            logNodeType(((NodeId) id).getNodeType());
+        } else {
+            logEdgeType(((EdgeId) id).getEdgeType());
+        }
+    }
+
+    private void writeNodeId(NodeId nodeId) {
+        buffer.writeString(nodeId.getNodeType().name());
+        buffer.writeString(nodeId.getId());
+    }
+
+    private void writeEdgeId(EdgeId edgeId) {
+        buffer.writeString(edgeId.getEdgeType().name());
+        buffer.writeInt(edgeId.getIndex());
+    }
+
+    private void writeEntityId(Object id) {
+        if (id instanceof NodeId) {
+            buffer.writeByte(NODE);
+            writeNodeId((NodeId) id);
+        } else {
+            buffer.writeByte(EDGE);
+            writeEdgeId((EdgeId) id);
+        }
+    }
+
+    private long endRecord() {
+        buffer.endRecord();
+        bufferedBytes = buffer.size();
+        return ++appended;
+    }
+
+    /**
+     * Waits until a record is synced, or only writes the buffer if it is full
+     * when syncing in the background.
+     */
+    void awaitSync(long record) {
+        if (closed) {
+            throw new GraphException("The mutation log is closed.");
+        }
+        if (failure != null) {
+            throw new GraphException("Failed to write mutation log.", failure);
+        }
+        try {
+            if (syncIntervalMillis == 0) {
+                sync(record, true);
+            } else if (bufferedBytes >= MAX_BUFFERED_BYTES) {
+                sync(record, false);
+            }
+        } catch (IOException e) {
+            failure = e;
+            throw new GraphException("Failed to write mutation log.", e);
+        }
+        if (!segmentFull && segmentSize + bufferedBytes > maxSegmentSize) {
+            segmentFull = true;
+            if (segmentFullCallback != null) {
+                segmentFullCallback.run();
+            }
+        }
+    }
+
+    /**
+     * Writes all records appended up to the provided record, unless already
+     * written by another thread, and forces them to disk if requested.
+     */
+    private void sync(long record, boolean force) throws IOException {
+        synchronized (syncLock) {
+            if ((force ? synced : written) >= record) {
+                return;
+            }
+            writeBuffer(false);
+            if (force) {
+                channel.force(false);
+                synced = written;
+            }
+        }
+    }
+
+    /**
+     * Swaps the append buffer and writes the records in it to the current
+     * segment. Must be called holding the sync lock.
+     */
+    private void writeBuffer(boolean newSegment) throws IOException {
+        RecordBuffer records;
+        long lastRecord;
+        synchronized (appendLock) {
+            records = buffer;
+            buffer = spare;
+            lastRecord = appended;
+            bufferedBytes = 0;
+            if (newSegment) {
+                // Records appended from now on go to the next segment
+                loggedNodeTypes.clear();
+                loggedEdgeTypes.clear();
+            }
+        }
+        try {
+            records.writeTo(channel);
+            segmentSize += records.size();
+        } finally {
+            records.clear();
+            spare = records;
+        }
+        written = lastRecord;
+    }
+
+    /**
+     * Syncs all appended records to disk.
+     */
+    @Override
+    public void flush() throws IOException {
+        long record;
+        synchronized (appendLock) {
+            record = appended;
+        }
+        sync(record, true);
+    }
+
+    /**
+     * Syncs all records appended so far to the current segment and starts a
+     * new one, and returns the number of the new segment. Mutations logged
+     * after this call returns are not part of any older segment.
+     */
+    long rotate() throws IOException {
+        synchronized (syncLock) {
+            Preconditions.checkState(!closed, "The mutation log is closed.");
+            writeBuffer(true);
+            channel.force(false);
+            synced = written;
+            channel.close();
+            segment++;
+            channel = openSegment(segment);
+            segmentSize = 0;
+            segmentFull = false;
+            return segment;
+        }
+    }
+
+    /**
+     * Deletes all segments older than the provided segment.
+     */
+    void deleteSegmentsBefore(long segmentNumber) throws IOException {
+        for (File file : segments(dir, prefix)) {
+            if (segmentNumber(file, prefix) < segmentNumber && !file.delete()) {
+                throw new IOException("Failed to delete " + file);
+            }
+        }
+    }
+
+    /**
+     * Syncs all appended records and closes the log.
+     */
+    @Override
+    public void close() throws IOException {
+        if (syncer != null) {
+            syncer.shutdown();
+        }
+        synchronized (syncLock) {
+            if (closed) {
+                return;
+            }
+            try {
+                flush();
+            } finally {
+                closed = true;
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Replays all segments of a log on a graph, and returns the number of
+     * replayed records.
+     */
+    static long replay(PropertyGraphImpl graph, File dir, String prefix) throws IOException {
+        Replayer replayer = new Replayer(graph);
+        long records = 0;
+        for (File file : segments(dir, prefix)) {
+            records += replayer.replay(file);
+        }
+        return records;
+    }
+
+    /**
+     * Applies logged mutations directly to the repositories of a graph.
+     */
+    private static final class Replayer {
+        private final GraphMetadata metadata;
+        private final NodeIdRepository nodeRepo;
+        private final EdgePrimitivesRepository edgeRepo;
+        private final PropertiesRepository<NodeId> nodePropertiesRepo;
+        private final PropertiesRepository<EdgeId> edgePropertiesRepo;
+        private byte[] bytes = new byte[BUFFER_SIZE];
+
+        private Replayer(PropertyGraphImpl graph) {
+            this.metadata = graph.getMetadata();
+            this.nodeRepo = graph.getNodeRepo();
+            this.edgeRepo = graph.getEdgeRepo();
+            this.nodePropertiesRepo = graph.getNodePropertiesRepo();
+            this.edgePropertiesRepo = graph.getEdgePropertiesRepo();
+        }
+
+        private long replay(File file) throws IOException {
+            DataInputStream input = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+            CRC32 crc = new CRC32();
+            long records = 0;
+            try {
+                while (true) {
+                    int length;
+                    int checksum;
+                    try {
+                        length = input.readInt();
+                        checksum = input.readInt();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    if (length <= 0 || length > MAX_RECORD_SIZE) {
+                        break;
+                    }
+                    if (bytes.length < length) {
+                        bytes = new byte[Math.max(length, 2 * bytes.length)];
+                    }
+                    try {
+                        input.readFully(bytes, 0, length);
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    crc.reset();
+                    crc.update(bytes, 0, length);
+                    if ((int) crc.getValue() != checksum) {
+                        break;
+                    }
+                    apply(ByteBuffer.wrap(bytes, 0, length));
+                    records++;
+                }
+            } finally {
+                input.close();
+            }
+            return records;
+        }
+
+        private void apply(ByteBuffer record) throws IOException {
+            byte op = record.get();
+            switch (op) {
+            case DEFINE_NODE_TYPE:
+                metadata.getNodeTypes().getOrAdd(readString(record));
+                break;
+            case DEFINE_EDGE_TYPE:
+                defineEdgeType(readString(record), EdgeSortOrder.valueOf(readString(record)),
+                               record.get() != 0);
+                break;
+            case ADD_NODE:
+                addNode(record.getInt(), readNodeId(record));
+                break;
+            case REMOVE_NODE:
+                removeNode(record.getInt());
+                break;
+            case ADD_EDGE:
+                addEdge(readEdgeId(record), record.getInt(), record.getInt(), record.getFloat());
+                break;
+            case REMOVE_EDGE:
+                EdgeId removedEdgeId = readEdgeId(record);
+                edgeRepo.removeEdge(removedEdgeId);
+                edgePropertiesRepo.removeProperties(removedEdgeId);
+                break;
+            case SET_EDGE_WEIGHT:
+                EdgeId edgeId = readEdgeId(record);
+                float weight = record.getFloat();
+                if (edgeRepo.getEdge(edgeId) != null) {
+                    edgeRepo.setEdgeWeight(edgeId, weight);
+                }
+                break;
+            case SET_PROPERTY:
+                Object id = readEntityId(record);
+                String key = readString(record);
+                propertiesRepo(id).setProperty(id, key, readJson(record, Object.class));
+                break;
+            case REMOVE_PROPERTY:
+                Object propertyOwner = readEntityId(record);
+                propertiesRepo(propertyOwner).removeProperty(propertyOwner, readString(record));
+                break;
+            case SAVE_PROPERTIES:
+                saveProperties(readEntityId(record), record);
+                break;
+            case REMOVE_PROPERTIES:
+                Object propertiesOwner = readEntityId(record);
+                propertiesRepo(propertiesOwner).removeProperties(propertiesOwner);
+                break;
+            default:
+                throw new IOException("Unknown mutation log record: " + op);
+            }
+        }
+
+        private void defineEdgeType(String name, EdgeSortOrder sortOrder, boolean inlineWeights) {
+            for (EdgeType edgeType : metadata.getEdgeTypes().elements()) {
+                if (edgeType.name().equals(name)) {
+                    return;
+                }
+            }
+            metadata.createEdgeType(name, sortOrder, inlineWeights);
+        }
+
+        private void addNode(int index, NodeId nodeId) {
+            NodeId existing = nodeRepo.getNodeId(index);
+            if (nodeId.equals(existing)) {
+                return;
+            }
+            if (existing != null) {
+                nodePropertiesRepo.removeProperties(existing);
+                nodeRepo.remove(index);
+            }
+            int previousIndex = nodeRepo.getNodeIndex(nodeId);
+            if (previousIndex >= 0) {
+                nodeRepo.remove(previousIndex);
+            }
+            nodeRepo.insert(index, nodeId);
+        }
+
+        private void removeNode(int index) {
+            NodeId nodeId = nodeRepo.getNodeId(index);
+            if (nodeId != null) {
+                // Properties first, a columnar repo looks them up by index
+                nodePropertiesRepo.removeProperties(nodeId);
+                nodeRepo.remove(index);
+            }
+        }
+
+        private void addEdge(EdgeId edgeId, int startNodeIndex, int endNodeIndex, float weight) {
+            EdgePrimitive existing = edgeRepo.getEdge(edgeId);
+            if (existing != null) {
+                if (existing.getStartNodeIndex() == startNodeIndex
+                    && existing.getEndNodeIndex() == endNodeIndex) {
+                    if (existing.getWeight() != weight) {
+                        edgeRepo.setEdgeWeight(edgeId, weight);
+                    }
+                    return;
+                }
+                edgeRepo.removeEdge(edgeId);
+            }
+            edgeRepo.addEdge(edgeId, startNodeIndex, endNodeIndex, weight);
+        }
+
+        private void saveProperties(Object id, ByteBuffer record) throws IOException {
+            Map<String, Object> propertyMap = readJson(record, PROPERTIES_TYPE);
+            if (propertyMap == null) {
+                propertiesRepo(id).removeProperties(id);
+                return;
+            }
+            Properties properties = id instanceof NodeId
+                ? ((NodeId) id).getNodeType().getPropertiesFactory().createEmptyProperties()
+                : ((EdgeId) id).getEdgeType().getPropertiesFactory().createEmptyProperties();
+            for (Map.Entry<String, Object> property : propertyMap.entrySet()) {
+                properties.setProperty(property.getKey(), property.getValue());
+            }
+            propertiesRepo(id).saveProperties(id, properties);
+        }
+
+        @SuppressWarnings("unchecked")
+        private PropertiesRepository<Object> propertiesRepo(Object id) {
+            PropertiesRepository<?> repo =
+                id instanceof NodeId ? nodePropertiesRepo : edgePropertiesRepo;
+            return (PropertiesRepository<Object>) repo;
+        }
+
+        private NodeId readNodeId(ByteBuffer record) {
+            NodeType nodeType = metadata.getNodeTypes().valueOf(readString(record));
+            return new NodeId(nodeType, readString(record));
+        }
+
+        private EdgeId readEdgeId(ByteBuffer record) {
+            EdgeType edgeType = metadata.getEdgeTypes().valueOf(readString(record));
+            return new EdgeId(edgeType, record.getInt());
+        }
+
+        private Object readEntityId(ByteBuffer record) {
+            return record.get() == NODE ? readNodeId(record) : readEdgeId(record);
+        }
+
+        private static String readString(ByteBuffer record) {
+            int length = record.getInt();
+            String str = new String(record.array(), record.position(), length, Charsets.UTF_8);
+            record.position(record.position() + length);
+            return str;
+        }
+
+        private static <V> V readJson(ByteBuffer record, Class<V> type) throws IOException {
+            int length = record.getInt();
+            V value = OBJECT_MAPPER.readValue(record.array(), record.position(), length, type);
+            record.position(record.position() + length);
+            return value;
+        }
+
+        private static <V> V readJson(ByteBuffer record, TypeReference<V> type)
+            throws IOException {
+            int length = record.getInt();
+            V value = OBJECT_MAPPER.readValue(record.array(), record.position(), length, type);
+            record.position(record.position() + length);
+            return value;
+        }
+    }
+
+    /**
+     * A growable buffer of encoded records, reused between syncs.
+     */
+    private static final class RecordBuffer {
+        private final CRC32 crc = new CRC32();
+        private byte[] bytes = new byte[BUFFER_SIZE];
+        private int size;
+        private int recordStart;
+
+        private void startRecord(byte op) {
+            recordStart = size;
+            ensureCapacity(HEADER_SIZE + 1);
+            size += HEADER_SIZE;
+            bytes[size++] = op;
+        }
+
+        private void endRecord() {
+            int length = size - recordStart - HEADER_SIZE;
+            if (length > MAX_RECORD_SIZE) {
+                size = recordStart;
+                throw new GraphException("Mutation too large to be logged.");
+            }
+            crc.reset();
+            crc.update(bytes, recordStart + HEADER_SIZE, length);
+            putInt(recordStart, length);
+            putInt(recordStart + 4, (int) crc.getValue());
+        }
+
+        private void writeByte(byte value) {
+            ensureCapacity(1);
+            bytes[size++] = value;
+        }
+
+        private void writeBoolean(boolean value) {
+            writeByte(value ? (byte) 1 : (byte) 0);
+        }
+
+        private void writeInt(int value) {
+            ensureCapacity(4);
+            putInt(size, value);
+            size += 4;
+        }
+
+        private void writeFloat(float value) {
+            writeInt(Float.floatToIntBits(value));
+        }
+
+        /**
+         * Writes a length prefixed byte array.
+         */
+        private void writeBytes(byte[] value) {
+            writeInt(value.length);
+            ensureCapacity(value.length);
+            System.arraycopy(value, 0, bytes, size, value.length);
+            size += value.length;
+        }
+
+        private void writeString(String value) {
+            writeBytes(value.getBytes(Charsets.UTF_8));
+        }
+
+        private void putInt(int position, int value) {
+            bytes[position] = (byte) (value >>> 24);
+            bytes[position + 1] = (byte) (value >>> 16);
+            bytes[position + 2] = (byte) (value >>> 8);
+            bytes[position + 3] = (byte) value;
+        }
+
+        private void ensureCapacity(int length) {
+            if (size + length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(size + length, 2 * bytes.length));
+            }
+        }
+
+        private int size() {
+            return size;
+        }
+
+        private void writeTo(FileChannel channel) throws IOException {
+            ByteBuffer byteBuffer = ByteBuffer.wrap(bytes, 0, size);
+            while (byteBuffer.hasRemaining()) {
+                channel.write(byteBuffer);
+            }
+        }
+
+        private void clear() {
+            size = 0;
+            if (bytes.length > MAX_BUFFERED_BYTES) {
+                // Don't hold on to the memory of a burst of large records
+                bytes = new byte[BUFFER_SIZE];
+            }
+        }
+    }
+}
@@ -16,14 +16,21 @@
 
 package org.jon.ivmark.graphit.core.graph;
 
+import org.jon.ivmark.graphit.core.IntIntFloatProcedure;
+import org.jon.ivmark.graphit.core.graph.algorithms.GraphAlgorithms;
 import org.jon.ivmark.graphit.core.graph.edge.*;
 import org.jon.ivmark.graphit.core.graph.node.Node;
 import org.jon.ivmark.graphit.core.graph.node.NodeId;
 import org.jon.ivmark.graphit.core.graph.node.NodeType;
 import org.jon.ivmark.graphit.core.graph.traversal.Traversable;
 import org.jon.ivmark.graphit.core.properties.Properties;
+import org.jon.ivmark.graphit.core.properties.filter.PropertyFilterSettings;
+import org.jon.ivmark.graphit.core.properties.index.PropertyIndexType;
+import org.jon.ivmark.graphit.core.properties.repository.PropertiesUpdate;
 
 import java.io.File;
+import java.util.List;
+import java.util.Set;
 
 /**
  * A graph containing nodes connected by edges. Both nodes and edges can have
@@ -66,6 +73,15 @@ public interface PropertyGraph {
      */
     EdgeType createEdgeType(String name, EdgeSortOrder sortOrder);
 
+    /**
+     * Creates an edge type with the given name and sort order, optionally
+     * keeping edge weights inline in the edge vectors. Throws an exception if
+     * such a type already exists.
+     *
+     * @see EdgeType#EdgeType(String, EdgeSortOrder, boolean)
+     */
+    EdgeType createEdgeType(String name, EdgeSortOrder sortOrder, boolean inlineWeights);
+
     /**
      * Creates a node type with the given name. Throws an exception if such a
      * type already exists.
@@ -104,6 +120,16 @@ public interface PropertyGraph {
      */
     Traversable<Node> getNeighbors(NodeId node, EdgeType edgeType, EdgeDirection direction);
 
+    /**
+     * Applies a procedure to the (neighbor index, edge index, weight) of each
+     * edge connected to the node with the provided index, until the procedure
+     * returns false. Edges are visited in the same order as by
+     * {@link #getEdges(NodeId, EdgeType, EdgeDirection)}, but without creating
+     * any objects per edge.
+     */
+    void forEachNeighborIndex(int nodeIndex, EdgeType edgeType, EdgeDirection direction,
+                              IntIntFloatProcedure procedure);
+
     /**
      * Gets a node by it's index. Modifying the returned node's properties will
      * take immediate effect in the backing repository.
@@ -178,6 +204,16 @@ public interface PropertyGraph {
      */
     void setEdgeProperties(EdgeId edgeId, Properties properties);
 
+    /**
+     * Applies several changes to the properties of a node in one write.
+     */
+    void updateNodeProperties(NodeId nodeId, PropertiesUpdate update);
+
+    /**
+     * Applies several changes to the properties of an edge in one write.
+     */
+    void updateEdgeProperties(EdgeId edgeId, PropertiesUpdate update);
+
     /**
      * Exports the graph to file as json.
      */
@@ -189,6 +225,30 @@ public interface PropertyGraph {
      */
     void importJson(File in);
 
+    /**
+     * Exports the graph to file as a binary snapshot.
+     */
+    void exportSnapshot(File out, boolean includeNodeProperties,
+                        boolean includeEdgeProperties);
+
+    /**
+     * Imports the graph from a binary snapshot file.
+     */
+    void importSnapshot(File in);
+
+    /**
+     * Exports the graph as json to a directory of chunk files, written in
+     * parallel by the given number of threads.
+     */
+    void exportJsonChunks(File dir, int parallelism, boolean includeNodeProperties,
+                          boolean includeEdgeProperties);
+
+    /**
+     * Imports the graph from a directory of json chunk files, read in
+     * parallel by the given number of threads.
+     */
+    void importJsonChunks(File dir, int parallelism);
+
     /**
      * Returns all nodes in this graph.
      */
@@ -199,6 +259,87 @@ public interface PropertyGraph {
      */
     Traversable<Edge> getEdges();
 
+    /**
+     * Creates a secondary index on a property of all nodes of a type, kept in
+     * sync with all writes to node properties. The first index of a graph
+     * should be created before properties are written concurrently.
+     */
+    void createNodeIndex(NodeType nodeType, String key, PropertyIndexType indexType);
+
+    /**
+     * Drops an index on a property of all nodes of a type.
+     */
+    void dropNodeIndex(NodeType nodeType, String key);
+
+    /**
+     * Gets the indexed property keys of a node type.
+     */
+    Set<String> getNodeIndexKeys(NodeType nodeType);
+
+    /**
+     * Returns the nodes of a type having a property equal to the given value,
+     * using an index if there is one.
+     */
+    Traversable<Node> getNodes(NodeType nodeType, String key, Object value);
+
+    /**
+     * Returns the nodes of a type accepted by the given filter, using the most
+     * selective index applicable to it if there is one.
+     */
+    Traversable<Node> getNodes(NodeType nodeType, List<PropertyFilterSettings> filter);
+
+    /**
+     * Creates a secondary index on a property of all edges of a type, kept in
+     * sync with all writes to edge properties. The first index of a graph
+     * should be created before properties are written concurrently.
+     */
+    void createEdgeIndex(EdgeType edgeType, String key, PropertyIndexType indexType);
+
+    /**
+     * Drops an index on a property of all edges of a type.
+     */
+    void dropEdgeIndex(EdgeType edgeType, String key);
+
+    /**
+     * Gets the indexed property keys of an edge type.
+     */
+    Set<String> getEdgeIndexKeys(EdgeType edgeType);
+
+    /**
+     * Returns the edges of a type having a property equal to the given value,
+     * using an index if there is one.
+     */
+    Traversable<Edge> getEdges(EdgeType edgeType, String key, Object value);
+
+    /**
+     * Returns the edges of a type accepted by the given filter, using the most
+     * selective index applicable to it if there is one.
+     */
+    Traversable<Edge> getEdges(EdgeType edgeType, List<PropertyFilterSettings> filter);
+
+    /**
+     * Gets the number of nodes in this graph. This is a constant time
+     * operation.
+     */
     int numberOfNodes();
 
+    /**
+     * Gets the number of edges of the provided type in this graph. This is a
+     * constant time operation. Edges connected to removed nodes are counted
+     * until they are removed themselves.
+     */
+    int numberOfEdges(EdgeType edgeType);
+
+    /**
+     * Gets the highest index of any node in this graph, or -1 if there are no
+     * nodes. All node indexes are in [0, max node index].
+     */
+    int getMaxNodeIndex();
+
+    /**
+     * Gets algorithms, such as shortest paths and page ranks, working on the
+     * node indexes of this graph.
+     */
+    GraphAlgorithms getAlgorithms();
+
 }
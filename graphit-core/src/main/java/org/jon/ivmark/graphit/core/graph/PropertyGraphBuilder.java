@@ -0,0 +1,140 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph;
+
+import com.google.common.base.Preconditions;
+import org.apache.mahout.math.list.FloatArrayList;
+import org.apache.mahout.math.list.IntArrayList;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeType;
+import org.jon.ivmark.graphit.core.graph.node.Node;
+import org.jon.ivmark.graphit.core.graph.node.NodeId;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Builder used to bulk load a {@link PropertyGraphImpl}.
+ *
+ * Nodes are added to the graph immediately, while edges are buffered as
+ * primitives and added per edge type when {@link #build()} is called. This
+ * lets the edge repository build the edge vectors of all nodes in a single
+ * pass instead of updating them one edge at a time, which makes loading large
+ * graphs (e.g. similarity graphs) a lot faster than using
+ * {@link PropertyGraph#addEdge(NodeId, NodeId, EdgeType, float)}.
+ *
+ * After {@link #build()} the graph may be modified as usual.
+ *
+ * This class is not thread safe.
+ *
+ * @author jon
+ *
+ */
+public class PropertyGraphBuilder {
+
+    private final PropertyGraphImpl graph;
+    private final Map<EdgeType, EdgeBatch> edgeBatches;
+
+    /**
+     * Creates a builder for a new, empty graph.
+     */
+    public PropertyGraphBuilder() {
+        this(new PropertyGraphImpl());
+    }
+
+    /**
+     * Creates a builder adding nodes and edges to the provided graph.
+     */
+    public PropertyGraphBuilder(PropertyGraphImpl graph) {
+        Preconditions.checkNotNull(graph);
+        this.graph = graph;
+        this.edgeBatches = new LinkedHashMap<EdgeType, EdgeBatch>();
+    }
+
+    /**
+     * Adds a node unless it already exists, and returns it.
+     */
+    public Node addNode(NodeId nodeId) {
+        Node node = graph.getNode(nodeId);
+        if (node == null) {
+            node = graph.addNode(nodeId);
+        }
+        return node;
+    }
+
+    /**
+     * Adds an edge between two existing nodes.
+     */
+    public PropertyGraphBuilder addEdge(NodeId startNodeId, NodeId endNodeId, EdgeType edgeType,
+                                        float weight) {
+        int startNodeIndex = graph.getNodeRepo().getNodeIndex(startNodeId);
+        Preconditions.checkArgument(startNodeIndex >= 0, "Invalid start node: " + startNodeId);
+        int endNodeIndex = graph.getNodeRepo().getNodeIndex(endNodeId);
+        Preconditions.checkArgument(endNodeIndex >= 0, "Invalid end node: " + endNodeId);
+        return addEdge(startNodeIndex, endNodeIndex, edgeType, weight);
+    }
+
+    /**
+     * Adds an edge between the nodes with the provided indexes.
+     */
+    public PropertyGraphBuilder addEdge(int startNodeIndex, int endNodeIndex, EdgeType edgeType,
+                                        float weight) {
+        Preconditions.checkArgument(startNodeIndex >= 0, "Invalid start node index");
+        Preconditions.checkArgument(endNodeIndex >= 0, "Invalid end node index");
+        EdgeBatch edgeBatch = edgeBatches.get(edgeType);
+        if (edgeBatch == null) {
+            // Make sure the edge type exists, and use the same instance as the graph
+            EdgeType internedEdgeType = graph.getEdgeType(edgeType.name());
+            edgeBatch = new EdgeBatch(internedEdgeType);
+            edgeBatches.put(edgeType, edgeBatch);
+        }
+        edgeBatch.add(startNodeIndex, endNodeIndex, weight);
+        return this;
+    }
+
+    /**
+     * Adds all buffered edges to the graph and returns it.
+     */
+    public PropertyGraphImpl build() {
+        for (EdgeBatch edgeBatch : edgeBatches.values()) {
+            edgeBatch.addTo(graph);
+        }
+        edgeBatches.clear();
+        return graph;
+    }
+
+    private static final class EdgeBatch {
+        private final EdgeType edgeType;
+        private final IntArrayList startNodeIndexes = new IntArrayList();
+        private final IntArrayList endNodeIndexes = new IntArrayList();
+        private final FloatArrayList weights = new FloatArrayList();
+
+        private EdgeBatch(EdgeType edgeType) {
+            this.edgeType = edgeType;
+        }
+
+        private void add(int startNodeIndex, int endNodeIndex, float weight) {
+            startNodeIndexes.add(startNodeIndex);
+            endNodeIndexes.add(endNodeIndex);
+            weights.add(weight);
+        }
+
+        private void addTo(PropertyGraphImpl graph) {
+            graph.addEdges(edgeType, startNodeIndexes.elements(), endNodeIndexes.elements(),
+                           weights.elements(), startNodeIndexes.size());
+        }
+    }
+}
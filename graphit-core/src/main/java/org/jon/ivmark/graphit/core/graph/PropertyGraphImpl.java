@@ -18,29 +18,61 @@ package org.jon.ivmark.graphit.core.graph;
 
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.commons.io.FileUtils;
+import org.apache.mahout.math.list.FloatArrayList;
+import org.apache.mahout.math.list.IntArrayList;
+import org.jon.ivmark.graphit.core.ConcurrencyConstants;
+import org.jon.ivmark.graphit.core.IntIntFloatProcedure;
+import org.jon.ivmark.graphit.core.Procedure;
+import org.jon.ivmark.graphit.core.graph.algorithms.GraphAlgorithms;
 import org.jon.ivmark.graphit.core.graph.edge.*;
 import org.jon.ivmark.graphit.core.graph.edge.repository.EdgePrimitivesRepository;
 import org.jon.ivmark.graphit.core.graph.edge.repository.EdgePrimitivesRepositoryImpl;
 import org.jon.ivmark.graphit.core.graph.edge.repository.EdgePropertiesRepository;
 import org.jon.ivmark.graphit.core.graph.exception.GraphException;
 import org.jon.ivmark.graphit.core.graph.node.Node;
+import org.jon.ivmark.graphit.core.graph.node.NodeFilter;
 import org.jon.ivmark.graphit.core.graph.node.NodeId;
 import org.jon.ivmark.graphit.core.graph.node.NodeType;
+import org.jon.ivmark.graphit.core.graph.node.repository.ColumnarNodePropertiesRepository;
 import org.jon.ivmark.graphit.core.graph.node.repository.ConcurrentNodeIdRepository;
 import org.jon.ivmark.graphit.core.graph.node.repository.NodeIdRepository;
 import org.jon.ivmark.graphit.core.graph.node.repository.NodePropertiesRepository;
+import org.jon.ivmark.graphit.core.graph.traversal.IndexRangeIterable;
 import org.jon.ivmark.graphit.core.graph.traversal.Traversable;
+import org.jon.ivmark.graphit.core.io.util.FileSyncUtils;
 import org.jon.ivmark.graphit.core.properties.Properties;
+import org.jon.ivmark.graphit.core.properties.filter.FilterCondition;
+import org.jon.ivmark.graphit.core.properties.filter.PropertiesFilterCompiler;
+import org.jon.ivmark.graphit.core.properties.filter.PropertyFilterSettings;
+import org.jon.ivmark.graphit.core.properties.index.IndexedPropertiesRepository;
+import org.jon.ivmark.graphit.core.properties.index.PropertyIndexType;
 import org.jon.ivmark.graphit.core.properties.repository.PropertiesRepository;
-import org.jon.ivmark.graphit.core.properties.repository.WriteThroughProperties;
+import org.jon.ivmark.graphit.core.properties.repository.PropertiesUpdate;
+import org.jon.ivmark.graphit.core.properties.repository.RepositoryProperties;
 
 import java.io.File;
+import java.io.Flushable;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * {@link PropertyGraph} implementation.
@@ -52,18 +84,68 @@ public class PropertyGraphImpl implements PropertyGraph {
 
     private static final int DEFAULT_NODE_CAPACITY = 16;
     private static final int DEFAULT_EDGE_CAPACITY = 16;
+    private static final long DEFAULT_MUTATION_LOG_SYNC_INTERVAL_MILLIS = 100;
+    private static final long DEFAULT_MAX_MUTATION_LOG_SIZE = 256L << 20;
+
+    private static final Function<NodeId, NodeType> NODE_TYPE = new Function<NodeId, NodeType>() {
+
+        @Override
+        public NodeType apply(NodeId nodeId) {
+            return nodeId.getNodeType();
+        }
+    };
+    private static final Function<EdgeId, EdgeType> EDGE_TYPE = new Function<EdgeId, EdgeType>() {
+
+        @Override
+        public EdgeType apply(EdgeId edgeId) {
+            return edgeId.getEdgeType();
+        }
+    };
 
     private final GraphMetadata metadata;
 
     private NodeIdRepository nodeRepo;
-    private PropertiesRepository<NodeId> nodePropertiesRepo;
+    private volatile PropertiesRepository<NodeId> nodePropertiesRepo;
+    private volatile IndexedPropertiesRepository<NodeId, NodeType> nodeIndexes;
 
     private EdgePrimitivesRepository edgeRepo;
-    private PropertiesRepository<EdgeId> edgePropertiesRepo;
+    private volatile PropertiesRepository<EdgeId> edgePropertiesRepo;
+    private volatile IndexedPropertiesRepository<EdgeId, EdgeType> edgeIndexes;
+
+    // Bound to properties handles
+    private final PropertiesRepository<NodeId> currentNodePropertiesRepo =
+        new CurrentPropertiesRepository<NodeId>() {
+
+            @Override
+            protected PropertiesRepository<NodeId> current() {
+                return nodePropertiesRepo;
+            }
+        };
+    private final PropertiesRepository<EdgeId> currentEdgePropertiesRepo =
+        new CurrentPropertiesRepository<EdgeId>() {
+
+            @Override
+            protected PropertiesRepository<EdgeId> current() {
+                return edgePropertiesRepo;
+            }
+        };
 
     private boolean shouldPersistNodeProperties = true;
     private boolean shouldPersistEdgeProperties = true;
     private String dataDir;
+    private GraphFileFormat fileFormat = GraphFileFormat.JSON;
+
+    private boolean mutationLogEnabled;
+    private long mutationLogSyncIntervalMillis = DEFAULT_MUTATION_LOG_SYNC_INTERVAL_MILLIS;
+    private long maxMutationLogSize = DEFAULT_MAX_MUTATION_LOG_SIZE;
+    private volatile MutationLog mutationLog;
+    private long checkpointIntervalMillis;
+    private int maxVersions;
+    private ScheduledExecutorService checkpointExecutor;
+    private final AtomicBoolean checkpointScheduled = new AtomicBoolean();
+    private final Object checkpointLock = new Object();
+    private volatile CheckpointStats checkpointStats = new CheckpointStats();
+    private final ReentrantLock[] mutationLocks;
 
     /**
      * Creates a new graph.
@@ -88,6 +170,10 @@ public class PropertyGraphImpl implements PropertyGraph {
         this.edgeRepo = new EdgePrimitivesRepositoryImpl(metadata.getEdgeTypes());
         this.nodePropertiesRepo = new NodePropertiesRepository(DEFAULT_NODE_CAPACITY);
         this.edgePropertiesRepo = new EdgePropertiesRepository(DEFAULT_EDGE_CAPACITY);
+        this.mutationLocks = new ReentrantLock[ConcurrencyConstants.DEFAULT_CONCURRENCY_LEVEL];
+        for (int i = 0; i < mutationLocks.length; i++) {
+            mutationLocks[i] = new ReentrantLock();
+        }
     }
 
     /**
@@ -104,6 +190,109 @@ public class PropertyGraphImpl implements PropertyGraph {
         this.dataDir = dataDir;
     }
 
+    /**
+     * Gets the format in which this graph is persisted in the data dir.
+     */
+    public GraphFileFormat getFileFormat() {
+        return fileFormat;
+    }
+
+    /**
+     * Sets the format in which this graph is persisted in the data dir. A
+     * graph persisted in another format is still loaded by {@link #init()}.
+     */
+    public void setFileFormat(GraphFileFormat fileFormat) {
+        notNull(fileFormat, "File format is mandatory.");
+        this.fileFormat = fileFormat;
+    }
+
+    /**
+     * Defines if mutations are written to a log in the data dir, so that they
+     * survive a crash before the graph is persisted by {@link #shutdown()}.
+     */
+    public boolean isMutationLogEnabled() {
+        return mutationLogEnabled;
+    }
+
+    /**
+     * Sets the flag that defines if mutations are written to a log in the data
+     * dir. The log is replayed by {@link #init()}, which then persists the
+     * graph in the background, as does any mutation making the log exceed
+     * its max size.
+     */
+    public void setMutationLogEnabled(boolean mutationLogEnabled) {
+        this.mutationLogEnabled = mutationLogEnabled;
+    }
+
+    /**
+     * Gets the interval between syncs of the mutation log to disk.
+     */
+    public long getMutationLogSyncIntervalMillis() {
+        return mutationLogSyncIntervalMillis;
+    }
+
+    /**
+     * Sets the interval between syncs of the mutation log to disk, bounding
+     * the mutations lost in a crash. With an interval of zero each mutation
+     * waits for its log record to be synced, with concurrent mutations
+     * sharing syncs.
+     */
+    public void setMutationLogSyncIntervalMillis(long mutationLogSyncIntervalMillis) {
+        isTrue(mutationLogSyncIntervalMillis >= 0, "Invalid sync interval.");
+        this.mutationLogSyncIntervalMillis = mutationLogSyncIntervalMillis;
+    }
+
+    /**
+     * Gets the size in bytes after which the mutation log is compacted.
+     */
+    public long getMaxMutationLogSize() {
+        return maxMutationLogSize;
+    }
+
+    /**
+     * Sets the size in bytes after which the mutation log is compacted by
+     * persisting the graph in the background.
+     */
+    public void setMaxMutationLogSize(long maxMutationLogSize) {
+        isTrue(maxMutationLogSize > 0, "Invalid max mutation log size.");
+        this.maxMutationLogSize = maxMutationLogSize;
+    }
+
+    /**
+     * Gets the interval between background checkpoints, or zero if the graph
+     * is only checkpointed by {@link #shutdown()} or, with the mutation log
+     * enabled, when the log is full.
+     */
+    public long getCheckpointIntervalMillis() {
+        return checkpointIntervalMillis;
+    }
+
+    /**
+     * Sets the interval between background checkpoints, see
+     * {@link #checkpoint()}. Must be set before {@link #init()}.
+     */
+    public void setCheckpointIntervalMillis(long checkpointIntervalMillis) {
+        isTrue(checkpointIntervalMillis >= 0, "Invalid checkpoint interval.");
+        this.checkpointIntervalMillis = checkpointIntervalMillis;
+    }
+
+    /**
+     * Gets the max number of graph files kept in the versions dir, or zero if
+     * all versions are kept.
+     */
+    public int getMaxVersions() {
+        return maxVersions;
+    }
+
+    /**
+     * Sets the max number of graph files kept in the versions dir, or zero to
+     * keep all versions.
+     */
+    public void setMaxVersions(int maxVersions) {
+        isTrue(maxVersions >= 0, "Invalid max versions.");
+        this.maxVersions = maxVersions;
+    }
+
     /**
      * Defines if node properties are to be included when/if the graph is
      * persisted on disk.
@@ -165,10 +354,23 @@ public class PropertyGraphImpl implements PropertyGraph {
     }
 
     /**
-     * Sets a custom repo used to handle node properties.
+     * Sets a custom repo used to handle node properties, dropping any node
+     * indexes.
      */
     public void setNodePropertiesRepo(PropertiesRepository<NodeId> nodePropertiesRepo) {
         this.nodePropertiesRepo = nodePropertiesRepo;
+        this.nodeIndexes = null;
+    }
+
+    /**
+     * Stores node properties column-wise per node type in primitive arrays
+     * indexed by node index, see {@link ColumnarNodePropertiesRepository}.
+     * Must be called before any nodes are added, and after any custom node
+     * repo has been set.
+     */
+    public void useColumnarNodeProperties() {
+        isTrue(nodeRepo.size() == 0, "Columnar node properties require an empty graph.");
+        setNodePropertiesRepo(new ColumnarNodePropertiesRepository(nodeRepo));
     }
 
     /**
@@ -179,10 +381,12 @@ public class PropertyGraphImpl implements PropertyGraph {
     }
 
     /**
-     * Sets a custom repo used to handle edge properties.
+     * Sets a custom repo used to handle edge properties, dropping any edge
+     * indexes.
      */
     public void setEdgePropertiesRepo(PropertiesRepository<EdgeId> edgePropertiesRepo) {
         this.edgePropertiesRepo = edgePropertiesRepo;
+        this.edgeIndexes = null;
     }
 
     /**
@@ -204,66 +408,125 @@ public class PropertyGraphImpl implements PropertyGraph {
     @Override
     public Traversable<Edge>
         getEdges(NodeId nodeId, EdgeType edgeType, EdgeDirection direction) {
-        return getEdgeIds(nodeId, edgeType, direction)
-            .transform(new Function<EdgeId, Edge>() {
+        final Node node = getNode(nodeId);
+        if (node == null) {
+            return new Traversable<Edge>();
+        }
+        final NeighborCollector outgoing = new NeighborCollector();
+        final NeighborCollector incoming = new NeighborCollector();
+        if (direction != EdgeDirection.INCOMING) {
+            forEachNeighborIndex(node.getIndex(), edgeType, EdgeDirection.OUTGOING, outgoing);
+        }
+        if (direction != EdgeDirection.OUTGOING) {
+            forEachNeighborIndex(node.getIndex(), edgeType, EdgeDirection.INCOMING, incoming);
+        }
+        if (outgoing.size() + incoming.size() == 0) {
+            return new Traversable<Edge>();
+        }
+        final EdgeType internedEdgeType = metadata.getEdgeTypes().valueOf(edgeType.name());
+        return new Traversable<Edge>(new Iterable<Edge>() {
 
-                @Override
-                public Edge apply(EdgeId edgeId) {
-                    notNull(edgeId);
-                    return getEdge(edgeId);
-                }
-            }).filter(Predicates.<Edge> notNull());
+            @Override
+            public Iterator<Edge> iterator() {
+                return new AbstractIterator<Edge>() {
+                    private int position = 0;
+
+                    @Override
+                    protected Edge computeNext() {
+                        while (position < outgoing.size() + incoming.size()) {
+                            boolean isOutgoing = position < outgoing.size();
+                            NeighborCollector neighbors = isOutgoing ? outgoing : incoming;
+                            int i = isOutgoing ? position : position - outgoing.size();
+                            position++;
+                            Node neighbor = getNode(neighbors.neighborIndexes.get(i));
+                            if (neighbor == null) {
+                                continue;
+                            }
+                            EdgeId edgeId =
+                                new EdgeId(internedEdgeType, neighbors.edgeIndexes.get(i));
+                            Edge edge = new Edge(edgeId.getIndex(), internedEdgeType,
+                                                 new RepositoryProperties<EdgeId>(
+                                                     edgeId, currentEdgePropertiesRepo));
+                            edge.setStartNode(isOutgoing ? node : neighbor)
+                                .setEndNode(isOutgoing ? neighbor : node)
+                                .setWeight(neighbors.weights.get(i));
+                            return edge;
+                        }
+                        return endOfData();
+                    }
+                };
+            }
+        });
     }
 
     @Override
     public Traversable<Node> getNeighbors(final NodeId nodeId, EdgeType edgeType,
                                            EdgeDirection direction) {
-        return getEdgeIds(nodeId, edgeType, direction)
-            .transform(new Function<EdgeId, Node>() {
+        int nodeIndex = getNodeIndex(nodeId);
+        if (nodeIndex < 0) {
+            return new Traversable<Node>();
+        }
+        final NeighborCollector neighbors = new NeighborCollector();
+        forEachNeighborIndex(nodeIndex, edgeType, direction, neighbors);
+        return new Traversable<Node>(new Iterable<Node>() {
 
-                @Override
-                public Node apply(EdgeId edgeId) {
-                    notNull(edgeId);
-                    Edge edge = getEdge(edgeId);
-                    if (edge == null) {
-                        return null;
+            @Override
+            public Iterator<Node> iterator() {
+                return new AbstractIterator<Node>() {
+                    private int position = 0;
+
+                    @Override
+                    protected Node computeNext() {
+                        while (position < neighbors.size()) {
+                            Node neighbor = getNode(neighbors.neighborIndexes.get(position++));
+                            if (neighbor != null) {
+                                return neighbor;
+                            }
+                        }
+                        return endOfData();
                     }
-                    return edge.getOppositeNode(nodeId);
-                }
-            }).filter(Predicates.<Node> notNull());
+                };
+            }
+        });
     }
 
-    private Traversable<EdgeId> getEdgeIds(NodeId node, EdgeType edgeType,
-                                            EdgeDirection direction) {
+    @Override
+    public void forEachNeighborIndex(int nodeIndex, EdgeType edgeType, EdgeDirection direction,
+                                     final IntIntFloatProcedure procedure) {
+        if (nodeRepo.getNodeId(nodeIndex) == null) {
+            return;
+        }
+        edgeRepo.forEachNeighbor(nodeIndex, edgeType, direction, new IntIntFloatProcedure() {
 
-        int nodeIndex = getNodeIndex(node);
-        if (nodeIndex < 0) {
-            return new Traversable<EdgeId>();
-        }
-        Traversable<EdgeId> iterable;
-        switch (direction) {
-        case BOTH:
-            EdgeVector outgoing = edgeRepo.getOutgoingEdges(nodeIndex, edgeType);
-            EdgeVector incoming = edgeRepo.getIncomingEdges(nodeIndex, edgeType);
-            Iterable<EdgeId> outIterable = outgoing.iterable();
-            Iterable<EdgeId> inIterable = incoming.iterable();
-            iterable = new Traversable<EdgeId>(Iterables.concat(outIterable, inIterable));
-            break;
-        case OUTGOING:
-            EdgeVector oEdges =
-                edgeRepo.getOutgoingEdges(nodeIndex, edgeType);
-            iterable = new Traversable<EdgeId>(oEdges.iterable());
-            break;
-        case INCOMING:
-            EdgeVector iEdges =
-                edgeRepo.getIncomingEdges(nodeIndex, edgeType);
-            iterable = new Traversable<EdgeId>(iEdges.iterable());
-            break;
-        default:
-            throw new IllegalArgumentException("Illegal direction: " + direction);
-        }
-        return iterable;
+            @Override
+            public boolean apply(int neighborIndex, int edgeIndex, float weight) {
+                // Skip edges to removed nodes
+                return nodeRepo.getNodeId(neighborIndex) == null
+                    || procedure.apply(neighborIndex, edgeIndex, weight);
+            }
+        });
+    }
 
+    /**
+     * Collects the (neighbor index, edge index, weight) of edges into
+     * primitive lists.
+     */
+    private static final class NeighborCollector implements IntIntFloatProcedure {
+        private final IntArrayList neighborIndexes = new IntArrayList();
+        private final IntArrayList edgeIndexes = new IntArrayList();
+        private final FloatArrayList weights = new FloatArrayList();
+
+        @Override
+        public boolean apply(int neighborIndex, int edgeIndex, float weight) {
+            neighborIndexes.add(neighborIndex);
+            edgeIndexes.add(edgeIndex);
+            weights.add(weight);
+            return true;
+        }
+
+        private int size() {
+            return neighborIndexes.size();
+        }
     }
 
     private NodeId validateNodeId(NodeId nodeId) {
@@ -282,18 +545,41 @@ public class PropertyGraphImpl implements PropertyGraph {
     @Override
     public Node addNode(NodeId nodeId) {
         NodeId id = validateNodeId(nodeId);
-        int index = nodeRepo.insert(id);
+        MutationLog log = mutationLog;
+        int index;
+        long record = 0;
+        ReentrantLock lock = lock(id);
+        try {
+            index = nodeRepo.insert(id);
+            if (log != null) {
+                record = log.appendAddNode(index, id);
+            }
+        } finally {
+            lock.unlock();
+        }
+        awaitSync(log, record);
         Properties properties =
-            new WriteThroughProperties<NodeId>(id, nodePropertiesRepo);
+            new RepositoryProperties<NodeId>(id, currentNodePropertiesRepo);
         return new Node(index, id, properties);
     }
 
     @Override
     public Node addNode(NodeId nodeId, int index) {
         NodeId id = validateNodeId(nodeId);
-        nodeRepo.insert(index, nodeId);
+        MutationLog log = mutationLog;
+        long record = 0;
+        ReentrantLock lock = lock(id);
+        try {
+            nodeRepo.insert(index, nodeId);
+            if (log != null) {
+                record = log.appendAddNode(index, id);
+            }
+        } finally {
+            lock.unlock();
+        }
+        awaitSync(log, record);
         Properties properties =
-            new WriteThroughProperties<NodeId>(id, nodePropertiesRepo);
+            new RepositoryProperties<NodeId>(id, currentNodePropertiesRepo);
         return new Node(index, id, properties);
     }
 
@@ -303,8 +589,8 @@ public class PropertyGraphImpl implements PropertyGraph {
         if (index < 0) {
             return null;
         }
-        return new Node(index, nodeId, new WriteThroughProperties<NodeId>(nodeId,
-                                                                              nodePropertiesRepo));
+        return new Node(index, nodeId, new RepositoryProperties<NodeId>(nodeId,
+                                                                        currentNodePropertiesRepo));
     }
 
     @Override
@@ -313,19 +599,32 @@ public class PropertyGraphImpl implements PropertyGraph {
         if (nodeId == null) {
             return null;
         }
-        return new Node(index, nodeId, new WriteThroughProperties<NodeId>(nodeId,
-                                                                              nodePropertiesRepo));
+        return new Node(index, nodeId, new RepositoryProperties<NodeId>(nodeId,
+                                                                        currentNodePropertiesRepo));
     }
 
     @Override
     public Node removeNode(NodeId nodeId) {
-        int index = nodeRepo.getNodeIndex(nodeId);
-        if (index < 0) {
-            return null;
-        }
-        nodeRepo.remove(index);
+        MutationLog log = mutationLog;
+        int index;
         Properties properties;
-        properties = nodePropertiesRepo.removeProperties(nodeId);
+        long record = 0;
+        ReentrantLock lock = lock(nodeId);
+        try {
+            index = nodeRepo.getNodeIndex(nodeId);
+            if (index < 0) {
+                return null;
+            }
+            // Properties first, a columnar repo looks them up by index
+            properties = nodePropertiesRepo.removeProperties(nodeId);
+            nodeRepo.remove(index);
+            if (log != null) {
+                record = log.appendRemoveNode(index);
+            }
+        } finally {
+            lock.unlock();
+        }
+        awaitSync(log, record);
         Node node = new Node(index, nodeId, properties);
         return node.immutableNode();
     }
@@ -342,8 +641,8 @@ public class PropertyGraphImpl implements PropertyGraph {
             return null;
         }
         Edge edge = new Edge(edgePrimitive.getIndex(), edgePrimitive.getEdgeType(),
-                                     new WriteThroughProperties<EdgeId>(edgeId,
-                                                                        edgePropertiesRepo));
+                                     new RepositoryProperties<EdgeId>(edgeId,
+                                                                      currentEdgePropertiesRepo));
 
         edge.setStartNode(startNode)
             .setEndNode(endNode)
@@ -376,7 +675,19 @@ public class PropertyGraphImpl implements PropertyGraph {
 
     @Override
     public Edge addEdge(EdgeId edgeId, int startNodeIndex, int endNodeIndex, float weight) {
-        edgeRepo.addEdge(validateEdgeId(edgeId), startNodeIndex, endNodeIndex, weight);
+        EdgeId id = validateEdgeId(edgeId);
+        MutationLog log = mutationLog;
+        long record = 0;
+        ReentrantLock lock = lock(id);
+        try {
+            edgeRepo.addEdge(id, startNodeIndex, endNodeIndex, weight);
+            if (log != null) {
+                record = log.appendAddEdge(id, startNodeIndex, endNodeIndex, weight);
+            }
+        } finally {
+            lock.unlock();
+        }
+        awaitSync(log, record);
         return getEdge(edgeId);
     }
 
@@ -388,11 +699,25 @@ public class PropertyGraphImpl implements PropertyGraph {
         Node endNode = getNode(endNodeId);
         Preconditions.checkArgument(endNode != null, "Invalid end node: " + endNodeId);
 
-        EdgeId edgeId =
-            edgeRepo.addEdge(startNode.getIndex(), endNode.getIndex(), edgeType, weight);
+        // The id is reserved up front, so that the new edge is locked before
+        // other threads can see it
+        EdgeId edgeId = edgeRepo.reserveEdgeId(edgeType);
+        MutationLog log = mutationLog;
+        long record = 0;
+        ReentrantLock lock = lock(edgeId);
+        try {
+            edgeRepo.addEdge(edgeId, startNode.getIndex(), endNode.getIndex(), weight);
+            if (log != null) {
+                record = log.appendAddEdge(edgeId, startNode.getIndex(), endNode.getIndex(),
+                                           weight);
+            }
+        } finally {
+            lock.unlock();
+        }
+        awaitSync(log, record);
         Edge edge =
             new Edge(edgeId.getIndex(), edgeType,
-                         new WriteThroughProperties<EdgeId>(edgeId, edgePropertiesRepo));
+                         new RepositoryProperties<EdgeId>(edgeId, currentEdgePropertiesRepo));
 
         edge.setStartNode(startNode)
             .setEndNode(endNode)
@@ -402,11 +727,31 @@ public class PropertyGraphImpl implements PropertyGraph {
 
     @Override
     public Edge removeEdge(EdgeId edgeId) {
-        EdgePrimitive edgePrimitive = edgeRepo.removeEdge(edgeId);
+        // The id may not be reused by a new edge until the removal has been
+        // logged and the properties removed, or the log could replay the
+        // removal after the addition of the new edge
+        MutationLog log = mutationLog;
+        EdgePrimitive edgePrimitive;
+        long record = 0;
+        ReentrantLock lock = lock(edgeId);
+        try {
+            edgePrimitive = edgeRepo.removeEdgeRetainingId(edgeId);
+            if (edgePrimitive != null && log != null) {
+                record = log.appendRemoveEdge(edgePrimitive.getEdgeId());
+            }
+        } finally {
+            lock.unlock();
+        }
         if (edgePrimitive == null) {
             return null;
         }
-        Properties properties = edgePropertiesRepo.removeProperties(edgeId);
+        Properties properties;
+        try {
+            awaitSync(log, record);
+            properties = edgePropertiesRepo.removeProperties(edgeId);
+        } finally {
+            edgeRepo.releaseEdgeId(edgePrimitive.getEdgeId());
+        }
         Edge edge =
             new Edge(edgePrimitive.getIndex(), edgePrimitive.getEdgeType(), properties);
         return edge;
@@ -414,7 +759,74 @@ public class PropertyGraphImpl implements PropertyGraph {
 
     @Override
     public void setEdgeWeight(EdgeId edgeId, float weight) {
-        edgeRepo.setEdgeWeight(edgeId, weight);
+        MutationLog log = mutationLog;
+        long record = 0;
+        ReentrantLock lock = lock(edgeId);
+        try {
+            edgeRepo.setEdgeWeight(edgeId, weight);
+            if (log != null) {
+                record = log.appendSetEdgeWeight(validateEdgeId(edgeId), weight);
+            }
+        } finally {
+            lock.unlock();
+        }
+        awaitSync(log, record);
+    }
+
+    /**
+     * Locks the stripe of a node or an edge id. Each mutation of a node or an
+     * edge is applied and appended to the mutation log while holding the lock,
+     * so that mutations of the same node or edge are logged in the order they
+     * were applied.
+     */
+    private ReentrantLock lock(Object id) {
+        ReentrantLock lock = mutationLocks[(id.hashCode() & 0x7fffffff) % mutationLocks.length];
+        lock.lock();
+        return lock;
+    }
+
+    /**
+     * Waits until a logged mutation is synced, after its lock is released.
+     */
+    private static void awaitSync(MutationLog log, long record) {
+        if (log != null) {
+            log.awaitSync(record);
+        }
+    }
+
+    /**
+     * Adds a batch of weighted edges of the same type and returns the index of
+     * the first new edge, see
+     * {@link EdgePrimitivesRepository#addEdges(EdgeType, int[], int[], float[], int)}.
+     * The batch is logged after all of its edges are added, so the new edges
+     * must not be mutated by other threads until this method returns.
+     */
+    int addEdges(EdgeType edgeType, int[] startNodeIndexes, int[] endNodeIndexes,
+                 float[] weights, int size) {
+        int firstEdgeIndex =
+            edgeRepo.addEdges(edgeType, startNodeIndexes, endNodeIndexes, weights, size);
+        MutationLog log = mutationLog;
+        if (log != null) {
+            log.addEdges(edgeType, firstEdgeIndex, startNodeIndexes, endNodeIndexes, weights,
+                         size);
+        }
+        return firstEdgeIndex;
+    }
+
+    /**
+     * Adds a batch of weighted edges of the same type with the provided
+     * indexes, see
+     * {@link EdgePrimitivesRepository#addEdges(EdgeType, int[], int[], int[], float[], int)}.
+     * Like {@link #addEdges(EdgeType, int[], int[], float[], int)} the batch is
+     * logged after all of its edges are added.
+     */
+    void addEdges(EdgeType edgeType, int[] edgeIndexes, int[] startNodeIndexes,
+                  int[] endNodeIndexes, float[] weights, int size) {
+        edgeRepo.addEdges(edgeType, edgeIndexes, startNodeIndexes, endNodeIndexes, weights, size);
+        MutationLog log = mutationLog;
+        if (log != null) {
+            log.addEdges(edgeType, edgeIndexes, startNodeIndexes, endNodeIndexes, weights, size);
+        }
     }
 
     @Override
@@ -432,48 +844,341 @@ public class PropertyGraphImpl implements PropertyGraph {
         edgePropertiesRepo.saveProperties(edgeId, properties);
     }
 
+    @Override
+    public void updateNodeProperties(NodeId nodeId, PropertiesUpdate update) {
+        nodePropertiesRepo.updateProperties(nodeId, update);
+    }
+
+    @Override
+    public void updateEdgeProperties(EdgeId edgeId, PropertiesUpdate update) {
+        edgePropertiesRepo.updateProperties(edgeId, update);
+    }
+
     @Override
     public void init() {
         isTrue(nodeRepo.size() == 0, "You may no call init for a non empty graph.");
         if (dataDir == null) {
+            isTrue(!mutationLogEnabled, "The mutation log requires a data dir.");
+            isTrue(checkpointIntervalMillis == 0, "Checkpoints require a data dir.");
+            return;
+        }
+        GraphFileFormat format = findFileFormat();
+        File file = format == null ? null : getFile(format);
+        if (file == null && mutationLogEnabled) {
+            // A crash while checkpointing may leave the latest graph file in
+            // the versions dir only, in which case the log is still complete
+            List<File> versionedFiles = getVersionedFiles();
+            file = versionedFiles.isEmpty() ? null : versionedFiles.get(versionedFiles.size() - 1);
+            format = file == null ? null : getFileFormat(file);
+        }
+        if (file != null) {
+            if (format == GraphFileFormat.SNAPSHOT) {
+                importSnapshot(file);
+            } else {
+                importJson(file);
+            }
+        }
+
+        long replayed = 0;
+        if (mutationLogEnabled) {
+            // The graph file is versioned by the next checkpoint
+            replayed = openMutationLog();
+        } else if (file != null) {
+            try {
+                versionFile(file, format);
+            } catch (IOException e) {
+                throw new GraphException("Failed to create versioned graph file.", e);
+            }
+        }
+        if (mutationLogEnabled || checkpointIntervalMillis > 0) {
+            startCheckpoints(replayed > 0);
+        }
+    }
+
+    /**
+     * Gets the format of the graph file in the data dir, preferring the
+     * configured format, or null if there is no graph file.
+     */
+    private GraphFileFormat findFileFormat() {
+        if (getFile(fileFormat).exists()) {
+            return fileFormat;
+        }
+        for (GraphFileFormat format : GraphFileFormat.values()) {
+            if (getFile(format).exists()) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    private File getVersionsDir() {
+        return new File(dataDir, "versions");
+    }
+
+    /**
+     * Gets the versioned graph files of this graph, oldest first.
+     */
+    private List<File> getVersionedFiles() {
+        File[] files = getVersionsDir().listFiles();
+        if (files == null) {
+            return new ArrayList<File>();
+        }
+        String prefix = String.format("g-%s.", metadata.getGraphName());
+        final Map<File, Long> timestamps = new HashMap<File, Long>();
+        for (File file : files) {
+            String name = file.getName();
+            GraphFileFormat format = getFileFormat(file);
+            if (format == null || !name.startsWith(prefix)) {
+                continue;
+            }
+            String timestamp = name.substring(prefix.length(),
+                                              name.length() - format.getExtension().length() - 1);
+            try {
+                timestamps.put(file, Long.parseLong(timestamp));
+            } catch (NumberFormatException e) {
+                // Not a versioned file of this graph
+            }
+        }
+        List<File> versionedFiles = new ArrayList<File>(timestamps.keySet());
+        Collections.sort(versionedFiles, new Comparator<File>() {
+
+            @Override
+            public int compare(File file1, File file2) {
+                return timestamps.get(file1).compareTo(timestamps.get(file2));
+            }
+        });
+        return versionedFiles;
+    }
+
+    private static GraphFileFormat getFileFormat(File file) {
+        for (GraphFileFormat format : GraphFileFormat.values()) {
+            if (file.getName().endsWith("." + format.getExtension())) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Moves a graph file to the versions dir, and deletes the oldest versions
+     * if there are more than the max number of versions.
+     */
+    private void versionFile(File file, GraphFileFormat format) throws IOException {
+        File versionsDir = getVersionsDir();
+        FileUtils.forceMkdir(versionsDir);
+        if (!file.renameTo(getVersionedFile(versionsDir, format))) {
+            throw new IOException("Failed to create versioned graph file");
+        }
+        FileSyncUtils.syncDir(versionsDir);
+        FileSyncUtils.syncDir(file.getParentFile());
+        if (maxVersions > 0) {
+            List<File> versionedFiles = getVersionedFiles();
+            for (int i = 0; i < versionedFiles.size() - maxVersions; i++) {
+                FileUtils.forceDelete(versionedFiles.get(i));
+            }
+        }
+    }
+
+    private long openMutationLog() {
+        File dir = new File(dataDir);
+        String prefix = String.format("g-%s", metadata.getGraphName());
+        long replayed;
+        try {
+            replayed = MutationLog.replay(this, dir, prefix);
+            mutationLog = new MutationLog(dir, prefix, mutationLogSyncIntervalMillis,
+                                          maxMutationLogSize, new Runnable() {
+
+                @Override
+                public void run() {
+                    scheduleCheckpoint();
+                }
+            });
+        } catch (IOException e) {
+            throw new GraphException("Failed to open mutation log.", e);
+        }
+        nodePropertiesRepo = new LoggedPropertiesRepository<NodeId>(nodePropertiesRepo, mutationLog);
+        edgePropertiesRepo = new LoggedPropertiesRepository<EdgeId>(edgePropertiesRepo, mutationLog);
+        return replayed;
+    }
+
+    private void startCheckpoints(boolean checkpointNow) {
+        checkpointExecutor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("graph-checkpoint-%d").build());
+        if (checkpointIntervalMillis > 0) {
+            checkpointExecutor.scheduleWithFixedDelay(new Runnable() {
+
+                @Override
+                public void run() {
+                    tryCheckpoint();
+                }
+            }, checkpointIntervalMillis, checkpointIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        if (checkpointNow) {
+            scheduleCheckpoint();
+        }
+    }
+
+    private void stopCheckpoints() {
+        if (checkpointExecutor == null) {
             return;
         }
-        File file = getFile();
-        if (!file.exists()) {
+        checkpointExecutor.shutdown();
+        try {
+            checkpointExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        checkpointExecutor = null;
+    }
+
+    private void scheduleCheckpoint() {
+        if (!checkpointScheduled.compareAndSet(false, true)) {
             return;
         }
+        checkpointExecutor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                checkpointScheduled.set(false);
+                tryCheckpoint();
+            }
+        });
+    }
+
+    private void tryCheckpoint() {
+        try {
+            checkpoint();
+        } catch (RuntimeException e) {
+            // Keep checkpointing, the failure is visible in the stats
+            synchronized (checkpointLock) {
+                checkpointStats = checkpointStats.withFailure();
+            }
+        }
+    }
+
+    /**
+     * Persists the graph in the data dir, moving the previous graph file to
+     * the versions dir.
+     *
+     * Readers and writers are not blocked while the graph is written, so the
+     * graph file may contain some of the mutations made meanwhile. With the
+     * mutation log enabled those mutations are also kept in the log, which
+     * makes the graph file plus the log a consistent point-in-time image of
+     * the graph, and the log segments older than the checkpoint are deleted.
+     */
+    public void checkpoint() {
+        Preconditions.checkState(dataDir != null, "Checkpoints require a data dir.");
+        synchronized (checkpointLock) {
+            long start = System.nanoTime();
+            MutationLog log = mutationLog;
+            try {
+                // Mutations are logged after being applied, so all mutations in
+                // older segments are included in the graph file. The segments
+                // are only deleted once the graph file is durable, see
+                // replaceGraphFile().
+                long segment = log == null ? -1 : log.rotate();
+                File file = replaceGraphFile();
+                if (log != null) {
+                    log.deleteSegmentsBefore(segment);
+                }
+                checkpointStats = checkpointStats.withCheckpoint(
+                    (System.nanoTime() - start) / 1000000, file.length());
+            } catch (IOException e) {
+                throw new GraphException("Failed to checkpoint graph.", e);
+            }
+        }
+    }
+
+    /**
+     * Gets statistics about the checkpoints made since the graph was created.
+     */
+    public CheckpointStats getCheckpointStats() {
+        return checkpointStats;
+    }
+
+    /**
+     * Writes the graph to a temporary file which then replaces the graph file,
+     * after moving the previous graph file to the versions dir. The new file
+     * and the renames are forced to disk before returning.
+     */
+    private File replaceGraphFile() throws IOException {
+        File file = getFile(fileFormat);
+        File tmpFile = new File(file.getPath() + ".tmp");
+        writeGraphFile(tmpFile);
+        FileSyncUtils.syncFile(tmpFile);
+        for (GraphFileFormat format : GraphFileFormat.values()) {
+            File previousFile = getFile(format);
+            if (previousFile.exists()) {
+                versionFile(previousFile, format);
+            }
+        }
+        if (!tmpFile.renameTo(file)) {
+            throw new IOException("Failed to rename " + tmpFile);
+        }
+        FileSyncUtils.syncDir(file.getParentFile());
+        return file;
+    }
 
-        importJson(file);
+    private void writeGraphFile(File file) {
+        if (fileFormat == GraphFileFormat.SNAPSHOT) {
+            exportSnapshot(file, shouldPersistNodeProperties, shouldPersistEdgeProperties);
+        } else {
+            exportJson(file, shouldPersistNodeProperties, shouldPersistEdgeProperties);
+        }
+    }
 
-        // Version the file
+    private void closeMutationLog() {
+        checkpoint();
+        MutationLog log = mutationLog;
+        mutationLog = null;
         try {
-            File versionsDir = new File(dataDir, "versions");
-            FileUtils.forceMkdir(versionsDir);
-            if (!file.renameTo(getVersionedFile(versionsDir))) {
-                throw new GraphException("Failed to create versioned graph file");
+            log.close();
+            if (log.size() == 0) {
+                log.deleteSegmentsBefore(Long.MAX_VALUE);
             }
         } catch (IOException e) {
-            throw new GraphException("Failed to create versioned graph file.", e);
+            throw new GraphException("Failed to close mutation log.", e);
+        }
+        if (nodePropertiesRepo instanceof LoggedPropertiesRepository) {
+            nodePropertiesRepo =
+                ((LoggedPropertiesRepository<NodeId>) nodePropertiesRepo).getDelegate();
+        }
+        if (edgePropertiesRepo instanceof LoggedPropertiesRepository) {
+            edgePropertiesRepo =
+                ((LoggedPropertiesRepository<EdgeId>) edgePropertiesRepo).getDelegate();
         }
     }
 
-    private File getFile() {
-        return new File(dataDir, String.format("g-%s.json", metadata.getGraphName()));
+    private File getFile(GraphFileFormat format) {
+        return new File(dataDir, String.format("g-%s.%s", metadata.getGraphName(),
+                                               format.getExtension()));
     }
 
-    private File getVersionedFile(File versionsDir) {
-        return new File(versionsDir, String.format("g-%s.%d.json",
+    private File getVersionedFile(File versionsDir, GraphFileFormat format) {
+        return new File(versionsDir, String.format("g-%s.%d.%s",
                                                    metadata.getGraphName(),
-                                                   System.currentTimeMillis()));
+                                                   System.currentTimeMillis(),
+                                                   format.getExtension()));
     }
 
     @Override
     public void shutdown() {
+        if (edgeRepo instanceof Flushable) {
+            try {
+                ((Flushable) edgeRepo).flush();
+            } catch (IOException e) {
+                throw new GraphException("Failed to flush edges.", e);
+            }
+        }
         if (dataDir == null) {
             return;
         }
-        File file = getFile();
-        exportJson(file, shouldPersistNodeProperties, shouldPersistEdgeProperties);
+        stopCheckpoints();
+        if (mutationLog != null) {
+            closeMutationLog();
+            return;
+        }
+        writeGraphFile(getFile(fileFormat));
     }
 
     @Override
@@ -496,9 +1201,131 @@ public class PropertyGraphImpl implements PropertyGraph {
         }
     }
 
+    @Override
+    public void exportSnapshot(File out, boolean includeNodeProperties,
+                               boolean includeEdgeProperties) {
+        try {
+            PropertyGraphSnapshotUtils.exportSnapshot(this, out, includeNodeProperties,
+                                                      includeEdgeProperties);
+        } catch (IOException e) {
+            throw new GraphException("Failed to export graph.", e);
+        }
+    }
+
+    @Override
+    public void importSnapshot(File in) {
+        try {
+            PropertyGraphSnapshotUtils.importSnapshot(this, in);
+        } catch (IOException e) {
+            throw new GraphException("Failed to import graph.", e);
+        }
+    }
+
+    @Override
+    public void exportJsonChunks(File dir, int parallelism, boolean includeNodeProperties,
+                                 boolean includeEdgeProperties) {
+        try {
+            PropertyGraphJsonUtils.exportJsonChunks(this, dir, parallelism,
+                                                    includeNodeProperties,
+                                                    includeEdgeProperties);
+        } catch (IOException e) {
+            throw new GraphException("Failed to export graph.", e);
+        }
+    }
+
+    @Override
+    public void importJsonChunks(File dir, int parallelism) {
+        try {
+            PropertyGraphJsonUtils.importJsonChunks(this, dir, parallelism);
+        } catch (IOException e) {
+            throw new GraphException("Failed to import graph.", e);
+        }
+    }
+
     @Override
     public Traversable<Node> getNodes() {
-        Iterable<NodeId> nodeIds = nodeRepo.getNodes();
+        // Split on node index ranges when traversed in parallel
+        Iterable<Node> nodes = new IndexRangeIterable<Node>(0, nodeRepo.getMaxNodeIndex() + 1) {
+
+            @Override
+            protected Iterator<Node> elementsAt(int index) {
+                Node node = getNode(index);
+                return node == null ? null : Iterators.singletonIterator(node);
+            }
+        };
+        return new Traversable<Node>(nodes);
+    }
+
+    @Override
+    public Traversable<Edge> getEdges() {
+        // The outgoing edges of each node, split on node index ranges
+        Iterable<Edge> edges = new IndexRangeIterable<Edge>(0, nodeRepo.getMaxNodeIndex() + 1) {
+
+            @Override
+            protected Iterator<Edge> elementsAt(int index) {
+                NodeId nodeId = nodeRepo.getNodeId(index);
+                if (nodeId == null) {
+                    return null;
+                }
+                List<Iterable<Edge>> outgoingEdges = new ArrayList<Iterable<Edge>>();
+                for (EdgeType edgeType : metadata.getEdgeTypes().elements()) {
+                    outgoingEdges.add(getEdges(nodeId, edgeType, EdgeDirection.OUTGOING));
+                }
+                return Iterables.concat(outgoingEdges).iterator();
+            }
+        };
+        return new Traversable<Edge>(edges);
+    }
+
+    @Override
+    public synchronized void createNodeIndex(NodeType nodeType, String key, PropertyIndexType indexType) {
+        notNull(nodeType, "Node type is mandatory.");
+        if (nodeIndexes == null) {
+            PropertiesRepository<NodeId> repo = nodePropertiesRepo;
+            MutationLog log = mutationLog;
+            if (repo instanceof LoggedPropertiesRepository) {
+                repo = ((LoggedPropertiesRepository<NodeId>) repo).getDelegate();
+            }
+            // Indexed before logged, the log is only written after the repo
+            nodeIndexes = new IndexedPropertiesRepository<NodeId, NodeType>(repo, NODE_TYPE);
+            nodePropertiesRepo = log == null ? nodeIndexes :
+                new LoggedPropertiesRepository<NodeId>(nodeIndexes, log);
+        }
+        nodeIndexes.createIndex(nodeType, key, indexType, getNodeIds(nodeType));
+    }
+
+    @Override
+    public synchronized void dropNodeIndex(NodeType nodeType, String key) {
+        if (nodeIndexes != null) {
+            nodeIndexes.dropIndex(nodeType, key);
+        }
+    }
+
+    @Override
+    public Set<String> getNodeIndexKeys(NodeType nodeType) {
+        IndexedPropertiesRepository<NodeId, NodeType> indexes = nodeIndexes;
+        if (indexes == null) {
+            return Collections.emptySet();
+        }
+        return indexes.getIndexedKeys(nodeType);
+    }
+
+    @Override
+    public Traversable<Node> getNodes(NodeType nodeType, String key, Object value) {
+        return getNodes(nodeType, equalTo(key, value));
+    }
+
+    @Override
+    public Traversable<Node> getNodes(NodeType nodeType, List<PropertyFilterSettings> filter) {
+        notNull(nodeType, "Node type is mandatory.");
+        Iterable<NodeId> nodeIds = null;
+        IndexedPropertiesRepository<NodeId, NodeType> indexes = nodeIndexes;
+        if (indexes != null) {
+            nodeIds = indexes.find(nodeType, filter);
+        }
+        if (nodeIds == null) {
+            nodeIds = getNodeIds(nodeType);
+        }
         Iterable<Node> nodes = Iterables.transform(nodeIds, new Function<NodeId, Node>() {
 
             @Override
@@ -506,21 +1333,105 @@ public class PropertyGraphImpl implements PropertyGraph {
                 return getNode(nodeId);
             }
         });
-        return new Traversable<Node>(nodes);
+        // Nodes may have been removed after being found
+        return new Traversable<Node>(Iterables.filter(nodes, Predicates.notNull())).filter(
+            new NodeFilter().filterOnProperties(
+                PropertiesFilterCompiler.compile(filter)));
     }
 
     @Override
-    public Traversable<Edge> getEdges() {
-        Iterable<NodeId> nodeIds = nodeRepo.getNodes();
-        List<Iterable<Edge>> edges = new ArrayList<Iterable<Edge>>();
-        for (NodeId nodeId : nodeIds) {
-            for (EdgeType edgeType : metadata.getEdgeTypes().elements()) {
-                Iterable<Edge> outgoingEdges =
-                    getEdges(nodeId, edgeType, EdgeDirection.OUTGOING);
-                edges.add(outgoingEdges);
+    public synchronized void createEdgeIndex(EdgeType edgeType, String key, PropertyIndexType indexType) {
+        notNull(edgeType, "Edge type is mandatory.");
+        if (edgeIndexes == null) {
+            PropertiesRepository<EdgeId> repo = edgePropertiesRepo;
+            MutationLog log = mutationLog;
+            if (repo instanceof LoggedPropertiesRepository) {
+                repo = ((LoggedPropertiesRepository<EdgeId>) repo).getDelegate();
             }
+            edgeIndexes = new IndexedPropertiesRepository<EdgeId, EdgeType>(repo, EDGE_TYPE);
+            edgePropertiesRepo = log == null ? edgeIndexes :
+                new LoggedPropertiesRepository<EdgeId>(edgeIndexes, log);
         }
-        return new Traversable<Edge>(Iterables.concat(edges));
+        edgeIndexes.createIndex(edgeType, key, indexType, getEdgeIds(edgeType));
+    }
+
+    @Override
+    public synchronized void dropEdgeIndex(EdgeType edgeType, String key) {
+        if (edgeIndexes != null) {
+            edgeIndexes.dropIndex(edgeType, key);
+        }
+    }
+
+    @Override
+    public Set<String> getEdgeIndexKeys(EdgeType edgeType) {
+        IndexedPropertiesRepository<EdgeId, EdgeType> indexes = edgeIndexes;
+        if (indexes == null) {
+            return Collections.emptySet();
+        }
+        return indexes.getIndexedKeys(edgeType);
+    }
+
+    @Override
+    public Traversable<Edge> getEdges(EdgeType edgeType, String key, Object value) {
+        return getEdges(edgeType, equalTo(key, value));
+    }
+
+    @Override
+    public Traversable<Edge> getEdges(EdgeType edgeType, List<PropertyFilterSettings> filter) {
+        notNull(edgeType, "Edge type is mandatory.");
+        Iterable<EdgeId> edgeIds = null;
+        IndexedPropertiesRepository<EdgeId, EdgeType> indexes = edgeIndexes;
+        if (indexes != null) {
+            edgeIds = indexes.find(edgeType, filter);
+        }
+        if (edgeIds == null) {
+            edgeIds = getEdgeIds(edgeType);
+        }
+        Iterable<Edge> edges = Iterables.transform(edgeIds, new Function<EdgeId, Edge>() {
+
+            @Override
+            public Edge apply(EdgeId edgeId) {
+                return getEdge(edgeId);
+            }
+        });
+        return new Traversable<Edge>(Iterables.filter(edges, Predicates.notNull())).filter(
+            new EdgeFilter().filterOnProperties(
+                PropertiesFilterCompiler.compile(filter)));
+    }
+
+    private static List<PropertyFilterSettings> equalTo(String key, Object value) {
+        return Collections.singletonList(new PropertyFilterSettings(
+            key, Collections.singletonList(new FilterCondition("=", value))));
+    }
+
+    /**
+     * Gets the ids of all nodes of a type.
+     */
+    private Iterable<NodeId> getNodeIds(final NodeType nodeType) {
+        return Iterables.filter(nodeRepo.getNodes(), new Predicate<NodeId>() {
+
+            @Override
+            public boolean apply(NodeId nodeId) {
+                return nodeId.getNodeType().equals(nodeType);
+            }
+        });
+    }
+
+    /**
+     * Gets the ids of all edges of a type.
+     */
+    private List<EdgeId> getEdgeIds(EdgeType edgeType) {
+        final EdgeType internedEdgeType = metadata.getEdgeTypes().valueOf(edgeType.name());
+        final List<EdgeId> edgeIds = new ArrayList<EdgeId>();
+        edgeRepo.forEachEdge(internedEdgeType, new Procedure<EdgePrimitive>() {
+
+            @Override
+            public boolean apply(EdgePrimitive edge) {
+                edgeIds.add(new EdgeId(internedEdgeType, edge.getIndex()));
+                return true;
+            }
+        });
+        return edgeIds;
     }
 
     @Override
@@ -528,6 +1439,22 @@ public class PropertyGraphImpl implements PropertyGraph {
         return nodeRepo.size();
     }
 
+    @Override
+    public int getMaxNodeIndex() {
+        return nodeRepo.getMaxNodeIndex();
+    }
+
+    @Override
+    public GraphAlgorithms getAlgorithms() {
+        return new GraphAlgorithms(this);
+    }
+
+    @Override
+    public int numberOfEdges(EdgeType edgeType) {
+        notNull(edgeType, "Edge type is mandatory.");
+        return edgeRepo.size(metadata.getEdgeTypes().valueOf(edgeType.name()));
+    }
+
     @Override
     public EdgeType createEdgeType(String name) {
         EdgeType edgeType = new EdgeType(name);
@@ -542,6 +1469,11 @@ public class PropertyGraphImpl implements PropertyGraph {
         return edgeType;
     }
 
+    @Override
+    public EdgeType createEdgeType(String name, EdgeSortOrder sortOrder, boolean inlineWeights) {
+        return metadata.createEdgeType(name, sortOrder, inlineWeights);
+    }
+
     @Override
     public NodeType createNodeType(String name) {
         NodeType nodeType = new NodeType(name);
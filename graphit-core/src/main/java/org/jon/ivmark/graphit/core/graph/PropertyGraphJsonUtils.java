@@ -16,19 +16,27 @@
 
 package org.jon.ivmark.graphit.core.graph;
 
+import com.google.common.base.Charsets;
 import com.google.common.base.Preconditions;
+import org.apache.mahout.math.list.FloatArrayList;
+import org.apache.mahout.math.list.IntArrayList;
 import org.codehaus.jackson.*;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.type.TypeReference;
+import org.jon.ivmark.graphit.core.Procedure;
 import org.jon.ivmark.graphit.core.graph.edge.*;
+import org.jon.ivmark.graphit.core.graph.node.repository.NodeIdRepository;
 import org.jon.ivmark.graphit.core.graph.node.Node;
 import org.jon.ivmark.graphit.core.graph.node.NodeId;
 import org.jon.ivmark.graphit.core.graph.node.NodeType;
 import org.jon.ivmark.graphit.core.graph.node.NodeTypes;
+import org.jon.ivmark.graphit.core.properties.Properties;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Utility class for working with graphs represented with json.
@@ -51,6 +59,8 @@ public final class PropertyGraphJsonUtils {
     private static final String NODES = "nodes";
     private static final String EDGES = "edges";
     private static final String SORT_ORDER = "sortorder";
+    private static final String INLINE_WEIGHTS = "inlineweights";
+    private static final String MANIFEST = "manifest.json";
 
     private PropertyGraphJsonUtils() {
 
@@ -82,6 +92,109 @@ public final class PropertyGraphJsonUtils {
         }
     }
 
+    /**
+     * Imports a graph from a directory of json chunks written by
+     * {@link #exportJsonChunks(PropertyGraphImpl, File, int, boolean, boolean)}.
+     * The node chunks are imported in parallel, followed by the edge chunks.
+     */
+    public static void importJsonChunks(final PropertyGraphImpl graph, final File dir,
+                                        int parallelism) throws IOException {
+        Preconditions.checkArgument(parallelism > 0, "Invalid parallelism: " + parallelism);
+        final JsonFactory jsonFactory = new JsonFactory(new ObjectMapper());
+        List<String> nodeChunks = Collections.emptyList();
+        List<String> edgeChunks = Collections.emptyList();
+
+        JsonParser jsonParser = jsonFactory.createJsonParser(new File(dir, MANIFEST));
+        try {
+            isTrue(jsonParser.nextToken() == JsonToken.START_OBJECT);
+            while (jsonParser.nextToken() != JsonToken.END_OBJECT) {
+                String fieldName = jsonParser.getCurrentName();
+                jsonParser.nextToken();
+                if (fieldName.equals(METADATA)) {
+                    importMetadata(graph, jsonParser);
+                } else if (fieldName.equals(NODES)) {
+                    nodeChunks = jsonParser.readValueAs(new TypeReference<List<String>>() {
+                    });
+                } else if (fieldName.equals(EDGES)) {
+                    edgeChunks = jsonParser.readValueAs(new TypeReference<List<String>>() {
+                    });
+                } else {
+                    throw new IllegalArgumentException("Unexpected field name: " + fieldName);
+                }
+            }
+        } finally {
+            jsonParser.close();
+        }
+
+        List<Callable<Void>> nodeTasks = new ArrayList<Callable<Void>>(nodeChunks.size());
+        for (final String chunk : nodeChunks) {
+            nodeTasks.add(new Callable<Void>() {
+
+                @Override
+                public Void call() throws IOException {
+                    JsonParser chunkParser = jsonFactory.createJsonParser(new File(dir, chunk));
+                    try {
+                        importNodes(graph, chunkParser, chunkParser.nextToken());
+                    } finally {
+                        chunkParser.close();
+                    }
+                    return null;
+                }
+            });
+        }
+        // Edges refer to node indexes, so all nodes must be in place first
+        invokeAll(nodeTasks, parallelism);
+
+        // Chunks are parsed in parallel, but the edges of each type are added
+        // in chunk order, since edges without a sort order are kept in the
+        // order they were added. Each chunk is added once the chunks before it
+        // have been, so at most one parsed chunk per thread is buffered.
+        final CountDownLatch[] added = new CountDownLatch[edgeChunks.size()];
+        for (int i = 0; i < added.length; i++) {
+            added[i] = new CountDownLatch(1);
+        }
+        final AtomicBoolean failed = new AtomicBoolean();
+        List<Callable<Void>> edgeTasks = new ArrayList<Callable<Void>>(edgeChunks.size());
+        for (int i = 0; i < edgeChunks.size(); i++) {
+            final String chunk = edgeChunks.get(i);
+            final CountDownLatch previous = i == 0 ? null : added[i - 1];
+            final CountDownLatch current = added[i];
+            edgeTasks.add(new Callable<Void>() {
+
+                @Override
+                public Void call() throws IOException, InterruptedException {
+                    boolean flushed = false;
+                    try {
+                        EdgeBatches edgeBatches = new EdgeBatches(graph, false);
+                        JsonParser chunkParser = jsonFactory.createJsonParser(new File(dir, chunk));
+                        try {
+                            readEdges(chunkParser, chunkParser.nextToken(), edgeBatches);
+                        } finally {
+                            chunkParser.close();
+                        }
+                        // Chunks are taken in order, so the previous one has
+                        // already been taken by another thread
+                        if (previous != null) {
+                            previous.await();
+                        }
+                        // Later chunks are not added if an earlier one failed
+                        if (!failed.get()) {
+                            edgeBatches.flush();
+                            flushed = true;
+                        }
+                    } finally {
+                        if (!flushed) {
+                            failed.set(true);
+                        }
+                        current.countDown();
+                    }
+                    return null;
+                }
+            });
+        }
+        invokeAll(edgeTasks, parallelism);
+    }
+
     @SuppressWarnings("unchecked")
     private static void importMetadata(PropertyGraph graph, JsonParser jsonParser)
         throws IOException {
@@ -101,60 +214,251 @@ public final class PropertyGraphJsonUtils {
         List<Map<String, String>> edgeTypes =
             (List<Map<String, String>>) metadata.get(EDGE_TYPES);
         for (Map<String, String> edgeType : edgeTypes) {
-            graph.createEdgeType(edgeType.get(NAME),
-                                 EdgeSortOrder.valueOf(edgeType.get(SORT_ORDER)));
+            String edgeTypeName = edgeType.get(NAME);
+            EdgeSortOrder sortOrder = EdgeSortOrder.valueOf(edgeType.get(SORT_ORDER));
+            graph.createEdgeType(edgeTypeName, sortOrder,
+                                 Boolean.parseBoolean(edgeType.get(INLINE_WEIGHTS)));
         }
     }
 
     private static void importNodes(PropertyGraph graph, JsonParser jsonParser, JsonToken current)
         throws IOException {
-        NodeTypes nodeTypes = graph.getMetadata().getNodeTypes();
         isTrue(current == JsonToken.START_ARRAY);
-        TypeReference<Map<String, Object>> type = new TypeReference<Map<String, Object>>() {
-        };
+        JsonRecord record = new JsonRecord();
         while (jsonParser.nextToken() != JsonToken.END_ARRAY) {
-            // TODO: Use a dedicated domain object intead of a map
-            Map<String, Object> nodeData = jsonParser.readValueAs(type);
-            int index = (Integer) nodeData.remove(INDEX);
-            NodeType nodeType = nodeTypes.valueOf((String) nodeData.remove(TYPE));
-            NodeId nodeId = new NodeId(nodeType, (String) nodeData.remove(ID));
-            Node node = graph.addNode(nodeId, index);
-            if (!nodeData.isEmpty()) {
-                for (Map.Entry<String, Object> propertyEntry : nodeData.entrySet()) {
-                    node.setProperty(propertyEntry.getKey(), propertyEntry.getValue());
-                }
-                graph.setNodeProperties(nodeId, node);
-            }
+            readRecord(jsonParser, record);
+            importNode(graph, record);
+        }
+    }
+
+    private static void importNode(PropertyGraph graph, JsonRecord record) {
+        isTrue(record.index >= 0 && record.type != null && record.id != null,
+               "Invalid node record");
+        NodeType nodeType = graph.getMetadata().getNodeTypes().valueOf(record.type);
+        NodeId nodeId = new NodeId(nodeType, record.id);
+        graph.addNode(nodeId, record.index);
+        if (record.properties != null) {
+            // Save plain properties, saving the write through properties of
+            // the node would make them write to themselves
+            graph.setNodeProperties(nodeId, record.createProperties(
+                nodeType.getPropertiesFactory().createEmptyProperties()));
         }
     }
 
     private static void importEdges(PropertyGraph graph, JsonParser jsonParser, JsonToken current)
         throws IOException {
-        EdgeTypes edgeTypes = graph.getMetadata().getEdgeTypes();
+        if (graph instanceof PropertyGraphImpl) {
+            EdgeBatches edgeBatches = new EdgeBatches((PropertyGraphImpl) graph, true);
+            readEdges(jsonParser, current, edgeBatches);
+            edgeBatches.flush();
+            return;
+        }
         isTrue(current == JsonToken.START_ARRAY);
-        TypeReference<Map<String, Object>> type = new TypeReference<Map<String, Object>>() {
-        };
+        JsonRecord record = new JsonRecord();
         while (jsonParser.nextToken() != JsonToken.END_ARRAY) {
-            // TODO: Use a dedicated domain object intead of a map
-            Map<String, Object> edgeData =
-                jsonParser.readValueAs(type);
-
-            int index = (Integer) edgeData.remove(INDEX);
-            EdgeType edgeType = edgeTypes.valueOf((String) edgeData.remove(TYPE));
-            EdgeId edgeId = new EdgeId(edgeType, index);
-            int startNodeIndex = (Integer) edgeData.remove(START);
-            int endNodeIndex = (Integer) edgeData.remove(END);
-            Double weight = (Double) edgeData.remove(WEIGHT);
-
-            Edge edge =
-                graph.addEdge(edgeId, startNodeIndex, endNodeIndex, weight.floatValue());
-            if (!edgeData.isEmpty()) {
-                for (Map.Entry<String, Object> propertyEntry : edgeData.entrySet()) {
-                    edge.setProperty(propertyEntry.getKey(), propertyEntry.getValue());
-                }
-                graph.setEdgeProperties(edgeId, edge);
+            readRecord(jsonParser, record);
+            importEdge(graph, record);
+        }
+    }
+
+    private static void readEdges(JsonParser jsonParser, JsonToken current,
+                                  EdgeBatches edgeBatches) throws IOException {
+        isTrue(current == JsonToken.START_ARRAY);
+        JsonRecord record = new JsonRecord();
+        while (jsonParser.nextToken() != JsonToken.END_ARRAY) {
+            readRecord(jsonParser, record);
+            edgeBatches.add(record);
+        }
+    }
+
+    private static void importEdge(PropertyGraph graph, JsonRecord record) {
+        isTrue(record.index >= 0 && record.type != null && record.start >= 0
+                   && record.end >= 0, "Invalid edge record");
+        EdgeType edgeType = graph.getMetadata().getEdgeTypes().valueOf(record.type);
+        EdgeId edgeId = new EdgeId(edgeType, record.index);
+        // The edge might already have been restored by a persistent edge repo
+        if (graph.getEdge(edgeId) == null) {
+            graph.addEdge(edgeId, record.start, record.end, record.weight);
+        }
+        if (record.properties != null) {
+            graph.setEdgeProperties(edgeId, record.createProperties(
+                edgeType.getPropertiesFactory().createEmptyProperties()));
+        }
+    }
+
+    /**
+     * Buffers the edges of a {@link PropertyGraphImpl} per edge type and adds
+     * them in batches, which lets the edge repo build the edge vectors of
+     * each node in one go instead of one edge at a time. Unless flushing
+     * when full, the edges are buffered until explicitly flushed. Edge
+     * properties are kept with the batch and saved once its edges are added.
+     */
+    private static final class EdgeBatches {
+        private static final int BATCH_SIZE = 1 << 16;
+
+        private final PropertyGraphImpl graph;
+        private final boolean flushWhenFull;
+        private final Map<String, EdgeBatch> batches = new HashMap<String, EdgeBatch>();
+
+        private EdgeBatches(PropertyGraphImpl graph, boolean flushWhenFull) {
+            this.graph = graph;
+            this.flushWhenFull = flushWhenFull;
+        }
+
+        private void add(JsonRecord record) {
+            isTrue(record.index >= 0 && record.type != null && record.start >= 0
+                       && record.end >= 0, "Invalid edge record");
+            EdgeBatch batch = batches.get(record.type);
+            if (batch == null) {
+                EdgeType edgeType = graph.getMetadata().getEdgeTypes().valueOf(record.type);
+                // Edges might already have been restored by a persistent edge repo
+                batch = new EdgeBatch(edgeType, graph.getEdgeRepo().size(edgeType) > 0);
+                batches.put(record.type, batch);
+            }
+            EdgeId edgeId = new EdgeId(batch.edgeType, record.index);
+            if (!batch.skipExisting || graph.getEdgeRepo().getEdge(edgeId) == null) {
+                batch.edgeIndexes.add(record.index);
+                batch.startNodeIndexes.add(record.start);
+                batch.endNodeIndexes.add(record.end);
+                batch.weights.add(record.weight);
+            }
+            if (record.properties != null) {
+                batch.propertyEdgeIds.add(edgeId);
+                batch.properties.add(record.createProperties(
+                    batch.edgeType.getPropertiesFactory().createEmptyProperties()));
+            }
+            if (flushWhenFull && (batch.edgeIndexes.size() >= BATCH_SIZE
+                                  || batch.properties.size() >= BATCH_SIZE)) {
+                flush(batch);
+            }
+        }
+
+        private void flush() {
+            for (EdgeBatch batch : batches.values()) {
+                flush(batch);
             }
         }
+
+        private void flush(EdgeBatch batch) {
+            graph.addEdges(batch.edgeType, batch.edgeIndexes.elements(),
+                           batch.startNodeIndexes.elements(), batch.endNodeIndexes.elements(),
+                           batch.weights.elements(), batch.edgeIndexes.size());
+            batch.edgeIndexes.clear();
+            batch.startNodeIndexes.clear();
+            batch.endNodeIndexes.clear();
+            batch.weights.clear();
+            for (int i = 0; i < batch.propertyEdgeIds.size(); i++) {
+                graph.setEdgeProperties(batch.propertyEdgeIds.get(i), batch.properties.get(i));
+            }
+            batch.propertyEdgeIds.clear();
+            batch.properties.clear();
+        }
+    }
+
+    private static final class EdgeBatch {
+        private final EdgeType edgeType;
+        private final boolean skipExisting;
+        private final IntArrayList edgeIndexes = new IntArrayList();
+        private final IntArrayList startNodeIndexes = new IntArrayList();
+        private final IntArrayList endNodeIndexes = new IntArrayList();
+        private final FloatArrayList weights = new FloatArrayList();
+        private final List<EdgeId> propertyEdgeIds = new ArrayList<EdgeId>();
+        private final List<Properties> properties = new ArrayList<Properties>();
+
+        private EdgeBatch(EdgeType edgeType, boolean skipExisting) {
+            this.edgeType = edgeType;
+            this.skipExisting = skipExisting;
+        }
+    }
+
+    /**
+     * Reads a node or edge object, which the parser must be positioned at,
+     * token by token. Reserved fields are parsed straight into primitives, and
+     * the property map is only allocated if there are other fields.
+     */
+    private static void readRecord(JsonParser jsonParser, JsonRecord record) throws IOException {
+        isTrue(jsonParser.getCurrentToken() == JsonToken.START_OBJECT);
+        record.clear();
+        while (jsonParser.nextToken() != JsonToken.END_OBJECT) {
+            String fieldName = jsonParser.getCurrentName();
+            JsonToken token = jsonParser.nextToken();
+            if (fieldName.equals(INDEX)) {
+                record.index = jsonParser.getIntValue();
+            } else if (fieldName.equals(TYPE)) {
+                record.type = jsonParser.getText();
+            } else if (fieldName.equals(ID)) {
+                record.id = jsonParser.getText();
+            } else if (fieldName.equals(START)) {
+                record.start = jsonParser.getIntValue();
+            } else if (fieldName.equals(END)) {
+                record.end = jsonParser.getIntValue();
+            } else if (fieldName.equals(WEIGHT)) {
+                // Integer weights are valid too
+                record.weight = jsonParser.getFloatValue();
+            } else {
+                record.addProperty(fieldName, readValue(jsonParser, token));
+            }
+        }
+    }
+
+    /**
+     * Reads a property value, binding it the same way as reading the whole
+     * record as a map would.
+     */
+    private static Object readValue(JsonParser jsonParser, JsonToken token) throws IOException {
+        switch (token) {
+        case VALUE_STRING:
+            return jsonParser.getText();
+        case VALUE_NUMBER_INT:
+            return jsonParser.getNumberValue();
+        case VALUE_NUMBER_FLOAT:
+            return jsonParser.getDoubleValue();
+        case VALUE_TRUE:
+            return Boolean.TRUE;
+        case VALUE_FALSE:
+            return Boolean.FALSE;
+        case VALUE_NULL:
+            return null;
+        default:
+            return jsonParser.readValueAs(Object.class);
+        }
+    }
+
+    /**
+     * The fields of a node or edge record, reused between records.
+     */
+    private static final class JsonRecord {
+        private int index;
+        private String type;
+        private String id;
+        private int start;
+        private int end;
+        private float weight;
+        private Map<String, Object> properties;
+
+        private void clear() {
+            index = -1;
+            type = null;
+            id = null;
+            start = -1;
+            end = -1;
+            weight = 0;
+            properties = null;
+        }
+
+        private void addProperty(String key, Object value) {
+            if (properties == null) {
+                properties = new LinkedHashMap<String, Object>();
+            }
+            properties.put(key, value);
+        }
+
+        private Properties createProperties(Properties empty) {
+            for (Map.Entry<String, Object> property : properties.entrySet()) {
+                empty.setProperty(property.getKey(), property.getValue());
+            }
+            return empty;
+        }
     }
 
     /**
@@ -184,6 +488,235 @@ public final class PropertyGraphJsonUtils {
         }
     }
 
+    /**
+     * Exports a graph as json to a directory of chunk files, which are
+     * written in parallel. The node indexes and the edge indexes of each edge
+     * type are split into ranges, each written to a chunk containing a json
+     * array of records on the same format as {@link #exportJson(PropertyGraph, File)}.
+     * The manifest, listing the metadata and the chunks, is written last.
+     */
+    public static void exportJsonChunks(final PropertyGraphImpl graph, final File dir,
+                                        int parallelism, final boolean includeNodeProperties,
+                                        final boolean includeEdgeProperties) throws IOException {
+        Preconditions.checkArgument(parallelism > 0, "Invalid parallelism: " + parallelism);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Failed to create directory: " + dir);
+        }
+        final JsonFactory jsonFactory = new JsonFactory(new ObjectMapper());
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+
+        List<String> nodeChunks = new ArrayList<String>();
+        int nodeIndexes = graph.getNodeRepo().getMaxNodeIndex() + 1;
+        int nodeChunkSize = chunkSize(nodeIndexes, parallelism);
+        for (int from = 0; from < nodeIndexes; from += nodeChunkSize) {
+            final String chunk = "nodes-" + nodeChunks.size() + ".json";
+            final int fromIndex = from;
+            final int toIndex = Math.min(from + nodeChunkSize, nodeIndexes);
+            nodeChunks.add(chunk);
+            tasks.add(new Callable<Void>() {
+
+                @Override
+                public Void call() throws IOException {
+                    writeNodeChunk(graph, jsonFactory, new File(dir, chunk), fromIndex, toIndex,
+                                   includeNodeProperties);
+                    return null;
+                }
+            });
+        }
+
+        List<String> edgeChunks = new ArrayList<String>();
+        List<String> edgeTypeNames = new ArrayList<String>();
+        for (EdgeType edgeType : graph.getMetadata().getEdgeTypes().elements()) {
+            edgeTypeNames.add(edgeType.name());
+        }
+        Collections.sort(edgeTypeNames);
+        for (String edgeTypeName : edgeTypeNames) {
+            final EdgeType edgeType = graph.getMetadata().getEdgeTypes().valueOf(edgeTypeName);
+            int edgeIndexes = graph.getEdgeRepo().getMaxEdgeIndex(edgeType) + 1;
+            int edgeChunkSize = chunkSize(edgeIndexes, parallelism);
+            for (int from = 0, i = 0; from < edgeIndexes; from += edgeChunkSize, i++) {
+                final String chunk = "edges-" + encodeFileName(edgeTypeName) + "-" + i + ".json";
+                final int fromIndex = from;
+                final int toIndex = Math.min(from + edgeChunkSize, edgeIndexes);
+                edgeChunks.add(chunk);
+                tasks.add(new Callable<Void>() {
+
+                    @Override
+                    public Void call() throws IOException {
+                        writeEdgeChunk(graph, jsonFactory, new File(dir, chunk), edgeType,
+                                       fromIndex, toIndex, includeEdgeProperties);
+                        return null;
+                    }
+                });
+            }
+        }
+
+        invokeAll(tasks, parallelism);
+
+        JsonGenerator generator =
+            jsonFactory.createJsonGenerator(new File(dir, MANIFEST), JsonEncoding.UTF8);
+        try {
+            generator.writeStartObject();
+            writeMetadata(graph, generator);
+            writeStrings(generator, NODES, nodeChunks);
+            writeStrings(generator, EDGES, edgeChunks);
+            generator.writeEndObject();
+        } finally {
+            generator.close();
+        }
+    }
+
+    private static int chunkSize(int size, int chunks) {
+        return Math.max(1, (size + chunks - 1) / chunks);
+    }
+
+    /**
+     * Encodes a name for use in a file name, percent encoding the UTF-8 bytes
+     * of anything but lower case ascii letters, digits and underscores, so
+     * that names differing only in case do not clash on case insensitive file
+     * systems.
+     */
+    static String encodeFileName(String name) {
+        StringBuilder sb = new StringBuilder(name.length());
+        for (byte b : name.getBytes(Charsets.UTF_8)) {
+            int c = b & 0xff;
+            if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '_') {
+                sb.append((char) c);
+            } else {
+                sb.append('%').append(String.format("%02X", c));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void writeNodeChunk(PropertyGraphImpl graph, JsonFactory jsonFactory, File out,
+                                       int fromIndex, int toIndex, boolean includeProperties)
+        throws IOException {
+        NodeIdRepository nodeRepo = graph.getNodeRepo();
+        JsonGenerator generator = jsonFactory.createJsonGenerator(out, JsonEncoding.UTF8);
+        try {
+            generator.writeStartArray();
+            for (int index = fromIndex; index < toIndex; index++) {
+                NodeId nodeId = nodeRepo.getNodeId(index);
+                if (nodeId == null) {
+                    continue;
+                }
+                generator.writeStartObject();
+                generator.writeNumberField(INDEX, index);
+                generator.writeStringField(TYPE, nodeId.getNodeType().name());
+                generator.writeStringField(ID, nodeId.getId());
+                if (includeProperties) {
+                    writeProperties(generator,
+                                    graph.getNodePropertiesRepo().getProperties(nodeId));
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        } finally {
+            generator.close();
+        }
+    }
+
+    private static void writeEdgeChunk(final PropertyGraphImpl graph, JsonFactory jsonFactory,
+                                       File out, EdgeType edgeType, int fromIndex, int toIndex,
+                                       final boolean includeProperties) throws IOException {
+        final NodeIdRepository nodeRepo = graph.getNodeRepo();
+        final JsonGenerator generator = jsonFactory.createJsonGenerator(out, JsonEncoding.UTF8);
+        try {
+            generator.writeStartArray();
+            final IOException[] failure = new IOException[1];
+            graph.getEdgeRepo().forEachEdge(edgeType, fromIndex, toIndex,
+                                            new Procedure<EdgePrimitive>() {
+
+                @Override
+                public boolean apply(EdgePrimitive edge) {
+                    // Edges of removed nodes are not exported, just as
+                    // getEdges skips them in the single file export
+                    if (nodeRepo.getNodeId(edge.getStartNodeIndex()) == null
+                        || nodeRepo.getNodeId(edge.getEndNodeIndex()) == null) {
+                        return true;
+                    }
+                    try {
+                        generator.writeStartObject();
+                        generator.writeNumberField(INDEX, edge.getIndex());
+                        generator.writeStringField(TYPE, edge.getEdgeId().getEdgeType().name());
+                        generator.writeNumberField(START, edge.getStartNodeIndex());
+                        generator.writeNumberField(END, edge.getEndNodeIndex());
+                        generator.writeNumberField(WEIGHT, edge.getWeight());
+                        if (includeProperties) {
+                            writeProperties(generator, graph.getEdgePropertiesRepo()
+                                .getProperties(edge.getEdgeId()));
+                        }
+                        generator.writeEndObject();
+                        return true;
+                    } catch (IOException e) {
+                        failure[0] = e;
+                        return false;
+                    }
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+            generator.writeEndArray();
+        } finally {
+            generator.close();
+        }
+    }
+
+    private static void writeProperties(JsonGenerator generator, Properties properties)
+        throws IOException {
+        if (properties == null) {
+            return;
+        }
+        for (String key : properties.getPropertyKeys()) {
+            generator.writeFieldName(key);
+            generator.writeObject(properties.getProperty(key));
+        }
+    }
+
+    private static void writeStrings(JsonGenerator generator, String fieldName,
+                                     List<String> strings) throws IOException {
+        generator.writeFieldName(fieldName);
+        generator.writeStartArray();
+        for (String str : strings) {
+            generator.writeString(str);
+        }
+        generator.writeEndArray();
+    }
+
+    /**
+     * Runs the tasks on a pool of the given size and waits for all of them,
+     * rethrowing the first failure.
+     */
+    private static void invokeAll(List<Callable<Void>> tasks, int parallelism)
+        throws IOException {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        ExecutorService executor =
+            Executors.newFixedThreadPool(Math.min(parallelism, tasks.size()));
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for chunks", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     private static void writeMetadata(PropertyGraph graph, JsonGenerator generator)
         throws IOException {
         GraphMetadata metadata = graph.getMetadata();
@@ -226,6 +759,9 @@ public final class PropertyGraphJsonUtils {
             Map<String, String> map = new HashMap<String, String>();
             map.put(NAME, edgeType.name());
             map.put(SORT_ORDER, edgeType.getSortOrder().name());
+            if (edgeType.hasInlineWeights()) {
+                map.put(INLINE_WEIGHTS, Boolean.TRUE.toString());
+            }
             generator.writeObject(map);
         }
         generator.writeEndArray();
@@ -0,0 +1,490 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.type.TypeReference;
+import org.jon.ivmark.graphit.core.Procedure;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeId;
+import org.jon.ivmark.graphit.core.graph.edge.EdgePrimitive;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeSortOrder;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeType;
+import org.jon.ivmark.graphit.core.graph.edge.repository.EdgePrimitivesRepository;
+import org.jon.ivmark.graphit.core.graph.node.NodeId;
+import org.jon.ivmark.graphit.core.graph.node.NodeType;
+import org.jon.ivmark.graphit.core.graph.node.repository.NodeIdRepository;
+import org.jon.ivmark.graphit.core.properties.Properties;
+import org.jon.ivmark.graphit.core.properties.repository.PropertiesRepository;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * Utility class for persisting graphs as compact binary snapshots.
+ *
+ * A snapshot starts with a header and the graph metadata, followed by
+ *
+ * <ul>
+ * <li>the node table, one record per node holding the node index, node type,
+ * length prefixed id and properties,</li>
+ * <li>the edges of each edge type as blocks of packed arrays of edge indexes,
+ * start node indexes, end node indexes and weights,</li>
+ * <li>the edge properties of each edge type, one record per edge with
+ * properties.</li>
+ * </ul>
+ *
+ * Properties are stored as length prefixed json blocks, so property values
+ * are restored the same way as with {@link PropertyGraphJsonUtils}. Loading
+ * a snapshot restores the repositories of the graph directly, with the edges
+ * of each type added in one batch.
+ *
+ * @author jon
+ *
+ */
+public final class PropertyGraphSnapshotUtils {
+
+    private static final int MAGIC = 0x47534e50;
+    private static final int VERSION = 1;
+    private static final int END = -1;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int EDGE_BLOCK_SIZE = 1 << 13;
+    // Edges are added while reading, in batches of about this many edges
+    private static final int EDGE_BATCH_SIZE = 1 << 16;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> PROPERTIES_TYPE =
+        new TypeReference<Map<String, Object>>() {
+        };
+
+    private PropertyGraphSnapshotUtils() {
+
+    }
+
+    /**
+     * Exports a graph to file as a binary snapshot.
+     */
+    public static void exportSnapshot(PropertyGraphImpl graph, File out,
+                                      boolean includeNodeProperties,
+                                      boolean includeEdgeProperties) throws IOException {
+        DataOutputStream output = new DataOutputStream(
+            new BufferedOutputStream(new FileOutputStream(out), BUFFER_SIZE));
+        try {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+
+            GraphMetadata metadata = graph.getMetadata();
+            writeString(output, metadata.getGraphName());
+            List<NodeType> nodeTypes = sortedNodeTypes(metadata);
+            output.writeInt(nodeTypes.size());
+            for (NodeType nodeType : nodeTypes) {
+                writeString(output, nodeType.name());
+            }
+            List<EdgeType> edgeTypes = sortedEdgeTypes(metadata);
+            output.writeInt(edgeTypes.size());
+            for (EdgeType edgeType : edgeTypes) {
+                writeString(output, edgeType.name());
+                writeString(output, edgeType.getSortOrder().name());
+                output.writeBoolean(edgeType.hasInlineWeights());
+            }
+
+            writeNodes(graph, nodeTypes, includeNodeProperties, output);
+
+            EdgeBlock block = new EdgeBlock(EDGE_BLOCK_SIZE);
+            for (EdgeType edgeType : edgeTypes) {
+                writeEdges(graph.getEdgeRepo(), edgeType, block, output);
+            }
+            for (EdgeType edgeType : edgeTypes) {
+                if (includeEdgeProperties) {
+                    writeEdgeProperties(graph, edgeType, output);
+                }
+                output.writeInt(END);
+            }
+        } finally {
+            output.close();
+        }
+    }
+
+    private static void writeNodes(PropertyGraphImpl graph, List<NodeType> nodeTypes,
+                                   boolean includeProperties, DataOutputStream output)
+        throws IOException {
+        Map<String, Integer> nodeTypeOrdinals = new HashMap<String, Integer>();
+        for (NodeType nodeType : nodeTypes) {
+            nodeTypeOrdinals.put(nodeType.name(), nodeTypeOrdinals.size());
+        }
+        NodeIdRepository nodeRepo = graph.getNodeRepo();
+        PropertiesRepository<NodeId> propertiesRepo = graph.getNodePropertiesRepo();
+        for (NodeId nodeId : nodeRepo.getNodes()) {
+            int index = nodeRepo.getNodeIndex(nodeId);
+            if (index < 0) {
+                // Removed since we started
+                continue;
+            }
+            output.writeInt(index);
+            output.writeInt(nodeTypeOrdinals.get(nodeId.getNodeType().name()));
+            writeString(output, nodeId.getId());
+            writeProperties(output,
+                            includeProperties ? propertiesRepo.getProperties(nodeId) : null);
+        }
+        output.writeInt(END);
+    }
+
+    private static void writeEdges(EdgePrimitivesRepository edgeRepo, EdgeType edgeType,
+                                   EdgeBlock block, DataOutputStream output)
+        throws IOException {
+        EdgeBlockWriter writer = new EdgeBlockWriter(block, output);
+        edgeRepo.forEachEdge(edgeType, writer);
+        writer.flush();
+        output.writeInt(END);
+    }
+
+    private static void writeEdgeProperties(PropertyGraphImpl graph, EdgeType edgeType,
+                                            final DataOutputStream output) throws IOException {
+        final PropertiesRepository<EdgeId> propertiesRepo = graph.getEdgePropertiesRepo();
+        final IOException[] failure = new IOException[1];
+        graph.getEdgeRepo().forEachEdge(edgeType, new Procedure<EdgePrimitive>() {
+
+            @Override
+            public boolean apply(EdgePrimitive edge) {
+                Properties properties = propertiesRepo.getProperties(edge.getEdgeId());
+                if (properties.isEmpty()) {
+                    return true;
+                }
+                try {
+                    output.writeInt(edge.getIndex());
+                    writeProperties(output, properties);
+                    return true;
+                } catch (IOException e) {
+                    failure[0] = e;
+                    return false;
+                }
+            }
+        });
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+    }
+
+    /**
+     * Imports a graph from a binary snapshot.
+     */
+    public static void importSnapshot(PropertyGraphImpl graph, File in) throws IOException {
+        DataInputStream input = new DataInputStream(
+            new BufferedInputStream(new FileInputStream(in), BUFFER_SIZE));
+        try {
+            isTrue(input.readInt() == MAGIC, "Not a graph snapshot");
+            int version = input.readInt();
+            isTrue(version == VERSION, "Unsupported snapshot version: " + version);
+
+            String name = readString(input);
+            String graphName = graph.getMetadata().getGraphName();
+            isTrue(graphName.isEmpty() || graphName.equals(name), "Unexpected graph name");
+
+            NodeType[] nodeTypes = new NodeType[input.readInt()];
+            for (int i = 0; i < nodeTypes.length; i++) {
+                nodeTypes[i] = graph.createNodeType(readString(input));
+            }
+            EdgeType[] edgeTypes = new EdgeType[input.readInt()];
+            for (int i = 0; i < edgeTypes.length; i++) {
+                String edgeTypeName = readString(input);
+                EdgeSortOrder sortOrder = EdgeSortOrder.valueOf(readString(input));
+                edgeTypes[i] = graph.createEdgeType(edgeTypeName, sortOrder, input.readBoolean());
+            }
+
+            readNodes(graph, nodeTypes, input);
+
+            EdgeBlock block = new EdgeBlock(EDGE_BLOCK_SIZE);
+            for (EdgeType edgeType : edgeTypes) {
+                readEdges(graph.getEdgeRepo(), edgeType, block, input);
+            }
+            for (EdgeType edgeType : edgeTypes) {
+                readEdgeProperties(graph, edgeType, input);
+            }
+        } finally {
+            input.close();
+        }
+    }
+
+    private static void readNodes(PropertyGraphImpl graph, NodeType[] nodeTypes,
+                                  DataInputStream input) throws IOException {
+        NodeIdRepository nodeRepo = graph.getNodeRepo();
+        PropertiesRepository<NodeId> propertiesRepo = graph.getNodePropertiesRepo();
+        for (int index = input.readInt(); index != END; index = input.readInt()) {
+            NodeType nodeType = nodeTypes[input.readInt()];
+            NodeId nodeId = new NodeId(nodeType, readString(input));
+            nodeRepo.insert(index, nodeId);
+            Map<String, Object> propertyMap = readProperties(input);
+            if (propertyMap != null) {
+                Properties properties =
+                    nodeType.getPropertiesFactory().createEmptyProperties();
+                setProperties(properties, propertyMap);
+                propertiesRepo.saveProperties(nodeId, properties);
+            }
+        }
+    }
+
+    private static void readEdges(EdgePrimitivesRepository edgeRepo, EdgeType edgeType,
+                                  EdgeBlock block, DataInputStream input) throws IOException {
+        ByteBuffer scratch = block.scratch;
+        // A persistent edge repo might already have restored its edges
+        boolean add = edgeRepo.size(edgeType) == 0;
+        block.size = 0;
+        for (int size = input.readInt(); size != END; size = input.readInt()) {
+            block.ensureCapacity(block.size + size);
+            readInts(input, block.edgeIndexes, block.size, size, scratch);
+            readInts(input, block.startNodeIndexes, block.size, size, scratch);
+            readInts(input, block.endNodeIndexes, block.size, size, scratch);
+            readFloats(input, block.weights, block.size, size, scratch);
+            block.size += size;
+            if (block.size >= EDGE_BATCH_SIZE) {
+                addEdges(edgeRepo, edgeType, block, add);
+            }
+        }
+        addEdges(edgeRepo, edgeType, block, add);
+    }
+
+    private static void addEdges(EdgePrimitivesRepository edgeRepo, EdgeType edgeType,
+                                 EdgeBlock block, boolean add) {
+        if (add && block.size > 0) {
+            edgeRepo.addEdges(edgeType, block.edgeIndexes, block.startNodeIndexes,
+                              block.endNodeIndexes, block.weights, block.size);
+        }
+        block.size = 0;
+    }
+
+    private static void readEdgeProperties(PropertyGraphImpl graph, EdgeType edgeType,
+                                           DataInputStream input) throws IOException {
+        PropertiesRepository<EdgeId> propertiesRepo = graph.getEdgePropertiesRepo();
+        for (int index = input.readInt(); index != END; index = input.readInt()) {
+            Map<String, Object> propertyMap = readProperties(input);
+            if (propertyMap != null) {
+                Properties properties =
+                    edgeType.getPropertiesFactory().createEmptyProperties();
+                setProperties(properties, propertyMap);
+                propertiesRepo.saveProperties(new EdgeId(edgeType, index), properties);
+            }
+        }
+    }
+
+    private static void setProperties(Properties properties, Map<String, Object> propertyMap) {
+        for (Map.Entry<String, Object> propertyEntry : propertyMap.entrySet()) {
+            properties.setProperty(propertyEntry.getKey(), propertyEntry.getValue());
+        }
+    }
+
+    private static List<NodeType> sortedNodeTypes(GraphMetadata metadata) {
+        List<NodeType> nodeTypes = new ArrayList<NodeType>(metadata.getNodeTypes().elements());
+        Collections.sort(nodeTypes, new Comparator<NodeType>() {
+
+            @Override
+            public int compare(NodeType nodeType1, NodeType nodeType2) {
+                return nodeType1.name().compareTo(nodeType2.name());
+            }
+        });
+        return nodeTypes;
+    }
+
+    private static List<EdgeType> sortedEdgeTypes(GraphMetadata metadata) {
+        List<EdgeType> edgeTypes = new ArrayList<EdgeType>(metadata.getEdgeTypes().elements());
+        Collections.sort(edgeTypes, new Comparator<EdgeType>() {
+
+            @Override
+            public int compare(EdgeType edgeType1, EdgeType edgeType2) {
+                return edgeType1.name().compareTo(edgeType2.name());
+            }
+        });
+        return edgeTypes;
+    }
+
+    private static void writeString(DataOutputStream output, String str) throws IOException {
+        byte[] bytes = str.getBytes(Charsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return new String(bytes, Charsets.UTF_8);
+    }
+
+    /**
+     * Writes properties as a length prefixed json block, where a zero length
+     * means no properties.
+     */
+    private static void writeProperties(DataOutputStream output, Properties properties)
+        throws IOException {
+        if (properties == null || properties.isEmpty()) {
+            output.writeInt(0);
+            return;
+        }
+        byte[] bytes = OBJECT_MAPPER.writeValueAsBytes(properties.asPropertyMap());
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static Map<String, Object> readProperties(DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return OBJECT_MAPPER.readValue(bytes, 0, length, PROPERTIES_TYPE);
+    }
+
+    private static void writeInts(DataOutputStream output, int[] values, int size,
+                                  ByteBuffer scratch) throws IOException {
+        int chunk = scratch.capacity() / 4;
+        for (int offset = 0; offset < size; offset += chunk) {
+            int length = Math.min(chunk, size - offset);
+            scratch.clear();
+            scratch.asIntBuffer().put(values, offset, length);
+            output.write(scratch.array(), 0, 4 * length);
+        }
+    }
+
+    private static void writeFloats(DataOutputStream output, float[] values, int size,
+                                    ByteBuffer scratch) throws IOException {
+        int chunk = scratch.capacity() / 4;
+        for (int offset = 0; offset < size; offset += chunk) {
+            int length = Math.min(chunk, size - offset);
+            scratch.clear();
+            scratch.asFloatBuffer().put(values, offset, length);
+            output.write(scratch.array(), 0, 4 * length);
+        }
+    }
+
+    private static void readInts(DataInputStream input, int[] values, int from, int size,
+                                 ByteBuffer scratch) throws IOException {
+        int chunk = scratch.capacity() / 4;
+        for (int offset = 0; offset < size; offset += chunk) {
+            int length = Math.min(chunk, size - offset);
+            input.readFully(scratch.array(), 0, 4 * length);
+            scratch.clear();
+            scratch.asIntBuffer().get(values, from + offset, length);
+        }
+    }
+
+    private static void readFloats(DataInputStream input, float[] values, int from, int size,
+                                   ByteBuffer scratch) throws IOException {
+        int chunk = scratch.capacity() / 4;
+        for (int offset = 0; offset < size; offset += chunk) {
+            int length = Math.min(chunk, size - offset);
+            input.readFully(scratch.array(), 0, 4 * length);
+            scratch.clear();
+            scratch.asFloatBuffer().get(values, from + offset, length);
+        }
+    }
+
+    private static void isTrue(boolean flag, String message) {
+        Preconditions.checkArgument(flag, message);
+    }
+
+    /**
+     * Parallel arrays holding a batch of edges, and a buffer used to convert
+     * them to and from bytes.
+     */
+    private static final class EdgeBlock {
+        private final ByteBuffer scratch = ByteBuffer.allocate(BUFFER_SIZE);
+        private int[] edgeIndexes;
+        private int[] startNodeIndexes;
+        private int[] endNodeIndexes;
+        private float[] weights;
+        private int size;
+
+        private EdgeBlock(int capacity) {
+            this.edgeIndexes = new int[capacity];
+            this.startNodeIndexes = new int[capacity];
+            this.endNodeIndexes = new int[capacity];
+            this.weights = new float[capacity];
+        }
+
+        private int capacity() {
+            return edgeIndexes.length;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity <= capacity()) {
+                return;
+            }
+            int newCapacity = Math.max(capacity, 2 * capacity());
+            edgeIndexes = Arrays.copyOf(edgeIndexes, newCapacity);
+            startNodeIndexes = Arrays.copyOf(startNodeIndexes, newCapacity);
+            endNodeIndexes = Arrays.copyOf(endNodeIndexes, newCapacity);
+            weights = Arrays.copyOf(weights, newCapacity);
+        }
+    }
+
+    /**
+     * Collects edges into an {@link EdgeBlock}, writing the block each time it
+     * is full. Any {@link IOException} stops the iteration and is rethrown by
+     * {@link #flush()}.
+     */
+    private static final class EdgeBlockWriter implements Procedure<EdgePrimitive> {
+        private final EdgeBlock block;
+        private final DataOutputStream output;
+        private IOException failure;
+
+        private EdgeBlockWriter(EdgeBlock block, DataOutputStream output) {
+            this.block = block;
+            this.output = output;
+            block.size = 0;
+        }
+
+        @Override
+        public boolean apply(EdgePrimitive edge) {
+            int i = block.size++;
+            block.edgeIndexes[i] = edge.getIndex();
+            block.startNodeIndexes[i] = edge.getStartNodeIndex();
+            block.endNodeIndexes[i] = edge.getEndNodeIndex();
+            block.weights[i] = edge.getWeight();
+            if (block.size < block.capacity()) {
+                return true;
+            }
+            try {
+                writeBlock();
+                return true;
+            } catch (IOException e) {
+                failure = e;
+                return false;
+            }
+        }
+
+        private void writeBlock() throws IOException {
+            ByteBuffer scratch = block.scratch;
+            output.writeInt(block.size);
+            writeInts(output, block.edgeIndexes, block.size, scratch);
+            writeInts(output, block.startNodeIndexes, block.size, scratch);
+            writeInts(output, block.endNodeIndexes, block.size, scratch);
+            writeFloats(output, block.weights, block.size, scratch);
+            block.size = 0;
+        }
+
+        private void flush() throws IOException {
+            if (failure != null) {
+                throw failure;
+            }
+            if (block.size > 0) {
+                writeBlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph.algorithms;
+
+/**
+ * The weakly connected components of a graph, numbered from 0 in order of
+ * their lowest node index.
+ *
+ * @author jon
+ *
+ */
+public class ConnectedComponents {
+
+    private final int[] components;
+    private final int[] sizes;
+
+    /**
+     * Creates components from the component of each node index, -1 for
+     * indexes without a node, and the size of each component.
+     */
+    ConnectedComponents(int[] components, int[] sizes) {
+        this.components = components;
+        this.sizes = sizes;
+    }
+
+    /**
+     * Gets the component of the node with the given index, or -1 if there is
+     * no such node.
+     */
+    public int getComponent(int nodeIndex) {
+        return nodeIndex < components.length ? components[nodeIndex] : -1;
+    }
+
+    /**
+     * Gets the number of nodes in a component.
+     */
+    public int getSize(int component) {
+        return sizes[component];
+    }
+
+    /**
+     * Gets the number of components.
+     */
+    public int getNumberOfComponents() {
+        return sizes.length;
+    }
+
+    /**
+     * Gets the component with the most nodes, or -1 if there are no
+     * components.
+     */
+    public int getLargestComponent() {
+        int largest = -1;
+        for (int i = 0; i < sizes.length; i++) {
+            if (largest < 0 || sizes[i] > sizes[largest]) {
+                largest = i;
+            }
+        }
+        return largest;
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph.algorithms;
+
+/**
+ * Estimates the remaining distance between two nodes for an A* search. The
+ * estimate must never exceed the actual distance for the search to find a
+ * shortest path, and should not decrease by more than the weight of an edge
+ * when following it.
+ *
+ * @author jon
+ *
+ */
+public interface DistanceHeuristic {
+
+    /**
+     * Estimates the distance from the node with the given index to the target
+     * node.
+     */
+    double estimate(int nodeIndex, int targetIndex);
+}
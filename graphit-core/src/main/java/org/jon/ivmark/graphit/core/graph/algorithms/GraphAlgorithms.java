@@ -0,0 +1,501 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph.algorithms;
+
+import com.google.common.base.Preconditions;
+import org.jon.ivmark.graphit.core.IntIntFloatProcedure;
+import org.jon.ivmark.graphit.core.graph.PropertyGraph;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeDirection;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeType;
+import org.jon.ivmark.graphit.core.graph.exception.GraphException;
+import org.jon.ivmark.graphit.core.graph.node.Node;
+import org.jon.ivmark.graphit.core.graph.node.NodeId;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Graph algorithms working on node indexes, visiting edges through
+ * {@link PropertyGraph#forEachNeighborIndex(int, EdgeType, EdgeDirection, IntIntFloatProcedure)}
+ * and keeping their state in primitive arrays indexed by node index, so that
+ * no objects are created per node or edge.
+ *
+ * <p>The arrays are sized by the highest node index when an algorithm starts,
+ * nodes added while it runs are ignored.</p>
+ *
+ * @author jon
+ *
+ */
+public class GraphAlgorithms {
+
+    private static final DistanceHeuristic NO_HEURISTIC = new DistanceHeuristic() {
+
+        @Override
+        public double estimate(int nodeIndex, int targetIndex) {
+            return 0;
+        }
+    };
+
+    private final PropertyGraph graph;
+
+    public GraphAlgorithms(PropertyGraph graph) {
+        Preconditions.checkNotNull(graph, "Graph is mandatory.");
+        this.graph = graph;
+    }
+
+    /**
+     * Finds a shortest path between two nodes using Dijkstra's algorithm, with
+     * edge weights as distances. Returns null if there is no path. Throws an
+     * exception if a negative edge weight is found.
+     */
+    public ShortestPath shortestPath(NodeId start, NodeId end, EdgeType edgeType,
+                                     EdgeDirection direction) {
+        return shortestPath(start, end, edgeType, direction, NO_HEURISTIC);
+    }
+
+    /**
+     * Finds a shortest path between two nodes using A* search, with edge
+     * weights as distances and the heuristic guiding the search towards the
+     * end node. Returns null if there is no path. Throws an exception if a
+     * negative edge weight is found.
+     */
+    public ShortestPath shortestPath(NodeId start, NodeId end, EdgeType edgeType,
+                                     EdgeDirection direction, DistanceHeuristic heuristic) {
+        Preconditions.checkNotNull(edgeType, "Edge type is mandatory.");
+        Preconditions.checkNotNull(direction, "Direction is mandatory.");
+        Preconditions.checkNotNull(heuristic, "Heuristic is mandatory.");
+        int startIndex = indexOf(start);
+        final int endIndex = indexOf(end);
+        final int bound = nodeIndexBound();
+
+        final double[] distances = new double[bound];
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        final int[] previous = new int[bound];
+        Arrays.fill(previous, -1);
+        final BitSet settled = new BitSet(bound);
+        final IndexedMinHeap open = new IndexedMinHeap(64);
+        final DistanceHeuristic h = heuristic;
+
+        distances[startIndex] = 0;
+        open.offer(startIndex, h.estimate(startIndex, endIndex));
+        while (!open.isEmpty()) {
+            final int node = open.poll();
+            if (node == endIndex) {
+                return toPath(startIndex, endIndex, previous, distances[endIndex]);
+            }
+            settled.set(node);
+            graph.forEachNeighborIndex(node, edgeType, direction, new IntIntFloatProcedure() {
+
+                @Override
+                public boolean apply(int neighborIndex, int edgeIndex, float weight) {
+                    if (weight < 0) {
+                        throw new GraphException("Negative edge weight " + weight
+                                                     + " of edge " + edgeIndex);
+                    }
+                    if (neighborIndex >= bound || settled.get(neighborIndex)) {
+                        return true;
+                    }
+                    double distance = distances[node] + weight;
+                    if (distance < distances[neighborIndex]) {
+                        distances[neighborIndex] = distance;
+                        previous[neighborIndex] = node;
+                        open.offer(neighborIndex, distance + h.estimate(neighborIndex, endIndex));
+                    }
+                    return true;
+                }
+            });
+        }
+        return null;
+    }
+
+    /**
+     * Gets the number of hops from a node to each node reachable within the
+     * given number of hops, by a breadth first search. The distance of each
+     * node is found at its index, -1 for nodes not reached.
+     */
+    public int[] bfsDistances(NodeId start, EdgeType edgeType, EdgeDirection direction,
+                              int maxDepth) {
+        return bfsDistances(indexOf(start), edgeType, direction, maxDepth);
+    }
+
+    /**
+     * Gets the number of hops from the node with the given index to each node
+     * reachable within the given number of hops, by a breadth first search.
+     * The distance of each node is found at its index, -1 for nodes not
+     * reached.
+     */
+    public int[] bfsDistances(int startIndex, EdgeType edgeType, EdgeDirection direction,
+                              int maxDepth) {
+        Preconditions.checkNotNull(edgeType, "Edge type is mandatory.");
+        Preconditions.checkNotNull(direction, "Direction is mandatory.");
+        Preconditions.checkArgument(maxDepth >= 0, "Invalid max depth: " + maxDepth);
+        int bound = nodeIndexBound();
+        Preconditions.checkArgument(startIndex >= 0 && startIndex < bound,
+                                    "Invalid start node index: " + startIndex);
+        int[] distances = new int[bound];
+        Arrays.fill(distances, -1);
+        distances[startIndex] = 0;
+        // Each node is queued at most once, so the queue never wraps
+        int[] queue = new int[bound];
+        queue[0] = startIndex;
+        traverse(queue, 1, distances, 1, edgeType, direction, maxDepth);
+        return distances;
+    }
+
+    /**
+     * Finds the weakly connected components of the graph formed by the edges
+     * of a type, i.e. following edges in both directions.
+     */
+    public ConnectedComponents connectedComponents(EdgeType edgeType) {
+        Preconditions.checkNotNull(edgeType, "Edge type is mandatory.");
+        int bound = nodeIndexBound();
+        int[] components = new int[bound];
+        Arrays.fill(components, -1);
+        int[] queue = new int[bound];
+        List<Integer> sizes = new ArrayList<Integer>();
+        for (int i = 0; i < bound; i++) {
+            if (components[i] >= 0 || graph.getNode(i) == null) {
+                continue;
+            }
+            int component = sizes.size();
+            components[i] = component;
+            queue[0] = i;
+            sizes.add(traverse(queue, 1, components, 0, edgeType, EdgeDirection.BOTH,
+                               Integer.MAX_VALUE));
+        }
+        int[] componentSizes = new int[sizes.size()];
+        for (int i = 0; i < componentSizes.length; i++) {
+            componentSizes[i] = sizes.get(i);
+        }
+        return new ConnectedComponents(components, componentSizes);
+    }
+
+    /**
+     * Computes personalised page ranks for random walks with restart from the
+     * given source nodes, following edges of a type in a direction. Walks
+     * reaching a node without edges restart. The ranks of all nodes sum to 1.
+     *
+     * <p>Each iteration computes the new rank of each node from the ranks of
+     * the nodes linking to it, so node index ranges are computed in parallel
+     * without any locking.</p>
+     */
+    public NodeScores personalizedPageRank(Collection<NodeId> sources, EdgeType edgeType,
+                                           EdgeDirection direction, PageRankSettings settings) {
+        Preconditions.checkArgument(!sources.isEmpty(), "At least one source is mandatory.");
+        Preconditions.checkNotNull(edgeType, "Edge type is mandatory.");
+        Preconditions.checkNotNull(direction, "Direction is mandatory.");
+        final int bound = nodeIndexBound();
+        final double[] restart = new double[bound];
+        for (NodeId source : sources) {
+            restart[indexOf(source)] += 1.0 / sources.size();
+        }
+
+        final RankState state = new RankState(edgeType, direction, settings, restart);
+        // One pool for the whole computation, rather than one per pass
+        RangeExecutor executor = new RangeExecutor(bound, settings.getParallelism());
+        try {
+            state.dangling = executor.sum(1, new RangeFunction() {
+
+                @Override
+                public void apply(int from, int to, double[] sums) {
+                    sums[0] += state.computeOutWeights(from, to);
+                }
+            })[0];
+
+            int iterations = 0;
+            double delta = Double.POSITIVE_INFINITY;
+            while (iterations < settings.getMaxIterations() && delta >= settings.getTolerance()) {
+                double[] sums = executor.sum(2, new RangeFunction() {
+
+                    @Override
+                    public void apply(int from, int to, double[] sums) {
+                        state.iterate(from, to, sums);
+                    }
+                });
+                delta = sums[0];
+                state.dangling = sums[1];
+                state.swap();
+                iterations++;
+            }
+            return new NodeScores(state.ranks, iterations);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Visits the nodes in the queue and all unmarked nodes reachable from them
+     * while marks are below the max mark, marking each neighbor with the mark
+     * of the node it was reached from plus the step. Returns the number of
+     * nodes visited.
+     */
+    private int traverse(final int[] queue, int queued, final int[] marks, final int step,
+                         EdgeType edgeType, EdgeDirection direction, int maxMark) {
+        final int[] tail = {queued};
+        int head = 0;
+        while (head < tail[0]) {
+            int node = queue[head++];
+            final int mark = marks[node];
+            if (mark >= maxMark) {
+                continue;
+            }
+            graph.forEachNeighborIndex(node, edgeType, direction, new IntIntFloatProcedure() {
+
+                @Override
+                public boolean apply(int neighborIndex, int edgeIndex, float weight) {
+                    if (neighborIndex < marks.length && marks[neighborIndex] < 0) {
+                        marks[neighborIndex] = mark + step;
+                        queue[tail[0]++] = neighborIndex;
+                    }
+                    return true;
+                }
+            });
+        }
+        return tail[0];
+    }
+
+    /**
+     * The ranks of a personalised page rank computation. Ranks flow from each
+     * node to its neighbors in the walk direction, and are pulled by each
+     * node from its neighbors in the opposite direction.
+     */
+    private final class RankState {
+        private final EdgeType edgeType;
+        private final EdgeDirection direction;
+        private final EdgeDirection reverse;
+        private final boolean weighted;
+        private final double restartProbability;
+        private final double[] restart;
+        private final double[] outWeights;
+        private double[] ranks;
+        private double[] next;
+        private double dangling;
+
+        RankState(EdgeType edgeType, EdgeDirection direction, PageRankSettings settings,
+                  double[] restart) {
+            this.edgeType = edgeType;
+            this.direction = direction;
+            this.reverse = reverse(direction);
+            this.weighted = settings.isWeighted();
+            this.restartProbability = settings.getRestartProbability();
+            this.restart = restart;
+            this.outWeights = new double[restart.length];
+            this.ranks = restart.clone();
+            this.next = new double[restart.length];
+        }
+
+        /**
+         * Computes the out weights of the nodes in the range, and returns the
+         * initial rank of those without any.
+         */
+        double computeOutWeights(int from, int to) {
+            final double[] sum = new double[1];
+            double dangling = 0;
+            for (int i = from; i < to; i++) {
+                sum[0] = 0;
+                graph.forEachNeighborIndex(i, edgeType, direction, new IntIntFloatProcedure() {
+
+                    @Override
+                    public boolean apply(int neighborIndex, int edgeIndex, float weight) {
+                        if (neighborIndex < restart.length) {
+                            sum[0] += transitionWeight(weight);
+                        }
+                        return true;
+                    }
+                });
+                outWeights[i] = sum[0];
+                if (outWeights[i] == 0) {
+                    dangling += ranks[i];
+                }
+            }
+            return dangling;
+        }
+
+        /**
+         * Computes the next ranks of the nodes in the range, adding the change
+         * in rank to the first sum and the next rank of nodes without out
+         * weights, which restarts in the next iteration, to the second.
+         */
+        void iterate(int from, int to, double[] sums) {
+            final double[] pulled = new double[1];
+            double delta = 0;
+            double nextDangling = 0;
+            double walk = 1 - restartProbability;
+            for (int i = from; i < to; i++) {
+                pulled[0] = 0;
+                graph.forEachNeighborIndex(i, edgeType, reverse, new IntIntFloatProcedure() {
+
+                    @Override
+                    public boolean apply(int neighborIndex, int edgeIndex, float weight) {
+                        if (neighborIndex < restart.length && outWeights[neighborIndex] > 0) {
+                            pulled[0] += ranks[neighborIndex] * transitionWeight(weight)
+                                / outWeights[neighborIndex];
+                        }
+                        return true;
+                    }
+                });
+                double rank = restart[i] * (restartProbability + walk * dangling)
+                    + walk * pulled[0];
+                delta += Math.abs(rank - ranks[i]);
+                next[i] = rank;
+                if (outWeights[i] == 0) {
+                    nextDangling += rank;
+                }
+            }
+            sums[0] += delta;
+            sums[1] += nextDangling;
+        }
+
+        void swap() {
+            double[] tmp = ranks;
+            ranks = next;
+            next = tmp;
+        }
+
+        private double transitionWeight(float weight) {
+            if (!weighted) {
+                return 1;
+            }
+            return weight > 0 ? weight : 0;
+        }
+    }
+
+    /**
+     * A function of a range of node indexes, summed over all ranges.
+     */
+    private interface RangeFunction {
+        void apply(int from, int to, double[] sums);
+    }
+
+    /**
+     * Applies functions to ranges covering [0, bound), in parallel if more
+     * than one thread is used. The pool is kept until shut down, so that it
+     * can be reused by all passes of an algorithm.
+     */
+    private static final class RangeExecutor {
+        private final int[][] ranges;
+        private final ExecutorService executor;
+
+        RangeExecutor(int bound, int parallelism) {
+            if (parallelism == 1 || bound < 2) {
+                this.ranges = new int[][] {{0, bound}};
+                this.executor = null;
+                return;
+            }
+            int rangeSize = (bound + parallelism - 1) / parallelism;
+            List<int[]> rangeList = new ArrayList<int[]>();
+            for (int from = 0; from < bound; from += rangeSize) {
+                rangeList.add(new int[] {from, Math.min(from + rangeSize, bound)});
+            }
+            this.ranges = rangeList.toArray(new int[rangeList.size()][]);
+            this.executor = Executors.newFixedThreadPool(ranges.length);
+        }
+
+        /**
+         * Applies the function to each range, and returns the given number of
+         * sums added up over all ranges, in range order.
+         */
+        double[] sum(final int numberOfSums, final RangeFunction function) {
+            if (executor == null) {
+                double[] sums = new double[numberOfSums];
+                function.apply(ranges[0][0], ranges[0][1], sums);
+                return sums;
+            }
+            List<Callable<double[]>> tasks = new ArrayList<Callable<double[]>>(ranges.length);
+            for (final int[] range : ranges) {
+                tasks.add(new Callable<double[]>() {
+
+                    @Override
+                    public double[] call() {
+                        double[] sums = new double[numberOfSums];
+                        function.apply(range[0], range[1], sums);
+                        return sums;
+                    }
+                });
+            }
+            try {
+                double[] sums = new double[numberOfSums];
+                for (Future<double[]> future : executor.invokeAll(tasks)) {
+                    double[] rangeSums = future.get();
+                    for (int i = 0; i < numberOfSums; i++) {
+                        sums[i] += rangeSums[i];
+                    }
+                }
+                return sums;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new GraphException("Interrupted while computing node ranges", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new GraphException("Failed to compute node range", cause);
+            }
+        }
+
+        void shutdown() {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    private static EdgeDirection reverse(EdgeDirection direction) {
+        switch (direction) {
+            case OUTGOING:
+                return EdgeDirection.INCOMING;
+            case INCOMING:
+                return EdgeDirection.OUTGOING;
+            default:
+                return EdgeDirection.BOTH;
+        }
+    }
+
+    private ShortestPath toPath(int startIndex, int endIndex, int[] previous, double distance) {
+        List<Node> nodes = new ArrayList<Node>();
+        for (int i = endIndex; i != startIndex; i = previous[i]) {
+            nodes.add(graph.getNode(i));
+        }
+        nodes.add(graph.getNode(startIndex));
+        Collections.reverse(nodes);
+        return new ShortestPath(nodes, distance);
+    }
+
+    private int indexOf(NodeId nodeId) {
+        Preconditions.checkNotNull(nodeId, "Node id is mandatory.");
+        Node node = graph.getNode(nodeId);
+        Preconditions.checkArgument(node != null, "Invalid node: " + nodeId);
+        return node.getIndex();
+    }
+
+    private int nodeIndexBound() {
+        return graph.getMaxNodeIndex() + 1;
+    }
+}
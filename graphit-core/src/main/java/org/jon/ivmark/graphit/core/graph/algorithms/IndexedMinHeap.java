@@ -0,0 +1,152 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph.algorithms;
+
+import java.util.Arrays;
+
+/**
+ * A binary min heap of node indexes keyed by doubles, supporting decreasing
+ * the key of a node in the heap. Backed by primitive arrays which grow with
+ * the highest node index added. Not thread safe.
+ *
+ * @author jon
+ *
+ */
+final class IndexedMinHeap {
+
+    private int[] heap;
+    // The heap position of each node index, or -1 if not in the heap
+    private int[] positions;
+    private double[] keys;
+    private int size = 0;
+
+    IndexedMinHeap(int capacity) {
+        int length = Math.max(capacity, 1);
+        this.heap = new int[length];
+        this.positions = new int[length];
+        this.keys = new double[length];
+        Arrays.fill(positions, -1);
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean contains(int node) {
+        return node < positions.length && positions[node] >= 0;
+    }
+
+    /**
+     * Adds a node, or decreases its key if it is already in the heap with a
+     * greater key.
+     */
+    void offer(int node, double key) {
+        if (contains(node)) {
+            int pos = positions[node];
+            if (key < keys[pos]) {
+                keys[pos] = key;
+                siftUp(pos);
+            }
+            return;
+        }
+        ensureCapacity(node);
+        heap[size] = node;
+        keys[size] = key;
+        positions[node] = size;
+        siftUp(size++);
+    }
+
+    /**
+     * Gets the key of the node with the least key.
+     */
+    double peekKey() {
+        return keys[0];
+    }
+
+    /**
+     * Removes and returns the node with the least key.
+     */
+    int poll() {
+        int node = heap[0];
+        positions[node] = -1;
+        size--;
+        if (size > 0) {
+            move(size, 0);
+            siftDown(0);
+        }
+        return node;
+    }
+
+    private void siftUp(int pos) {
+        int node = heap[pos];
+        double key = keys[pos];
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            if (keys[parent] <= key) {
+                break;
+            }
+            move(parent, pos);
+            pos = parent;
+        }
+        set(pos, node, key);
+    }
+
+    private void siftDown(int pos) {
+        int node = heap[pos];
+        double key = keys[pos];
+        int half = size >>> 1;
+        while (pos < half) {
+            int child = 2 * pos + 1;
+            if (child + 1 < size && keys[child + 1] < keys[child]) {
+                child++;
+            }
+            if (key <= keys[child]) {
+                break;
+            }
+            move(child, pos);
+            pos = child;
+        }
+        set(pos, node, key);
+    }
+
+    private void move(int from, int to) {
+        set(to, heap[from], keys[from]);
+    }
+
+    private void set(int pos, int node, double key) {
+        heap[pos] = node;
+        keys[pos] = key;
+        positions[node] = pos;
+    }
+
+    private void ensureCapacity(int node) {
+        if (node >= positions.length) {
+            int length = Math.max(node + 1, positions.length * 2);
+            int oldLength = positions.length;
+            positions = Arrays.copyOf(positions, length);
+            Arrays.fill(positions, oldLength, length, -1);
+        }
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, heap.length * 2);
+            keys = Arrays.copyOf(keys, keys.length * 2);
+        }
+    }
+}
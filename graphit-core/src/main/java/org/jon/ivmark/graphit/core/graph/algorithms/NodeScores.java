@@ -0,0 +1,121 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph.algorithms;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Arrays;
+
+/**
+ * A score for each node index, such as a rank computed by a random walk.
+ *
+ * @author jon
+ *
+ */
+public class NodeScores {
+
+    private final double[] scores;
+    private final int iterations;
+
+    NodeScores(double[] scores, int iterations) {
+        this.scores = scores;
+        this.iterations = iterations;
+    }
+
+    /**
+     * Gets the score of the node with the given index, 0 for unscored nodes.
+     */
+    public double getScore(int nodeIndex) {
+        return nodeIndex < scores.length ? scores[nodeIndex] : 0;
+    }
+
+    /**
+     * Gets the number of iterations run to compute the scores.
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Gets the indexes of the at most k nodes with the highest positive
+     * scores, highest first, ties broken by lowest index.
+     */
+    public int[] topK(int k) {
+        Preconditions.checkArgument(k >= 0, "Invalid k: " + k);
+        // A min heap of the k best (score, index) pairs seen so far
+        int[] heap = new int[Math.min(k, scores.length)];
+        int size = 0;
+        for (int i = 0; i < scores.length && heap.length > 0; i++) {
+            if (scores[i] <= 0) {
+                continue;
+            }
+            if (size < heap.length) {
+                heap[size] = i;
+                siftUp(heap, size++);
+            } else if (ranksBefore(i, heap[0])) {
+                heap[0] = i;
+                siftDown(heap, size);
+            }
+        }
+        int[] res = new int[size];
+        while (size > 0) {
+            res[--size] = heap[0];
+            heap[0] = heap[size];
+            siftDown(heap, size);
+        }
+        return res;
+    }
+
+    private boolean ranksBefore(int i, int j) {
+        return scores[i] > scores[j] || (scores[i] == scores[j] && i < j);
+    }
+
+    private void siftUp(int[] heap, int pos) {
+        int node = heap[pos];
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            if (!ranksBefore(heap[parent], node)) {
+                break;
+            }
+            heap[pos] = heap[parent];
+            pos = parent;
+        }
+        heap[pos] = node;
+    }
+
+    private void siftDown(int[] heap, int size) {
+        int pos = 0;
+        int node = heap[0];
+        while (2 * pos + 1 < size) {
+            int child = 2 * pos + 1;
+            if (child + 1 < size && ranksBefore(heap[child], heap[child + 1])) {
+                child++;
+            }
+            if (!ranksBefore(node, heap[child])) {
+                break;
+            }
+            heap[pos] = heap[child];
+            pos = child;
+        }
+        heap[pos] = node;
+    }
+
+    @Override
+    public String toString() {
+        return "NodeScores [top=" + Arrays.toString(topK(10)) + ", iterations=" + iterations + "]";
+    }
+}
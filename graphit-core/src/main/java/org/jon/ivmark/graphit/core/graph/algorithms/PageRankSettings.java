@@ -0,0 +1,114 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph.algorithms;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Settings for computing personalised page ranks by random walks with
+ * restart.
+ *
+ * <p>Usage:</p>
+ *
+ * <pre>
+ * new PageRankSettings().restartProbability(0.3).weighted(true).parallelism(4);
+ * </pre>
+ *
+ * @author jon
+ *
+ */
+public class PageRankSettings {
+
+    public static final double DEFAULT_RESTART_PROBABILITY = 0.15;
+    public static final int DEFAULT_MAX_ITERATIONS = 50;
+    public static final double DEFAULT_TOLERANCE = 1e-6;
+
+    private double restartProbability = DEFAULT_RESTART_PROBABILITY;
+    private int maxIterations = DEFAULT_MAX_ITERATIONS;
+    private double tolerance = DEFAULT_TOLERANCE;
+    private boolean weighted = false;
+    private int parallelism = 1;
+
+    /**
+     * Sets the probability of a walk restarting from the source nodes at each
+     * step.
+     */
+    public PageRankSettings restartProbability(double restartProbability) {
+        Preconditions.checkArgument(restartProbability > 0 && restartProbability <= 1,
+                                    "Invalid restart probability: " + restartProbability);
+        this.restartProbability = restartProbability;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of iterations.
+     */
+    public PageRankSettings maxIterations(int maxIterations) {
+        Preconditions.checkArgument(maxIterations > 0, "Invalid max iterations: " + maxIterations);
+        this.maxIterations = maxIterations;
+        return this;
+    }
+
+    /**
+     * Stops iterating once the sum of all rank changes of an iteration is
+     * below the given tolerance.
+     */
+    public PageRankSettings tolerance(double tolerance) {
+        Preconditions.checkArgument(tolerance >= 0, "Invalid tolerance: " + tolerance);
+        this.tolerance = tolerance;
+        return this;
+    }
+
+    /**
+     * Makes walks follow edges with a probability proportional to their
+     * weights, ignoring edges without a positive weight, instead of with
+     * equal probability.
+     */
+    public PageRankSettings weighted(boolean weighted) {
+        this.weighted = weighted;
+        return this;
+    }
+
+    /**
+     * Sets the number of threads used for each iteration.
+     */
+    public PageRankSettings parallelism(int parallelism) {
+        Preconditions.checkArgument(parallelism > 0, "Invalid parallelism: " + parallelism);
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public double getRestartProbability() {
+        return restartProbability;
+    }
+
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    public boolean isWeighted() {
+        return weighted;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph.algorithms;
+
+import org.jon.ivmark.graphit.core.graph.node.Node;
+
+import java.util.List;
+
+/**
+ * A shortest path between two nodes, with the distance being the sum of the
+ * weights of its edges.
+ *
+ * @author jon
+ *
+ */
+public class ShortestPath {
+
+    private final List<Node> nodes;
+    private final double distance;
+
+    public ShortestPath(List<Node> nodes, double distance) {
+        this.nodes = nodes;
+        this.distance = distance;
+    }
+
+    /**
+     * Gets the nodes of this path, starting with the start node and ending
+     * with the end node.
+     */
+    public List<Node> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Gets the sum of the edge weights of this path.
+     */
+    public double getDistance() {
+        return distance;
+    }
+
+    /**
+     * Gets the number of edges of this path.
+     */
+    public int getLength() {
+        return nodes.size() - 1;
+    }
+
+    @Override
+    public String toString() {
+        return "ShortestPath [nodes=" + nodes + ", distance=" + distance + "]";
+    }
+}
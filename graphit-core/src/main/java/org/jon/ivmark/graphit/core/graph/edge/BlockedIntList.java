@@ -0,0 +1,547 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph.edge;
+
+import org.apache.mahout.math.function.IntComparator;
+import org.apache.mahout.math.function.IntFloatProcedure;
+import org.apache.mahout.math.function.IntProcedure;
+
+/**
+ * An immutable list of ints, split into blocks of at most
+ * {@link #MAX_BLOCK_SIZE} elements. All modifying operations return a new
+ * list, sharing as much as possible with the list it was created from.
+ *
+ * Appending to the most recent version of a list writes to free slack in the
+ * last block (or to a new block) in place, which is safe since no other
+ * version can see elements beyond its own size. This makes appends amortized
+ * O(1). Inserts and removes in the middle of the list only copy the affected
+ * block and the block directory, i.e. O(B + n/B) rather than O(n).
+ *
+ * A weighted list keeps a float weight next to each element, interleaved in
+ * the same block, so that searching on weights and reading elements with
+ * their weights touch a single contiguous array. This costs 4 additional
+ * bytes per element.
+ *
+ * Instances may be read concurrently without locking, but modifying
+ * operations must be externally synchronized.
+ *
+ * @author jon
+ */
+final class BlockedIntList {
+
+    /**
+     * The maximum number of elements in a block.
+     */
+    static final int MAX_BLOCK_SIZE = 128;
+
+    private static final int MIN_BLOCK_CAPACITY = 4;
+
+    static final BlockedIntList EMPTY = new BlockedIntList(1, new int[0][], new int[0], 0, 0, null);
+
+    static final BlockedIntList EMPTY_WEIGHTED =
+        new BlockedIntList(2, new int[0][], new int[0], 0, 0, null);
+
+    /**
+     * The number of ints used per element, 2 if the list is weighted.
+     */
+    private final int width;
+    private final int[][] blocks;
+    private final int[] starts;
+    private final int numBlocks;
+    private final int size;
+    private final Tail tail;
+
+    /**
+     * Keeps track of which version, if any, that may append in place to the
+     * storage shared by a number of lists.
+     */
+    private static final class Tail {
+        private int size;
+
+        private Tail(int size) {
+            this.size = size;
+        }
+    }
+
+    private BlockedIntList(int width, int[][] blocks, int[] starts, int numBlocks, int size,
+                           Tail tail) {
+        this.width = width;
+        this.blocks = blocks;
+        this.starts = starts;
+        this.numBlocks = numBlocks;
+        this.size = size;
+        this.tail = tail;
+    }
+
+    /**
+     * Creates a new list containing the provided elements.
+     */
+    static BlockedIntList of(int[] elements, int size) {
+        return of(elements, null, 0, size);
+    }
+
+    /**
+     * Creates a new list containing size elements from the provided array,
+     * starting at offset. If weights is not null, a weighted list is created
+     * with the weights read from the same positions as the elements.
+     */
+    static BlockedIntList of(int[] elements, float[] weights, int offset, int size) {
+        int width = weights == null ? 1 : 2;
+        int numBlocks = (size + MAX_BLOCK_SIZE - 1) / MAX_BLOCK_SIZE;
+        int[][] blocks = new int[numBlocks][];
+        int[] starts = new int[numBlocks];
+        for (int b = 0; b < numBlocks; b++) {
+            int start = b * MAX_BLOCK_SIZE;
+            int blockSize = Math.min(MAX_BLOCK_SIZE, size - start);
+            int[] block = new int[blockSize * width];
+            for (int i = 0; i < blockSize; i++) {
+                int position = offset + start + i;
+                block[i * width] = elements[position];
+                if (weights != null) {
+                    block[i * width + 1] = Float.floatToRawIntBits(weights[position]);
+                }
+            }
+            blocks[b] = block;
+            starts[b] = start;
+        }
+        return new BlockedIntList(width, blocks, starts, numBlocks, size, new Tail(size));
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    boolean isWeighted() {
+        return width == 2;
+    }
+
+    private int blockSize(int block) {
+        int end = block + 1 < numBlocks ? starts[block + 1] : size;
+        return end - starts[block];
+    }
+
+    private int blockCapacity(int block) {
+        return blocks[block].length / width;
+    }
+
+    private int findBlock(int position) {
+        int low = 0;
+        int high = numBlocks - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (starts[mid] <= position) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private void checkPosition(int position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("Position: " + position + ", size: " + size);
+        }
+    }
+
+    /**
+     * Gets the element at the provided position.
+     */
+    int get(int position) {
+        checkPosition(position);
+        int block = findBlock(position);
+        return blocks[block][(position - starts[block]) * width];
+    }
+
+    /**
+     * Gets the weight of the element at the provided position of a weighted
+     * list.
+     */
+    float getWeight(int position) {
+        checkPosition(position);
+        int block = findBlock(position);
+        return Float.intBitsToFloat(blocks[block][(position - starts[block]) * width + 1]);
+    }
+
+    /**
+     * Gets the last position of an element, or -1 if the element is not in
+     * this list.
+     */
+    int lastIndexOf(int element) {
+        for (int b = numBlocks - 1; b >= 0; b--) {
+            int[] block = blocks[b];
+            for (int i = blockSize(b) - 1; i >= 0; i--) {
+                if (block[i * width] == element) {
+                    return starts[b] + i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the first position at which an element compares greater than the
+     * provided element, i.e. the position at which to insert the element to
+     * keep the list sorted, placing it after any equal elements.
+     */
+    int upperBound(int element, IntComparator comparator) {
+        // Find the first block whose last element is greater than the element
+        int low = 0;
+        int high = numBlocks;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int last = blocks[mid][(blockSize(mid) - 1) * width];
+            if (comparator.compare(last, element) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        if (low == numBlocks) {
+            return size;
+        }
+        int[] block = blocks[low];
+        int lowInBlock = 0;
+        int highInBlock = blockSize(low) - 1;
+        while (lowInBlock < highInBlock) {
+            int mid = (lowInBlock + highInBlock) >>> 1;
+            if (comparator.compare(block[mid * width], element) <= 0) {
+                lowInBlock = mid + 1;
+            } else {
+                highInBlock = mid;
+            }
+        }
+        return starts[low] + lowInBlock;
+    }
+
+    /**
+     * Same as {@link #upperBound(int, IntComparator)}, but only searching the
+     * positions [from, to).
+     */
+    int upperBound(int element, IntComparator comparator, int from, int to) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (comparator.compare(get(mid), element) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Gets the first position in [from, to) of a weighted list, sorted on
+     * weight, at which the weight is greater (or less, if descending) than the
+     * provided weight.
+     */
+    int upperBound(float weight, boolean descending, int from, int to) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int cmp = Float.compare(getWeight(mid), weight);
+            if (descending ? cmp >= 0 : cmp <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Applies a procedure to all elements, in order, until the procedure
+     * returns false.
+     */
+    boolean forEach(IntProcedure procedure) {
+        for (int b = 0; b < numBlocks; b++) {
+            int[] block = blocks[b];
+            int end = blockSize(b) * width;
+            for (int i = 0; i < end; i += width) {
+                if (!procedure.apply(block[i])) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Applies a procedure to all elements and their weights, in order, until
+     * the procedure returns false. Only valid for weighted lists.
+     */
+    boolean forEach(IntFloatProcedure procedure) {
+        for (int b = 0; b < numBlocks; b++) {
+            int[] block = blocks[b];
+            int end = blockSize(b) * width;
+            for (int i = 0; i < end; i += width) {
+                if (!procedure.apply(block[i], Float.intBitsToFloat(block[i + 1]))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copies all elements into a new array.
+     */
+    int[] toArray() {
+        int[] res = new int[size];
+        int position = 0;
+        for (int b = 0; b < numBlocks; b++) {
+            int[] block = blocks[b];
+            int end = blockSize(b) * width;
+            for (int i = 0; i < end; i += width) {
+                res[position++] = block[i];
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Returns a new list with the element appended.
+     */
+    BlockedIntList add(int element) {
+        return add(element, 0);
+    }
+
+    /**
+     * Returns a new list with the element and its weight appended.
+     */
+    BlockedIntList add(int element, float weight) {
+        if (tail == null || tail.size != size) {
+            // Some other version owns the slack, so we need storage of our own
+            return copy().add(element, weight);
+        }
+        int[][] newBlocks = blocks;
+        int[] newStarts = starts;
+        int newNumBlocks = numBlocks;
+        int lastSize = numBlocks == 0 ? MAX_BLOCK_SIZE : blockSize(numBlocks - 1);
+        if (lastSize == MAX_BLOCK_SIZE) {
+            // Start a new block
+            if (numBlocks == blocks.length) {
+                int capacity = Math.max(1, 2 * numBlocks);
+                newBlocks = copyOf(blocks, numBlocks, capacity);
+                newStarts = copyOf(starts, numBlocks, capacity);
+            }
+            newBlocks[numBlocks] = new int[MIN_BLOCK_CAPACITY * width];
+            newStarts[numBlocks] = size;
+            newNumBlocks++;
+        } else if (lastSize == blockCapacity(numBlocks - 1)) {
+            // Grow the last block. Never replace a block visible to other
+            // versions in place, copy the directory instead.
+            newBlocks = copyOf(blocks, numBlocks, blocks.length);
+            newStarts = copyOf(starts, numBlocks, starts.length);
+            int[] last = new int[Math.min(MAX_BLOCK_SIZE, 2 * lastSize) * width];
+            System.arraycopy(blocks[numBlocks - 1], 0, last, 0, lastSize * width);
+            newBlocks[numBlocks - 1] = last;
+        }
+        int lastBlock = newNumBlocks - 1;
+        write(newBlocks[lastBlock], size - newStarts[lastBlock], element, weight);
+        tail.size = size + 1;
+        return new BlockedIntList(width, newBlocks, newStarts, newNumBlocks, size + 1, tail);
+    }
+
+    private void write(int[] block, int offset, int element, float weight) {
+        block[offset * width] = element;
+        if (width == 2) {
+            block[offset * width + 1] = Float.floatToRawIntBits(weight);
+        }
+    }
+
+    /**
+     * Returns a new list with the element inserted at the provided position.
+     */
+    BlockedIntList insert(int position, int element) {
+        return insert(position, element, 0);
+    }
+
+    /**
+     * Returns a new list with the element and its weight inserted at the
+     * provided position.
+     */
+    BlockedIntList insert(int position, int element, float weight) {
+        if (position == size) {
+            return add(element, weight);
+        }
+        int b = findBlock(position);
+        int blockSize = blockSize(b);
+        int[] block = new int[(blockSize + 1) * width];
+        int offset = position - starts[b];
+        System.arraycopy(blocks[b], 0, block, 0, offset * width);
+        write(block, offset, element, weight);
+        System.arraycopy(blocks[b], offset * width, block, (offset + 1) * width,
+                         (blockSize - offset) * width);
+
+        int[][] newBlocks;
+        int[] newStarts;
+        int newNumBlocks;
+        if (blockSize + 1 > MAX_BLOCK_SIZE) {
+            // Split the block in two
+            int half = (blockSize + 1) / 2;
+            int[] first = new int[half * width];
+            int[] second = new int[block.length - first.length];
+            System.arraycopy(block, 0, first, 0, first.length);
+            System.arraycopy(block, first.length, second, 0, second.length);
+            newNumBlocks = numBlocks + 1;
+            newBlocks = new int[newNumBlocks][];
+            newStarts = new int[newNumBlocks];
+            System.arraycopy(blocks, 0, newBlocks, 0, b);
+            System.arraycopy(blocks, b + 1, newBlocks, b + 2, numBlocks - b - 1);
+            newBlocks[b] = first;
+            newBlocks[b + 1] = second;
+        } else {
+            newNumBlocks = numBlocks;
+            newBlocks = copyOf(blocks, numBlocks, numBlocks);
+            newStarts = new int[newNumBlocks];
+            newBlocks[b] = block;
+        }
+        // All blocks but the last one are always filled to capacity
+        System.arraycopy(starts, 0, newStarts, 0, b + 1);
+        for (int i = b + 1; i < newNumBlocks; i++) {
+            newStarts[i] = newStarts[i - 1] + newBlocks[i - 1].length / width;
+        }
+        return new BlockedIntList(width, newBlocks, newStarts, newNumBlocks, size + 1,
+                                  transferTail(size + 1));
+    }
+
+    /**
+     * Returns a new list with the element at the provided position removed.
+     */
+    BlockedIntList remove(int position) {
+        checkPosition(position);
+        int b = findBlock(position);
+        int blockSize = blockSize(b);
+        int offset = position - starts[b];
+        int[] block = new int[(blockSize - 1) * width];
+        System.arraycopy(blocks[b], 0, block, 0, offset * width);
+        System.arraycopy(blocks[b], (offset + 1) * width, block, offset * width,
+                         (blockSize - offset - 1) * width);
+
+        int newNumBlocks = block.length == 0 ? numBlocks - 1 : numBlocks;
+        int[][] newBlocks = new int[newNumBlocks][];
+        int[] newStarts = new int[newNumBlocks];
+        System.arraycopy(blocks, 0, newBlocks, 0, b);
+        System.arraycopy(starts, 0, newStarts, 0, b);
+        int dst = b;
+        if (block.length > 0) {
+            newBlocks[dst] = block;
+            newStarts[dst] = starts[b];
+            dst++;
+        }
+        for (int src = b + 1; src < numBlocks; src++, dst++) {
+            newBlocks[dst] = blocks[src];
+            newStarts[dst] = starts[src] - 1;
+        }
+        return new BlockedIntList(width, newBlocks, newStarts, newNumBlocks, size - 1,
+                                  transferTail(size - 1));
+    }
+
+    /**
+     * Returns a new list where the element at position from has been moved to
+     * position to, and given a new weight. Positions are given as in
+     * remove(from).insert(to, ...), but when both positions are in the same
+     * block only that block is copied.
+     */
+    BlockedIntList move(int from, int to, float weight) {
+        checkPosition(from);
+        int b = findBlock(from);
+        int start = starts[b];
+        int blockSize = blockSize(b);
+        if (to < start || to >= start + blockSize) {
+            return remove(from).insert(to, get(from), weight);
+        }
+        int[] block = new int[blockSize * width];
+        System.arraycopy(blocks[b], 0, block, 0, blockSize * width);
+        int offset = from - start;
+        int newOffset = to - start;
+        int element = block[offset * width];
+        if (newOffset < offset) {
+            System.arraycopy(block, newOffset * width, block, (newOffset + 1) * width,
+                             (offset - newOffset) * width);
+        } else {
+            System.arraycopy(block, (offset + 1) * width, block, offset * width,
+                             (newOffset - offset) * width);
+        }
+        write(block, newOffset, element, weight);
+        int[][] newBlocks = copyOf(blocks, numBlocks, numBlocks);
+        newBlocks[b] = block;
+        return new BlockedIntList(width, newBlocks, starts, numBlocks, size, transferTail(size));
+    }
+
+    /**
+     * Creates the tail of a new version that may share the last block with
+     * this version. Only if this version may append in place is that right
+     * handed over to the new version, since otherwise some other version might
+     * already have written to the slack of the last block.
+     */
+    private Tail transferTail(int newSize) {
+        if (tail == null || tail.size != size) {
+            return new Tail(-1);
+        }
+        tail.size = -1;
+        return new Tail(newSize);
+    }
+
+    private BlockedIntList copy() {
+        int[][] newBlocks = copyOf(blocks, numBlocks, numBlocks);
+        int[] newStarts = copyOf(starts, numBlocks, numBlocks);
+        if (numBlocks > 0) {
+            // The last block might have been appended to by another version
+            int lastSize = blockSize(numBlocks - 1) * width;
+            int[] last = new int[lastSize];
+            System.arraycopy(blocks[numBlocks - 1], 0, last, 0, lastSize);
+            newBlocks[numBlocks - 1] = last;
+        }
+        return new BlockedIntList(width, newBlocks, newStarts, numBlocks, size, new Tail(size));
+    }
+
+    private static int[][] copyOf(int[][] array, int length, int capacity) {
+        int[][] copy = new int[capacity][];
+        System.arraycopy(array, 0, copy, 0, length);
+        return copy;
+    }
+
+    private static int[] copyOf(int[] array, int length, int capacity) {
+        int[] copy = new int[capacity];
+        System.arraycopy(array, 0, copy, 0, length);
+        return copy;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(get(i));
+            if (width == 2) {
+                sb.append('=').append(getWeight(i));
+            }
+        }
+        return sb.append(']').toString();
+    }
+}
@@ -16,16 +16,22 @@
 
 package org.jon.ivmark.graphit.core.graph.edge;
 
+import org.apache.mahout.math.function.IntComparator;
+
 import java.util.Comparator;
 
 /**
  * A {@link Comparator} used to keep outgoing and incoming edges for a node
  * sorted.
+ *
+ * Edge vectors are sorted using {@link #compare(int, int)}, which should not
+ * box the edge indexes or allocate anything else, since it is called
+ * O(log n) times for each insert.
  * 
  * @author jon
  * 
  */
-public interface EdgeIndexComparator extends Comparator<Integer> {
+public interface EdgeIndexComparator extends Comparator<Integer>, IntComparator {
 
     /**
      * If false, the edges won't be sorted.
@@ -31,6 +31,7 @@ public class EdgeType extends GraphEntityType implements DynamicEnumerableElemen
 
     private final EdgeSortOrder sortOrder;
     private final PropertiesFactory propertiesFactory;
+    private final boolean inlineWeights;
 
     /**
      * Creates an unsorted edge type using a {@link HashMapPropertiesFactory}.
@@ -46,22 +47,54 @@ public class EdgeType extends GraphEntityType implements DynamicEnumerableElemen
         this(name, sortOrder, new HashMapPropertiesFactory());
     }
 
+    /**
+     * Creates an edge type using a {@link HashMapPropertiesFactory}, optionally
+     * keeping edge weights inline in the {@link EdgeVector}s.
+     *
+     * Inline weights let sorting, reindexing and reading the top edges of a
+     * node work on a single array instead of looking up each weight in the
+     * edge buffer. The cost is 4 bytes per edge and direction, i.e. 8 bytes
+     * per edge, in addition to the weight kept in the edge buffer.
+     */
+    public EdgeType(String name, EdgeSortOrder sortOrder, boolean inlineWeights) {
+        this(name, sortOrder, new HashMapPropertiesFactory(), inlineWeights);
+    }
+
     /**
      * Creates an edge type.
      */
     public EdgeType(String name, EdgeSortOrder sortOrder, PropertiesFactory propertiesFactory) {
+        this(name, sortOrder, propertiesFactory, false);
+    }
+
+    /**
+     * Creates an edge type.
+     *
+     * @see #EdgeType(String, EdgeSortOrder, boolean)
+     */
+    public EdgeType(String name, EdgeSortOrder sortOrder, PropertiesFactory propertiesFactory,
+                    boolean inlineWeights) {
         super(name);
         this.sortOrder = sortOrder;
         this.propertiesFactory = propertiesFactory;
+        this.inlineWeights = inlineWeights;
     }
 
     public EdgeSortOrder getSortOrder() {
         return sortOrder;
     }
 
+    /**
+     * Defines if edge weights are kept inline in the {@link EdgeVector}s.
+     */
+    public boolean hasInlineWeights() {
+        return inlineWeights;
+    }
+
     @Override
     public String toString() {
-        return "EdgeType [sortOrder=" + sortOrder + ", name()=" + name() + "]";
+        return "EdgeType [sortOrder=" + sortOrder + ", inlineWeights=" + inlineWeights
+            + ", name()=" + name() + "]";
     }
 
     public PropertiesFactory getPropertiesFactory() {
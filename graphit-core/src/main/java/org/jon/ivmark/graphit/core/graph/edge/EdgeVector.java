@@ -17,8 +17,9 @@
 package org.jon.ivmark.graphit.core.graph.edge;
 
 import com.google.common.base.Preconditions;
+import com.google.common.primitives.Ints;
+import org.apache.mahout.math.function.IntFloatProcedure;
 import org.apache.mahout.math.function.IntProcedure;
-import org.apache.mahout.math.list.IntArrayList;
 
 import java.util.Iterator;
 import java.util.List;
@@ -27,7 +28,17 @@ import java.util.List;
  * A vector of edges originating from a node.
  *
  * This class is immutable, and all modifying operations
- * returns a new instance in a copy on write fashion.
+ * returns a new instance in a copy on write fashion. The edges are kept in a
+ * {@link BlockedIntList}, so adding an edge to an unsorted vector is amortized
+ * O(1) and adding an edge to a sorted vector only copies a small block of
+ * edges, while readers still see a consistent snapshot without locking.
+ *
+ * For edge types with inline weights (see {@link EdgeType#hasInlineWeights()})
+ * the weight of each edge is kept next to the edge index, and the vector is
+ * sorted on these weights according to the sort order of the edge type rather
+ * than using the edge comparator.
+ *
+ * Modifying operations must be externally synchronized.
  *
  * @author jon
  */
@@ -39,9 +50,7 @@ public class EdgeVector {
 
     private final int rootNodeId;
     private final EdgeType edgeType;
-    private final IntArrayList edges;
-
-    private static final IntArrayList EMPTY_LIST = new IntArrayList(0);
+    private final BlockedIntList edges;
 
     /**
      * Creates an edge vector with a default initial capacity rooted at
@@ -53,10 +62,11 @@ public class EdgeVector {
      *            The type of edges in this vector.
      */
     public EdgeVector(int rootNodeId, EdgeType edgeType) {
-        this(rootNodeId, edgeType, EMPTY_LIST);
+        this(rootNodeId, edgeType, edgeType.hasInlineWeights() ? BlockedIntList.EMPTY_WEIGHTED
+            : BlockedIntList.EMPTY);
     }
 
-    private EdgeVector(int rootNodeId, EdgeType edgeType, IntArrayList sortedEdges) {
+    private EdgeVector(int rootNodeId, EdgeType edgeType, BlockedIntList sortedEdges) {
         this.rootNodeId = rootNodeId;
         this.edgeType = edgeType;
         this.edges = sortedEdges;
@@ -75,83 +85,162 @@ public class EdgeVector {
         return rootNodeId;
     }
 
-    public void forEachEdgeId(IntProcedure procedure) {
-        edges.forEach(procedure);
+    /**
+     * Applies a procedure to the index of each edge, in order, until the
+     * procedure returns false. Returns false if the iteration was stopped.
+     */
+    public boolean forEachEdgeId(IntProcedure procedure) {
+        return edges.forEach(procedure);
     }
 
-    private static int findIndexForNewEdge(int edgeId, IntArrayList edges,
-                                           EdgeIndexComparator edgeComparator) {
-        if (edges.isEmpty()) {
-            return 0;
-        }
-
-        if (!edgeComparator.isSorted()) {
-            return edges.size();
-        }
-
-        int low = 0;
-        int high = edges.size() - 1;
-        int mid = 0;
-
-        while (low <= high) {
-            mid = (low + high) / 2;
-            int midEdgeId = edges.get(mid);
-            int comparedToNewEdge = edgeComparator.compare(midEdgeId, edgeId);
-            if (comparedToNewEdge < 0) {
-                low = mid + 1;
-            } else if (comparedToNewEdge > 0) {
-                high = mid - 1;
-            } else {
-                return mid + 1;
-            }
-        }
-        int midEdgeId = edges.get(mid);
-        int comparedToNewEdge = edgeComparator.compare(midEdgeId, edgeId);
-        if (comparedToNewEdge <= 0) {
-            return mid + 1;
-        }
-        return mid;
+    /**
+     * Applies a procedure to the index and weight of each edge, in order,
+     * until the procedure returns false. Only supported by vectors with inline
+     * weights, for which it does not have to look up any weights. Returns
+     * false if the iteration was stopped.
+     */
+    public boolean forEachWeightedEdge(IntFloatProcedure procedure) {
+        Preconditions.checkState(hasInlineWeights(), "Edge weights are not inlined");
+        return edges.forEach(procedure);
     }
 
-    public EdgeVector add(int edgeId) {
-        int[] newElements = new int[edges.size() + 1];
-        int index = findIndexForNewEdge(edgeId, edges, edgeComparator);
-        System.arraycopy(edges.elements(), 0, newElements, 0, index);
-        newElements[index] = edgeId;
-        System.arraycopy(edges.elements(), index, newElements, index + 1,
-                         newElements.length - index - 1);
-
-        IntArrayList newEdges = new IntArrayList(newElements);
+    private EdgeVector withEdges(BlockedIntList newEdges) {
         EdgeVector newEdgeVector = new EdgeVector(rootNodeId, edgeType, newEdges);
         newEdgeVector.setEdgeComparator(edgeComparator);
         newEdgeVector.setEdgeDirection(direction);
         return newEdgeVector;
     }
 
+    /**
+     * Gets whether the weights of the edges are kept in this vector.
+     */
+    public boolean hasInlineWeights() {
+        return edges.isWeighted();
+    }
+
+    private boolean isSortedOnInlineWeights() {
+        return edgeType.getSortOrder() != EdgeSortOrder.UNDEFINED;
+    }
+
+    private boolean isDescending() {
+        return edgeType.getSortOrder() == EdgeSortOrder.DESCENDING_WEIGHT;
+    }
+
+    /**
+     * Gets whether an edge with weight w1 should be placed before (or next
+     * to) an edge with weight w2 in a vector sorted on inline weights.
+     */
+    private boolean precedesOrEquals(float w1, float w2) {
+        int cmp = Float.compare(w1, w2);
+        return isDescending() ? cmp >= 0 : cmp <= 0;
+    }
+
+    public EdgeVector add(int edgeId) {
+        Preconditions.checkState(!hasInlineWeights(),
+                                 "Edges with inline weights must be added with their weight");
+        if (!edgeComparator.isSorted()) {
+            return withEdges(edges.add(edgeId));
+        }
+        int index = edges.upperBound(edgeId, edgeComparator);
+        return withEdges(edges.insert(index, edgeId));
+    }
+
+    /**
+     * Adds an edge with the provided weight. The weight is only used by
+     * vectors with inline weights.
+     */
+    public EdgeVector add(int edgeId, float weight) {
+        if (!hasInlineWeights()) {
+            return add(edgeId);
+        }
+        if (!isSortedOnInlineWeights()) {
+            return withEdges(edges.add(edgeId, weight));
+        }
+        int index = edges.upperBound(weight, isDescending(), 0, edges.size());
+        return withEdges(edges.insert(index, edgeId, weight));
+    }
+
+    /**
+     * Adds the edges in edgeIds[from, to), with weights read from the same
+     * positions in weights. For sorted vectors the edges must already be
+     * ordered. Adding to an empty vector builds the underlying list in one go,
+     * which is what makes bulk loading cheap.
+     */
+    public EdgeVector addAll(int[] edgeIds, float[] weights, int from, int to) {
+        Preconditions.checkArgument(0 <= from && from <= to && to <= edgeIds.length);
+        if (edges.isEmpty()) {
+            float[] inlineWeights = hasInlineWeights() ? weights : null;
+            return withEdges(BlockedIntList.of(edgeIds, inlineWeights, from, to - from));
+        }
+        EdgeVector edgeVector = this;
+        for (int i = from; i < to; i++) {
+            edgeVector = edgeVector.add(edgeIds[i], weights[i]);
+        }
+        return edgeVector;
+    }
+
     public EdgeVector remove(final int edgeId) {
         int index = edges.lastIndexOf(edgeId);
         if (index < 0) {
             return this;
         }
-        int[] newElements = new int[edges.size() - 1];
-        System.arraycopy(edges.elements(), 0, newElements, 0, index);
-        System.arraycopy(edges.elements(), index + 1, newElements, index,
-                         edges.size() - index - 1);
-
-        IntArrayList newEdges = new IntArrayList(newElements);
-        EdgeVector newEdgeVector = new EdgeVector(rootNodeId, edgeType, newEdges);
-        newEdgeVector.setEdgeComparator(edgeComparator);
-        newEdgeVector.setEdgeDirection(direction);
-        return newEdgeVector;
+        return withEdges(edges.remove(index));
     }
 
+    /**
+     * Moves an edge to its new position after its weight has changed. Only
+     * the edge itself is moved, and the vector is left as is if the position
+     * did not change.
+     */
     public EdgeVector reindex(int edgeId) {
+        Preconditions.checkState(!hasInlineWeights(),
+                                 "Edges with inline weights must be reindexed with their weight");
         if (!edgeComparator.isSorted()) {
             return this;
         }
-        // Removing and then re-adding will keep things sorted.
-        // TODO: This could be made more efficient.
-        return remove(edgeId).add(edgeId);
+        int position = edges.lastIndexOf(edgeId);
+        if (position < 0) {
+            return this;
+        }
+        int newPosition;
+        if (position > 0 && edgeComparator.compare(edges.get(position - 1), edgeId) > 0) {
+            newPosition = edges.upperBound(edgeId, edgeComparator, 0, position);
+        } else if (position < edges.size() - 1
+            && edgeComparator.compare(edges.get(position + 1), edgeId) <= 0) {
+            // Positions after the edge are shifted once it is removed
+            newPosition = edges.upperBound(edgeId, edgeComparator, position + 1, edges.size()) - 1;
+        } else {
+            return this;
+        }
+        return withEdges(edges.move(position, newPosition, 0));
+    }
+
+    /**
+     * Updates the weight of an edge and moves it to its new position. The
+     * weight is only used by vectors with inline weights.
+     */
+    public EdgeVector reindex(int edgeId, float weight) {
+        if (!hasInlineWeights()) {
+            return reindex(edgeId);
+        }
+        int position = edges.lastIndexOf(edgeId);
+        if (position < 0) {
+            return this;
+        }
+        int newPosition = position;
+        if (isSortedOnInlineWeights()) {
+            if (position > 0 && !precedesOrEquals(edges.getWeight(position - 1), weight)) {
+                newPosition = edges.upperBound(weight, isDescending(), 0, position);
+            } else if (position < edges.size() - 1
+                && precedesOrEquals(edges.getWeight(position + 1), weight)) {
+                newPosition =
+                    edges.upperBound(weight, isDescending(), position + 1, edges.size()) - 1;
+            }
+        }
+        if (newPosition == position && Float.compare(edges.getWeight(position), weight) == 0) {
+            return this;
+        }
+        return withEdges(edges.move(position, newPosition, weight));
     }
 
     public EdgeType getEdgeType() {
@@ -175,7 +264,7 @@ public class EdgeVector {
     }
 
     public List<Integer> asList() {
-        return edges.toList();
+        return Ints.asList(edges.toArray());
     }
 
     public Iterable<EdgeId> iterable() {
@@ -197,12 +286,12 @@ public class EdgeVector {
     private static final class EdgeIdIterator implements Iterator<EdgeId> {
 
         private final EdgeType edgeType;
-        private final IntArrayList edgeIds;
+        private final BlockedIntList edgeIds;
 
         private int index = 0;
         private EdgeId next = null;
 
-        protected EdgeIdIterator(EdgeType edgeType, IntArrayList edgeIds) {
+        protected EdgeIdIterator(EdgeType edgeType, BlockedIntList edgeIds) {
             this.edgeType = edgeType;
             this.edgeIds = edgeIds;
         }
@@ -24,7 +24,10 @@ package org.jon.ivmark.graphit.core.graph.edge;
  */
 public interface EdgeWeigher {
     /**
-     * Gets the weight of an edge.
+     * Gets the weight of an edge, or {@link Float#NaN} if there is no such
+     * edge, which sorts after all weights. This is
+     * called for every comparison when sorting edges, so implementations
+     * should neither allocate nor lock.
      */
     float getEdgeWeight(int edgeIndex);
 
@@ -38,10 +38,14 @@ public class EdgeWeightComparator implements EdgeIndexComparator {
 
     @Override
     public int compare(Integer e1, Integer e2) {
-        if (descending) {
-            return ((Float) weigher.getEdgeWeight(e2)).compareTo(weigher.getEdgeWeight(e1));
-        }
-        return ((Float) weigher.getEdgeWeight(e1)).compareTo(weigher.getEdgeWeight(e2));
+        return compare(e1.intValue(), e2.intValue());
+    }
+
+    @Override
+    public int compare(int e1, int e2) {
+        float w1 = weigher.getEdgeWeight(e1);
+        float w2 = weigher.getEdgeWeight(e2);
+        return descending ? Float.compare(w2, w1) : Float.compare(w1, w2);
     }
 
     @Override
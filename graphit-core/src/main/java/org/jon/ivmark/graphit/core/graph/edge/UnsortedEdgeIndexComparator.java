@@ -33,6 +33,11 @@ public class UnsortedEdgeIndexComparator implements EdgeIndexComparator, Seriali
         return -1;
     }
 
+    @Override
+    public int compare(int o1, int o2) {
+        return -1;
+    }
+
     @Override
     public boolean isSorted() {
         return false;
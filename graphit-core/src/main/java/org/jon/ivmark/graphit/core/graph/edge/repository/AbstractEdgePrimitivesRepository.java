@@ -16,6 +16,8 @@
 
 package org.jon.ivmark.graphit.core.graph.edge.repository;
 
+import org.jon.ivmark.graphit.core.IntIntFloatProcedure;
+import org.jon.ivmark.graphit.core.Procedure;
 import org.jon.ivmark.graphit.core.graph.edge.*;
 
 import java.util.Map;
@@ -36,15 +38,34 @@ public abstract class AbstractEdgePrimitivesRepository implements EdgePrimitives
      * Constructs a new repo for the provided edge types.
      */
     public AbstractEdgePrimitivesRepository(EdgeTypes edgeTypes) {
+        this();
+        createRepos(edgeTypes);
+    }
+
+    /**
+     * Constructs a new repo without any edge types. Meant for subclasses
+     * that need to be initialized before {@link #createRepo(EdgeType)} can be
+     * called, and that call {@link #createRepos(EdgeTypes)} once they are.
+     */
+    protected AbstractEdgePrimitivesRepository() {
         this.repos = new ConcurrentHashMap<EdgeType, TypedEdgePrimitivesRepository>();
+    }
+
+    /**
+     * Creates the repos for the provided edge types.
+     */
+    protected final void createRepos(EdgeTypes edgeTypes) {
         for (EdgeType edgeType : edgeTypes.elements()) {
-            repos.put(edgeType, createRepo(edgeType));
+            getOrCreateRepository(edgeType);
         }
     }
 
     protected abstract TypedEdgePrimitivesRepository createRepo(EdgeType edgeType);
 
-    private synchronized TypedEdgePrimitivesRepository getOrCreateRepository(EdgeType edgeType) {
+    /**
+     * Gets the repo for an edge type, creating it if it does not yet exist.
+     */
+    protected synchronized TypedEdgePrimitivesRepository getOrCreateRepository(EdgeType edgeType) {
         if (!repos.containsKey(edgeType)) {
             TypedEdgePrimitivesRepository repo = createRepo(edgeType);
             repos.put(edgeType, repo);
@@ -71,6 +92,20 @@ public abstract class AbstractEdgePrimitivesRepository implements EdgePrimitives
                                                                     endNodeIndex, weight);
     }
 
+    @Override
+    public int addEdges(EdgeType edgeType, int[] startNodeIndexes, int[] endNodeIndexes,
+                        float[] weights, int size) {
+        return getOrCreateRepository(edgeType).addWeightedEdges(startNodeIndexes, endNodeIndexes,
+                                                                weights, size);
+    }
+
+    @Override
+    public void addEdges(EdgeType edgeType, int[] edgeIndexes, int[] startNodeIndexes,
+                         int[] endNodeIndexes, float[] weights, int size) {
+        getOrCreateRepository(edgeType).addWeightedEdges(edgeIndexes, startNodeIndexes,
+                                                         endNodeIndexes, weights, size);
+    }
+
     @Override
     public EdgePrimitive getEdge(EdgeId edgeId) {
         return getOrCreateRepository(edgeId.getEdgeType()).getEdge(edgeId);
@@ -81,6 +116,21 @@ public abstract class AbstractEdgePrimitivesRepository implements EdgePrimitives
         return getOrCreateRepository(edgeId.getEdgeType()).removeEdge(edgeId);
     }
 
+    @Override
+    public EdgeId reserveEdgeId(EdgeType edgeType) {
+        return getOrCreateRepository(edgeType).reserveEdgeId();
+    }
+
+    @Override
+    public EdgePrimitive removeEdgeRetainingId(EdgeId edgeId) {
+        return getOrCreateRepository(edgeId.getEdgeType()).removeEdgeRetainingId(edgeId);
+    }
+
+    @Override
+    public void releaseEdgeId(EdgeId edgeId) {
+        getOrCreateRepository(edgeId.getEdgeType()).releaseEdgeId(edgeId);
+    }
+
     @Override
     public EdgeVector getOutgoingEdges(int startNodeIndex, EdgeType edgeType) {
         return getOrCreateRepository(edgeType).getOutgoingEdges(startNodeIndex);
@@ -91,12 +141,44 @@ public abstract class AbstractEdgePrimitivesRepository implements EdgePrimitives
         return getOrCreateRepository(edgeType).getIncomingEdges(endNodeIndex);
     }
 
+    @Override
+    public boolean forEachNeighbor(int nodeIndex, EdgeType edgeType, EdgeDirection direction,
+                                   IntIntFloatProcedure procedure) {
+        return getOrCreateRepository(edgeType).forEachNeighbor(nodeIndex, direction, procedure);
+    }
+
     @Override
     public void setEdgeWeight(EdgeId edgeId, float weight) {
         EdgeType edgeType = edgeId.getEdgeType();
         getOrCreateRepository(edgeType).setEdgeWeight(edgeId, weight);
     }
 
+    @Override
+    public boolean forEachEdge(EdgeType edgeType, Procedure<EdgePrimitive> procedure) {
+        TypedEdgePrimitivesRepository repo = repos.get(edgeType);
+        return repo == null || repo.forEachEdge(procedure);
+    }
+
+    @Override
+    public boolean forEachEdge(EdgeType edgeType, int fromIndex, int toIndex,
+                               Procedure<EdgePrimitive> procedure) {
+        TypedEdgePrimitivesRepository repo = repos.get(edgeType);
+        return repo == null || repo.forEachEdge(fromIndex, toIndex, procedure);
+    }
+
+    @Override
+    public int getMaxEdgeIndex(EdgeType edgeType) {
+        TypedEdgePrimitivesRepository repo = repos.get(edgeType);
+        return repo == null ? -1 : repo.getMaxEdgeIndex();
+    }
+
+    @Override
+    public int size(EdgeType edgeType) {
+        // Avoid the lock in getOrCreateRepository, the size is read frequently
+        TypedEdgePrimitivesRepository repo = repos.get(edgeType);
+        return repo == null ? 0 : repo.size();
+    }
+
     @Override
     public String toString() {
         return "ByteBufferEdgeIndex [repos=" + repos + "]";
@@ -16,11 +16,15 @@
 
 package org.jon.ivmark.graphit.core.graph.edge.repository;
 
+import org.apache.mahout.math.function.IntFloatProcedure;
+import org.apache.mahout.math.function.IntProcedure;
 import org.apache.mahout.math.list.IntArrayList;
 import org.jon.ivmark.graphit.core.ConcurrencyConstants;
+import org.jon.ivmark.graphit.core.IntIntFloatProcedure;
 import org.jon.ivmark.graphit.core.graph.edge.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -48,6 +52,7 @@ public abstract class AbstractTypedEdgePrimitivesRepository implements
     private final EdgeVectorRepository edgeVectorIndex;
     private final EdgeType edgeType;
     private EdgeIndexComparator edgeComparator;
+    private boolean customEdgeComparator;
 
     private final List<ReentrantLock> locks;
 
@@ -71,6 +76,7 @@ public abstract class AbstractTypedEdgePrimitivesRepository implements
      */
     public void setEdgeComparator(EdgeIndexComparator edgeComparator) {
         this.edgeComparator = edgeComparator;
+        this.customEdgeComparator = true;
     }
 
     /**
@@ -79,10 +85,15 @@ public abstract class AbstractTypedEdgePrimitivesRepository implements
     protected EdgeId generateEdgeId() {
         int id = -1;
         synchronized (removedEdges) {
-            if (!removedEdges.isEmpty()) {
+            // Skip removed ids that have since been reused by an edge added with
+            // an explicit id, e.g. when replaying a mutation log
+            while (id < 0 && !removedEdges.isEmpty()) {
                 int index = removedEdges.size() - 1;
                 id = removedEdges.get(index);
                 removedEdges.remove(index);
+                if (getStartNodeIndex(id) >= 0) {
+                    id = -1;
+                }
             }
         }
         if (id < 0) {
@@ -91,6 +102,31 @@ public abstract class AbstractTypedEdgePrimitivesRepository implements
         return new EdgeId(edgeType, id);
     }
 
+    @Override
+    public EdgeId reserveEdgeId() {
+        return generateEdgeId();
+    }
+
+    /**
+     * Reserves count consecutive edge ids and returns the first of them.
+     * Removed ids are not reused.
+     */
+    protected int reserveEdgeIds(int count) {
+        return maxId.getAndAdd(count) + 1;
+    }
+
+    /**
+     * Makes sure edge ids generated from now on are above the provided id. A
+     * compare-and-set loop rather than a lock, since a set could otherwise
+     * undo a concurrent increment in {@link #generateEdgeId()}.
+     */
+    private void advanceMaxId(int edgeIndex) {
+        int current = maxId.get();
+        while (current < edgeIndex && !maxId.compareAndSet(current, edgeIndex)) {
+            current = maxId.get();
+        }
+    }
+
     private void addOutgoingEdge(EdgePrimitive edge) {
         int startNodeId = edge.getStartNodeIndex();
         ReentrantLock lock = lockNode(startNodeId);
@@ -103,7 +139,7 @@ public abstract class AbstractTypedEdgePrimitivesRepository implements
                 outgoingEdges = edgeVector;
             }
             int edgeId = edge.getIndex();
-            EdgeVector newOutgoingEdges = outgoingEdges.add(edgeId);
+            EdgeVector newOutgoingEdges = outgoingEdges.add(edgeId, edge.getWeight());
             setOutgoingEdges(startNodeId, newOutgoingEdges);
         } finally {
             lock.unlock();
@@ -139,7 +175,7 @@ public abstract class AbstractTypedEdgePrimitivesRepository implements
                 incomingEdges = edgeVector;
             }
             int edgeId = edge.getIndex();
-            EdgeVector newIncomingEdges = incomingEdges.add(edgeId);
+            EdgeVector newIncomingEdges = incomingEdges.add(edgeId, edge.getWeight());
             setIncomingEdges(endNodeId, newIncomingEdges);
         } finally {
             lock.unlock();
@@ -167,9 +203,7 @@ public abstract class AbstractTypedEdgePrimitivesRepository implements
      * node.
      */
     protected void insert(EdgePrimitive edge) {
-        synchronized (maxId) {
-            maxId.set(Math.max(maxId.get(), edge.getIndex()));
-        }
+        advanceMaxId(edge.getIndex());
         // Add the undirected edge as an outgoing edge from both the start
         // and end node
         addOutgoingEdge(edge);
@@ -177,14 +211,168 @@ public abstract class AbstractTypedEdgePrimitivesRepository implements
     }
 
     /**
-     * Removes an edge, making the id eligable for reuse.
+     * Adds a batch of edges with consecutive indexes starting at
+     * firstEdgeIndex. Rather than adding the edges one at a time, the edges
+     * are grouped by node with a counting sort, i.e. laid out as compressed
+     * sparse rows, and each node gets its {@link EdgeVector} built in one go.
+     */
+    protected void insert(int firstEdgeIndex, int[] startNodeIndexes, int[] endNodeIndexes,
+                          float[] weights, int size) {
+        if (size == 0) {
+            return;
+        }
+        advanceMaxId(firstEdgeIndex + size - 1);
+        insertAll(firstEdgeIndex, null, startNodeIndexes, weights, size, EdgeDirection.OUTGOING);
+        insertAll(firstEdgeIndex, null, endNodeIndexes, weights, size, EdgeDirection.INCOMING);
+    }
+
+    /**
+     * Adds a batch of edges with the given, not necessarily consecutive,
+     * indexes. See {@link #insert(int, int[], int[], float[], int)}.
+     */
+    protected void insert(int[] edgeIndexes, int[] startNodeIndexes, int[] endNodeIndexes,
+                          float[] weights, int size) {
+        if (size == 0) {
+            return;
+        }
+        int maxEdgeIndex = -1;
+        for (int i = 0; i < size; i++) {
+            maxEdgeIndex = Math.max(maxEdgeIndex, edgeIndexes[i]);
+        }
+        advanceMaxId(maxEdgeIndex);
+        insertAll(0, edgeIndexes, startNodeIndexes, weights, size, EdgeDirection.OUTGOING);
+        insertAll(0, edgeIndexes, endNodeIndexes, weights, size, EdgeDirection.INCOMING);
+    }
+
+    @Override
+    public int getMaxEdgeIndex() {
+        return maxId.get();
+    }
+
+    /**
+     * Adds the edges to the vectors of one direction. The index of the edge
+     * at position i is edgeIndexes[i], or firstEdgeIndex + i if no indexes are
+     * given.
+     */
+    private void insertAll(int firstEdgeIndex, int[] edgeIndexes, int[] nodeIndexes,
+                           float[] weights, int size, EdgeDirection direction) {
+        int maxNodeIndex = -1;
+        for (int i = 0; i < size; i++) {
+            maxNodeIndex = Math.max(maxNodeIndex, nodeIndexes[i]);
+        }
+        // offsets[n] is the position of the first edge of node n
+        int[] offsets = new int[maxNodeIndex + 2];
+        for (int i = 0; i < size; i++) {
+            offsets[nodeIndexes[i] + 1]++;
+        }
+        for (int n = 0; n <= maxNodeIndex; n++) {
+            offsets[n + 1] += offsets[n];
+        }
+        int[] next = Arrays.copyOf(offsets, maxNodeIndex + 1);
+        int[] positions = new int[size];
+        for (int i = 0; i < size; i++) {
+            positions[next[nodeIndexes[i]]++] = i;
+        }
+
+        int[] edgeIds = new int[size];
+        float[] edgeWeights = new float[size];
+        long[] sortKeys = null;
+        // Edge vectors with inline weights are always sorted on weight
+        boolean weightSorted = edgeType.hasInlineWeights()
+            ? edgeType.getSortOrder() != EdgeSortOrder.UNDEFINED
+            : edgeComparator.isSorted() && !customEdgeComparator;
+        for (int nodeIndex = 0; nodeIndex <= maxNodeIndex; nodeIndex++) {
+            int from = offsets[nodeIndex];
+            int to = offsets[nodeIndex + 1];
+            if (from == to) {
+                continue;
+            }
+            if (weightSorted) {
+                sortKeys = sortOnWeight(positions, from, to, weights, sortKeys);
+            }
+            for (int i = from; i < to; i++) {
+                edgeIds[i] = edgeIndexes == null
+                    ? firstEdgeIndex + positions[i] : edgeIndexes[positions[i]];
+                edgeWeights[i] = weights[positions[i]];
+            }
+            ReentrantLock lock = lockNode(nodeIndex);
+            try {
+                EdgeVector edges = direction == EdgeDirection.OUTGOING
+                    ? findOutgoingEdges(nodeIndex) : findIncomingEdges(nodeIndex);
+                if (edges == null) {
+                    edges = new EdgeVector(nodeIndex, edgeType);
+                    edges.setEdgeDirection(direction);
+                    edges.setEdgeComparator(edgeComparator);
+                }
+                if (weightSorted || !edgeComparator.isSorted() || edges.hasInlineWeights()) {
+                    edges = edges.addAll(edgeIds, edgeWeights, from, to);
+                } else {
+                    for (int i = from; i < to; i++) {
+                        edges = edges.add(edgeIds[i]);
+                    }
+                }
+                if (direction == EdgeDirection.OUTGOING) {
+                    setOutgoingEdges(nodeIndex, edges);
+                } else {
+                    setIncomingEdges(nodeIndex, edges);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Sorts positions[from, to) on the weight of the corresponding edges, in
+     * the order defined by the sort order of the edge type, keeping edges with
+     * equal weights in insertion order. Each edge is encoded as a long with
+     * the weight in the high bits and the position in the low bits, so this
+     * is a plain primitive sort.
+     */
+    private long[] sortOnWeight(int[] positions, int from, int to, float[] weights,
+                                long[] sortKeys) {
+        int length = to - from;
+        if (length < 2) {
+            return sortKeys;
+        }
+        long[] keys = sortKeys;
+        if (keys == null || keys.length < length) {
+            keys = new long[Math.max(length, keys == null ? 16 : 2 * keys.length)];
+        }
+        boolean descending = edgeType.getSortOrder() == EdgeSortOrder.DESCENDING_WEIGHT;
+        for (int i = 0; i < length; i++) {
+            int position = positions[from + i];
+            int bits = Float.floatToIntBits(weights[position]);
+            // Flip the bits of negative numbers, making the ints sort like the floats
+            int weightKey = bits ^ ((bits >> 31) & 0x7fffffff);
+            if (descending) {
+                weightKey = ~weightKey;
+            }
+            keys[i] = ((long) weightKey << 32) | position;
+        }
+        Arrays.sort(keys, 0, length);
+        for (int i = 0; i < length; i++) {
+            positions[from + i] = (int) keys[i];
+        }
+        return keys;
+    }
+
+    /**
+     * Removes an edge, making the id eligable for reuse unless it is
+     * retained.
      */
-    protected void delete(EdgePrimitive edge) {
-        int edgeId = edge.getIndex();
+    protected void delete(EdgePrimitive edge, boolean retainId) {
         removeOutgoingEdge(edge);
         removeIncomingEdge(edge);
+        if (!retainId) {
+            releaseEdgeId(edge.getEdgeId());
+        }
+    }
+
+    @Override
+    public void releaseEdgeId(EdgeId edgeId) {
         synchronized (removedEdges) {
-            removedEdges.add(edgeId);
+            removedEdges.add(edgeId.getIndex());
         }
     }
 
@@ -202,7 +390,8 @@ public abstract class AbstractTypedEdgePrimitivesRepository implements
         ReentrantLock lock = lockNode(startNodeId);
         try {
             EdgeVector outgoingEdges = findOutgoingEdges(startNodeId);
-            EdgeVector newOutgoingEdges = outgoingEdges.reindex(edge.getEdgeId().getIndex());
+            EdgeVector newOutgoingEdges = outgoingEdges.reindex(edge.getEdgeId().getIndex(),
+                                                                    edge.getWeight());
             setOutgoingEdges(startNodeId, newOutgoingEdges);
         } finally {
             lock.unlock();
@@ -214,7 +403,8 @@ public abstract class AbstractTypedEdgePrimitivesRepository implements
         ReentrantLock lock = lockNode(endNodeId);
         try {
             EdgeVector incomingEdges = findIncomingEdges(endNodeId);
-            EdgeVector newIncomingEdges = incomingEdges.reindex(edge.getEdgeId().getIndex());
+            EdgeVector newIncomingEdges = incomingEdges.reindex(edge.getEdgeId().getIndex(),
+                                                                    edge.getWeight());
             setIncomingEdges(endNodeId, newIncomingEdges);
         } finally {
             lock.unlock();
@@ -261,6 +451,65 @@ public abstract class AbstractTypedEdgePrimitivesRepository implements
         return edgeType;
     }
 
+    /**
+     * Gets the start node of an edge, or -1 if there is no such edge.
+     */
+    protected abstract int getStartNodeIndex(int edgeIndex);
+
+    /**
+     * Gets the end node of an edge, or -1 if there is no such edge.
+     */
+    protected abstract int getEndNodeIndex(int edgeIndex);
+
+    @Override
+    public boolean forEachNeighbor(int nodeIndex, EdgeDirection direction,
+                                   IntIntFloatProcedure procedure) {
+        switch (direction) {
+        case OUTGOING:
+            return forEachNeighbor(findOutgoingEdges(nodeIndex), true, procedure);
+        case INCOMING:
+            return forEachNeighbor(findIncomingEdges(nodeIndex), false, procedure);
+        case BOTH:
+            return forEachNeighbor(findOutgoingEdges(nodeIndex), true, procedure)
+                && forEachNeighbor(findIncomingEdges(nodeIndex), false, procedure);
+        default:
+            throw new IllegalArgumentException("Illegal direction: " + direction);
+        }
+    }
+
+    private boolean forEachNeighbor(EdgeVector edges, final boolean outgoing,
+                                    final IntIntFloatProcedure procedure) {
+        if (edges == null) {
+            return true;
+        }
+        if (edges.hasInlineWeights()) {
+            return edges.forEachWeightedEdge(new IntFloatProcedure() {
+
+                @Override
+                public boolean apply(int edgeIndex, float weight) {
+                    int neighbor =
+                        outgoing ? getEndNodeIndex(edgeIndex) : getStartNodeIndex(edgeIndex);
+                    // The edge might have been removed concurrently
+                    return neighbor < 0 || procedure.apply(neighbor, edgeIndex, weight);
+                }
+            });
+        }
+        return edges.forEachEdgeId(new IntProcedure() {
+
+            @Override
+            public boolean apply(int edgeIndex) {
+                int neighbor =
+                    outgoing ? getEndNodeIndex(edgeIndex) : getStartNodeIndex(edgeIndex);
+                if (neighbor < 0) {
+                    return true;
+                }
+                // The edge might have been removed since reading its nodes
+                float weight = getEdgeWeight(edgeIndex);
+                return Float.isNaN(weight) || procedure.apply(neighbor, edgeIndex, weight);
+            }
+        });
+    }
+
     private ReentrantLock lockNode(int nodeIndex) {
         int index = nodeIndex % locks.size();
         ReentrantLock lock = locks.get(index);
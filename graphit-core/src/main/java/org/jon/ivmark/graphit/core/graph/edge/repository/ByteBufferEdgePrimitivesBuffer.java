@@ -0,0 +1,316 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph.edge.repository;
+
+import com.google.common.base.Preconditions;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeId;
+import org.jon.ivmark.graphit.core.graph.edge.EdgePrimitive;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeType;
+import org.jon.ivmark.graphit.core.graph.exception.GraphException;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An {@link EdgePrimitivesBuffer} that keeps edge primitives outside of the
+ * java heap, either in direct byte buffers or in a memory mapped file.
+ *
+ * The buffer is split into pages of fixed size records, each record laid out
+ * as (flags, start node, end node, weight), 4 bytes each. A file backed
+ * buffer can be reopened, in which case all edges stored in the file are
+ * available without any parsing.
+ *
+ * This buffer is thread safe.
+ *
+ * @author jon
+ *
+ */
+public class ByteBufferEdgePrimitivesBuffer implements EdgePrimitivesBuffer, Flushable, Closeable {
+
+    /**
+     * The size in bytes of one edge record.
+     */
+    public static final int RECORD_SIZE = 16;
+
+    private static final int DEFAULT_RECORDS_PER_PAGE = 1 << 16;
+
+    private static final int FLAGS_OFFSET = 0;
+    private static final int START_OFFSET = 4;
+    private static final int END_OFFSET = 8;
+    private static final int WEIGHT_OFFSET = 12;
+
+    private static final int PRESENT = 1;
+
+    private final EdgeType edgeType;
+    private final int recordsPerPage;
+    private final List<ByteBuffer> pages;
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+
+    private volatile int size = 0;
+
+    /**
+     * Creates a new buffer using direct (off heap) byte buffers.
+     */
+    public ByteBufferEdgePrimitivesBuffer(EdgeType edgeType) {
+        this(edgeType, null, DEFAULT_RECORDS_PER_PAGE);
+    }
+
+    /**
+     * Creates a new buffer backed by a memory mapped file. If the file exists,
+     * all edges previously stored in it will be available in this buffer.
+     */
+    public ByteBufferEdgePrimitivesBuffer(EdgeType edgeType, File file) {
+        this(edgeType, file, DEFAULT_RECORDS_PER_PAGE);
+    }
+
+    /**
+     * Creates a new buffer, backed by a memory mapped file unless the file is
+     * null.
+     *
+     * @param recordsPerPage
+     *            The number of edges in each page. Must not change between
+     *            reopening the same file.
+     */
+    public ByteBufferEdgePrimitivesBuffer(EdgeType edgeType, File file, int recordsPerPage) {
+        Preconditions.checkArgument(recordsPerPage > 0, "Illegal page size");
+        this.edgeType = edgeType;
+        this.recordsPerPage = recordsPerPage;
+        this.pages = new ArrayList<ByteBuffer>();
+        if (file == null) {
+            this.file = null;
+            this.channel = null;
+            return;
+        }
+        try {
+            this.file = new RandomAccessFile(file, "rw");
+            this.channel = this.file.getChannel();
+            open();
+        } catch (IOException e) {
+            throw new GraphException("Failed to open edge buffer file: " + file, e);
+        }
+    }
+
+    private void open() throws IOException {
+        long pageSize = pageSizeInBytes();
+        long length = channel.size();
+        Preconditions.checkState(length % pageSize == 0,
+                                 "Corrupt edge buffer file, unexpected length: " + length);
+        int numPages = (int) (length / pageSize);
+        for (int i = 0; i < numPages; i++) {
+            ByteBuffer page = mapPage(i);
+            pages.add(page);
+            for (int j = 0; j < recordsPerPage; j++) {
+                if (page.getInt(j * RECORD_SIZE + FLAGS_OFFSET) == PRESENT) {
+                    size++;
+                }
+            }
+        }
+    }
+
+    private long pageSizeInBytes() {
+        return (long) recordsPerPage * RECORD_SIZE;
+    }
+
+    private MappedByteBuffer mapPage(int pageIndex) throws IOException {
+        long pageSize = pageSizeInBytes();
+        return channel.map(FileChannel.MapMode.READ_WRITE, pageIndex * pageSize, pageSize);
+    }
+
+    private ByteBuffer allocatePage(int pageIndex) {
+        if (channel == null) {
+            return ByteBuffer.allocateDirect((int) pageSizeInBytes());
+        }
+        try {
+            return mapPage(pageIndex);
+        } catch (IOException e) {
+            throw new GraphException("Failed to expand edge buffer file", e);
+        }
+    }
+
+    private ByteBuffer getPage(int index) {
+        int pageIndex = index / recordsPerPage;
+        if (pageIndex >= pages.size()) {
+            return null;
+        }
+        return pages.get(pageIndex);
+    }
+
+    private ByteBuffer getOrAllocatePage(int index) {
+        int pageIndex = index / recordsPerPage;
+        for (int i = pages.size(); i <= pageIndex; i++) {
+            pages.add(allocatePage(i));
+        }
+        return pages.get(pageIndex);
+    }
+
+    private int getOffset(int index) {
+        return (index % recordsPerPage) * RECORD_SIZE;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized void upsert(int index, int startNode, int endNode, float weight) {
+        Preconditions.checkArgument(index >= 0, "Index must not be negative");
+        ByteBuffer page = getOrAllocatePage(index);
+        int offset = getOffset(index);
+        if (page.getInt(offset + FLAGS_OFFSET) != PRESENT) {
+            size++;
+        }
+        page.putInt(offset + START_OFFSET, startNode);
+        page.putInt(offset + END_OFFSET, endNode);
+        page.putFloat(offset + WEIGHT_OFFSET, weight);
+        page.putInt(offset + FLAGS_OFFSET, PRESENT);
+    }
+
+    @Override
+    public synchronized EdgePrimitive get(int index) {
+        if (index < 0) {
+            return null;
+        }
+        ByteBuffer page = getPage(index);
+        if (page == null) {
+            return null;
+        }
+        int offset = getOffset(index);
+        if (page.getInt(offset + FLAGS_OFFSET) != PRESENT) {
+            return null;
+        }
+        return new EdgePrimitive(new EdgeId(edgeType, index),
+                                 page.getInt(offset + START_OFFSET),
+                                 page.getInt(offset + END_OFFSET),
+                                 page.getFloat(offset + WEIGHT_OFFSET));
+    }
+
+    @Override
+    public synchronized int getStartNode(int index) {
+        int offset = getPresentOffset(index);
+        if (offset < 0) {
+            return -1;
+        }
+        return getPage(index).getInt(offset + START_OFFSET);
+    }
+
+    @Override
+    public synchronized int getEndNode(int index) {
+        int offset = getPresentOffset(index);
+        if (offset < 0) {
+            return -1;
+        }
+        return getPage(index).getInt(offset + END_OFFSET);
+    }
+
+    @Override
+    public synchronized float getWeight(int index) {
+        int offset = getPresentOffset(index);
+        if (offset < 0) {
+            return Float.NaN;
+        }
+        return getPage(index).getFloat(offset + WEIGHT_OFFSET);
+    }
+
+    /**
+     * Gets the offset of an edge in its page, or -1 if there is no such edge.
+     */
+    private int getPresentOffset(int index) {
+        if (index < 0) {
+            return -1;
+        }
+        ByteBuffer page = getPage(index);
+        if (page == null) {
+            return -1;
+        }
+        int offset = getOffset(index);
+        if (page.getInt(offset + FLAGS_OFFSET) != PRESENT) {
+            return -1;
+        }
+        return offset;
+    }
+
+    @Override
+    public synchronized EdgePrimitive remove(int index) {
+        EdgePrimitive edge = get(index);
+        if (edge == null) {
+            return null;
+        }
+        ByteBuffer page = getPage(index);
+        int offset = getOffset(index);
+        page.putInt(offset + FLAGS_OFFSET, 0);
+        page.putInt(offset + START_OFFSET, -1);
+        page.putInt(offset + END_OFFSET, -1);
+        page.putFloat(offset + WEIGHT_OFFSET, 0);
+        size--;
+        return edge;
+    }
+
+    @Override
+    public EdgeType getEdgeType() {
+        return edgeType;
+    }
+
+    /**
+     * Gets the number of edge slots, used or not, in this buffer. All edges
+     * in this buffer have an index lower than the capacity.
+     */
+    public synchronized int capacity() {
+        return pages.size() * recordsPerPage;
+    }
+
+    /**
+     * Forces any changes to be written to the backing file, if any.
+     */
+    @Override
+    public synchronized void flush() {
+        for (ByteBuffer page : pages) {
+            if (page instanceof MappedByteBuffer) {
+                ((MappedByteBuffer) page).force();
+            }
+        }
+    }
+
+    /**
+     * Flushes and closes the backing file, if any. This buffer may not be
+     * used after it has been closed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (file == null) {
+            return;
+        }
+        flush();
+        pages.clear();
+        file.close();
+    }
+
+    @Override
+    public String toString() {
+        return "ByteBufferEdgePrimitivesBuffer [edgeType=" + edgeType + ", recordsPerPage="
+            + recordsPerPage + ", pages=" + pages.size() + ", size=" + size + "]";
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph.edge.repository;
+
+import com.google.common.base.Preconditions;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeType;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeTypes;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An {@link EdgePrimitivesRepository} backed by
+ * {@link TypedEdgePrimitivesRepositoryImpl} instances that keep their edge
+ * primitives in {@link ByteBufferEdgePrimitivesBuffer}s, i.e. outside of the
+ * java heap.
+ *
+ * If a directory is provided, each edge type is stored in a memory mapped file
+ * in that directory, and any edges stored there by a previous instance are
+ * available as soon as the edge type is used.
+ *
+ * @author jon
+ *
+ */
+public class ByteBufferEdgePrimitivesRepository extends AbstractEdgePrimitivesRepository
+    implements Flushable, Closeable {
+
+    private final File dir;
+    private final List<ByteBufferEdgePrimitivesBuffer> buffers;
+
+    /**
+     * Constructs a new repo storing edges in direct (off heap) byte buffers.
+     */
+    public ByteBufferEdgePrimitivesRepository(EdgeTypes edgeTypes) {
+        this(edgeTypes, null);
+    }
+
+    /**
+     * Constructs a new repo storing edges in memory mapped files in the
+     * provided directory.
+     */
+    public ByteBufferEdgePrimitivesRepository(EdgeTypes edgeTypes, File dir) {
+        Preconditions.checkArgument(dir == null || dir.isDirectory() || dir.mkdirs(),
+                                    "Invalid edge directory: " + dir);
+        this.dir = dir;
+        this.buffers = new ArrayList<ByteBufferEdgePrimitivesBuffer>();
+        createRepos(edgeTypes);
+    }
+
+    /**
+     * Gets the file in which the edges of the provided type are stored.
+     */
+    public File getFile(EdgeType edgeType) {
+        Preconditions.checkState(dir != null, "This repo is not backed by files");
+        return new File(dir, String.format("e-%s.bin", edgeType.name()));
+    }
+
+    @Override
+    protected TypedEdgePrimitivesRepository createRepo(EdgeType edgeType) {
+        ByteBufferEdgePrimitivesBuffer buffer;
+        if (dir == null) {
+            buffer = new ByteBufferEdgePrimitivesBuffer(edgeType);
+        } else {
+            buffer = new ByteBufferEdgePrimitivesBuffer(edgeType, getFile(edgeType));
+        }
+        synchronized (buffers) {
+            buffers.add(buffer);
+        }
+        return new TypedEdgePrimitivesRepositoryImpl(edgeType, buffer);
+    }
+
+    @Override
+    public void flush() {
+        synchronized (buffers) {
+            for (ByteBufferEdgePrimitivesBuffer buffer : buffers) {
+                buffer.flush();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (buffers) {
+            for (ByteBufferEdgePrimitivesBuffer buffer : buffers) {
+                buffer.close();
+            }
+        }
+    }
+}
@@ -84,6 +84,30 @@ public class ConcurrentEdgePrimitivesBuffer implements EdgePrimitivesBuffer {
                                  edge.getEndNodeIndex(), edge.getWeight());
     }
 
+    @Override
+    public int getStartNode(int index) {
+        if (index < 0) {
+            return -1;
+        }
+        return getSegment(index).getStartNode(mapIndex(index));
+    }
+
+    @Override
+    public int getEndNode(int index) {
+        if (index < 0) {
+            return -1;
+        }
+        return getSegment(index).getEndNode(mapIndex(index));
+    }
+
+    @Override
+    public float getWeight(int index) {
+        if (index < 0) {
+            return Float.NaN;
+        }
+        return getSegment(index).getWeight(mapIndex(index));
+    }
+
     @Override
     public EdgePrimitive remove(int index) {
         EdgePrimitivesBuffer buffer = getSegment(index);
@@ -29,7 +29,8 @@ import org.jon.ivmark.graphit.core.graph.edge.EdgeType;
 public interface EdgePrimitivesBuffer {
 
     /**
-     * Gets the size of this buffer
+     * Gets the size of this buffer. Implementations keep the size up to date on
+     * insert and remove, so that reading it does not block writers.
      */
     int size();
 
@@ -43,6 +44,25 @@ public interface EdgePrimitivesBuffer {
      */
     EdgePrimitive get(int index);
 
+    /**
+     * Gets the weight of an edge without creating an {@link EdgePrimitive}, or
+     * {@link Float#NaN} if there is no edge with the given index, since any
+     * other value may be a valid weight.
+     */
+    float getWeight(int index);
+
+    /**
+     * Gets the start node of an edge without creating an {@link EdgePrimitive},
+     * or -1 if there is no edge with the given index.
+     */
+    int getStartNode(int index);
+
+    /**
+     * Gets the end node of an edge without creating an {@link EdgePrimitive},
+     * or -1 if there is no edge with the given index.
+     */
+    int getEndNode(int index);
+
     /**
      * Gets and removes an edge primitive.
      */
@@ -35,8 +35,7 @@ public class EdgePrimitivesBufferImpl implements EdgePrimitivesBuffer {
     private final LongArrayList edges;
     private final FloatArrayList weights;
 
-    private int numInserted = 0;
-    private int numRemoved = 0;
+    private volatile int size = 0;
 
     private final long nullEdge = createEdge(-1, -1);
 
@@ -64,7 +63,7 @@ public class EdgePrimitivesBufferImpl implements EdgePrimitivesBuffer {
                 return null;
             }
             edge = edges.get(index);
-            weight = getWeight(index);
+            weight = weights.get(index);
         }
         if (edge == nullEdge) {
             return null;
@@ -80,7 +79,6 @@ public class EdgePrimitivesBufferImpl implements EdgePrimitivesBuffer {
         EdgePrimitive edge = get(index);
         if (edge != null) {
             upsert(index, -1, -1, 0);
-            numRemoved++;
         }
         return edge;
     }
@@ -92,16 +90,21 @@ public class EdgePrimitivesBufferImpl implements EdgePrimitivesBuffer {
 
     private void addEdge(int index, int startNode, int endNode) {
         long edge = createEdge(startNode, endNode);
+        long previous = nullEdge;
         if (index < edges.size()) {
+            previous = edges.get(index);
             edges.set(index, edge);
-            return;
+        } else {
+            for (int i = edges.size(); i < index; i++) {
+                edges.add(nullEdge);
+            }
+            edges.add(edge);
         }
-
-        for (int i = edges.size(); i < index; i++) {
-            edges.add(nullEdge);
+        if (previous == nullEdge && edge != nullEdge) {
+            size++;
+        } else if (previous != nullEdge && edge == nullEdge) {
+            size--;
         }
-        edges.add(edge);
-        numInserted++;
     }
 
     private void setWeight(int index, float weight) {
@@ -129,19 +132,39 @@ public class EdgePrimitivesBufferImpl implements EdgePrimitivesBuffer {
         return (int) (edge & 0x7fffffff);
     }
 
-    private float getWeight(int index) {
+    @Override
+    public synchronized int getStartNode(int index) {
+        if (index < 0 || index >= edges.size() || edges.get(index) == nullEdge) {
+            return -1;
+        }
+        return getStartNode(edges.get(index));
+    }
+
+    @Override
+    public synchronized int getEndNode(int index) {
+        if (index < 0 || index >= edges.size() || edges.get(index) == nullEdge) {
+            return -1;
+        }
+        return getEndNode(edges.get(index));
+    }
+
+    @Override
+    public synchronized float getWeight(int index) {
+        if (index < 0 || index >= edges.size() || edges.get(index) == nullEdge) {
+            return Float.NaN;
+        }
         return weights.get(index);
     }
 
     @Override
-    public synchronized int size() {
-        return numInserted - numRemoved;
+    public int size() {
+        return size;
     }
 
     @Override
     public String toString() {
         return "EdgePrimitivesBufferImpl [edgeType=" + edgeType + ", edges=" + edges + ", weights="
-            + weights + ", numInserted=" + numInserted + ", numRemoved=" + numRemoved + "]";
+            + weights + ", size=" + size + "]";
     }
 
 }
\ No newline at end of file
@@ -16,6 +16,9 @@
 
 package org.jon.ivmark.graphit.core.graph.edge.repository;
 
+import org.jon.ivmark.graphit.core.IntIntFloatProcedure;
+import org.jon.ivmark.graphit.core.Procedure;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeDirection;
 import org.jon.ivmark.graphit.core.graph.edge.EdgeId;
 import org.jon.ivmark.graphit.core.graph.edge.EdgePrimitive;
 import org.jon.ivmark.graphit.core.graph.edge.EdgeType;
@@ -45,6 +48,21 @@ public interface EdgePrimitivesRepository {
      */
     void addEdge(EdgeId edgeId, int startNodeIndex, int endNodeIndex, float weight);
 
+    /**
+     * Adds a batch of weighted edges of the same type and returns the index of
+     * the first new edge. The edges get consecutive indexes in the order given.
+     */
+    int addEdges(EdgeType edgeType, int[] startNodeIndexes, int[] endNodeIndexes,
+                 float[] weights, int size);
+
+    /**
+     * Adds a batch of weighted edges of the same type with the provided
+     * indexes. You should normally not use this method, it is intended for
+     * restoring edges from file.
+     */
+    void addEdges(EdgeType edgeType, int[] edgeIndexes, int[] startNodeIndexes,
+                  int[] endNodeIndexes, float[] weights, int size);
+
     /**
      * Gets the edge with the provided id.
      */
@@ -55,6 +73,27 @@ public interface EdgePrimitivesRepository {
      */
     EdgePrimitive removeEdge(EdgeId edgeId);
 
+    /**
+     * Reserves the id of a new edge of a type, to be added with
+     * {@link #addEdge(EdgeId, int, int, float)}, e.g. so that the id is known
+     * before the edge is added. The id must be released with
+     * {@link #releaseEdgeId(EdgeId)} if no edge is added.
+     */
+    EdgeId reserveEdgeId(EdgeType edgeType);
+
+    /**
+     * Removes the edge with the provided id, but keeps new edges from reusing
+     * its id until {@link #releaseEdgeId(EdgeId)} is called, e.g. once the
+     * removal has been logged.
+     */
+    EdgePrimitive removeEdgeRetainingId(EdgeId edgeId);
+
+    /**
+     * Makes the id of an edge removed by
+     * {@link #removeEdgeRetainingId(EdgeId)} available to new edges.
+     */
+    void releaseEdgeId(EdgeId edgeId);
+
     /**
      * Updates the weight for an edge.
      */
@@ -70,4 +109,41 @@ public interface EdgePrimitivesRepository {
      */
     EdgeVector getIncomingEdges(int endNodeIndex, EdgeType edgeType);
 
+    /**
+     * Applies a procedure to the (neighbor index, edge index, weight) of each
+     * edge of a node, until the procedure returns false. Returns false if the
+     * iteration was stopped by the procedure.
+     *
+     * @see TypedEdgePrimitivesRepository#forEachNeighbor(int, EdgeDirection,
+     *      IntIntFloatProcedure)
+     */
+    boolean forEachNeighbor(int nodeIndex, EdgeType edgeType, EdgeDirection direction,
+                            IntIntFloatProcedure procedure);
+
+    /**
+     * Applies a procedure to all edges of a type, in order of edge index,
+     * until the procedure returns false. Returns false if the iteration was
+     * stopped by the procedure.
+     */
+    boolean forEachEdge(EdgeType edgeType, Procedure<EdgePrimitive> procedure);
+
+    /**
+     * Applies a procedure to the edges of a type with indexes in the range
+     * [fromIndex, toIndex), see {@link #forEachEdge(EdgeType, Procedure)}.
+     */
+    boolean forEachEdge(EdgeType edgeType, int fromIndex, int toIndex,
+                        Procedure<EdgePrimitive> procedure);
+
+    /**
+     * Gets the highest index of an edge of a type that has been added, or -1
+     * if no edges have been added.
+     */
+    int getMaxEdgeIndex(EdgeType edgeType);
+
+    /**
+     * Gets the number of edges of a type in this repo. This is a constant time
+     * operation.
+     */
+    int size(EdgeType edgeType);
+
 }
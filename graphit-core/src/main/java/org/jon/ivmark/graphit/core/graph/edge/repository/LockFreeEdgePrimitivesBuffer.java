@@ -0,0 +1,259 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph.edge.repository;
+
+import com.google.common.base.Preconditions;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeId;
+import org.jon.ivmark.graphit.core.graph.edge.EdgePrimitive;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeType;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A buffer of edge primitives where readers never take any locks.
+ *
+ * Edges are stored in fixed size chunks, each chunk being an
+ * {@link AtomicLongArray} with two slots per edge. The first slot holds the
+ * packed start and end node, the second slot holds the edge weight in the low
+ * 32 bits and a per edge version in the high 32 bits. Writers are serialized
+ * and bump the version to an odd number while an edge is being modified,
+ * readers retry until they have seen the same even version before and after
+ * reading the edge, i.e. a seqlock per edge.
+ *
+ * Growing the buffer publishes a new chunk directory through a volatile
+ * field, so readers always see fully initialized chunks.
+ *
+ * This buffer is thread safe.
+ *
+ * @author jon
+ *
+ */
+public class LockFreeEdgePrimitivesBuffer implements EdgePrimitivesBuffer {
+
+    private static final int DEFAULT_CHUNK_SIZE = 1 << 12;
+
+    private static final long NULL_EDGE = createEdge(-1, -1);
+
+    private final EdgeType edgeType;
+    private final int chunkSize;
+
+    private volatile AtomicLongArray[] chunks;
+    private volatile int size = 0;
+
+    /**
+     * Creates a new buffer with the given type and capacity.
+     */
+    public LockFreeEdgePrimitivesBuffer(EdgeType edgeType, int capacity) {
+        this(edgeType, capacity, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Creates a new buffer with the given type, capacity and number of edges
+     * per chunk.
+     */
+    public LockFreeEdgePrimitivesBuffer(EdgeType edgeType, int capacity, int chunkSize) {
+        Preconditions.checkArgument(chunkSize > 0, "Illegal chunk size");
+        this.edgeType = edgeType;
+        this.chunkSize = chunkSize;
+        this.chunks = new AtomicLongArray[0];
+        if (capacity > 0) {
+            synchronized (this) {
+                ensureCapacity(capacity - 1);
+            }
+        }
+    }
+
+    private void ensureCapacity(int index) {
+        AtomicLongArray[] current = chunks;
+        int numChunks = index / chunkSize + 1;
+        if (numChunks <= current.length) {
+            return;
+        }
+        AtomicLongArray[] expanded = new AtomicLongArray[numChunks];
+        System.arraycopy(current, 0, expanded, 0, current.length);
+        for (int i = current.length; i < numChunks; i++) {
+            expanded[i] = createChunk();
+        }
+        chunks = expanded;
+    }
+
+    private AtomicLongArray createChunk() {
+        AtomicLongArray chunk = new AtomicLongArray(2 * chunkSize);
+        for (int i = 0; i < chunkSize; i++) {
+            chunk.lazySet(2 * i, NULL_EDGE);
+        }
+        return chunk;
+    }
+
+    private AtomicLongArray getChunk(int index) {
+        AtomicLongArray[] current = chunks;
+        int chunkIndex = index / chunkSize;
+        if (chunkIndex >= current.length) {
+            return null;
+        }
+        return current[chunkIndex];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized void upsert(int index, int startNode, int endNode, float weight) {
+        Preconditions.checkArgument(index >= 0, "Index must not be negative");
+        ensureCapacity(index);
+        AtomicLongArray chunk = getChunk(index);
+        int slot = 2 * (index % chunkSize);
+        long edge = chunk.get(slot);
+        write(chunk, slot, createEdge(startNode, endNode), weight);
+        if (edge == NULL_EDGE) {
+            size++;
+        }
+    }
+
+    private void write(AtomicLongArray chunk, int slot, long edge, float weight) {
+        long weightAndVersion = chunk.get(slot + 1);
+        int version = getVersion(weightAndVersion);
+        // An odd version tells readers that a write is in progress
+        chunk.set(slot + 1, createWeightAndVersion(extractWeight(weightAndVersion), version + 1));
+        chunk.set(slot, edge);
+        chunk.set(slot + 1, createWeightAndVersion(weight, version + 2));
+    }
+
+    @Override
+    public EdgePrimitive get(int index) {
+        if (index < 0) {
+            return null;
+        }
+        AtomicLongArray chunk = getChunk(index);
+        if (chunk == null) {
+            return null;
+        }
+        int slot = 2 * (index % chunkSize);
+        while (true) {
+            long before = chunk.get(slot + 1);
+            if ((getVersion(before) & 1) == 0) {
+                long edge = chunk.get(slot);
+                long after = chunk.get(slot + 1);
+                if (before == after) {
+                    if (edge == NULL_EDGE) {
+                        return null;
+                    }
+                    return new EdgePrimitive(new EdgeId(edgeType, index), getStartNode(edge),
+                                             getEndNode(edge), extractWeight(after));
+                }
+            }
+            Thread.yield();
+        }
+    }
+
+    @Override
+    public int getStartNode(int index) {
+        long edge = readEdge(index);
+        return edge == NULL_EDGE ? -1 : getStartNode(edge);
+    }
+
+    @Override
+    public int getEndNode(int index) {
+        long edge = readEdge(index);
+        return edge == NULL_EDGE ? -1 : getEndNode(edge);
+    }
+
+    private long readEdge(int index) {
+        if (index < 0) {
+            return NULL_EDGE;
+        }
+        AtomicLongArray chunk = getChunk(index);
+        if (chunk == null) {
+            return NULL_EDGE;
+        }
+        // Nodes are never changed for an existing edge, so a single read will
+        // do without checking the version
+        return chunk.get(2 * (index % chunkSize));
+    }
+
+    @Override
+    public float getWeight(int index) {
+        if (index < 0) {
+            return Float.NaN;
+        }
+        AtomicLongArray chunk = getChunk(index);
+        if (chunk == null) {
+            return Float.NaN;
+        }
+        int slot = 2 * (index % chunkSize);
+        while (true) {
+            long before = chunk.get(slot + 1);
+            if ((getVersion(before) & 1) == 0) {
+                long edge = chunk.get(slot);
+                if (chunk.get(slot + 1) == before) {
+                    return edge == NULL_EDGE ? Float.NaN : extractWeight(before);
+                }
+            }
+            Thread.yield();
+        }
+    }
+
+    @Override
+    public synchronized EdgePrimitive remove(int index) {
+        EdgePrimitive edge = get(index);
+        if (edge != null) {
+            AtomicLongArray chunk = getChunk(index);
+            write(chunk, 2 * (index % chunkSize), NULL_EDGE, 0);
+            size--;
+        }
+        return edge;
+    }
+
+    @Override
+    public EdgeType getEdgeType() {
+        return edgeType;
+    }
+
+    private static long createEdge(int startNode, int endNode) {
+        long s = (long) startNode << 32;
+        return s | (endNode & 0xffffffffL);
+    }
+
+    private static int getStartNode(long edge) {
+        return (int) (edge >> 32);
+    }
+
+    private static int getEndNode(long edge) {
+        return (int) edge;
+    }
+
+    private static long createWeightAndVersion(float weight, int version) {
+        long v = (long) version << 32;
+        return v | (Float.floatToRawIntBits(weight) & 0xffffffffL);
+    }
+
+    private static int getVersion(long weightAndVersion) {
+        return (int) (weightAndVersion >>> 32);
+    }
+
+    private static float extractWeight(long weightAndVersion) {
+        return Float.intBitsToFloat((int) weightAndVersion);
+    }
+
+    @Override
+    public String toString() {
+        return "LockFreeEdgePrimitivesBuffer [edgeType=" + edgeType + ", chunkSize=" + chunkSize
+            + ", chunks=" + chunks.length + ", size=" + size + "]";
+    }
+}
@@ -16,6 +16,8 @@
 
 package org.jon.ivmark.graphit.core.graph.edge.repository;
 
+import org.jon.ivmark.graphit.core.IntIntFloatProcedure;
+import org.jon.ivmark.graphit.core.Procedure;
 import org.jon.ivmark.graphit.core.graph.edge.*;
 
 /**
@@ -63,6 +65,22 @@ public interface TypedEdgePrimitivesRepository extends EdgeWeigher {
      */
     void addWeightedEdge(EdgeId edgeId, int startNodeIndex, int endNodeIndex, float weight);
 
+    /**
+     * Adds a batch of weighted edges, given as parallel arrays of start node
+     * indexes, end node indexes and weights, and returns the index of the
+     * first new edge. The edges get consecutive indexes in the order given.
+     */
+    int addWeightedEdges(int[] startNodeIndexes, int[] endNodeIndexes, float[] weights,
+                         int size);
+
+    /**
+     * Adds a batch of weighted edges with the provided indexes, given as
+     * parallel arrays. Like {@link #addWeightedEdge(EdgeId, int, int, float)}
+     * this method is intended for restoring edges from file.
+     */
+    void addWeightedEdges(int[] edgeIndexes, int[] startNodeIndexes, int[] endNodeIndexes,
+                          float[] weights, int size);
+
     /**
      * Gets the edge with the provided id.
      */
@@ -73,6 +91,25 @@ public interface TypedEdgePrimitivesRepository extends EdgeWeigher {
      */
     EdgePrimitive removeEdge(EdgeId edgeId);
 
+    /**
+     * Reserves the id of a new edge, to be added with
+     * {@link #addWeightedEdge(EdgeId, int, int, float)}. The id must be
+     * released with {@link #releaseEdgeId(EdgeId)} if no edge is added.
+     */
+    EdgeId reserveEdgeId();
+
+    /**
+     * Removes the edge with the provided id, but keeps new edges from reusing
+     * its id until {@link #releaseEdgeId(EdgeId)} is called.
+     */
+    EdgePrimitive removeEdgeRetainingId(EdgeId edgeId);
+
+    /**
+     * Makes the id of an edge removed by
+     * {@link #removeEdgeRetainingId(EdgeId)} available to new edges.
+     */
+    void releaseEdgeId(EdgeId edgeId);
+
     /**
      * Updates the weight for an edge.
      */
@@ -88,6 +125,34 @@ public interface TypedEdgePrimitivesRepository extends EdgeWeigher {
      */
     EdgeVector getIncomingEdges(int endNodeIndex);
 
+    /**
+     * Applies a procedure to the (neighbor index, edge index, weight) of each
+     * edge of a node, in the order of the edge vectors, until the procedure
+     * returns false. Returns false if the iteration was stopped by the
+     * procedure. No objects are created per edge.
+     */
+    boolean forEachNeighbor(int nodeIndex, EdgeDirection direction,
+                            IntIntFloatProcedure procedure);
+
+    /**
+     * Applies a procedure to all edges in this repo, in order of edge index,
+     * until the procedure returns false. Returns false if the iteration was
+     * stopped by the procedure.
+     */
+    boolean forEachEdge(Procedure<EdgePrimitive> procedure);
+
+    /**
+     * Applies a procedure to the edges with indexes in the range [fromIndex,
+     * toIndex), see {@link #forEachEdge(Procedure)}.
+     */
+    boolean forEachEdge(int fromIndex, int toIndex, Procedure<EdgePrimitive> procedure);
+
+    /**
+     * Gets the highest index of an edge that has been added, or -1 if no edges
+     * have been added.
+     */
+    int getMaxEdgeIndex();
+
     /**
      * Gets the number of edges in this repo.
      */
@@ -17,12 +17,15 @@
 package org.jon.ivmark.graphit.core.graph.edge.repository;
 
 import com.google.common.base.Preconditions;
-import org.jon.ivmark.graphit.core.ConcurrencyConstants;
+import org.apache.mahout.math.list.IntArrayList;
+import org.jon.ivmark.graphit.core.Procedure;
 import org.jon.ivmark.graphit.core.graph.edge.EdgeId;
 import org.jon.ivmark.graphit.core.graph.edge.EdgePrimitive;
 import org.jon.ivmark.graphit.core.graph.edge.EdgeType;
 import org.jon.ivmark.graphit.core.graph.exception.DuplicateKeyException;
 
+import java.util.BitSet;
+
 /**
  *
  * A {@link TypedEdgePrimitivesRepository} implementation backed by primitive
@@ -46,22 +49,46 @@ public class TypedEdgePrimitivesRepositoryImpl extends AbstractTypedEdgePrimitiv
 
     /**
      * Constructs a new repo for the given edge type with a default backing
-     * buffer with the provided initial capacity
+     * buffer with the provided initial capacity. The default buffer is a
+     * {@link LockFreeEdgePrimitivesBuffer}, since edges are read far more often
+     * than they are written.
      */
     public TypedEdgePrimitivesRepositoryImpl(EdgeType edgeType, int initialCapacity) {
-        this(edgeType,
-             new ConcurrentEdgePrimitivesBuffer(edgeType,
-                                             ConcurrencyConstants.DEFAULT_CONCURRENCY_LEVEL,
-                                             initialCapacity));
+        this(edgeType, new LockFreeEdgePrimitivesBuffer(edgeType, initialCapacity));
     }
 
     /**
      * Constructs a new repo for the given edge type using a custom backing
-     * buffer.
+     * buffer. If the buffer already contains edges, e.g. if it is backed by a
+     * previously written file, these edges will be indexed by this repo.
      */
     public TypedEdgePrimitivesRepositoryImpl(EdgeType edgeType, EdgePrimitivesBuffer buffer) {
         super(edgeType);
         this.buffer = buffer;
+        restore();
+    }
+
+    /**
+     * Indexes the edges already in the buffer. Indexes below the largest
+     * restored one that hold no edge are released, so that they are reused
+     * by new edges, lowest first, just as if the edges had been removed from
+     * this repo.
+     */
+    private void restore() {
+        IntArrayList gaps = new IntArrayList();
+        int remaining = buffer.size();
+        for (int index = 0; remaining > 0; index++) {
+            EdgePrimitive edge = buffer.get(index);
+            if (edge != null) {
+                insert(edge);
+                remaining--;
+            } else {
+                gaps.add(index);
+            }
+        }
+        for (int i = gaps.size() - 1; i >= 0; i--) {
+            releaseEdgeId(new EdgeId(getEdgeType(), gaps.get(i)));
+        }
     }
 
     @Override
@@ -94,6 +121,42 @@ public class TypedEdgePrimitivesRepositoryImpl extends AbstractTypedEdgePrimitiv
         insert(new EdgePrimitive(edgeId, startNodeIndex, endNodeIndex, weight));
     }
 
+    @Override
+    public int addWeightedEdges(int[] startNodeIndexes, int[] endNodeIndexes, float[] weights,
+                                int size) {
+        Preconditions.checkArgument(size >= 0 && size <= startNodeIndexes.length
+            && size <= endNodeIndexes.length && size <= weights.length, "Invalid size");
+        int firstEdgeIndex = reserveEdgeIds(size);
+        for (int i = 0; i < size; i++) {
+            buffer.upsert(firstEdgeIndex + i, startNodeIndexes[i], endNodeIndexes[i], weights[i]);
+        }
+        insert(firstEdgeIndex, startNodeIndexes, endNodeIndexes, weights, size);
+        return firstEdgeIndex;
+    }
+
+    @Override
+    public void addWeightedEdges(int[] edgeIndexes, int[] startNodeIndexes, int[] endNodeIndexes,
+                                 float[] weights, int size) {
+        Preconditions.checkArgument(size >= 0 && size <= edgeIndexes.length
+            && size <= startNodeIndexes.length && size <= endNodeIndexes.length
+            && size <= weights.length, "Invalid size");
+        // Validate the whole batch first, so that a duplicate leaves the repo
+        // untouched rather than with edges that are only in the buffer
+        BitSet batch = new BitSet();
+        for (int i = 0; i < size; i++) {
+            int edgeIndex = edgeIndexes[i];
+            Preconditions.checkArgument(edgeIndex >= 0, "Illegal edge index");
+            if (batch.get(edgeIndex) || buffer.getStartNode(edgeIndex) >= 0) {
+                throw new DuplicateKeyException(new EdgeId(getEdgeType(), edgeIndex));
+            }
+            batch.set(edgeIndex);
+        }
+        for (int i = 0; i < size; i++) {
+            buffer.upsert(edgeIndexes[i], startNodeIndexes[i], endNodeIndexes[i], weights[i]);
+        }
+        insert(edgeIndexes, startNodeIndexes, endNodeIndexes, weights, size);
+    }
+
     @Override
     public EdgePrimitive getEdge(EdgeId edgeId) {
         validate(edgeId);
@@ -102,10 +165,19 @@ public class TypedEdgePrimitivesRepositoryImpl extends AbstractTypedEdgePrimitiv
 
     @Override
     public EdgePrimitive removeEdge(EdgeId edgeId) {
+        return removeEdge(edgeId, false);
+    }
+
+    @Override
+    public EdgePrimitive removeEdgeRetainingId(EdgeId edgeId) {
+        return removeEdge(edgeId, true);
+    }
+
+    private EdgePrimitive removeEdge(EdgeId edgeId, boolean retainId) {
         validate(edgeId);
         EdgePrimitive edge = buffer.remove(edgeId.getIndex());
         if (edge != null) {
-            delete(edge);
+            delete(edge, retainId);
         }
         return edge;
     }
@@ -120,17 +192,40 @@ public class TypedEdgePrimitivesRepositoryImpl extends AbstractTypedEdgePrimitiv
 
     @Override
     public float getEdgeWeight(int edgeIndex) {
-        EdgePrimitive edge = buffer.get(edgeIndex);
-        if (edge == null) {
-            return -1;
-        }
-        return edge.getWeight();
+        return buffer.getWeight(edgeIndex);
+    }
+
+    @Override
+    protected int getStartNodeIndex(int edgeIndex) {
+        return buffer.getStartNode(edgeIndex);
+    }
+
+    @Override
+    protected int getEndNodeIndex(int edgeIndex) {
+        return buffer.getEndNode(edgeIndex);
     }
 
     private void validate(EdgeId edgeId) {
         Preconditions.checkArgument(getEdgeType().equals(edgeId.getEdgeType()), "Illegal edge type");
     }
 
+    @Override
+    public boolean forEachEdge(Procedure<EdgePrimitive> procedure) {
+        return forEachEdge(0, getMaxEdgeIndex() + 1, procedure);
+    }
+
+    @Override
+    public boolean forEachEdge(int fromIndex, int toIndex, Procedure<EdgePrimitive> procedure) {
+        int end = Math.min(toIndex, getMaxEdgeIndex() + 1);
+        for (int index = Math.max(fromIndex, 0); index < end; index++) {
+            EdgePrimitive edge = buffer.get(index);
+            if (edge != null && !procedure.apply(edge)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public int size() {
         return buffer.size();
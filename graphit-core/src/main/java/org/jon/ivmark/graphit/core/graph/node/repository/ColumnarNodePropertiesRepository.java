@@ -0,0 +1,125 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph.node.repository;
+
+import com.google.common.base.Preconditions;
+import org.jon.ivmark.graphit.core.graph.node.NodeId;
+import org.jon.ivmark.graphit.core.properties.HashMapProperties;
+import org.jon.ivmark.graphit.core.properties.Properties;
+import org.jon.ivmark.graphit.core.properties.repository.PropertiesRepository;
+import org.jon.ivmark.graphit.core.properties.repository.PropertiesUpdate;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A repository storing node properties column-wise per node type. Each
+ * property is stored in an array indexed by node index, using primitive
+ * arrays for int, long, float, double and boolean values, and dictionary
+ * encoding for strings. Other values, and properties mixing value types, are
+ * stored boxed.
+ *
+ * <p>
+ * Properties are returned as {@link ColumnarProperties} views, regardless of
+ * the properties factory of the node type. Properties may only be set for
+ * nodes in the node repo, and must be removed before the node is.
+ * </p>
+ *
+ * @author jon
+ *
+ */
+public class ColumnarNodePropertiesRepository implements PropertiesRepository<NodeId> {
+
+    private final NodeIdRepository nodeRepo;
+    private final ConcurrentMap<String, PropertyTable> tables =
+        new ConcurrentHashMap<String, PropertyTable>();
+
+    /**
+     * Creates a new instance.
+     *
+     * @param nodeRepo
+     *            The repo used to look up node indexes.
+     */
+    public ColumnarNodePropertiesRepository(NodeIdRepository nodeRepo) {
+        Preconditions.checkNotNull(nodeRepo);
+        this.nodeRepo = nodeRepo;
+    }
+
+    @Override
+    public Properties getProperties(NodeId id) {
+        int index = nodeRepo.getNodeIndex(id);
+        if (index < 0) {
+            return new HashMapProperties();
+        }
+        return new ColumnarProperties(getOrCreateTable(id), index);
+    }
+
+    @Override
+    public void saveProperties(NodeId id, Properties properties) {
+        // Copy first, the properties might be a view of the same node
+        getOrCreateTable(id).setRow(getIndex(id), properties.asPropertyMap());
+    }
+
+    @Override
+    public Properties removeProperties(NodeId id) {
+        int index = nodeRepo.getNodeIndex(id);
+        PropertyTable table = tables.get(id.getNodeType().name());
+        if (index < 0 || table == null) {
+            return new HashMapProperties();
+        }
+        Properties properties = new HashMapProperties(table.getRow(index));
+        table.removeRow(index);
+        return properties;
+    }
+
+    @Override
+    public void setProperty(NodeId id, String key, Object value) {
+        getOrCreateTable(id).set(getIndex(id), key, value);
+    }
+
+    @Override
+    public void removeProperty(NodeId id, String key) {
+        PropertyTable table = tables.get(id.getNodeType().name());
+        if (table != null) {
+            table.remove(getIndex(id), key);
+        }
+    }
+
+    @Override
+    public void updateProperties(NodeId id, PropertiesUpdate update) {
+        getOrCreateTable(id).update(getIndex(id), update);
+    }
+
+    private int getIndex(NodeId id) {
+        int index = nodeRepo.getNodeIndex(id);
+        Preconditions.checkArgument(index >= 0, "No such node: " + id);
+        return index;
+    }
+
+    private PropertyTable getOrCreateTable(NodeId id) {
+        String nodeTypeName = id.getNodeType().name();
+        PropertyTable table = tables.get(nodeTypeName);
+        if (table == null) {
+            table = new PropertyTable();
+            PropertyTable existing = tables.putIfAbsent(nodeTypeName, table);
+            if (existing != null) {
+                table = existing;
+            }
+        }
+        return table;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph.node.repository;
+
+import org.jon.ivmark.graphit.core.properties.Properties;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A live view of the properties of a node stored by a
+ * {@link ColumnarNodePropertiesRepository}. Besides the {@link Properties}
+ * methods it has typed getters that read primitive columns without boxing.
+ *
+ * @author jon
+ *
+ */
+public class ColumnarProperties implements Properties {
+
+    private final PropertyTable table;
+    private final int index;
+
+    ColumnarProperties(PropertyTable table, int index) {
+        this.table = table;
+        this.index = index;
+    }
+
+    @Override
+    public Object getProperty(String key) {
+        return table.get(index, key);
+    }
+
+    /**
+     * Gets a numeric property as an int, or the default value if missing.
+     */
+    public int getInt(String key, int defaultValue) {
+        return table.getInt(index, key, defaultValue);
+    }
+
+    /**
+     * Gets a numeric property as a long, or the default value if missing.
+     */
+    public long getLong(String key, long defaultValue) {
+        return table.getLong(index, key, defaultValue);
+    }
+
+    /**
+     * Gets a numeric property as a float, or the default value if missing.
+     */
+    public float getFloat(String key, float defaultValue) {
+        return table.getFloat(index, key, defaultValue);
+    }
+
+    /**
+     * Gets a numeric property as a double, or the default value if missing.
+     */
+    public double getDouble(String key, double defaultValue) {
+        return table.getDouble(index, key, defaultValue);
+    }
+
+    /**
+     * Gets a boolean property, or the default value if missing.
+     */
+    public boolean getBoolean(String key, boolean defaultValue) {
+        return table.getBoolean(index, key, defaultValue);
+    }
+
+    @Override
+    public void setProperty(String key, Object value) {
+        table.set(index, key, value);
+    }
+
+    @Override
+    public Object removeProperty(String key) {
+        return table.remove(index, key);
+    }
+
+    @Override
+    public boolean containsProperty(String key) {
+        return table.contains(index, key);
+    }
+
+    @Override
+    public Set<String> getPropertyKeys() {
+        return table.keys(index);
+    }
+
+    @Override
+    public int size() {
+        return table.size(index);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public Map<String, Object> asPropertyMap() {
+        return table.getRow(index);
+    }
+
+    @Override
+    public String toString() {
+        return "ColumnarProperties [index=" + index + ", properties=" + asPropertyMap() + "]";
+    }
+}
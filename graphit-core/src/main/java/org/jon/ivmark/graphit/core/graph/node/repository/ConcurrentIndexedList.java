@@ -17,7 +17,11 @@
 package org.jon.ivmark.graphit.core.graph.node.repository;
 
 import com.google.common.base.Preconditions;
+import com.google.common.base.Predicates;
 import com.google.common.collect.Iterables;
+import org.apache.mahout.math.map.AbstractObjectIntMap;
+import org.apache.mahout.math.map.OpenObjectIntHashMap;
+import org.jon.ivmark.graphit.core.StripedCounter;
 import org.jon.ivmark.graphit.core.graph.exception.DuplicateKeyException;
 
 import java.util.ArrayList;
@@ -25,10 +29,16 @@ import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * A {@link IndexedList} that allows higher concurrency by using multiple backing
- * {@link IndexedList}s. Throughput in a multithreaded environment should be
- * higher than for a {@link IndexedListImpl} for all methods but
- * {@link #indexOf(Object)}.
+ * A {@link IndexedList} that allows higher concurrency by splitting both the
+ * elements and the element to index mapping into multiple segments.
+ *
+ * Elements are stored in segments selected by index, while the index of an
+ * element is stored in a segment selected by the hash code of the element.
+ * This means that {@link #indexOf(Object)} and duplicate detection only ever
+ * have to look in one segment, and that checking for duplicates and indexing
+ * a new element is done atomically.
+ *
+ * This class is thread safe.
  *
  * @author jon
  *
@@ -36,18 +46,24 @@ import java.util.concurrent.atomic.AtomicInteger;
 public class ConcurrentIndexedList<E> implements IndexedList<E> {
 
     private final int concurrencyLevel;
-    private final List<IndexedList<E>> segments;
+    private final List<List<E>> segments;
+    private final List<AbstractObjectIntMap<E>> indexSegments;
     private final AtomicInteger nextIndex = new AtomicInteger(-1);
+    private final StripedCounter size;
 
     /**
      * Creates a new list split into <code>concurrencyLevel</code> number of
      * segments
      */
     public ConcurrentIndexedList(int concurrencyLevel) {
+        Preconditions.checkArgument(concurrencyLevel > 0, "Illegal concurrency level");
         this.concurrencyLevel = concurrencyLevel;
-        this.segments = new ArrayList<IndexedList<E>>(concurrencyLevel);
+        this.segments = new ArrayList<List<E>>(concurrencyLevel);
+        this.indexSegments = new ArrayList<AbstractObjectIntMap<E>>(concurrencyLevel);
+        this.size = new StripedCounter(concurrencyLevel);
         for (int i = 0; i < concurrencyLevel; i++) {
-            segments.add(new IndexedListImpl<E>());
+            segments.add(new ArrayList<E>());
+            indexSegments.add(new OpenObjectIntHashMap<E>());
         }
     }
 
@@ -59,65 +75,172 @@ public class ConcurrentIndexedList<E> implements IndexedList<E> {
         return index / concurrencyLevel;
     }
 
+    private AbstractObjectIntMap<E> getIndexSegment(E element) {
+        int hash = element.hashCode();
+        // Spread the bits a bit, since the number of segments is typically small
+        hash ^= (hash >>> 20) ^ (hash >>> 12);
+        hash ^= (hash >>> 7) ^ (hash >>> 4);
+        return indexSegments.get(Math.abs(hash % concurrencyLevel));
+    }
+
     @Override
     public E get(int index) {
-        int segmentIndex = getSegmentIndex(index);
+        if (index < 0) {
+            return null;
+        }
+        List<E> segment = segments.get(getSegmentIndex(index));
         int indexInSegment = getIndexInSegment(index);
-        IndexedList<E> segment = segments.get(segmentIndex);
-        return segment.get(indexInSegment);
+        synchronized (segment) {
+            if (indexInSegment >= segment.size()) {
+                return null;
+            }
+            return segment.get(indexInSegment);
+        }
     }
 
     @Override
     public int add(E element) {
-        int index = nextIndex.incrementAndGet();
-        insert(index, element);
-        return index;
+        Preconditions.checkNotNull(element);
+        AbstractObjectIntMap<E> indexSegment = getIndexSegment(element);
+        synchronized (indexSegment) {
+            if (indexSegment.containsKey(element)) {
+                throw new DuplicateKeyException(element);
+            }
+            int index = nextIndex.incrementAndGet();
+            store(index, element);
+            indexSegment.put(element, index);
+            return index;
+        }
     }
 
     @Override
     public void insert(int index, E element) {
-        if (indexOf(element) != -1) {
-            throw new DuplicateKeyException(element);
+        Preconditions.checkArgument(index >= 0);
+        Preconditions.checkNotNull(element);
+        AbstractObjectIntMap<E> indexSegment = getIndexSegment(element);
+        E previous;
+        synchronized (indexSegment) {
+            if (indexSegment.containsKey(element)) {
+                throw new DuplicateKeyException(element);
+            }
+            previous = doSet(index, element, indexSegment);
         }
-        set(index, element);
+        unindex(previous, index);
     }
 
     @Override
     public void set(int index, E element) {
         Preconditions.checkArgument(index >= 0);
-        int segmentIndex = getSegmentIndex(index);
+        if (element == null) {
+            remove(index);
+            return;
+        }
+        AbstractObjectIntMap<E> indexSegment = getIndexSegment(element);
+        E previous;
+        synchronized (indexSegment) {
+            previous = doSet(index, element, indexSegment);
+        }
+        if (!element.equals(previous)) {
+            unindex(previous, index);
+        }
+    }
+
+    /**
+     * Stores and indexes an element, returning the element previously stored
+     * at the index. The caller must hold the lock for the index segment.
+     */
+    private E doSet(int index, E element, AbstractObjectIntMap<E> indexSegment) {
+        E previous = store(index, element);
+        indexSegment.put(element, index);
+        advanceNextIndex(index);
+        return previous;
+    }
+
+    private void advanceNextIndex(int index) {
+        int current = nextIndex.get();
+        while (current < index && !nextIndex.compareAndSet(current, index)) {
+            current = nextIndex.get();
+        }
+    }
+
+    private E store(int index, E element) {
+        List<E> segment = segments.get(getSegmentIndex(index));
         int indexInSegment = getIndexInSegment(index);
-        IndexedList<E> segment = segments.get(segmentIndex);
-        segment.set(indexInSegment, element);
+        synchronized (segment) {
+            for (int i = segment.size(); i <= indexInSegment; i++) {
+                segment.add(null);
+            }
+            E previous = segment.set(indexInSegment, element);
+            if (previous == null) {
+                size.increment();
+            }
+            return previous;
+        }
+    }
+
+    private void unindex(E element, int index) {
+        if (element == null) {
+            return;
+        }
+        AbstractObjectIntMap<E> indexSegment = getIndexSegment(element);
+        synchronized (indexSegment) {
+            if (indexSegment.containsKey(element) && indexSegment.get(element) == index) {
+                indexSegment.removeKey(element);
+            }
+        }
     }
 
     @Override
     public E remove(int index) {
-        int segmentIndex = getSegmentIndex(index);
+        Preconditions.checkArgument(index >= 0);
+        List<E> segment = segments.get(getSegmentIndex(index));
         int indexInSegment = getIndexInSegment(index);
-        IndexedList<E> segment = segments.get(segmentIndex);
-        return segment.remove(indexInSegment);
+        E element;
+        synchronized (segment) {
+            if (indexInSegment >= segment.size()) {
+                return null;
+            }
+            element = segment.set(indexInSegment, null);
+            if (element != null) {
+                size.decrement();
+            }
+        }
+        unindex(element, index);
+        return element;
     }
 
     @Override
     public int indexOf(E element) {
-        int segmentIndex = 0;
-        for (IndexedList<E> segment : segments) {
-            int index = segment.indexOf(element);
-            if (index >= 0) {
-                return index * concurrencyLevel + segmentIndex;
+        if (element == null) {
+            return -1;
+        }
+        AbstractObjectIntMap<E> indexSegment = getIndexSegment(element);
+        synchronized (indexSegment) {
+            if (indexSegment.containsKey(element)) {
+                return indexSegment.get(element);
             }
-            segmentIndex++;
+            return -1;
         }
-        return -1;
+    }
+
+    @Override
+    public int size() {
+        return size.intValue();
+    }
+
+    @Override
+    public int maxIndex() {
+        return nextIndex.get();
     }
 
     @Override
     public Iterable<E> iterable() {
         List<Iterable<E>> iterables = new ArrayList<Iterable<E>>(concurrencyLevel);
-        for (IndexedList<E> segment : segments) {
-            iterables.add(segment.iterable());
+        for (List<E> segment : segments) {
+            synchronized (segment) {
+                iterables.add(new ArrayList<E>(segment));
+            }
         }
-        return Iterables.concat(iterables);
+        return Iterables.filter(Iterables.concat(iterables), Predicates.<E> notNull());
     }
 }
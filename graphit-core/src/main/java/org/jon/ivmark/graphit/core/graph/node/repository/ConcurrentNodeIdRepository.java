@@ -17,7 +17,6 @@
 package org.jon.ivmark.graphit.core.graph.node.repository;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Iterables;
 import org.jon.ivmark.graphit.core.ConcurrencyConstants;
 import org.jon.ivmark.graphit.core.graph.node.NodeId;
 
@@ -74,8 +73,12 @@ public class ConcurrentNodeIdRepository implements NodeIdRepository {
 
     @Override
     public int size() {
-        // Very inefficient. TODO: Fix this.
-        return Iterables.size(getNodes());
+        return nodes.size();
+    }
+
+    @Override
+    public int getMaxNodeIndex() {
+        return nodes.maxIndex();
     }
 
     @Override
@@ -58,6 +58,17 @@ public interface IndexedList<E> {
      */
     int indexOf(E element);
 
+    /**
+     * Gets the number of (non null) elements in this list.
+     */
+    int size();
+
+    /**
+     * Gets the highest index that has been used, or -1 if nothing has been
+     * added.
+     */
+    int maxIndex();
+
     /**
      * Returns this instance as an Iterable. Note that iteration order is not
      * guaranteed to be the same as insertion order.
@@ -35,6 +35,7 @@ public class IndexedListImpl<E> implements IndexedList<E> {
 
     private final AbstractObjectIntMap<E> indexMap;
     private final List<E> list;
+    private int size = 0;
 
     /**
      * Creates a new instance.
@@ -76,6 +77,7 @@ public class IndexedListImpl<E> implements IndexedList<E> {
         synchronized (list) {
             index = list.size();
             list.add(element);
+            size++;
         }
         index(element, index);
         return index;
@@ -96,7 +98,12 @@ public class IndexedListImpl<E> implements IndexedList<E> {
             for (int i = list.size(); i <= index; i++) {
                 list.add(null);
             }
-            list.set(index, element);
+            E previous = list.set(index, element);
+            if (previous == null && element != null) {
+                size++;
+            } else if (previous != null && element == null) {
+                size--;
+            }
             index(element, index);
         }
     }
@@ -125,6 +132,20 @@ public class IndexedListImpl<E> implements IndexedList<E> {
         }
     }
 
+    @Override
+    public int size() {
+        synchronized (list) {
+            return size;
+        }
+    }
+
+    @Override
+    public int maxIndex() {
+        synchronized (list) {
+            return list.size() - 1;
+        }
+    }
+
     @Override
     public Iterable<E> iterable() {
         synchronized (list) {
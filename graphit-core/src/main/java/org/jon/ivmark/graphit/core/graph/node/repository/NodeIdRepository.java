@@ -62,6 +62,12 @@ public interface NodeIdRepository {
      */
     int size();
 
+    /**
+     * Gets the highest node index that has been used, or -1 if no nodes have
+     * been added. Nodes may have been removed from any index up to it.
+     */
+    int getMaxNodeIndex();
+
     /**
      * Returns all nodes currently in this repo.
      */
@@ -105,6 +105,11 @@ public class NodeIdRepositoryImpl implements NodeIdRepository {
         return nodeMap.size();
     }
 
+    @Override
+    public synchronized int getMaxNodeIndex() {
+        return nodes.size() - 1;
+    }
+
     @Override
     public synchronized Iterable<NodeId> getNodes() {
         List<NodeId> copy = new ArrayList<NodeId>(nodes);
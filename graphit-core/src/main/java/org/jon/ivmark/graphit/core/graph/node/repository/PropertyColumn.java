@@ -0,0 +1,336 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph.node.repository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The values of one property for all nodes of a type, stored in an array
+ * indexed by node index. The column type is decided by the first value set,
+ * values of other types make the table replace it with an {@link ObjectColumn}.
+ * Not thread safe.
+ *
+ * @author jon
+ *
+ */
+abstract class PropertyColumn {
+
+    private final BitSet present = new BitSet();
+
+    /**
+     * Creates a column suitable for storing the given value.
+     */
+    static PropertyColumn create(Object value) {
+        if (value instanceof Integer) {
+            return new IntColumn();
+        }
+        if (value instanceof Long) {
+            return new LongColumn();
+        }
+        if (value instanceof Float) {
+            return new FloatColumn();
+        }
+        if (value instanceof Double) {
+            return new DoubleColumn();
+        }
+        if (value instanceof Boolean) {
+            return new BooleanColumn();
+        }
+        if (value instanceof String) {
+            return new StringColumn();
+        }
+        return new ObjectColumn();
+    }
+
+    /**
+     * Checks if the node with the given index has a value in this column.
+     */
+    final boolean contains(int index) {
+        return present.get(index);
+    }
+
+    /**
+     * Checks if this column has no values.
+     */
+    final boolean isEmpty() {
+        return present.isEmpty();
+    }
+
+    /**
+     * Gets the index of the first node with a value at or after the given
+     * index, or -1 if there is none.
+     */
+    final int nextIndex(int fromIndex) {
+        return present.nextSetBit(fromIndex);
+    }
+
+    /**
+     * Gets the boxed value of a node, or null if there is none.
+     */
+    final Object get(int index) {
+        return contains(index) ? getValue(index) : null;
+    }
+
+    /**
+     * Sets the value of a node, which must be accepted by this column.
+     */
+    final void set(int index, Object value) {
+        setValue(index, value);
+        present.set(index);
+    }
+
+    /**
+     * Removes the value of a node.
+     */
+    final void remove(int index) {
+        if (contains(index)) {
+            present.clear(index);
+            clearValue(index);
+        }
+    }
+
+    /**
+     * Checks if the given value can be stored in this column.
+     */
+    abstract boolean accepts(Object value);
+
+    protected abstract Object getValue(int index);
+
+    protected abstract void setValue(int index, Object value);
+
+    protected void clearValue(int index) {
+        // Primitive values are simply overwritten
+    }
+
+    /**
+     * Gets a new length for an array which must hold the given index.
+     */
+    protected static int newLength(int length, int index) {
+        return Math.max(index + 1, length + (length >> 1) + 16);
+    }
+
+    /**
+     * A column of ints.
+     */
+    static final class IntColumn extends PropertyColumn {
+        private int[] values = new int[0];
+
+        @Override
+        boolean accepts(Object value) {
+            return value instanceof Integer;
+        }
+
+        int getInt(int index) {
+            return values[index];
+        }
+
+        @Override
+        protected Object getValue(int index) {
+            return values[index];
+        }
+
+        @Override
+        protected void setValue(int index, Object value) {
+            if (index >= values.length) {
+                values = Arrays.copyOf(values, newLength(values.length, index));
+            }
+            values[index] = (Integer) value;
+        }
+    }
+
+    /**
+     * A column of longs.
+     */
+    static final class LongColumn extends PropertyColumn {
+        private long[] values = new long[0];
+
+        @Override
+        boolean accepts(Object value) {
+            return value instanceof Long;
+        }
+
+        long getLong(int index) {
+            return values[index];
+        }
+
+        @Override
+        protected Object getValue(int index) {
+            return values[index];
+        }
+
+        @Override
+        protected void setValue(int index, Object value) {
+            if (index >= values.length) {
+                values = Arrays.copyOf(values, newLength(values.length, index));
+            }
+            values[index] = (Long) value;
+        }
+    }
+
+    /**
+     * A column of floats.
+     */
+    static final class FloatColumn extends PropertyColumn {
+        private float[] values = new float[0];
+
+        @Override
+        boolean accepts(Object value) {
+            return value instanceof Float;
+        }
+
+        float getFloat(int index) {
+            return values[index];
+        }
+
+        @Override
+        protected Object getValue(int index) {
+            return values[index];
+        }
+
+        @Override
+        protected void setValue(int index, Object value) {
+            if (index >= values.length) {
+                values = Arrays.copyOf(values, newLength(values.length, index));
+            }
+            values[index] = (Float) value;
+        }
+    }
+
+    /**
+     * A column of doubles.
+     */
+    static final class DoubleColumn extends PropertyColumn {
+        private double[] values = new double[0];
+
+        @Override
+        boolean accepts(Object value) {
+            return value instanceof Double;
+        }
+
+        double getDouble(int index) {
+            return values[index];
+        }
+
+        @Override
+        protected Object getValue(int index) {
+            return values[index];
+        }
+
+        @Override
+        protected void setValue(int index, Object value) {
+            if (index >= values.length) {
+                values = Arrays.copyOf(values, newLength(values.length, index));
+            }
+            values[index] = (Double) value;
+        }
+    }
+
+    /**
+     * A column of booleans, stored as bits.
+     */
+    static final class BooleanColumn extends PropertyColumn {
+        private final BitSet values = new BitSet();
+
+        @Override
+        boolean accepts(Object value) {
+            return value instanceof Boolean;
+        }
+
+        boolean getBoolean(int index) {
+            return values.get(index);
+        }
+
+        @Override
+        protected Object getValue(int index) {
+            return values.get(index);
+        }
+
+        @Override
+        protected void setValue(int index, Object value) {
+            values.set(index, (Boolean) value);
+        }
+    }
+
+    /**
+     * A column of dictionary encoded strings, storing each distinct string
+     * once. The dictionary is never shrunk.
+     */
+    static final class StringColumn extends PropertyColumn {
+        private final Map<String, Integer> codes = new HashMap<String, Integer>();
+        private final List<String> dictionary = new ArrayList<String>();
+        private int[] values = new int[0];
+
+        @Override
+        boolean accepts(Object value) {
+            return value instanceof String;
+        }
+
+        @Override
+        protected Object getValue(int index) {
+            return dictionary.get(values[index]);
+        }
+
+        @Override
+        protected void setValue(int index, Object value) {
+            if (index >= values.length) {
+                values = Arrays.copyOf(values, newLength(values.length, index));
+            }
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = dictionary.size();
+                dictionary.add((String) value);
+                codes.put((String) value, code);
+            }
+            values[index] = code;
+        }
+    }
+
+    /**
+     * A column of arbitrary, boxed, values.
+     */
+    static final class ObjectColumn extends PropertyColumn {
+        private Object[] values = new Object[0];
+
+        @Override
+        boolean accepts(Object value) {
+            return true;
+        }
+
+        @Override
+        protected Object getValue(int index) {
+            return values[index];
+        }
+
+        @Override
+        protected void setValue(int index, Object value) {
+            if (index >= values.length) {
+                values = Arrays.copyOf(values, newLength(values.length, index));
+            }
+            values[index] = value;
+        }
+
+        @Override
+        protected void clearValue(int index) {
+            values[index] = null;
+        }
+    }
+}
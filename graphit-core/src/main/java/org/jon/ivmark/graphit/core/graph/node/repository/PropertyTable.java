@@ -0,0 +1,298 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph.node.repository;
+
+import org.jon.ivmark.graphit.core.properties.repository.PropertiesUpdate;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The property columns of all nodes of a type, guarded by a read/write lock.
+ *
+ * @author jon
+ *
+ */
+final class PropertyTable {
+
+    private final Map<String, PropertyColumn> columns =
+        new LinkedHashMap<String, PropertyColumn>();
+    private final Lock readLock;
+    private final Lock writeLock;
+
+    PropertyTable() {
+        ReadWriteLock lock = new ReentrantReadWriteLock();
+        this.readLock = lock.readLock();
+        this.writeLock = lock.writeLock();
+    }
+
+    Object get(int index, String key) {
+        readLock.lock();
+        try {
+            PropertyColumn column = columns.get(key);
+            return column == null ? null : column.get(index);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    int getInt(int index, String key, int defaultValue) {
+        readLock.lock();
+        try {
+            PropertyColumn column = columns.get(key);
+            if (column == null || !column.contains(index)) {
+                return defaultValue;
+            }
+            if (column instanceof PropertyColumn.IntColumn) {
+                return ((PropertyColumn.IntColumn) column).getInt(index);
+            }
+            return ((Number) column.get(index)).intValue();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    long getLong(int index, String key, long defaultValue) {
+        readLock.lock();
+        try {
+            PropertyColumn column = columns.get(key);
+            if (column == null || !column.contains(index)) {
+                return defaultValue;
+            }
+            if (column instanceof PropertyColumn.LongColumn) {
+                return ((PropertyColumn.LongColumn) column).getLong(index);
+            }
+            if (column instanceof PropertyColumn.IntColumn) {
+                return ((PropertyColumn.IntColumn) column).getInt(index);
+            }
+            return ((Number) column.get(index)).longValue();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    float getFloat(int index, String key, float defaultValue) {
+        readLock.lock();
+        try {
+            PropertyColumn column = columns.get(key);
+            if (column == null || !column.contains(index)) {
+                return defaultValue;
+            }
+            if (column instanceof PropertyColumn.FloatColumn) {
+                return ((PropertyColumn.FloatColumn) column).getFloat(index);
+            }
+            if (column instanceof PropertyColumn.IntColumn) {
+                return ((PropertyColumn.IntColumn) column).getInt(index);
+            }
+            return ((Number) column.get(index)).floatValue();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    double getDouble(int index, String key, double defaultValue) {
+        readLock.lock();
+        try {
+            PropertyColumn column = columns.get(key);
+            if (column == null || !column.contains(index)) {
+                return defaultValue;
+            }
+            if (column instanceof PropertyColumn.DoubleColumn) {
+                return ((PropertyColumn.DoubleColumn) column).getDouble(index);
+            }
+            if (column instanceof PropertyColumn.FloatColumn) {
+                return ((PropertyColumn.FloatColumn) column).getFloat(index);
+            }
+            if (column instanceof PropertyColumn.IntColumn) {
+                return ((PropertyColumn.IntColumn) column).getInt(index);
+            }
+            return ((Number) column.get(index)).doubleValue();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    boolean getBoolean(int index, String key, boolean defaultValue) {
+        readLock.lock();
+        try {
+            PropertyColumn column = columns.get(key);
+            if (column == null || !column.contains(index)) {
+                return defaultValue;
+            }
+            if (column instanceof PropertyColumn.BooleanColumn) {
+                return ((PropertyColumn.BooleanColumn) column).getBoolean(index);
+            }
+            return (Boolean) column.get(index);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    boolean contains(int index, String key) {
+        readLock.lock();
+        try {
+            PropertyColumn column = columns.get(key);
+            return column != null && column.contains(index);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    Set<String> keys(int index) {
+        readLock.lock();
+        try {
+            Set<String> keys = new LinkedHashSet<String>();
+            for (Map.Entry<String, PropertyColumn> entry : columns.entrySet()) {
+                if (entry.getValue().contains(index)) {
+                    keys.add(entry.getKey());
+                }
+            }
+            return keys;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    int size(int index) {
+        readLock.lock();
+        try {
+            int size = 0;
+            for (PropertyColumn column : columns.values()) {
+                if (column.contains(index)) {
+                    size++;
+                }
+            }
+            return size;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    Map<String, Object> getRow(int index) {
+        readLock.lock();
+        try {
+            Map<String, Object> row = new HashMap<String, Object>();
+            for (Map.Entry<String, PropertyColumn> entry : columns.entrySet()) {
+                PropertyColumn column = entry.getValue();
+                if (column.contains(index)) {
+                    row.put(entry.getKey(), column.get(index));
+                }
+            }
+            return row;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    Object set(int index, String key, Object value) {
+        writeLock.lock();
+        try {
+            return doSet(index, key, value);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    void setRow(int index, Map<String, Object> row) {
+        writeLock.lock();
+        try {
+            doRemoveRow(index);
+            for (Map.Entry<String, Object> entry : row.entrySet()) {
+                doSet(index, entry.getKey(), entry.getValue());
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    void update(int index, PropertiesUpdate update) {
+        // The write lock is reentrant, so the view may be used while holding it
+        writeLock.lock();
+        try {
+            update.apply(new ColumnarProperties(this, index));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    Object remove(int index, String key) {
+        writeLock.lock();
+        try {
+            PropertyColumn column = columns.get(key);
+            if (column == null) {
+                return null;
+            }
+            Object previous = column.get(index);
+            column.remove(index);
+            if (column.isEmpty()) {
+                columns.remove(key);
+            }
+            return previous;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    void removeRow(int index) {
+        writeLock.lock();
+        try {
+            doRemoveRow(index);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private Object doSet(int index, String key, Object value) {
+        PropertyColumn column = columns.get(key);
+        if (column == null) {
+            column = PropertyColumn.create(value);
+            columns.put(key, column);
+        } else if (!column.accepts(value)) {
+            column = toObjectColumn(column);
+            columns.put(key, column);
+        }
+        Object previous = column.get(index);
+        column.set(index, value);
+        return previous;
+    }
+
+    private void doRemoveRow(int index) {
+        Iterator<PropertyColumn> it = columns.values().iterator();
+        while (it.hasNext()) {
+            PropertyColumn column = it.next();
+            column.remove(index);
+            if (column.isEmpty()) {
+                it.remove();
+            }
+        }
+    }
+
+    private static PropertyColumn toObjectColumn(PropertyColumn column) {
+        PropertyColumn objects = new PropertyColumn.ObjectColumn();
+        for (int i = column.nextIndex(0); i >= 0; i = column.nextIndex(i + 1)) {
+            objects.set(i, column.get(i));
+        }
+        return objects;
+    }
+}
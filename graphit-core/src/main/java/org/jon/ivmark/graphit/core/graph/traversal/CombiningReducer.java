@@ -0,0 +1,35 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph.traversal;
+
+import java.util.List;
+
+/**
+ * A {@link Reducer} which may reduce parts of an input separately and then
+ * combine the results, used when reducing a {@link ParallelTraversable}.
+ *
+ * @author jon
+ *
+ */
+public interface CombiningReducer<E, T> extends Reducer<E, T> {
+
+    /**
+     * Combines the results of reducing consecutive parts of an input into the
+     * result of reducing all of it.
+     */
+    T combine(List<T> results);
+}
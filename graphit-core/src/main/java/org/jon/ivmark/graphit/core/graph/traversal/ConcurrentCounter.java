@@ -0,0 +1,122 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph.traversal;
+
+import com.google.common.base.Preconditions;
+import org.apache.mahout.math.function.ObjectIntProcedure;
+
+/**
+ * A thread safe {@link Counter}, striped on the hash codes of the counted
+ * elements so that threads counting different elements rarely contend for
+ * the same lock. Prefer a {@link ConcurrentIntCounter} when counting ints,
+ * e.g. node indexes.
+ *
+ * @author jon
+ */
+public class ConcurrentCounter<E> {
+
+    private final Counter<E>[] stripes;
+    private final int shift;
+
+    /**
+     * Creates a new instance with four stripes per available processor.
+     */
+    public ConcurrentCounter() {
+        this(4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new instance with at least the given number of stripes.
+     */
+    public ConcurrentCounter(int concurrencyLevel) {
+        Preconditions.checkArgument(concurrencyLevel > 0, "Invalid concurrency level: " + concurrencyLevel);
+        int bits = 32 - Integer.numberOfLeadingZeros(concurrencyLevel - 1);
+        this.stripes = newStripes(1 << bits);
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Counter<E>();
+        }
+        this.shift = 32 - bits;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> Counter<E>[] newStripes(int size) {
+        // Safe since the array never leaves this class, and only ever holds
+        // Counter<E> instances
+        return (Counter<E>[]) new Counter<?>[size];
+    }
+
+    /**
+     * Gets the number of times this element occurred.
+     */
+    public int count(E element) {
+        Counter<E> stripe = stripe(element);
+        synchronized (stripe) {
+            return stripe.count(element);
+        }
+    }
+
+    /**
+     * Adds an element.
+     */
+    public void add(E element) {
+        add(element, 1);
+    }
+
+    /**
+     * Adds an element the given number of times.
+     */
+    public void add(E element, int count) {
+        Counter<E> stripe = stripe(element);
+        synchronized (stripe) {
+            stripe.add(element, count);
+        }
+    }
+
+    /**
+     * Adds all elements counted by another counter, which must not be
+     * modified concurrently.
+     */
+    public void addAll(Counter<E> counter) {
+        counter.forEach(new ObjectIntProcedure<E>() {
+
+            @Override
+            public boolean apply(E element, int count) {
+                add(element, count);
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Merges the stripes into a new counter. Elements added while merging may
+     * or may not be included.
+     */
+    public Counter<E> toCounter() {
+        Counter<E> counter = new Counter<E>();
+        for (Counter<E> stripe : stripes) {
+            synchronized (stripe) {
+                counter.addAll(stripe);
+            }
+        }
+        return counter;
+    }
+
+    private Counter<E> stripe(E element) {
+        int hash = element.hashCode() * 0x9E3779B9;
+        return shift == 32 ? stripes[0] : stripes[hash >>> shift];
+    }
+}
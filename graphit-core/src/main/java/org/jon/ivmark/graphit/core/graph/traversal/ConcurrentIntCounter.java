@@ -0,0 +1,117 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph.traversal;
+
+import com.google.common.base.Preconditions;
+import org.apache.mahout.math.function.IntIntProcedure;
+
+/**
+ * A thread safe {@link IntCounter}, striped on the counted elements so that
+ * threads counting different elements rarely contend for the same lock.
+ *
+ * <p>Threads counting many elements should preferably count into counters of
+ * their own and add them to this one, or to each other, when done.</p>
+ *
+ * @author jon
+ */
+public class ConcurrentIntCounter {
+
+    private final IntCounter[] stripes;
+    private final int shift;
+
+    /**
+     * Creates a new instance with four stripes per available processor.
+     */
+    public ConcurrentIntCounter() {
+        this(4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new instance with at least the given number of stripes.
+     */
+    public ConcurrentIntCounter(int concurrencyLevel) {
+        Preconditions.checkArgument(concurrencyLevel > 0, "Invalid concurrency level: " + concurrencyLevel);
+        int bits = 32 - Integer.numberOfLeadingZeros(concurrencyLevel - 1);
+        this.stripes = new IntCounter[1 << bits];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new IntCounter();
+        }
+        // Stripes are picked by the high bits of the mixed element
+        this.shift = 32 - bits;
+    }
+
+    /**
+     * Gets the number of times this element occurred.
+     */
+    public int count(int element) {
+        IntCounter stripe = stripe(element);
+        synchronized (stripe) {
+            return stripe.count(element);
+        }
+    }
+
+    /**
+     * Adds an element.
+     */
+    public void add(int element) {
+        add(element, 1);
+    }
+
+    /**
+     * Adds an element the given number of times.
+     */
+    public void add(int element, int count) {
+        IntCounter stripe = stripe(element);
+        synchronized (stripe) {
+            stripe.add(element, count);
+        }
+    }
+
+    /**
+     * Adds all elements counted by another counter, which must not be
+     * modified concurrently.
+     */
+    public void addAll(IntCounter counter) {
+        counter.forEach(new IntIntProcedure() {
+
+            @Override
+            public boolean apply(int element, int count) {
+                add(element, count);
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Merges the stripes into a new counter. Elements added while merging may
+     * or may not be included.
+     */
+    public IntCounter toCounter() {
+        IntCounter counter = new IntCounter();
+        for (IntCounter stripe : stripes) {
+            synchronized (stripe) {
+                counter.addAll(stripe);
+            }
+        }
+        return counter;
+    }
+
+    private IntCounter stripe(int element) {
+        int hash = element * 0x9E3779B9;
+        return shift == 32 ? stripes[0] : stripes[hash >>> shift];
+    }
+}
@@ -16,10 +16,9 @@
 
 package org.jon.ivmark.graphit.core.graph.traversal;
 
-import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
-import java.util.TreeSet;
+import java.util.List;
 
 /**
  * Describes the sort order for iterating counted elements.
@@ -28,60 +27,71 @@ import java.util.TreeSet;
  */
 public enum CountSortOrder {
     /**
-     * Keeps insertion order when collection elements into a collection.
+     * Keeps the order in which the counter iterates over its elements.
      */
     INSERTION_ORDER {
         @Override
-        protected <E> Collection<CountedElement<E>> newCollection() {
-            return new ArrayList<CountedElement<E>>();
+        protected <E> Comparator<CountedElement<E>> comparator() {
+            return null;
         }
     },
     /**
-     * Keeps elements sorted by ascending count.
+     * Sorts elements by ascending count.
      */
     ASCENDING_COUNT {
         @Override
-        protected <E> Collection<CountedElement<E>> newCollection() {
-            Comparator<CountedElement<E>> comparator =
-                new Comparator<CountedElement<E>>() {
+        protected <E> Comparator<CountedElement<E>> comparator() {
+            return new Comparator<CountedElement<E>>() {
 
-                    @Override
-                    public int compare(CountedElement<E> e1, CountedElement<E> e2) {
-                        return compareElements(e1, e2);
-                    }
-                };
-            return new TreeSet<CountedElement<E>>(comparator);
+                @Override
+                public int compare(CountedElement<E> e1, CountedElement<E> e2) {
+                    return compareElements(e1, e2);
+                }
+            };
         }
     },
     /**
-     * Keeps elements sorted by descending count.
+     * Sorts elements by descending count.
      */
     DESCENDING_COUNT {
         @Override
-        protected <E> Collection<CountedElement<E>> newCollection() {
-            Comparator<CountedElement<E>> comparator =
-                new Comparator<CountedElement<E>>() {
+        protected <E> Comparator<CountedElement<E>> comparator() {
+            return new Comparator<CountedElement<E>>() {
 
-                    @Override
-                    public int compare(CountedElement<E> e1, CountedElement<E> e2) {
-                        return compareElements(e2, e1);
-                    }
-                };
-            return new TreeSet<CountedElement<E>>(comparator);
+                @Override
+                public int compare(CountedElement<E> e1, CountedElement<E> e2) {
+                    return compareElements(e2, e1);
+                }
+            };
         }
     };
 
     /**
-     * Gets an empty collection, possibly one that will be kept sorted.
+     * Gets a comparator of counted elements, or null if they should not be
+     * sorted.
      */
-    protected abstract <E> Collection<CountedElement<E>> newCollection();
+    protected abstract <E> Comparator<CountedElement<E>> comparator();
 
     /**
-     * Compares two counted elements.
+     * Sorts counted elements, which are kept in iteration order when their
+     * counts are equal and they are not comparable.
+     */
+    protected <E> List<CountedElement<E>> sort(List<CountedElement<E>> elements) {
+        Comparator<CountedElement<E>> comparator = comparator();
+        if (comparator != null) {
+            // A stable sort
+            Collections.sort(elements, comparator);
+        }
+        return elements;
+    }
+
+    /**
+     * Compares two counted elements by count and then, if they are
+     * comparable, by element.
      */
     @SuppressWarnings("unchecked")
     protected <E> int compareElements(CountedElement<E> e1, CountedElement<E> e2) {
-        int comp = e1.getCount() - e2.getCount();
+        int comp = compareCounts(e1.getCount(), e2.getCount());
         if (comp != 0) {
             return comp;
         }
@@ -89,6 +99,10 @@ public enum CountSortOrder {
         if (elem1 instanceof Comparable) {
             return ((Comparable<E>) elem1).compareTo(e2.getElement());
         }
-        return -1;
+        return 0;
+    }
+
+    private static int compareCounts(int c1, int c2) {
+        return c1 < c2 ? -1 : (c1 == c2 ? 0 : 1);
     }
-}
\ No newline at end of file
+}
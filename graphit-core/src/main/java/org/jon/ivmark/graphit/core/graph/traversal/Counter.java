@@ -21,7 +21,8 @@ import org.apache.mahout.math.function.ObjectIntProcedure;
 import org.apache.mahout.math.map.AbstractObjectIntMap;
 import org.apache.mahout.math.map.OpenObjectIntHashMap;
 
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  *
@@ -56,12 +57,41 @@ public class Counter<E> {
         map.adjustOrPutValue(element, 1, 1);
     }
 
+    /**
+     * Adds an element the given number of times.
+     */
+    public void add(E element, int count) {
+        map.adjustOrPutValue(element, count, count);
+    }
+
+    /**
+     * Adds all elements counted by another counter.
+     */
+    public void addAll(Counter<E> counter) {
+        counter.forEach(new ObjectIntProcedure<E>() {
+
+            @Override
+            public boolean apply(E element, int count) {
+                add(element, count);
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Applies a procedure to each element and its count, until it returns
+     * false.
+     */
+    public boolean forEach(ObjectIntProcedure<E> procedure) {
+        return map.forEachPair(procedure);
+    }
+
     /**
      * Gets an iterable of all counted elements.
      */
     public Iterable<CountedElement<E>> iterable(CountSortOrder sortOrder) {
         Preconditions.checkNotNull(sortOrder);
-        final Collection<CountedElement<E>> res = sortOrder.newCollection();
+        final List<CountedElement<E>> res = new ArrayList<CountedElement<E>>(map.size());
 
         map.forEachPair(new ObjectIntProcedure<E>() {
 
@@ -71,6 +101,26 @@ public class Counter<E> {
                 return true;
             }
         });
-        return res;
+        return sortOrder.sort(res);
+    }
+
+    /**
+     * Gets the k elements with the highest counts, in the same order as
+     * iterating in {@link CountSortOrder#DESCENDING_COUNT} order, without
+     * sorting all elements.
+     */
+    public List<CountedElement<E>> topK(int k) {
+        final TopK<CountedElement<E>> topK =
+            new TopK<CountedElement<E>>(Math.min(k, map.size()),
+                                        CountSortOrder.ASCENDING_COUNT.<E> comparator());
+        map.forEachPair(new ObjectIntProcedure<E>() {
+
+            @Override
+            public boolean apply(E element, int count) {
+                topK.offer(new CountedElement<E>(element, count));
+                return true;
+            }
+        });
+        return topK.toList();
     }
 }
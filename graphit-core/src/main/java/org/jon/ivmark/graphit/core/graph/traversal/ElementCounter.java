@@ -16,14 +16,17 @@
 
 package org.jon.ivmark.graphit.core.graph.traversal;
 
+import java.util.List;
+
 /**
  * A {@link Reducer} that counts the number of times each distinct element
- * occurs in an iterable.
+ * occurs in an iterable. Counters of parts of an iterable are combined by
+ * adding their counts.
  * 
  * @author jon
  * 
  */
-public class ElementCounter<E> implements Reducer<E, Counter<E>> {
+public class ElementCounter<E> implements CombiningReducer<E, Counter<E>> {
 
     @Override
     public Counter<E> reduce(Iterable<E> input) {
@@ -33,4 +36,13 @@ public class ElementCounter<E> implements Reducer<E, Counter<E>> {
         }
         return counter;
     }
+
+    @Override
+    public Counter<E> combine(List<Counter<E>> results) {
+        Counter<E> counter = new Counter<E>();
+        for (Counter<E> result : results) {
+            counter.addAll(result);
+        }
+        return counter;
+    }
 }
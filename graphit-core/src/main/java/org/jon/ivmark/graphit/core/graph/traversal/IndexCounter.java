@@ -0,0 +1,54 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph.traversal;
+
+import org.jon.ivmark.graphit.core.graph.entity.GraphEntity;
+
+import java.util.List;
+
+/**
+ * A {@link Reducer} that counts the number of times each distinct entity,
+ * e.g. node, occurs in an iterable by its index. When reducing a
+ * {@link ParallelTraversable}, each partition is counted separately and the
+ * partial counts are merged.
+ *
+ * @author jon
+ *
+ */
+public class IndexCounter<E extends GraphEntity<?>> implements CombiningReducer<E, IntCounter> {
+
+    @Override
+    public IntCounter reduce(Iterable<E> input) {
+        IntCounter counter = new IntCounter();
+        for (E entity : input) {
+            counter.add(entity.getIndex());
+        }
+        return counter;
+    }
+
+    @Override
+    public IntCounter combine(List<IntCounter> results) {
+        if (results.size() == 1) {
+            return results.get(0);
+        }
+        IntCounter counter = new IntCounter();
+        for (IntCounter result : results) {
+            counter.addAll(result);
+        }
+        return counter;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph.traversal;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * An iterable over the elements at a range of indexes, e.g. node indexes,
+ * which is split into sub ranges. The elements at each index are looked up
+ * while iterating.
+ *
+ * @author jon
+ *
+ */
+public abstract class IndexRangeIterable<E> implements SplittableIterable<E> {
+
+    private final int fromIndex;
+    private final int toIndex;
+
+    /**
+     * Creates an iterable over the indexes from fromIndex, inclusive, to
+     * toIndex, exclusive.
+     */
+    protected IndexRangeIterable(int fromIndex, int toIndex) {
+        Preconditions.checkArgument(fromIndex >= 0 && fromIndex <= toIndex,
+                                    "Invalid range: [" + fromIndex + ", " + toIndex + ")");
+        this.fromIndex = fromIndex;
+        this.toIndex = toIndex;
+    }
+
+    /**
+     * Gets the elements at an index, or null if there are none.
+     */
+    protected abstract Iterator<E> elementsAt(int index);
+
+    @Override
+    public Iterator<E> iterator() {
+        return iterator(fromIndex, toIndex);
+    }
+
+    @Override
+    public List<Iterable<E>> split(int parts) {
+        Preconditions.checkArgument(parts > 0, "Invalid number of parts: " + parts);
+        int size = toIndex - fromIndex;
+        int partSize = Math.max(1, (size + parts - 1) / parts);
+        List<Iterable<E>> result = new ArrayList<Iterable<E>>(parts);
+        for (int from = fromIndex; from < toIndex; from += partSize) {
+            final int partFrom = from;
+            final int partTo = Math.min(from + partSize, toIndex);
+            result.add(new Iterable<E>() {
+
+                @Override
+                public Iterator<E> iterator() {
+                    return IndexRangeIterable.this.iterator(partFrom, partTo);
+                }
+            });
+        }
+        return result;
+    }
+
+    private Iterator<E> iterator(final int from, final int to) {
+        return new AbstractIterator<E>() {
+            private int index = from;
+            private Iterator<E> elements;
+
+            @Override
+            protected E computeNext() {
+                while (elements == null || !elements.hasNext()) {
+                    if (index >= to) {
+                        return endOfData();
+                    }
+                    elements = elementsAt(index++);
+                }
+                return elements.next();
+            }
+        };
+    }
+}
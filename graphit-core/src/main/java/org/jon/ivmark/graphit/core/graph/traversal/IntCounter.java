@@ -0,0 +1,205 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph.traversal;
+
+import com.google.common.base.Preconditions;
+import org.apache.mahout.math.function.IntIntProcedure;
+import org.apache.mahout.math.list.IntArrayList;
+import org.apache.mahout.math.map.OpenIntIntHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A {@link Counter} of ints, e.g. node indexes, which are counted without
+ * being boxed. Not thread safe, see {@link ConcurrentIntCounter}.
+ *
+ * @author jon
+ */
+public class IntCounter {
+
+    private final OpenIntIntHashMap map;
+
+    /**
+     * Creates a new empty instance.
+     */
+    public IntCounter() {
+        this.map = new OpenIntIntHashMap();
+    }
+
+    /**
+     * Gets the number of times this element occurred.
+     */
+    public int count(int element) {
+        return map.get(element);
+    }
+
+    /**
+     * Adds an element.
+     */
+    public void add(int element) {
+        map.adjustOrPutValue(element, 1, 1);
+    }
+
+    /**
+     * Adds an element the given number of times.
+     */
+    public void add(int element, int count) {
+        map.adjustOrPutValue(element, count, count);
+    }
+
+    /**
+     * Adds all elements counted by another counter.
+     */
+    public void addAll(IntCounter counter) {
+        counter.forEach(new IntIntProcedure() {
+
+            @Override
+            public boolean apply(int element, int count) {
+                add(element, count);
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Gets the number of distinct elements.
+     */
+    public int size() {
+        return map.size();
+    }
+
+    /**
+     * Fills the given lists with all elements, in ascending order, and their
+     * counts.
+     */
+    public void pairsSortedByElement(IntArrayList elements, IntArrayList counts) {
+        map.pairsSortedByKey(elements, counts);
+    }
+
+    /**
+     * Applies a procedure to each element and its count, until it returns
+     * false.
+     */
+    public boolean forEach(IntIntProcedure procedure) {
+        return map.forEachPair(procedure);
+    }
+
+    /**
+     * Gets an iterable of all counted elements.
+     */
+    public Iterable<CountedElement<Integer>> iterable(CountSortOrder sortOrder) {
+        Preconditions.checkNotNull(sortOrder);
+        final List<CountedElement<Integer>> res = new ArrayList<CountedElement<Integer>>(map.size());
+
+        map.forEachPair(new IntIntProcedure() {
+
+            @Override
+            public boolean apply(int element, int count) {
+                res.add(new CountedElement<Integer>(element, count));
+                return true;
+            }
+        });
+        return sortOrder.sort(res);
+    }
+
+    /**
+     * Gets the k elements with the highest counts, in the same order as
+     * iterating in {@link CountSortOrder#DESCENDING_COUNT} order. Uses a heap
+     * of k primitive longs, each a count and an element, rather than sorting
+     * all elements.
+     */
+    public List<CountedElement<Integer>> topK(int k) {
+        Preconditions.checkArgument(k >= 0, "Invalid k: " + k);
+        final long[] heap = new long[Math.min(k, map.size())];
+        final int[] size = new int[1];
+        map.forEachPair(new IntIntProcedure() {
+
+            @Override
+            public boolean apply(int element, int count) {
+                long key = key(element, count);
+                if (size[0] < heap.length) {
+                    siftUp(heap, size[0]++, key);
+                } else if (heap.length > 0 && key > heap[0]) {
+                    siftDown(heap, heap.length, key);
+                }
+                return true;
+            }
+        });
+        long[] keys = Arrays.copyOf(heap, size[0]);
+        Arrays.sort(keys);
+        List<CountedElement<Integer>> res = new ArrayList<CountedElement<Integer>>(keys.length);
+        for (int i = keys.length - 1; i >= 0; i--) {
+            res.add(new CountedElement<Integer>(element(keys[i]), count(keys[i])));
+        }
+        return res;
+    }
+
+    /**
+     * Packs a count and an element into a key ordered by count and then by
+     * element.
+     */
+    private static long key(int element, int count) {
+        return ((long) count << 32) | ((element ^ Integer.MIN_VALUE) & 0xFFFFFFFFL);
+    }
+
+    private static int element(long key) {
+        return (int) key ^ Integer.MIN_VALUE;
+    }
+
+    private static int count(long key) {
+        return (int) (key >> 32);
+    }
+
+    /**
+     * Inserts a key at the end of a min heap.
+     */
+    private static void siftUp(long[] heap, int i, long key) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] <= key) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = key;
+    }
+
+    /**
+     * Replaces the smallest key of a min heap.
+     */
+    private static void siftDown(long[] heap, int size, long key) {
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (heap[child] >= key) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = key;
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph.traversal;
+
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Predicate;
+import com.google.common.collect.Iterables;
+import org.jon.ivmark.graphit.core.graph.exception.GraphException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A {@link Traversable} split into partitions, where filter, transform,
+ * unique, reduce, size and asList process the partitions on a pool of
+ * threads. Filters and transformers are lazy, as in a sequential traversable,
+ * and must be thread safe.
+ *
+ * <p>The partitions are kept in order, so that the elements of all other
+ * operations, e.g. iterating, head and forEach, are traversed sequentially in
+ * the same order as the source.</p>
+ *
+ * <p>Each parallel operation runs on a pool of its own which is shut down when
+ * it is done, so parallel operations may be nested.</p>
+ *
+ * @author jon
+ *
+ */
+public class ParallelTraversable<E> extends Traversable<E> {
+
+    private final List<Iterable<E>> partitions;
+    private final int parallelism;
+
+    /**
+     * Creates a new instance traversing the provided partitions, in order,
+     * using at most the given number of threads.
+     */
+    public ParallelTraversable(List<Iterable<E>> partitions, int parallelism) {
+        super(Iterables.concat(partitions));
+        Preconditions.checkArgument(parallelism > 0, "Invalid parallelism: " + parallelism);
+        this.partitions = partitions;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Splits an iterable into partitions. Splittable iterables and lists are
+     * split in the given number of parts, other iterables are kept as a single
+     * partition.
+     */
+    static <E> List<Iterable<E>> split(Iterable<E> iterable, int parts) {
+        Preconditions.checkArgument(parts > 0, "Invalid parallelism: " + parts);
+        if (iterable instanceof SplittableIterable) {
+            return ((SplittableIterable<E>) iterable).split(parts);
+        }
+        if (iterable instanceof List) {
+            List<E> list = (List<E>) iterable;
+            int partSize = Math.max(1, (list.size() + parts - 1) / parts);
+            List<Iterable<E>> result = new ArrayList<Iterable<E>>(parts);
+            for (int from = 0; from < list.size(); from += partSize) {
+                result.add(list.subList(from, Math.min(from + partSize, list.size())));
+            }
+            return result;
+        }
+        return Collections.singletonList(iterable);
+    }
+
+    /**
+     * Gets the maximum number of threads used.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    @Override
+    public ParallelTraversable<E> parallel(int parallelism) {
+        if (parallelism == this.parallelism) {
+            return this;
+        }
+        return new ParallelTraversable<E>(partitions, parallelism);
+    }
+
+    @Override
+    public Traversable<E> sequential() {
+        return new Traversable<E>(Iterables.concat(partitions));
+    }
+
+    @Override
+    public ParallelTraversable<E> filter(Predicate<E> filter) {
+        List<Iterable<E>> filtered = new ArrayList<Iterable<E>>(partitions.size());
+        for (Iterable<E> partition : partitions) {
+            filtered.add(Iterables.filter(partition, filter));
+        }
+        return new ParallelTraversable<E>(filtered, parallelism);
+    }
+
+    @Override
+    public <T> ParallelTraversable<T> transform(Function<E, T> transformer) {
+        List<Iterable<T>> transformed = new ArrayList<Iterable<T>>(partitions.size());
+        for (Iterable<E> partition : partitions) {
+            transformed.add(Iterables.transform(partition, transformer));
+        }
+        return new ParallelTraversable<T>(transformed, parallelism);
+    }
+
+    /**
+     * Returns a new instance discarding all duplicate elements, keeping the
+     * first occurrence of each. Unlike the sequential version, this traverses
+     * all elements before returning.
+     */
+    @Override
+    public ParallelTraversable<E> unique() {
+        List<Set<E>> partitionElements = invokeAll(new PartitionTask<Set<E>>() {
+
+            @Override
+            Set<E> process(Iterable<E> partition) {
+                Set<E> elements = new LinkedHashSet<E>();
+                Iterables.addAll(elements, partition);
+                return elements;
+            }
+        });
+        Set<E> unique = new LinkedHashSet<E>();
+        for (Set<E> elements : partitionElements) {
+            unique.addAll(elements);
+        }
+        return new ParallelTraversable<E>(split(new ArrayList<E>(unique), parallelism), parallelism);
+    }
+
+    /**
+     * Reduces this Traversable. A {@link CombiningReducer} reduces each
+     * partition in parallel and combines the results, any other reducer
+     * reduces all elements after they have been traversed in parallel.
+     */
+    @Override
+    public <T> T reduce(final Reducer<E, T> reducer) {
+        if (!(reducer instanceof CombiningReducer)) {
+            return reducer.reduce(asList());
+        }
+        List<T> results = invokeAll(new PartitionTask<T>() {
+
+            @Override
+            T process(Iterable<E> partition) {
+                return reducer.reduce(partition);
+            }
+        });
+        return ((CombiningReducer<E, T>) reducer).combine(results);
+    }
+
+    /**
+     * Returns a new instance including the k greatest elements by the
+     * comparator. The top k of each partition are selected in parallel and
+     * then merged in partition order, so equal elements keep their order.
+     */
+    @Override
+    public Traversable<E> topK(final int k, final Comparator<? super E> comparator) {
+        TopK<E> topK = new TopK<E>(k, comparator);
+        for (List<E> partitionTopK : invokeAll(new PartitionTask<List<E>>() {
+
+            @Override
+            List<E> process(Iterable<E> partition) {
+                return new TopK<E>(k, comparator).offerAll(partition).toList();
+            }
+        })) {
+            topK.offerAll(partitionTopK);
+        }
+        return new Traversable<E>(topK.toList());
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Integer partitionSize : invokeAll(new PartitionTask<Integer>() {
+
+            @Override
+            Integer process(Iterable<E> partition) {
+                return Iterables.size(partition);
+            }
+        })) {
+            size += partitionSize;
+        }
+        return size;
+    }
+
+    @Override
+    public List<E> asList() {
+        List<E> res = new ArrayList<E>();
+        for (List<E> elements : invokeAll(new PartitionTask<List<E>>() {
+
+            @Override
+            List<E> process(Iterable<E> partition) {
+                List<E> elements = new ArrayList<E>();
+                Iterables.addAll(elements, partition);
+                return elements;
+            }
+        })) {
+            res.addAll(elements);
+        }
+        return res;
+    }
+
+    /**
+     * Processes all partitions and gets the results in partition order.
+     */
+    private <T> List<T> invokeAll(PartitionTask<T> task) {
+        if (partitions.size() <= 1 || parallelism == 1) {
+            List<T> results = new ArrayList<T>(partitions.size());
+            for (Iterable<E> partition : partitions) {
+                results.add(task.process(partition));
+            }
+            return results;
+        }
+        List<Callable<T>> tasks = new ArrayList<Callable<T>>(partitions.size());
+        for (Iterable<E> partition : partitions) {
+            tasks.add(task.callable(partition));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, tasks.size()));
+        try {
+            List<T> results = new ArrayList<T>(tasks.size());
+            for (Future<T> future : executor.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GraphException("Interrupted while traversing partitions", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new GraphException("Failed to traverse partition", cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Processes one partition.
+     */
+    private abstract class PartitionTask<T> {
+
+        abstract T process(Iterable<E> partition);
+
+        Callable<T> callable(final Iterable<E> partition) {
+            return new Callable<T>() {
+
+                @Override
+                public T call() {
+                    return process(partition);
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph.traversal;
+
+import java.util.List;
+
+/**
+ * An iterable which may be split into parts to be iterated by different
+ * threads.
+ *
+ * @author jon
+ *
+ */
+public interface SplittableIterable<E> extends Iterable<E> {
+
+    /**
+     * Splits this iterable into at most the given number of parts. Iterating
+     * over the parts in order gives the same elements, in the same order, as
+     * iterating over this iterable.
+     */
+    List<Iterable<E>> split(int parts);
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph.traversal;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Keeps the k greatest of the offered elements in a bounded binary min heap,
+ * using O(k) memory and O(log k) time per element. Elements comparing equal
+ * are ranked by the order in which they were offered, earlier first.
+ *
+ * @author jon
+ *
+ */
+final class TopK<E> {
+
+    private final Comparator<? super E> comparator;
+    private final Object[] elements;
+    private final long[] sequences;
+    private int size;
+    private long sequence;
+
+    /**
+     * Creates a new instance keeping at most k elements.
+     */
+    TopK(int k, Comparator<? super E> comparator) {
+        Preconditions.checkArgument(k >= 0, "Invalid k: " + k);
+        Preconditions.checkNotNull(comparator, "Comparator is mandatory.");
+        this.comparator = comparator;
+        this.elements = new Object[k];
+        this.sequences = new long[k];
+    }
+
+    /**
+     * Offers all elements of an iterable, in order.
+     */
+    TopK<E> offerAll(Iterable<? extends E> iterable) {
+        for (E element : iterable) {
+            offer(element);
+        }
+        return this;
+    }
+
+    /**
+     * Offers an element, which is kept if it is among the k greatest so far.
+     */
+    void offer(E element) {
+        long seq = sequence++;
+        if (size < elements.length) {
+            elements[size] = element;
+            sequences[size] = seq;
+            siftUp(size++);
+        } else if (size > 0 && rank(element(0), sequences[0], element, seq) < 0) {
+            elements[0] = element;
+            sequences[0] = seq;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Gets the kept elements, greatest first.
+     */
+    List<E> toList() {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+
+            @Override
+            public int compare(Integer i, Integer j) {
+                return rank(j, i);
+            }
+        });
+        List<E> res = new ArrayList<E>(size);
+        for (Integer i : order) {
+            res.add(element(i));
+        }
+        return res;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (rank(i, parent) >= 0) {
+                break;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && rank(child + 1, child) < 0) {
+                child++;
+            }
+            if (rank(child, i) >= 0) {
+                break;
+            }
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    private int rank(int i, int j) {
+        return rank(element(i), sequences[i], element(j), sequences[j]);
+    }
+
+    /**
+     * Compares the rank of two elements, where an element offered earlier
+     * ranks higher than an equal one offered later.
+     */
+    private int rank(E e1, long seq1, E e2, long seq2) {
+        int comp = comparator.compare(e1, e2);
+        if (comp != 0) {
+            return comp;
+        }
+        return seq1 < seq2 ? 1 : (seq1 == seq2 ? 0 : -1);
+    }
+
+    private void swap(int i, int j) {
+        Object element = elements[i];
+        elements[i] = elements[j];
+        elements[j] = element;
+        long seq = sequences[i];
+        sequences[i] = sequences[j];
+        sequences[j] = seq;
+    }
+
+    @SuppressWarnings("unchecked")
+    private E element(int i) {
+        return (E) elements[i];
+    }
+}
@@ -68,6 +68,32 @@ public class Traversable<E> implements Iterable<E> {
         return iterable.iterator();
     }
 
+    /**
+     * Returns a parallel instance using one thread per available processor.
+     *
+     * @see #parallel(int)
+     */
+    public ParallelTraversable<E> parallel() {
+        return parallel(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Returns a parallel instance using at most the given number of threads.
+     * Only splittable iterables, e.g. the nodes and edges of a graph, and lists
+     * are split, so this should be called before filtering or transforming.
+     */
+    public ParallelTraversable<E> parallel(int parallelism) {
+        return new ParallelTraversable<E>(ParallelTraversable.split(iterable, parallelism), parallelism);
+    }
+
+    /**
+     * Returns an instance where all operations are performed on the calling
+     * thread.
+     */
+    public Traversable<E> sequential() {
+        return this;
+    }
+
     /**
      * Returns a new instance only including the first 'limit' number of elements.
      */
@@ -168,6 +194,16 @@ public class Traversable<E> implements Iterable<E> {
         return res;
     }
 
+    /**
+     * Returns a new instance including the k greatest elements by the
+     * comparator, greatest first, where equal elements keep their order.
+     * Runs in O(n log k) time using O(k) memory, rather than sorting all
+     * elements.
+     */
+    public Traversable<E> topK(int k, Comparator<? super E> comparator) {
+        return create(new TopK<E>(k, comparator).offerAll(iterable).toList());
+    }
+
     public Collection<E> asSortedCollection(Comparator<E> comparator) {
         TreeMultiset<E> res = TreeMultiset.create(comparator);
         for (E element : iterable) {
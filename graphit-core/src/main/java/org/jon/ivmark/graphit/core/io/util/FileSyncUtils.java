@@ -0,0 +1,103 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.io.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.channels.FileChannel;
+
+/**
+ * Forces files, and the directory entries pointing to them, to disk.
+ *
+ * @author jon
+ */
+public final class FileSyncUtils {
+
+    // Directories can only be opened through java.nio.file, which is looked
+    // up reflectively since this code must also run on java 6
+    private static final Method TO_PATH;
+    private static final Method OPEN_CHANNEL;
+    private static final Object READ_OPTIONS;
+
+    static {
+        Method toPath = null;
+        Method open = null;
+        Object options = null;
+        try {
+            Class<?> pathClass = Class.forName("java.nio.file.Path");
+            Class<?> optionClass = Class.forName("java.nio.file.OpenOption");
+            Class<?> standardOptionClass = Class.forName("java.nio.file.StandardOpenOption");
+            toPath = File.class.getMethod("toPath");
+            open = FileChannel.class.getMethod(
+                "open", pathClass, Array.newInstance(optionClass, 0).getClass());
+            options = Array.newInstance(optionClass, 1);
+            Array.set(options, 0, standardOptionClass.getField("READ").get(null));
+        } catch (Exception e) {
+            toPath = null;
+            open = null;
+        }
+        TO_PATH = toPath;
+        OPEN_CHANNEL = open;
+        READ_OPTIONS = options;
+    }
+
+    private FileSyncUtils() {}
+
+    /**
+     * Forces the contents of a file, written through any stream, to disk.
+     */
+    public static void syncFile(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.getChannel().force(true);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Forces the entries of a directory to disk, making files created, renamed
+     * or deleted in it durable. Does nothing on java 6, and on platforms where
+     * directories cannot be opened, e.g. windows.
+     */
+    public static void syncDir(File dir) throws IOException {
+        if (OPEN_CHANNEL == null) {
+            return;
+        }
+        FileChannel channel;
+        try {
+            channel = (FileChannel) OPEN_CHANNEL.invoke(null, TO_PATH.invoke(dir), READ_OPTIONS);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof IOException && dir.isDirectory()) {
+                // The directory cannot be opened on this platform
+                return;
+            }
+            throw new IOException("Failed to open " + dir, e.getCause());
+        }
+        try {
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+}
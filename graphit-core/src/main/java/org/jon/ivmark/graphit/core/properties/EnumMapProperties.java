@@ -17,16 +17,24 @@
 package org.jon.ivmark.graphit.core.properties;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
- * A {@link Properties} implementation backed by a {@link EnumMap}.
+ * A {@link Properties} implementation backed by a {@link EnumMap}. The enum
+ * constants are the declared keys of a {@link PropertySchema}, with their
+ * ordinals as slots, so keys are looked up without {@link Enum#valueOf}.
  *
  * @author jon
  *
  */
-public class EnumMapProperties<E extends Enum<E>> implements Properties {
+public class EnumMapProperties<E extends Enum<E>> implements KeyedProperties {
+
+    private static final ConcurrentMap<Class<?>, EnumKeys<?>> ENUM_KEYS =
+        new ConcurrentHashMap<Class<?>, EnumKeys<?>>();
 
     private final Class<E> enumClass;
+    private final EnumKeys<E> keys;
     private final EnumMap<E, Object> properties;
 
     /**
@@ -34,11 +42,42 @@ public class EnumMapProperties<E extends Enum<E>> implements Properties {
      */
     public EnumMapProperties(Class<E> enumClass) {
         this.enumClass = enumClass;
+        this.keys = enumKeys(enumClass);
         this.properties = new EnumMap<E, Object>(enumClass);
     }
 
+    /**
+     * Gets the schema declaring the constants of an enum as keys.
+     */
+    static <E extends Enum<E>> PropertySchema getSchema(Class<E> enumClass) {
+        return enumKeys(enumClass).schema;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E extends Enum<E>> EnumKeys<E> enumKeys(Class<E> enumClass) {
+        EnumKeys<?> keys = ENUM_KEYS.get(enumClass);
+        if (keys == null) {
+            keys = new EnumKeys<E>(enumClass);
+            EnumKeys<?> existing = ENUM_KEYS.putIfAbsent(enumClass, keys);
+            if (existing != null) {
+                keys = existing;
+            }
+        }
+        return (EnumKeys<E>) keys;
+    }
+
     private E getKey(String keyName) {
-        return Enum.valueOf(enumClass, keyName);
+        PropertyKey<?> key = keys.schema.getKey(keyName);
+        if (key == null) {
+            throw new IllegalArgumentException("No enum constant " + enumClass.getName() + "."
+                + keyName);
+        }
+        return keys.constants[key.getSlot()];
+    }
+
+    private E getKey(PropertyKey<?> key) {
+        return key.getSchema() == keys.schema ? keys.constants[key.getSlot()]
+            : getKey(key.getName());
     }
 
     @Override
@@ -46,6 +85,16 @@ public class EnumMapProperties<E extends Enum<E>> implements Properties {
         return getProperty(getKey(keyName));
     }
 
+    @Override
+    public <T> T get(PropertyKey<T> key) {
+        return key.cast(properties.get(getKey(key)));
+    }
+
+    @Override
+    public <T> void set(PropertyKey<T> key, T value) {
+        properties.put(getKey(key), value);
+    }
+
     /**
      * Gets a property.
      */
@@ -91,11 +140,43 @@ public class EnumMapProperties<E extends Enum<E>> implements Properties {
 
     @Override
     public Set<String> getPropertyKeys() {
-        Set<String> res = new HashSet<String>();
-        for (Enum<E> key : properties.keySet()) {
-            res.add(key.name());
-        }
-        return res;
+        // A view rather than a copy of the keys
+        return new AbstractSet<String>() {
+
+            @Override
+            public Iterator<String> iterator() {
+                final Iterator<E> it = properties.keySet().iterator();
+                return new Iterator<String>() {
+
+                    @Override
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+
+                    @Override
+                    public String next() {
+                        return it.next().name();
+                    }
+
+                    @Override
+                    public void remove() {
+                        it.remove();
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object keyName) {
+                PropertyKey<?> key = keyName instanceof String
+                    ? keys.schema.getKey((String) keyName) : null;
+                return key != null && properties.containsKey(keys.constants[key.getSlot()]);
+            }
+
+            @Override
+            public int size() {
+                return properties.size();
+            }
+        };
     }
 
     @Override
@@ -123,4 +204,19 @@ public class EnumMapProperties<E extends Enum<E>> implements Properties {
     public boolean isEmpty() {
         return properties.isEmpty();
     }
+
+    /**
+     * The schema and constants of an enum, shared by all instances.
+     */
+    private static final class EnumKeys<E extends Enum<E>> {
+        private final PropertySchema schema = new PropertySchema();
+        private final E[] constants;
+
+        private EnumKeys(Class<E> enumClass) {
+            this.constants = enumClass.getEnumConstants();
+            for (E constant : constants) {
+                schema.declare(constant.name(), Object.class);
+            }
+        }
+    }
 }
@@ -38,4 +38,9 @@ public class EnumMapPropertiesFactory<E extends Enum<E>> implements PropertiesFa
         return new EnumMapProperties<E>(enumClass);
     }
 
+    @Override
+    public PropertySchema getSchema() {
+        return EnumMapProperties.getSchema(enumClass);
+    }
+
 }
@@ -28,4 +28,9 @@ public class HashMapPropertiesFactory implements PropertiesFactory {
     public Properties createEmptyProperties() {
         return new HashMapProperties();
     }
+
+    @Override
+    public PropertySchema getSchema() {
+        return null;
+    }
 }
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jon.ivmark.graphit.core.properties;
+
+/**
+ * {@link Properties} that may be accessed through {@link PropertyKey} handles
+ * as well as by name.
+ *
+ * @author jon
+ *
+ */
+public interface KeyedProperties extends Properties {
+
+    /**
+     * Gets the value of a key.
+     */
+    <T> T get(PropertyKey<T> key);
+
+    /**
+     * Sets the value of a key.
+     */
+    <T> void set(PropertyKey<T> key, T value);
+
+}
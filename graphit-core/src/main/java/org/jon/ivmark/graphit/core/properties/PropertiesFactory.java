@@ -29,4 +29,10 @@ public interface PropertiesFactory {
      */
     Properties createEmptyProperties();
 
+    /**
+     * Gets the schema declaring the keys of the created properties, or null
+     * if they are schemaless.
+     */
+    PropertySchema getSchema();
+
 }
@@ -28,7 +28,7 @@ import java.util.Set;
  * @author jon
  * 
  */
-public abstract class PropertiesProxy implements Properties {
+public abstract class PropertiesProxy implements KeyedProperties {
 
     private final boolean mutable;
     private final Properties properties;
@@ -57,6 +57,17 @@ public abstract class PropertiesProxy implements Properties {
         return properties.getProperty(key);
     }
 
+    @Override
+    public <T> T get(PropertyKey<T> key) {
+        return key.get(properties);
+    }
+
+    @Override
+    public <T> void set(PropertyKey<T> key, T value) {
+        Preconditions.checkState(mutable, "This proxy is immutable");
+        key.set(properties, value);
+    }
+
     @Override
     public void setProperty(String key, Object value) {
         Preconditions.checkState(mutable, "This proxy is immutable");
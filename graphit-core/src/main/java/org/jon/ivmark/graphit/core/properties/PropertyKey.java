@@ -0,0 +1,134 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jon.ivmark.graphit.core.properties;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A handle to a property declared in a {@link PropertySchema}. The handle
+ * knows the slot of the property, so {@link KeyedProperties} created from the
+ * same schema read and write it by array index instead of by name. Keys are
+ * meant to be kept in constants, e.g.
+ *
+ * <pre>
+ * PropertyKey&lt;Double&gt; PRICE = SCHEMA.declare("price", Double.class);
+ * double price = node.get(PRICE);
+ * </pre>
+ *
+ * @author jon
+ *
+ * @param <T>
+ *            The type of the property values.
+ */
+public final class PropertyKey<T> {
+
+    private final PropertySchema schema;
+    private final String name;
+    private final Class<T> type;
+    private final int slot;
+
+    PropertyKey(PropertySchema schema, String name, Class<T> type, int slot) {
+        this.schema = schema;
+        this.name = name;
+        this.type = type;
+        this.slot = slot;
+    }
+
+    /**
+     * Gets the schema declaring this key.
+     */
+    public PropertySchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Gets the name of this key.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the type of the values of this key.
+     */
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * Gets the slot of this key in its schema.
+     */
+    public int getSlot() {
+        return slot;
+    }
+
+    /**
+     * Gets the value of this key from any properties, by slot if they are
+     * {@link KeyedProperties} and by name otherwise.
+     */
+    public T get(Properties properties) {
+        if (properties instanceof KeyedProperties) {
+            return ((KeyedProperties) properties).get(this);
+        }
+        return cast(properties.getProperty(name));
+    }
+
+    /**
+     * Sets the value of this key in any properties, by slot if they are
+     * {@link KeyedProperties} and by name otherwise.
+     */
+    public void set(Properties properties, T value) {
+        if (properties instanceof KeyedProperties) {
+            ((KeyedProperties) properties).set(this, value);
+        } else {
+            properties.setProperty(name, value);
+        }
+    }
+
+    /**
+     * Converts a value to the type of this key. Numbers are converted between
+     * number types, since for instance json does not keep them apart.
+     */
+    public T cast(Object value) {
+        if (value == null || type.isInstance(value)) {
+            return type.cast(value);
+        }
+        Preconditions.checkArgument(value instanceof Number,
+                                    "Invalid value for " + name + ": " + value);
+        Number number = (Number) value;
+        Object converted;
+        if (type == Integer.class) {
+            converted = number.intValue();
+        } else if (type == Long.class) {
+            converted = number.longValue();
+        } else if (type == Float.class) {
+            converted = number.floatValue();
+        } else if (type == Double.class) {
+            converted = number.doubleValue();
+        } else {
+            throw new IllegalArgumentException("Invalid value for " + name + ": " + value);
+        }
+        return type.cast(converted);
+    }
+
+    @Override
+    public String toString() {
+        return "PropertyKey [name=" + name + ", type=" + type.getSimpleName() + ", slot=" + slot
+            + "]";
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jon.ivmark.graphit.core.properties;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The declared property keys of a node or edge type, each given a slot
+ * number in declaration order. Registered on a type through the
+ * {@link PropertiesFactory} of the type, see {@link SchemaPropertiesFactory}.
+ * Keys should be declared before properties are created, but may be added
+ * later.
+ *
+ * @author jon
+ *
+ */
+public final class PropertySchema {
+
+    private final Map<String, PropertyKey<?>> keysByName =
+        new ConcurrentHashMap<String, PropertyKey<?>>();
+    private volatile PropertyKey<?>[] keys = new PropertyKey<?>[0];
+
+    /**
+     * Declares a key, or returns the existing key with the same name, which
+     * must then be of the same type.
+     */
+    public synchronized <T> PropertyKey<T> declare(String name, Class<T> type) {
+        Preconditions.checkNotNull(name, "Key name is mandatory.");
+        Preconditions.checkNotNull(type, "Key type is mandatory.");
+        PropertyKey<?> existing = keysByName.get(name);
+        if (existing != null) {
+            Preconditions.checkArgument(existing.getType() == type,
+                                        "Key " + name + " is declared as "
+                                            + existing.getType().getSimpleName());
+            @SuppressWarnings("unchecked")
+            PropertyKey<T> key = (PropertyKey<T>) existing;
+            return key;
+        }
+        PropertyKey<T> key = new PropertyKey<T>(this, name, type, keys.length);
+        PropertyKey<?>[] newKeys = Arrays.copyOf(keys, keys.length + 1);
+        newKeys[key.getSlot()] = key;
+        keysByName.put(name, key);
+        keys = newKeys;
+        return key;
+    }
+
+    /**
+     * Gets a declared key, or null if there is no such key.
+     */
+    public PropertyKey<?> getKey(String name) {
+        return name == null ? null : keysByName.get(name);
+    }
+
+    /**
+     * Gets the key in a slot.
+     */
+    public PropertyKey<?> getKey(int slot) {
+        return keys[slot];
+    }
+
+    /**
+     * Gets all declared keys in slot order.
+     */
+    public List<PropertyKey<?>> getKeys() {
+        return Collections.unmodifiableList(Arrays.asList(keys));
+    }
+
+    /**
+     * Gets the number of declared keys.
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    @Override
+    public String toString() {
+        return "PropertySchema [keys=" + Arrays.toString(keys) + "]";
+    }
+}
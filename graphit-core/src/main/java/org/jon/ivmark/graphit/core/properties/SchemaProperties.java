@@ -0,0 +1,186 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jon.ivmark.graphit.core.properties;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@link Properties} implementation storing the values of declared keys in
+ * an array indexed by slot, see {@link PropertySchema}. Values of declared
+ * keys are converted to the key type on write. Undeclared keys are kept in a
+ * {@link HashMap}, which is only allocated if needed.
+ *
+ * @author jon
+ *
+ */
+public class SchemaProperties implements KeyedProperties {
+
+    /**
+     * Marks a declared key set to null, since null marks a missing value.
+     */
+    private static final Object NULL = new Object();
+
+    private final PropertySchema schema;
+    private Object[] values;
+    private Map<String, Object> others;
+
+    /**
+     * Creates a new instance.
+     */
+    public SchemaProperties(PropertySchema schema) {
+        Preconditions.checkNotNull(schema);
+        this.schema = schema;
+        this.values = new Object[schema.size()];
+    }
+
+    /**
+     * Gets the schema of this instance.
+     */
+    public PropertySchema getSchema() {
+        return schema;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(PropertyKey<T> key) {
+        if (key.getSchema() != schema) {
+            return key.cast(getProperty(key.getName()));
+        }
+        int slot = key.getSlot();
+        if (slot >= values.length) {
+            return null;
+        }
+        Object value = values[slot];
+        return value == NULL ? null : (T) value;
+    }
+
+    @Override
+    public <T> void set(PropertyKey<T> key, T value) {
+        if (key.getSchema() != schema) {
+            setProperty(key.getName(), value);
+            return;
+        }
+        setSlot(key.getSlot(), key.cast(value));
+    }
+
+    @Override
+    public Object getProperty(String key) {
+        PropertyKey<?> propertyKey = schema.getKey(key);
+        if (propertyKey != null) {
+            return get(propertyKey);
+        }
+        return others == null ? null : others.get(key);
+    }
+
+    @Override
+    public void setProperty(String key, Object value) {
+        PropertyKey<?> propertyKey = schema.getKey(key);
+        if (propertyKey != null) {
+            setSlot(propertyKey.getSlot(), propertyKey.cast(value));
+            return;
+        }
+        if (others == null) {
+            others = new HashMap<String, Object>();
+        }
+        others.put(key, value);
+    }
+
+    @Override
+    public Object removeProperty(String key) {
+        PropertyKey<?> propertyKey = schema.getKey(key);
+        if (propertyKey != null) {
+            Object value = get(propertyKey);
+            if (propertyKey.getSlot() < values.length) {
+                values[propertyKey.getSlot()] = null;
+            }
+            return value;
+        }
+        return others == null ? null : others.remove(key);
+    }
+
+    @Override
+    public boolean containsProperty(String key) {
+        PropertyKey<?> propertyKey = schema.getKey(key);
+        if (propertyKey != null) {
+            return propertyKey.getSlot() < values.length && values[propertyKey.getSlot()] != null;
+        }
+        return others != null && others.containsKey(key);
+    }
+
+    @Override
+    public Set<String> getPropertyKeys() {
+        Set<String> keys = new HashSet<String>();
+        for (int slot = 0; slot < values.length; slot++) {
+            if (values[slot] != null) {
+                keys.add(schema.getKey(slot).getName());
+            }
+        }
+        if (others != null) {
+            keys.addAll(others.keySet());
+        }
+        return keys;
+    }
+
+    @Override
+    public int size() {
+        int size = others == null ? 0 : others.size();
+        for (Object value : values) {
+            if (value != null) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public Map<String, Object> asPropertyMap() {
+        Map<String, Object> map =
+            others == null ? new HashMap<String, Object>() : new HashMap<String, Object>(others);
+        for (int slot = 0; slot < values.length; slot++) {
+            Object value = values[slot];
+            if (value != null) {
+                map.put(schema.getKey(slot).getName(), value == NULL ? null : value);
+            }
+        }
+        return map;
+    }
+
+    private void setSlot(int slot, Object value) {
+        if (slot >= values.length) {
+            // The key was declared after this instance was created
+            values = Arrays.copyOf(values, schema.size());
+        }
+        values[slot] = value == null ? NULL : value;
+    }
+
+    @Override
+    public String toString() {
+        return "SchemaProperties [properties=" + asPropertyMap() + "]";
+    }
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jon.ivmark.graphit.core.properties.filter;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import org.apache.mahout.math.set.OpenIntHashSet;
+import org.apache.mahout.math.set.OpenLongHashSet;
+import org.codehaus.jackson.type.TypeReference;
+import org.jon.ivmark.graphit.core.Json;
+import org.jon.ivmark.graphit.core.properties.Properties;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compiles filter settings into a single predicate accepting the same
+ * properties as a {@link PropertiesFilter}.
+ *
+ * <p>Conditions are grouped by key, so that each property is fetched once per
+ * evaluation, and both keys and the conditions of a key are ordered so that
+ * cheap and selective conditions are evaluated first. Number comparators are
+ * resolved for the targets up front and in/not in sets of ints or longs are
+ * kept as primitive hash sets. Evaluation stops at the first failing
+ * condition.</p>
+ *
+ * <p>Targets are validated at compile time, so a missing or non numeric
+ * target of a comparison fails here rather than when the filter is applied.</p>
+ *
+ * @author jon
+ *
+ */
+public final class PropertiesFilterCompiler {
+
+    private static final NumberComparatorFactory NUMBER_COMPARATOR_FACTORY = new NumberComparatorFactory();
+
+    private PropertiesFilterCompiler() {}
+
+    /**
+     * Compiles the given filter settings, where null means accepting anything.
+     */
+    public static Predicate<Properties> compile(List<PropertyFilterSettings> filterSettings) {
+        if (filterSettings == null || filterSettings.isEmpty()) {
+            return Predicates.alwaysTrue();
+        }
+        Map<String, List<Clause>> clausesByKey = new LinkedHashMap<String, List<Clause>>();
+        for (PropertyFilterSettings propertyFilterSettings : filterSettings) {
+            String key = propertyFilterSettings.getKey();
+            List<Clause> clauses = clausesByKey.get(key);
+            if (clauses == null) {
+                clauses = new ArrayList<Clause>();
+                clausesByKey.put(key, clauses);
+            }
+            for (FilterCondition fc : propertyFilterSettings.getConditions()) {
+                clauses.add(compile(fc));
+            }
+        }
+        List<KeyFilter> keyFilters = new ArrayList<KeyFilter>(clausesByKey.size());
+        for (Map.Entry<String, List<Clause>> entry : clausesByKey.entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                keyFilters.add(new KeyFilter(entry.getKey(), entry.getValue()));
+            }
+        }
+        Collections.sort(keyFilters, new Comparator<KeyFilter>() {
+            @Override
+            public int compare(KeyFilter kf1, KeyFilter kf2) {
+                return kf1.rank - kf2.rank;
+            }
+        });
+        return new CompiledPropertiesFilter(keyFilters.toArray(new KeyFilter[keyFilters.size()]));
+    }
+
+    private static Clause compile(FilterCondition filterCondition) {
+        PropertyFilterOperator operator = PropertyFilterOperator.operator(filterCondition.getOperator());
+        Object target = filterCondition.getTarget();
+        switch (operator) {
+            case EXISTS:
+                return new Clause(Rank.EXISTS, operator.createFilter(target));
+            case EQUAL_TO:
+                return new Clause(Rank.EQUAL_TO, operator.createFilter(target));
+            case NOT_EQUAL_TO:
+                return new Clause(Rank.NOT_EQUAL_TO, operator.createFilter(target));
+            case LESS_THAN:
+                return new NumberClause(target, Comparison.LESS_THAN);
+            case LESS_THAN_OR_EQUAL:
+                return new NumberClause(target, Comparison.LESS_THAN_OR_EQUAL);
+            case GREATER_THAN:
+                return new NumberClause(target, Comparison.GREATER_THAN);
+            case GREATER_THAN_OR_EQUAL:
+                return new NumberClause(target, Comparison.GREATER_THAN_OR_EQUAL);
+            case IN:
+                return inClause(target, true);
+            case NOT_IN:
+                return inClause(target, false);
+            case MATCHES:
+                return new Clause(Rank.MATCHES, operator.createFilter(target));
+            case AND:
+            case OR:
+                return new Clause(Rank.COMPOSITE, operator.createFilter(target));
+            default:
+                // contains and disjoint convert the property on each evaluation
+                return new Clause(Rank.CONVERTING, operator.createFilter(target));
+        }
+    }
+
+    private static Clause inClause(Object target, boolean in) {
+        Set<Object> set = Json.OBJECT_MAPPER.convertValue(target, new TypeReference<Set<Object>>() {});
+        Rank rank = in ? Rank.IN : Rank.NOT_IN;
+        if (allInstancesOf(set, Integer.class)) {
+            OpenIntHashSet ints = new OpenIntHashSet(set.size());
+            for (Object o : set) {
+                ints.add((Integer) o);
+            }
+            return new IntInClause(rank, ints, in);
+        }
+        if (allInstancesOf(set, Long.class)) {
+            OpenLongHashSet longs = new OpenLongHashSet(set.size());
+            for (Object o : set) {
+                longs.add((Long) o);
+            }
+            return new LongInClause(rank, longs, in);
+        }
+        return new Clause(rank, in ? new InFilter(new HashSet<Object>(set)) :
+                                     new NotInFilter(new HashSet<Object>(set)));
+    }
+
+    private static boolean allInstancesOf(Set<Object> set, Class<?> cls) {
+        if (set.isEmpty()) {
+            return false;
+        }
+        for (Object o : set) {
+            if (!cls.isInstance(o)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The static evaluation order of conditions, cheap and selective first.
+     */
+    private enum Rank {
+        EXISTS, EQUAL_TO, IN, COMPARISON, NOT_EQUAL_TO, NOT_IN, MATCHES, COMPOSITE, CONVERTING
+    }
+
+    private enum Comparison {
+        LESS_THAN {
+            @Override
+            boolean accepts(int comparison) {
+                return comparison < 0;
+            }
+        },
+        LESS_THAN_OR_EQUAL {
+            @Override
+            boolean accepts(int comparison) {
+                return comparison <= 0;
+            }
+        },
+        GREATER_THAN {
+            @Override
+            boolean accepts(int comparison) {
+                return comparison > 0;
+            }
+        },
+        GREATER_THAN_OR_EQUAL {
+            @Override
+            boolean accepts(int comparison) {
+                return comparison >= 0;
+            }
+        };
+
+        abstract boolean accepts(int comparison);
+    }
+
+    /**
+     * A condition on a single property value.
+     */
+    private static class Clause {
+        private final Rank rank;
+        private final Predicate<Object> filter;
+
+        Clause(Rank rank, Predicate<Object> filter) {
+            this.rank = rank;
+            this.filter = filter;
+        }
+
+        boolean apply(Object property) {
+            return filter.apply(property);
+        }
+    }
+
+    private static final class NumberClause extends Clause {
+        private final NumberComparator targetComparator;
+        private final Comparison comparison;
+
+        NumberClause(Object target, Comparison comparison) {
+            super(Rank.COMPARISON, null);
+            Preconditions.checkNotNull(target, "No target given for " + comparison);
+            this.targetComparator = NUMBER_COMPARATOR_FACTORY.comparatorFor(target);
+            this.comparison = comparison;
+        }
+
+        @Override
+        boolean apply(Object property) {
+            // The comparator is for the target, so the comparison is reversed
+            return property != null && comparison.accepts(-targetComparator.compareTo(property));
+        }
+    }
+
+    private static final class IntInClause extends Clause {
+        private final OpenIntHashSet set;
+        private final boolean in;
+
+        IntInClause(Rank rank, OpenIntHashSet set, boolean in) {
+            super(rank, null);
+            this.set = set;
+            this.in = in;
+        }
+
+        @Override
+        boolean apply(Object property) {
+            boolean contains = property instanceof Integer && set.contains((Integer) property);
+            return contains == in;
+        }
+    }
+
+    private static final class LongInClause extends Clause {
+        private final OpenLongHashSet set;
+        private final boolean in;
+
+        LongInClause(Rank rank, OpenLongHashSet set, boolean in) {
+            super(rank, null);
+            this.set = set;
+            this.in = in;
+        }
+
+        @Override
+        boolean apply(Object property) {
+            boolean contains = property instanceof Long && set.contains((Long) property);
+            return contains == in;
+        }
+    }
+
+    /**
+     * The conditions on one key, ranked by its best ranked condition.
+     */
+    private static final class KeyFilter {
+        private final String key;
+        private final Clause[] clauses;
+        private final int rank;
+
+        KeyFilter(String key, List<Clause> clauses) {
+            this.key = key;
+            List<Clause> ordered = new ArrayList<Clause>(clauses);
+            Collections.sort(ordered, new Comparator<Clause>() {
+                @Override
+                public int compare(Clause c1, Clause c2) {
+                    return c1.rank.compareTo(c2.rank);
+                }
+            });
+            this.clauses = ordered.toArray(new Clause[ordered.size()]);
+            this.rank = this.clauses[0].rank.ordinal();
+        }
+
+        boolean apply(Properties properties) {
+            Object property = properties.getProperty(key);
+            for (Clause clause : clauses) {
+                if (!clause.apply(property)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class CompiledPropertiesFilter implements Predicate<Properties> {
+        private final KeyFilter[] keyFilters;
+
+        CompiledPropertiesFilter(KeyFilter[] keyFilters) {
+            this.keyFilters = keyFilters;
+        }
+
+        @Override
+        public boolean apply(Properties properties) {
+            for (KeyFilter keyFilter : keyFilters) {
+                if (!keyFilter.apply(properties)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.properties.index;
+
+import com.google.common.base.Predicate;
+import org.jon.ivmark.graphit.core.properties.Properties;
+import org.jon.ivmark.graphit.core.properties.filter.PropertiesFilterCompiler;
+import org.jon.ivmark.graphit.core.properties.filter.PropertyFilterSettings;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Filter settings compiled by a {@link BitmapPropertyIndex}. Candidates are
+ * first checked by index, and only candidates accepted that way need to have
+ * their properties checked by the residual filter.
+ *
+ * @author jon
+ *
+ */
+public final class BitmapFilter {
+
+    private final BitSet[][] include;
+    private final BitSet[] exclude;
+    private final boolean hasResidualFilter;
+    private final Predicate<Properties> residualFilter;
+
+    BitmapFilter(BitSet[][] include, BitSet[] exclude, List<PropertyFilterSettings> residual) {
+        this.include = include;
+        this.exclude = exclude;
+        this.hasResidualFilter = !residual.isEmpty();
+        this.residualFilter = PropertiesFilterCompiler.compile(residual);
+    }
+
+    /**
+     * Checks if the entry with the given index is accepted by the conditions
+     * answered by bitmaps.
+     */
+    public boolean accepts(int index) {
+        for (BitSet bitmap : exclude) {
+            if (bitmap.get(index)) {
+                return false;
+            }
+        }
+        for (BitSet[] anyOf : include) {
+            if (!anyGet(anyOf, index)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if there are conditions not answered by bitmaps.
+     */
+    public boolean hasResidualFilter() {
+        return hasResidualFilter;
+    }
+
+    /**
+     * Gets a filter for the conditions not answered by bitmaps, accepting
+     * anything if there are none.
+     */
+    public Predicate<Properties> getResidualFilter() {
+        return residualFilter;
+    }
+
+    private static boolean anyGet(BitSet[] bitmaps, int index) {
+        for (BitSet bitmap : bitmaps) {
+            if (bitmap.get(index)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
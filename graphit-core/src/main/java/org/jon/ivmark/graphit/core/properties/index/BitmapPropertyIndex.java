@@ -0,0 +1,207 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.properties.index;
+
+import com.google.common.base.Preconditions;
+import org.codehaus.jackson.type.TypeReference;
+import org.jon.ivmark.graphit.core.Json;
+import org.jon.ivmark.graphit.core.properties.Properties;
+import org.jon.ivmark.graphit.core.properties.filter.FilterCondition;
+import org.jon.ivmark.graphit.core.properties.filter.PropertyFilterOperator;
+import org.jon.ivmark.graphit.core.properties.filter.PropertyFilterSettings;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bitmaps over entry indexes, e.g. node indexes, for properties with few
+ * distinct values such as booleans, enums and categories. Used to pre filter
+ * candidates on their indexes before any properties are loaded.
+ *
+ * <p>Each distinct value of an indexed key has a bitmap of the indexes of the
+ * entries having that value. Keys with values other than strings, booleans,
+ * ints, longs and enums, or with more distinct values than the max
+ * cardinality, are not indexed.</p>
+ *
+ * <p>Each entry is added once while building the index, which is not thread
+ * safe. A built index may be shared by any number of readers.</p>
+ *
+ * @author jon
+ *
+ */
+public final class BitmapPropertyIndex {
+
+    public static final int DEFAULT_MAX_CARDINALITY = 64;
+
+    private final int maxCardinality;
+    private final Map<String, Map<Object, BitSet>> bitmaps = new HashMap<String, Map<Object, BitSet>>();
+    private final Map<String, BitSet> present = new HashMap<String, BitSet>();
+    private final Set<String> rejectedKeys = new HashSet<String>();
+
+    /**
+     * Creates an index of keys with at most
+     * {@link #DEFAULT_MAX_CARDINALITY} distinct values.
+     */
+    public BitmapPropertyIndex() {
+        this(DEFAULT_MAX_CARDINALITY);
+    }
+
+    /**
+     * Creates an index of keys with at most the given number of distinct
+     * values.
+     */
+    public BitmapPropertyIndex(int maxCardinality) {
+        Preconditions.checkArgument(maxCardinality > 0, "Max cardinality must be positive.");
+        this.maxCardinality = maxCardinality;
+    }
+
+    /**
+     * Adds the properties of the entry with the given index.
+     */
+    public void add(int index, Properties properties) {
+        Preconditions.checkArgument(index >= 0, "Index must not be negative.");
+        for (String key : properties.getPropertyKeys()) {
+            if (rejectedKeys.contains(key)) {
+                continue;
+            }
+            Object value = properties.getProperty(key);
+            if (value == null) {
+                continue;
+            }
+            Map<Object, BitSet> valueBitmaps = bitmaps.get(key);
+            if (valueBitmaps == null) {
+                valueBitmaps = new HashMap<Object, BitSet>();
+                bitmaps.put(key, valueBitmaps);
+                present.put(key, new BitSet());
+            }
+            BitSet bitmap = valueBitmaps.get(value);
+            if (bitmap == null) {
+                if (!isIndexable(value) || valueBitmaps.size() == maxCardinality) {
+                    reject(key);
+                    continue;
+                }
+                bitmap = new BitSet();
+                valueBitmaps.put(value, bitmap);
+            }
+            bitmap.set(index);
+            present.get(key).set(index);
+        }
+    }
+
+    /**
+     * Gets the indexed keys.
+     */
+    public Set<String> getIndexedKeys() {
+        return Collections.unmodifiableSet(bitmaps.keySet());
+    }
+
+    /**
+     * Compiles filter settings, where null means accepting anything. Exists,
+     * equal to, in, not equal to and not in conditions on indexed keys are
+     * answered by the bitmaps, the remaining conditions make up the residual
+     * filter of the result.
+     */
+    public BitmapFilter compile(List<PropertyFilterSettings> filterSettings) {
+        List<BitSet[]> include = new ArrayList<BitSet[]>();
+        List<BitSet> exclude = new ArrayList<BitSet>();
+        List<PropertyFilterSettings> residual = new ArrayList<PropertyFilterSettings>();
+        if (filterSettings != null) {
+            for (PropertyFilterSettings propertyFilterSettings : filterSettings) {
+                String key = propertyFilterSettings.getKey();
+                List<FilterCondition> residualConditions = new ArrayList<FilterCondition>();
+                for (FilterCondition fc : propertyFilterSettings.getConditions()) {
+                    if (!compile(key, fc, include, exclude)) {
+                        residualConditions.add(fc);
+                    }
+                }
+                if (!residualConditions.isEmpty()) {
+                    residual.add(new PropertyFilterSettings(key, residualConditions));
+                }
+            }
+        }
+        return new BitmapFilter(include.toArray(new BitSet[include.size()][]),
+                                exclude.toArray(new BitSet[exclude.size()]),
+                                residual);
+    }
+
+    private boolean compile(String key, FilterCondition filterCondition, List<BitSet[]> include,
+                            List<BitSet> exclude) {
+        Map<Object, BitSet> valueBitmaps = bitmaps.get(key);
+        if (valueBitmaps == null) {
+            return false;
+        }
+        Object target = filterCondition.getTarget();
+        switch (PropertyFilterOperator.operator(filterCondition.getOperator())) {
+            case EXISTS:
+                if (Json.OBJECT_MAPPER.convertValue(target, Boolean.class)) {
+                    include.add(new BitSet[] {present.get(key)});
+                } else {
+                    exclude.add(present.get(key));
+                }
+                return true;
+            case EQUAL_TO:
+                include.add(get(valueBitmaps, Collections.singleton(target)));
+                return true;
+            case IN:
+                include.add(get(valueBitmaps, toSet(target)));
+                return true;
+            case NOT_EQUAL_TO:
+                if (target == null) {
+                    return false;
+                }
+                Collections.addAll(exclude, get(valueBitmaps, Collections.singleton(target)));
+                return true;
+            case NOT_IN:
+                Collections.addAll(exclude, get(valueBitmaps, toSet(target)));
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static BitSet[] get(Map<Object, BitSet> valueBitmaps, Set<?> values) {
+        List<BitSet> result = new ArrayList<BitSet>(values.size());
+        for (Object value : values) {
+            BitSet bitmap = value == null ? null : valueBitmaps.get(value);
+            if (bitmap != null) {
+                result.add(bitmap);
+            }
+        }
+        return result.toArray(new BitSet[result.size()]);
+    }
+
+    private static Set<Object> toSet(Object target) {
+        return Json.OBJECT_MAPPER.convertValue(target, new TypeReference<Set<Object>>() {});
+    }
+
+    private void reject(String key) {
+        bitmaps.remove(key);
+        present.remove(key);
+        rejectedKeys.add(key);
+    }
+
+    private static boolean isIndexable(Object value) {
+        return value instanceof String || value instanceof Boolean || value instanceof Integer ||
+            value instanceof Long || value instanceof Enum;
+    }
+}
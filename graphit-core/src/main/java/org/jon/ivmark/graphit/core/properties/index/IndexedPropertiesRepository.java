@@ -0,0 +1,381 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jon.ivmark.graphit.core.properties.index;
+
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+import org.codehaus.jackson.type.TypeReference;
+import org.jon.ivmark.graphit.core.Json;
+import org.jon.ivmark.graphit.core.properties.Properties;
+import org.jon.ivmark.graphit.core.properties.filter.FilterCondition;
+import org.jon.ivmark.graphit.core.properties.filter.PropertyFilterOperator;
+import org.jon.ivmark.graphit.core.properties.filter.PropertyFilterSettings;
+import org.jon.ivmark.graphit.core.properties.repository.PropertiesRepository;
+import org.jon.ivmark.graphit.core.properties.repository.PropertiesUpdate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A {@link PropertiesRepository} maintaining secondary indexes on properties
+ * after delegating writes to another repo. Indexes are kept per partition,
+ * e.g. node type, and only see changes made through this repo.
+ *
+ * <p>Writes to entries in partitions without indexes are delegated directly,
+ * writes to indexed entries are serialized with each other and with index
+ * queries.</p>
+ *
+ * @author jon
+ *
+ * @param <T>
+ *            The generic type of the id of each entry in this repo.
+ * @param <P>
+ *            The generic type of the partitions.
+ */
+public class IndexedPropertiesRepository<T, P> implements PropertiesRepository<T> {
+
+    private final PropertiesRepository<T> repo;
+    private final Function<T, P> partitioner;
+    private final Map<P, Map<String, PropertyIndex<T>>> indexes =
+        new HashMap<P, Map<String, PropertyIndex<T>>>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Creates a new instance.
+     *
+     * @param repo
+     *            The repo holding the properties.
+     * @param partitioner
+     *            Gets the partition of an id.
+     */
+    public IndexedPropertiesRepository(PropertiesRepository<T> repo, Function<T, P> partitioner) {
+        this.repo = repo;
+        this.partitioner = partitioner;
+    }
+
+    /**
+     * Gets the repo writes are delegated to.
+     */
+    public PropertiesRepository<T> getDelegate() {
+        return repo;
+    }
+
+    /**
+     * Creates an index on a property of all entries in a partition, replacing
+     * any existing index of another type.
+     *
+     * @param partition
+     *            The partition.
+     * @param key
+     *            The property key.
+     * @param indexType
+     *            The type of index.
+     * @param ids
+     *            The ids of all entries in the partition.
+     */
+    public void createIndex(P partition, String key, PropertyIndexType indexType, Iterable<T> ids) {
+        Preconditions.checkNotNull(partition, "Partition is mandatory.");
+        Preconditions.checkNotNull(key, "Key is mandatory.");
+        Preconditions.checkNotNull(indexType, "Index type is mandatory.");
+        lock.writeLock().lock();
+        try {
+            Map<String, PropertyIndex<T>> partitionIndexes = indexes.get(partition);
+            if (partitionIndexes == null) {
+                partitionIndexes = new LinkedHashMap<String, PropertyIndex<T>>();
+                indexes.put(partition, partitionIndexes);
+            }
+            PropertyIndex<T> existing = partitionIndexes.get(key);
+            if (existing != null && existing.getType() == indexType) {
+                return;
+            }
+            PropertyIndex<T> index = indexType == PropertyIndexType.SORTED ?
+                new SortedPropertyIndex<T>() : new PropertyIndex<T>();
+            for (T id : ids) {
+                Object value = repo.getProperties(id).getProperty(key);
+                if (value != null) {
+                    index.add(value, id);
+                }
+            }
+            partitionIndexes.put(key, index);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drops an index, returning false if there was none.
+     */
+    public boolean dropIndex(P partition, String key) {
+        lock.writeLock().lock();
+        try {
+            Map<String, PropertyIndex<T>> partitionIndexes = indexes.get(partition);
+            if (partitionIndexes == null || partitionIndexes.remove(key) == null) {
+                return false;
+            }
+            if (partitionIndexes.isEmpty()) {
+                indexes.remove(partition);
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the indexed keys of a partition.
+     */
+    public Set<String> getIndexedKeys(P partition) {
+        lock.readLock().lock();
+        try {
+            Map<String, PropertyIndex<T>> partitionIndexes = indexes.get(partition);
+            if (partitionIndexes == null) {
+                return Collections.emptySet();
+            }
+            return new LinkedHashSet<String>(partitionIndexes.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the ids of the entries in a partition which may be accepted by the
+     * given filter, using the most selective index applicable to it, or null
+     * if no index applies. The ids must still be filtered.
+     */
+    public Collection<T> find(P partition, List<PropertyFilterSettings> filterSettings) {
+        if (filterSettings == null) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            Map<String, PropertyIndex<T>> partitionIndexes = indexes.get(partition);
+            if (partitionIndexes == null) {
+                return null;
+            }
+            List<T> best = null;
+            for (PropertyFilterSettings propertyFilterSettings : filterSettings) {
+                PropertyIndex<T> index = partitionIndexes.get(propertyFilterSettings.getKey());
+                if (index == null) {
+                    continue;
+                }
+                List<T> candidates = find(index, propertyFilterSettings.getConditions());
+                if (candidates != null && (best == null || candidates.size() < best.size())) {
+                    best = candidates;
+                }
+            }
+            return best;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<T> find(PropertyIndex<T> index, List<FilterCondition> conditions) {
+        List<T> best = null;
+        Number from = null;
+        boolean fromInclusive = false;
+        Number to = null;
+        boolean toInclusive = false;
+        for (FilterCondition condition : conditions) {
+            PropertyFilterOperator operator = PropertyFilterOperator.operator(condition.getOperator());
+            Object target = condition.getTarget();
+            List<T> candidates = null;
+            switch (operator) {
+                case EQUAL_TO:
+                    candidates = new ArrayList<T>(index.get(target));
+                    break;
+                case IN:
+                    Set<Object> values = Json.OBJECT_MAPPER.convertValue(target, new TypeReference<Set<Object>>() {});
+                    candidates = index.getAll(values);
+                    break;
+                case GREATER_THAN:
+                case GREATER_THAN_OR_EQUAL:
+                    if (SortedPropertyIndex.isSortable(target)) {
+                        boolean inclusive = operator == PropertyFilterOperator.GREATER_THAN_OR_EQUAL;
+                        int comparison = from == null ? 1 : SortedPropertyIndex.NUMBER_ORDER.compare((Number) target, from);
+                        if (comparison > 0 || (comparison == 0 && !inclusive)) {
+                            from = (Number) target;
+                            fromInclusive = inclusive;
+                        }
+                    }
+                    break;
+                case LESS_THAN:
+                case LESS_THAN_OR_EQUAL:
+                    if (SortedPropertyIndex.isSortable(target)) {
+                        boolean inclusive = operator == PropertyFilterOperator.LESS_THAN_OR_EQUAL;
+                        int comparison = to == null ? -1 : SortedPropertyIndex.NUMBER_ORDER.compare((Number) target, to);
+                        if (comparison < 0 || (comparison == 0 && !inclusive)) {
+                            to = (Number) target;
+                            toInclusive = inclusive;
+                        }
+                    }
+                    break;
+                default:
+                    break;
+            }
+            if (candidates != null && (best == null || candidates.size() < best.size())) {
+                best = candidates;
+            }
+        }
+        if (from != null || to != null) {
+            List<T> candidates = index.getRange(from, fromInclusive, to, toInclusive);
+            if (candidates != null && (best == null || candidates.size() < best.size())) {
+                best = candidates;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public Properties getProperties(T id) {
+        return repo.getProperties(id);
+    }
+
+    @Override
+    public void saveProperties(T id, Properties properties) {
+        Map<String, PropertyIndex<T>> partitionIndexes = beginWrite(id);
+        try {
+            Object[] previous = getIndexedValues(id, partitionIndexes);
+            repo.saveProperties(id, properties);
+            reindex(id, partitionIndexes, previous);
+        } finally {
+            endWrite(partitionIndexes);
+        }
+    }
+
+    @Override
+    public Properties removeProperties(T id) {
+        Map<String, PropertyIndex<T>> partitionIndexes = beginWrite(id);
+        try {
+            Object[] previous = getIndexedValues(id, partitionIndexes);
+            Properties properties = repo.removeProperties(id);
+            reindex(id, partitionIndexes, previous);
+            return properties;
+        } finally {
+            endWrite(partitionIndexes);
+        }
+    }
+
+    @Override
+    public void setProperty(T id, String key, Object value) {
+        Map<String, PropertyIndex<T>> partitionIndexes = beginWrite(id);
+        try {
+            Object[] previous = getIndexedValues(id, partitionIndexes);
+            repo.setProperty(id, key, value);
+            reindex(id, partitionIndexes, previous);
+        } finally {
+            endWrite(partitionIndexes);
+        }
+    }
+
+    @Override
+    public void removeProperty(T id, String key) {
+        Map<String, PropertyIndex<T>> partitionIndexes = beginWrite(id);
+        try {
+            Object[] previous = getIndexedValues(id, partitionIndexes);
+            repo.removeProperty(id, key);
+            reindex(id, partitionIndexes, previous);
+        } finally {
+            endWrite(partitionIndexes);
+        }
+    }
+
+    @Override
+    public void updateProperties(T id, PropertiesUpdate update) {
+        Map<String, PropertyIndex<T>> partitionIndexes = beginWrite(id);
+        try {
+            Object[] previous = getIndexedValues(id, partitionIndexes);
+            repo.updateProperties(id, update);
+            reindex(id, partitionIndexes, previous);
+        } finally {
+            endWrite(partitionIndexes);
+        }
+    }
+
+    /**
+     * Locks for a write to an entry, returning the indexes of its partition,
+     * or null if it has none. Unindexed writes share the read lock, so that
+     * they may run concurrently but not while an index is being built, while
+     * indexed writes take the write lock.
+     */
+    private Map<String, PropertyIndex<T>> beginWrite(T id) {
+        P partition = partitioner.apply(id);
+        lock.readLock().lock();
+        if (!indexes.containsKey(partition)) {
+            return null;
+        }
+        lock.readLock().unlock();
+        lock.writeLock().lock();
+        Map<String, PropertyIndex<T>> partitionIndexes = indexes.get(partition);
+        // The indexes may have been dropped while not holding a lock
+        return partitionIndexes != null ? partitionIndexes : Collections.<String, PropertyIndex<T>>emptyMap();
+    }
+
+    /**
+     * Releases the lock taken by {@link #beginWrite(Object)}.
+     */
+    private void endWrite(Map<String, PropertyIndex<T>> partitionIndexes) {
+        if (partitionIndexes == null) {
+            lock.readLock().unlock();
+        } else {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Object[] getIndexedValues(T id, Map<String, PropertyIndex<T>> partitionIndexes) {
+        if (partitionIndexes == null) {
+            return null;
+        }
+        Properties properties = repo.getProperties(id);
+        Object[] values = new Object[partitionIndexes.size()];
+        int i = 0;
+        for (String key : partitionIndexes.keySet()) {
+            values[i++] = properties.getProperty(key);
+        }
+        return values;
+    }
+
+    private void reindex(T id, Map<String, PropertyIndex<T>> partitionIndexes, Object[] previous) {
+        if (partitionIndexes == null) {
+            return;
+        }
+        Properties properties = repo.getProperties(id);
+        int i = 0;
+        for (Map.Entry<String, PropertyIndex<T>> entry : partitionIndexes.entrySet()) {
+            Object previousValue = previous[i++];
+            Object value = properties.getProperty(entry.getKey());
+            if (previousValue == null ? value == null : previousValue.equals(value)) {
+                continue;
+            }
+            PropertyIndex<T> index = entry.getValue();
+            if (previousValue != null) {
+                index.remove(previousValue, id);
+            }
+            if (value != null) {
+                index.add(value, id);
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jon.ivmark.graphit.core.properties.index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A secondary index on one property, mapping each value to the ids of the
+ * entries having it. Values are matched by equality, like an equal to filter.
+ * Not thread safe.
+ *
+ * @author jon
+ *
+ * @param <T>
+ *            The generic type of the ids of the indexed entries.
+ */
+class PropertyIndex<T> {
+
+    private final Map<Object, Set<T>> ids = new HashMap<Object, Set<T>>();
+
+    /**
+     * Gets the type of this index.
+     */
+    PropertyIndexType getType() {
+        return PropertyIndexType.HASH;
+    }
+
+    /**
+     * Adds an entry having the given, non null, value.
+     */
+    void add(Object value, T id) {
+        Set<T> valueIds = ids.get(value);
+        if (valueIds == null) {
+            valueIds = new HashSet<T>();
+            ids.put(value, valueIds);
+        }
+        valueIds.add(id);
+    }
+
+    /**
+     * Removes an entry having the given, non null, value.
+     */
+    void remove(Object value, T id) {
+        Set<T> valueIds = ids.get(value);
+        if (valueIds != null && valueIds.remove(id) && valueIds.isEmpty()) {
+            ids.remove(value);
+        }
+    }
+
+    /**
+     * Gets the ids of the entries having the given value.
+     */
+    Collection<T> get(Object value) {
+        Set<T> valueIds = ids.get(value);
+        return valueIds == null ? Collections.<T>emptySet() : valueIds;
+    }
+
+    /**
+     * Gets the ids of the entries having any of the given values.
+     */
+    List<T> getAll(Collection<?> values) {
+        List<T> result = new ArrayList<T>();
+        for (Object value : values) {
+            result.addAll(get(value));
+        }
+        return result;
+    }
+
+    /**
+     * Gets the ids of the entries having a numeric value within the given
+     * bounds, where a null bound means unbounded, or null if this index does
+     * not support range queries.
+     */
+    List<T> getRange(Number from, boolean fromInclusive, Number to, boolean toInclusive) {
+        return null;
+    }
+}
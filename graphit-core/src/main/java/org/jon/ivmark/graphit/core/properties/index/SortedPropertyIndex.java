@@ -0,0 +1,128 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jon.ivmark.graphit.core.properties.index;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * A {@link PropertyIndex} also keeping numeric values sorted, answering range
+ * queries. Numbers of different types are ordered by value, the way the
+ * number filters compare them, so e.g. 1, 1L and 1.0 share a position. NaN
+ * values are not range indexed. Not thread safe.
+ *
+ * @author jon
+ *
+ * @param <T>
+ *            The generic type of the ids of the indexed entries.
+ */
+class SortedPropertyIndex<T> extends PropertyIndex<T> {
+
+    static final Comparator<Number> NUMBER_ORDER = new Comparator<Number>() {
+
+        @Override
+        public int compare(Number n1, Number n2) {
+            if (isIntegral(n1) && isIntegral(n2)) {
+                long l1 = n1.longValue();
+                long l2 = n2.longValue();
+                return l1 < l2 ? -1 : (l1 == l2 ? 0 : 1);
+            }
+            double d1 = n1.doubleValue();
+            double d2 = n2.doubleValue();
+            return d1 < d2 ? -1 : (d1 > d2 ? 1 : 0);
+        }
+    };
+
+    private final NavigableMap<Number, Set<T>> sortedIds = new TreeMap<Number, Set<T>>(NUMBER_ORDER);
+
+    @Override
+    PropertyIndexType getType() {
+        return PropertyIndexType.SORTED;
+    }
+
+    @Override
+    void add(Object value, T id) {
+        super.add(value, id);
+        if (isSortable(value)) {
+            Set<T> valueIds = sortedIds.get(value);
+            if (valueIds == null) {
+                valueIds = new HashSet<T>();
+                sortedIds.put((Number) value, valueIds);
+            }
+            valueIds.add(id);
+        }
+    }
+
+    @Override
+    void remove(Object value, T id) {
+        super.remove(value, id);
+        if (isSortable(value)) {
+            Set<T> valueIds = sortedIds.get(value);
+            if (valueIds != null && valueIds.remove(id) && valueIds.isEmpty()) {
+                sortedIds.remove(value);
+            }
+        }
+    }
+
+    @Override
+    List<T> getRange(Number from, boolean fromInclusive, Number to, boolean toInclusive) {
+        NavigableMap<Number, Set<T>> range = sortedIds;
+        if (from != null && to != null) {
+            int comparison = NUMBER_ORDER.compare(from, to);
+            if (comparison > 0 || (comparison == 0 && !(fromInclusive && toInclusive))) {
+                return new ArrayList<T>();
+            }
+            range = range.subMap(from, fromInclusive, to, toInclusive);
+        } else if (from != null) {
+            range = range.tailMap(from, fromInclusive);
+        } else if (to != null) {
+            range = range.headMap(to, toInclusive);
+        }
+        List<T> result = new ArrayList<T>();
+        for (Set<T> valueIds : range.values()) {
+            result.addAll(valueIds);
+        }
+        return result;
+    }
+
+    /**
+     * Checks if a value is of one of the numeric types supported by filters,
+     * and thus may be kept sorted.
+     */
+    static boolean isSortable(Object value) {
+        if (isIntegral(value)) {
+            return true;
+        }
+        if (value instanceof Double) {
+            return !((Double) value).isNaN();
+        }
+        if (value instanceof Float) {
+            return !((Float) value).isNaN();
+        }
+        return false;
+    }
+
+    private static boolean isIntegral(Object value) {
+        return value instanceof Integer || value instanceof Long || value instanceof Short;
+    }
+}
@@ -81,13 +81,18 @@ public abstract class ConcurrentHashMapPropertiesRepository<T>
         properties.removeProperty(key);
     }
 
+    @Override
+    public void updateProperties(T id, PropertiesUpdate update) {
+        update.apply(getOrAddProperties(id));
+    }
+
     private Properties getOrAddProperties(T id) {
         Properties properties = repo.get(id);
         if (properties != null) {
             return properties;
         }
         properties = createEmptyProperties(id);
-        repo.put(id, properties);
-        return properties;
+        Properties existing = repo.putIfAbsent(id, properties);
+        return existing != null ? existing : properties;
     }
 }
@@ -55,4 +55,10 @@ public interface PropertiesRepository<T> {
      */
     void removeProperty(T id, String key);
 
+    /**
+     * Applies several changes to the properties with the given id in one
+     * write.
+     */
+    void updateProperties(T id, PropertiesUpdate update);
+
 }
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jon.ivmark.graphit.core.properties.repository;
+
+import org.jon.ivmark.graphit.core.properties.Properties;
+
+/**
+ * A set of changes applied to the properties of an entity in one repository
+ * write, see {@link PropertiesRepository#updateProperties(Object, PropertiesUpdate)}.
+ *
+ * @author jon
+ *
+ */
+public interface PropertiesUpdate {
+
+    /**
+     * Applies the changes to the properties.
+     */
+    void apply(Properties properties);
+
+}
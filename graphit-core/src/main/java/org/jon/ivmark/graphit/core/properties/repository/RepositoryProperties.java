@@ -0,0 +1,143 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jon.ivmark.graphit.core.properties.repository;
+
+import org.jon.ivmark.graphit.core.properties.HashMapProperties;
+import org.jon.ivmark.graphit.core.properties.KeyedProperties;
+import org.jon.ivmark.graphit.core.properties.Properties;
+import org.jon.ivmark.graphit.core.properties.PropertyKey;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A lazily bound handle to the properties of an entity in a
+ * {@link PropertiesRepository}. Reads go straight to the properties returned
+ * by the repo, which are fetched on first read and kept for the lifetime of
+ * the handle. Writes only go to the repo, after which the handle is rebound
+ * on the next read, so nothing is written twice.
+ *
+ * <p>
+ * Unlike {@link WriteThroughProperties} this relies on the repo returning
+ * properties reflecting its writes, which is true for the graph repos.
+ * </p>
+ *
+ * @author jon
+ *
+ * @param <T>
+ *            The generic type of the id of this instance.
+ */
+public class RepositoryProperties<T> implements KeyedProperties {
+
+    private final T id;
+    private final PropertiesRepository<T> repo;
+    private Properties properties;
+
+    /**
+     * Creates a new handle.
+     *
+     * @param id
+     *            The id of the entity.
+     * @param repo
+     *            The repo holding the properties.
+     */
+    public RepositoryProperties(T id, PropertiesRepository<T> repo) {
+        this.id = id;
+        this.repo = repo;
+    }
+
+    @Override
+    public Object getProperty(String key) {
+        return bind().getProperty(key);
+    }
+
+    @Override
+    public <V> V get(PropertyKey<V> key) {
+        return key.get(bind());
+    }
+
+    @Override
+    public void setProperty(String key, Object value) {
+        repo.setProperty(id, key, value);
+        properties = null;
+    }
+
+    @Override
+    public <V> void set(PropertyKey<V> key, V value) {
+        repo.setProperty(id, key.getName(), value);
+        properties = null;
+    }
+
+    @Override
+    public Object removeProperty(String key) {
+        Object property = bind().getProperty(key);
+        repo.removeProperty(id, key);
+        properties = null;
+        return property;
+    }
+
+    /**
+     * Applies several changes in one repository write.
+     */
+    public void updateProperties(PropertiesUpdate update) {
+        repo.updateProperties(id, update);
+        properties = null;
+    }
+
+    @Override
+    public boolean containsProperty(String key) {
+        return bind().containsProperty(key);
+    }
+
+    @Override
+    public Set<String> getPropertyKeys() {
+        return bind().getPropertyKeys();
+    }
+
+    @Override
+    public int size() {
+        return bind().size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return bind().isEmpty();
+    }
+
+    @Override
+    public Map<String, Object> asPropertyMap() {
+        return bind().asPropertyMap();
+    }
+
+    private Properties bind() {
+        Properties bound = properties;
+        if (bound == null) {
+            bound = repo.getProperties(id);
+            if (bound == null) {
+                bound = new HashMapProperties(0);
+            }
+            properties = bound;
+        }
+        return bound;
+    }
+
+    @Override
+    public String toString() {
+        return "RepositoryProperties [id=" + id + ", properties=" + bind() + "]";
+    }
+}
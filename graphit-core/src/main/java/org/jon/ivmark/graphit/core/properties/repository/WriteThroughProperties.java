@@ -17,7 +17,9 @@
 package org.jon.ivmark.graphit.core.properties.repository;
 
 import org.jon.ivmark.graphit.core.properties.HashMapProperties;
+import org.jon.ivmark.graphit.core.properties.KeyedProperties;
 import org.jon.ivmark.graphit.core.properties.Properties;
+import org.jon.ivmark.graphit.core.properties.PropertyKey;
 
 import java.util.Map;
 import java.util.Set;
@@ -31,7 +33,7 @@ import java.util.Set;
  * @param <T>
  *            The generic type of the id of this instance.
  */
-public class WriteThroughProperties<T> implements Properties {
+public class WriteThroughProperties<T> implements KeyedProperties {
 
     private final T id;
     private Properties properties;
@@ -72,6 +74,17 @@ public class WriteThroughProperties<T> implements Properties {
         return loadOrGetProperties().getProperty(key);
     }
 
+    @Override
+    public <V> V get(PropertyKey<V> key) {
+        return key.get(loadOrGetProperties());
+    }
+
+    @Override
+    public <V> void set(PropertyKey<V> key, V value) {
+        key.set(loadOrGetProperties(), value);
+        repo.setProperty(id, key.getName(), value);
+    }
+
     @Override
     public void setProperty(String key, Object value) {
         loadOrGetProperties().setProperty(key, value);
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author jon
+ *
+ */
+public class StripedCounterTest {
+
+    @Test
+    public void testIncrementAndDecrement() {
+        StripedCounter counter = new StripedCounter(3);
+        assertEquals(0, counter.sum());
+        counter.increment();
+        counter.increment();
+        counter.decrement();
+        counter.add(10);
+        assertEquals(11, counter.sum());
+        assertEquals(11, counter.intValue());
+    }
+
+    @Test
+    public void testConcurrentUpdates() throws Exception {
+        final StripedCounter counter = new StripedCounter(4);
+        final int numUpdates = 10000;
+        int numThreads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        for (int t = 0; t < numThreads; t++) {
+            futures.add(executor.submit(new Callable<Void>() {
+
+                @Override
+                public Void call() {
+                    for (int i = 0; i < numUpdates; i++) {
+                        counter.increment();
+                        if (i % 2 == 0) {
+                            counter.decrement();
+                        }
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (Future<Void> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertEquals(numThreads * numUpdates / 2, counter.sum());
+    }
+}
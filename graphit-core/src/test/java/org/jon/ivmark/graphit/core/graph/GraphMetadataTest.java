@@ -16,6 +16,7 @@
 
 package org.jon.ivmark.graphit.core.graph;
 
+import org.jon.ivmark.graphit.core.graph.edge.EdgeSortOrder;
 import org.jon.ivmark.graphit.core.graph.edge.EdgeType;
 import org.jon.ivmark.graphit.core.graph.edge.EdgeTypes;
 import org.jon.ivmark.graphit.core.graph.node.NodeType;
@@ -28,6 +29,8 @@ import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author jon
@@ -53,6 +56,15 @@ public class GraphMetadataTest {
         assertEquals(new EdgeType("C"), edgeTypes.valueOf("C"));
     }
 
+    @Test
+    public void testCreateEdgeTypeWithInlineWeights() {
+        GraphMetadata metadata = new GraphMetadata("foo");
+        EdgeType edgeType = metadata.createEdgeType("A", EdgeSortOrder.DESCENDING_WEIGHT, true);
+        assertSame(edgeType, metadata.getEdgeTypes().valueOf("A"));
+        assertEquals(EdgeSortOrder.DESCENDING_WEIGHT, edgeType.getSortOrder());
+        assertTrue(edgeType.hasInlineWeights());
+    }
+
     @Test
     public void testAddNodeTypes() {
         GraphMetadata metadata = new GraphMetadata("foo");
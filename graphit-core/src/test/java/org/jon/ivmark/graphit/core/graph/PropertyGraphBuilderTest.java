@@ -0,0 +1,119 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph;
+
+import org.jon.ivmark.graphit.core.graph.edge.Edge;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeDirection;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeSortOrder;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeType;
+import org.jon.ivmark.graphit.core.graph.node.NodeId;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.jon.ivmark.graphit.core.graph.edge.TestEdgeTypes.BOUGHT;
+import static org.jon.ivmark.graphit.core.graph.edge.TestEdgeTypes.SIMILAR;
+import static org.jon.ivmark.graphit.core.graph.node.TestNodeType.PRODUCT;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author jon
+ *
+ */
+public class PropertyGraphBuilderTest {
+
+    private static final EdgeType CHEAPER = new EdgeType("CHEAPER", EdgeSortOrder.ASCENDING_WEIGHT);
+    private static final EdgeType CLOSE =
+        new EdgeType("CLOSE", EdgeSortOrder.DESCENDING_WEIGHT, true);
+    private static final EdgeType[] EDGE_TYPES = {SIMILAR, BOUGHT, CHEAPER, CLOSE};
+    private static final int NODES = 50;
+
+    private PropertyGraphImpl createGraph() {
+        GraphMetadata metadata = new GraphMetadata("test").addNodeType(PRODUCT)
+            .addEdgeType(SIMILAR).addEdgeType(BOUGHT).addEdgeType(CHEAPER).addEdgeType(CLOSE);
+        PropertyGraphImpl graph = new PropertyGraphImpl(metadata);
+        for (int i = 0; i < NODES; i++) {
+            graph.addNode(new NodeId(PRODUCT, "p" + i));
+        }
+        return graph;
+    }
+
+    @Test
+    public void testBuildGivesSameGraphAsAddingEdges() {
+        PropertyGraphImpl expected = createGraph();
+        PropertyGraphBuilder builder = new PropertyGraphBuilder(createGraph());
+        Random random = new Random(7);
+        for (int i = 0; i < 2000; i++) {
+            NodeId start = new NodeId(PRODUCT, "p" + random.nextInt(NODES));
+            NodeId end = new NodeId(PRODUCT, "p" + random.nextInt(NODES));
+            EdgeType edgeType = EDGE_TYPES[random.nextInt(EDGE_TYPES.length)];
+            // Few distinct weights, to make sure ties are kept in insertion order
+            float weight = random.nextInt(10) - 5;
+            expected.addEdge(start, end, edgeType, weight);
+            builder.addEdge(start, end, edgeType, weight);
+        }
+        assertSameEdges(expected, builder.build());
+    }
+
+    @Test
+    public void testBuildOnNonEmptyGraph() {
+        PropertyGraphImpl expected = createGraph();
+        PropertyGraphImpl graph = createGraph();
+        NodeId p0 = new NodeId(PRODUCT, "p0");
+        NodeId p1 = new NodeId(PRODUCT, "p1");
+        NodeId p2 = new NodeId(PRODUCT, "p2");
+        for (PropertyGraph g : new PropertyGraph[] {expected, graph}) {
+            g.addEdge(p0, p1, SIMILAR, 2);
+            g.addEdge(p0, p2, BOUGHT, 2);
+        }
+        expected.addEdge(p0, p2, SIMILAR, 3);
+        expected.addEdge(p0, p2, SIMILAR, 1);
+        expected.addEdge(p0, p1, BOUGHT, 1);
+
+        PropertyGraphImpl built = new PropertyGraphBuilder(graph)
+            .addEdge(p0, p2, SIMILAR, 3)
+            .addEdge(p0, p2, SIMILAR, 1)
+            .addEdge(p0, p1, BOUGHT, 1)
+            .build();
+        assertSameEdges(expected, built);
+        assertEquals(3, describe(built, p0, SIMILAR, EdgeDirection.OUTGOING).size());
+    }
+
+    private void assertSameEdges(PropertyGraph expected, PropertyGraph actual) {
+        for (int i = 0; i < NODES; i++) {
+            NodeId nodeId = new NodeId(PRODUCT, "p" + i);
+            for (EdgeType edgeType : EDGE_TYPES) {
+                for (EdgeDirection direction : EdgeDirection.values()) {
+                    assertEquals(describe(expected, nodeId, edgeType, direction),
+                                 describe(actual, nodeId, edgeType, direction));
+                }
+            }
+        }
+    }
+
+    private List<String> describe(PropertyGraph graph, NodeId nodeId, EdgeType edgeType,
+                                  EdgeDirection direction) {
+        List<String> edges = new ArrayList<String>();
+        for (Edge edge : graph.getEdges(nodeId, edgeType, direction)) {
+            edges.add(edge.getIndex() + ":" + edge.getStartNode().getNodeId().getId() + "->"
+                + edge.getEndNode().getNodeId().getId() + ":" + edge.getWeight());
+        }
+        return edges;
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph;
+
+import org.jon.ivmark.graphit.core.graph.edge.EdgeType;
+import org.jon.ivmark.graphit.core.graph.node.NodeId;
+import org.jon.ivmark.graphit.core.graph.node.NodeType;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author jon
+ */
+public class PropertyGraphImplCheckpointTest {
+
+    @Rule
+    public TemporaryFolder out = new TemporaryFolder();
+
+    private File dir;
+
+    @Before
+    public void setupDir() throws IOException {
+        dir = out.newFolder("graph");
+    }
+
+    private PropertyGraphImpl createGraph() {
+        PropertyGraphImpl graph = new PropertyGraphImpl("test");
+        graph.setDataDir(dir.getAbsolutePath());
+        graph.setFileFormat(GraphFileFormat.SNAPSHOT);
+        return graph;
+    }
+
+    private void addNodes(PropertyGraphImpl graph, int n) {
+        NodeType user = graph.getOrCreateNodeType("user");
+        EdgeType knows = graph.getOrCreateEdgeType("knows");
+        NodeId previous = null;
+        for (int i = 0; i < n; i++) {
+            NodeId nodeId = new NodeId(user, "u" + graph.numberOfNodes());
+            graph.addNode(nodeId);
+            if (previous != null) {
+                graph.addEdge(previous, nodeId, knows);
+            }
+            previous = nodeId;
+        }
+    }
+
+    @Test
+    public void testScheduledCheckpoints() throws InterruptedException {
+        PropertyGraphImpl graph = createGraph();
+        graph.setMutationLogEnabled(true);
+        graph.setCheckpointIntervalMillis(10);
+        graph.init();
+        addNodes(graph, 100);
+
+        long timeout = System.currentTimeMillis() + 10000;
+        while (graph.getCheckpointStats().getCheckpoints() < 2
+            && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        CheckpointStats stats = graph.getCheckpointStats();
+        assertTrue(stats.getCheckpoints() >= 2);
+        assertEquals(0, stats.getFailures());
+        assertTrue(stats.getLastSize() > 0);
+        assertTrue(stats.getLastCheckpointTime() > 0);
+        assertTrue(stats.getTotalDurationMillis() >= stats.getLastDurationMillis());
+        assertTrue(new File(dir, "g-test.snapshot").exists());
+        graph.shutdown();
+
+        PropertyGraphImpl reopened = createGraph();
+        reopened.init();
+        assertEquals(100, reopened.numberOfNodes());
+        assertEquals(99, reopened.numberOfEdges(reopened.getEdgeType("knows")));
+    }
+
+    @Test
+    public void testCheckpointWithoutMutationLog() {
+        PropertyGraphImpl graph = createGraph();
+        graph.init();
+        addNodes(graph, 10);
+        graph.checkpoint();
+        File file = new File(dir, "g-test.snapshot");
+        assertTrue(file.exists());
+        assertEquals(1, graph.getCheckpointStats().getCheckpoints());
+        assertEquals(file.length(), graph.getCheckpointStats().getLastSize());
+    }
+
+    @Test
+    public void testMaxVersions() throws InterruptedException {
+        PropertyGraphImpl graph = createGraph();
+        graph.setMaxVersions(2);
+        graph.init();
+        for (int i = 0; i < 5; i++) {
+            addNodes(graph, 1);
+            graph.checkpoint();
+            // Make sure each version gets a unique timestamp
+            Thread.sleep(2);
+        }
+        File[] versions = new File(dir, "versions").listFiles();
+        assertEquals(2, versions.length);
+
+        PropertyGraphImpl reopened = createGraph();
+        reopened.init();
+        assertEquals(5, reopened.numberOfNodes());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCheckpointIntervalWithoutDataDir() {
+        PropertyGraphImpl graph = new PropertyGraphImpl("test");
+        graph.setCheckpointIntervalMillis(10);
+        graph.init();
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jon.ivmark.graphit.core.graph;
+
+import org.jon.ivmark.graphit.core.graph.edge.Edge;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeDirection;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeId;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeType;
+import org.jon.ivmark.graphit.core.graph.node.Node;
+import org.jon.ivmark.graphit.core.graph.node.NodeId;
+import org.jon.ivmark.graphit.core.graph.node.NodeType;
+import org.jon.ivmark.graphit.core.graph.traversal.Traversable;
+import org.jon.ivmark.graphit.core.properties.PropertiesBuilder;
+import org.jon.ivmark.graphit.core.properties.filter.FilterCondition;
+import org.jon.ivmark.graphit.core.properties.filter.PropertyFilterSettings;
+import org.jon.ivmark.graphit.core.properties.index.PropertyIndexType;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.*;
+
+/**
+ * @author jon
+ */
+public class PropertyGraphImplIndexTest {
+
+    @Rule
+    public TemporaryFolder dataDir = new TemporaryFolder();
+
+    private PropertyGraphImpl graph;
+    private NodeType user;
+    private NodeType item;
+    private EdgeType bought;
+
+    @Before
+    public void setupGraph() {
+        this.graph = new PropertyGraphImpl("test");
+        this.user = graph.createNodeType("user");
+        this.item = graph.createNodeType("item");
+        this.bought = graph.createEdgeType("bought");
+        addNodesAndEdges(graph);
+    }
+
+    private void addNodesAndEdges(PropertyGraphImpl g) {
+        for (int i = 0; i < 20; i++) {
+            NodeId u = g.addNode(new NodeId(user, "u" + i)).getNodeId();
+            g.setNodeProperties(u, PropertiesBuilder.start().set("city", "c" + (i % 4)).build());
+            NodeId it = g.addNode(new NodeId(item, "i" + i)).getNodeId();
+            g.setNodeProperties(it, PropertiesBuilder.start().set("city", "c" + (i % 4))
+                .set("price", i).build());
+            EdgeId b = g.addEdge(u, it, bought).getEdgeId();
+            g.setEdgeProperties(b, PropertiesBuilder.start().set("channel", i % 2 == 0 ? "web" : "app")
+                .build());
+        }
+    }
+
+    @Test
+    public void testGetNodesWithIndex() {
+        Set<String> expected = ids(graph.getNodes(user, "city", "c1"));
+        graph.createNodeIndex(user, "city", PropertyIndexType.HASH);
+
+        assertEquals(new HashSet<String>(Arrays.asList("u1", "u5", "u9", "u13", "u17")), expected);
+        assertEquals(expected, ids(graph.getNodes(user, "city", "c1")));
+        assertEquals(singletonSet("city"), graph.getNodeIndexKeys(user));
+        assertTrue(graph.getNodeIndexKeys(item).isEmpty());
+    }
+
+    @Test
+    public void testIndexFollowsHandles() {
+        Node u1 = graph.getNode(new NodeId(user, "u1"));
+        graph.createNodeIndex(user, "city", PropertyIndexType.HASH);
+
+        u1.setProperty("city", "c0");
+        graph.getNode(new NodeId(user, "u2")).setProperty("city", "c0");
+        graph.removeNode(new NodeId(user, "u4"));
+
+        assertEquals(new HashSet<String>(Arrays.asList("u0", "u1", "u2", "u8", "u12", "u16")),
+                     ids(graph.getNodes(user, "city", "c0")));
+    }
+
+    @Test
+    public void testRangeFilter() {
+        graph.createNodeIndex(item, "price", PropertyIndexType.SORTED);
+        List<PropertyFilterSettings> filter = Arrays.asList(
+            new PropertyFilterSettings("price", Arrays.asList(new FilterCondition(">=", 4),
+                                                              new FilterCondition("<", 12))),
+            new PropertyFilterSettings("city", singletonList(new FilterCondition("=", "c1"))));
+
+        assertEquals(new HashSet<String>(Arrays.asList("i5", "i9")), ids(graph.getNodes(item, filter)));
+    }
+
+    @Test
+    public void testGetEdgesWithIndex() {
+        graph.createEdgeIndex(bought, "channel", PropertyIndexType.HASH);
+        graph.removeEdge(graph.getEdges(new NodeId(user, "u0"), bought, EdgeDirection.OUTGOING)
+                             .get(0).getEdgeId());
+
+        Traversable<Edge> edges = graph.getEdges(bought, "channel", "web");
+        assertEquals(9, edges.size());
+        for (Edge edge : edges) {
+            assertEquals("web", edge.getProperty("channel"));
+        }
+        assertEquals(10, graph.getEdges(bought, "channel", "app").size());
+    }
+
+    @Test
+    public void testIndexWithColumnarProperties() {
+        PropertyGraphImpl columnar = new PropertyGraphImpl("test");
+        columnar.useColumnarNodeProperties();
+        columnar.createNodeType("user");
+        columnar.createNodeType("item");
+        columnar.createEdgeType("bought");
+        columnar.createNodeIndex(item, "price", PropertyIndexType.SORTED);
+        addNodesAndEdges(columnar);
+
+        List<PropertyFilterSettings> filter =
+            singletonList(new PropertyFilterSettings("price", singletonList(new FilterCondition("gt", 17))));
+        assertEquals(new HashSet<String>(Arrays.asList("i18", "i19")), ids(columnar.getNodes(item, filter)));
+    }
+
+    @Test
+    public void testIndexWithMutationLog() throws IOException {
+        PropertyGraphImpl logged = new PropertyGraphImpl("test");
+        logged.setDataDir(dataDir.getRoot().getAbsolutePath());
+        logged.setMutationLogEnabled(true);
+        logged.setMutationLogSyncIntervalMillis(0);
+        logged.createNodeType("user");
+        logged.createNodeType("item");
+        logged.createEdgeType("bought");
+        logged.init();
+        logged.createNodeIndex(user, "city", PropertyIndexType.HASH);
+        addNodesAndEdges(logged);
+        logged.shutdown();
+
+        PropertyGraphImpl replayed = new PropertyGraphImpl("test");
+        replayed.setDataDir(dataDir.getRoot().getAbsolutePath());
+        replayed.setMutationLogEnabled(true);
+        replayed.setMutationLogSyncIntervalMillis(0);
+        replayed.createNodeIndex(user, "city", PropertyIndexType.HASH);
+        replayed.init();
+
+        assertEquals(5, replayed.getNodes(user, "city", "c3").size());
+        replayed.shutdown();
+    }
+
+    private static Set<String> ids(Traversable<Node> nodes) {
+        Set<String> ids = new HashSet<String>();
+        for (Node node : nodes) {
+            ids.add(node.getNodeId().getId());
+        }
+        return ids;
+    }
+
+    private static Set<String> singletonSet(String key) {
+        return new HashSet<String>(singletonList(key));
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph;
+
+import org.apache.commons.io.FileUtils;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeId;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeSortOrder;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeType;
+import org.jon.ivmark.graphit.core.graph.exception.GraphException;
+import org.jon.ivmark.graphit.core.graph.node.NodeId;
+import org.jon.ivmark.graphit.core.graph.node.NodeType;
+import org.jon.ivmark.graphit.core.properties.PropertiesBuilder;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author jon
+ */
+public class PropertyGraphImplJsonChunksTest {
+
+    @Rule
+    public TemporaryFolder out = new TemporaryFolder();
+
+    private PropertyGraphImpl graph;
+
+    @Before
+    public void setupGraph() {
+        this.graph = new PropertyGraphImpl("test");
+
+        NodeType user = graph.createNodeType("user");
+        NodeType item = graph.createNodeType("item");
+
+        EdgeType bought = graph.createEdgeType("bought");
+        EdgeType recommended = graph.createEdgeType("recommended", EdgeSortOrder.DESCENDING_WEIGHT);
+        EdgeType cheaper = graph.createEdgeType("cheaper", EdgeSortOrder.ASCENDING_WEIGHT, true);
+
+        for (int i = 0; i < 20; i++) {
+            NodeId u = graph.addNode(new NodeId(user, "u" + i)).getNodeId();
+            graph.setNodeProperties(u, PropertiesBuilder.start().set("name", "U" + i)
+                    .set("age", i).build());
+            NodeId it = graph.addNode(new NodeId(item, "i" + i)).getNodeId();
+            graph.setNodeProperties(it, PropertiesBuilder.start().set("price", 10.5 * i)
+                    .build());
+        }
+        for (int i = 0; i < 20; i++) {
+            NodeId u = new NodeId(user, "u" + i);
+            for (int j = 0; j < 3; j++) {
+                NodeId it = new NodeId(item, "i" + ((i + j) % 20));
+                EdgeId b = graph.addEdge(u, it, bought).getEdgeId();
+                graph.setEdgeProperties(b, PropertiesBuilder.start()
+                        .set("aliases", Arrays.asList("b" + i, "c" + j)).build());
+                graph.addEdge(new NodeId(item, "i" + i), it, recommended, i + j);
+            }
+            graph.addEdge(new NodeId(item, "i" + i), new NodeId(item, "i" + ((i + 1) % 20)),
+                          cheaper, 0.5f * i);
+        }
+
+        // Leave some holes in the node and edge indexes
+        graph.removeEdge(new EdgeId(bought, 7));
+        graph.removeNode(new NodeId(user, "u3"));
+        graph.removeNode(new NodeId(item, "i11"));
+    }
+
+    @Test
+    public void testExportImportJsonChunks() throws IOException {
+        File dir = out.newFolder();
+        graph.exportJsonChunks(dir, 3, true, true);
+
+        assertTrue(new File(dir, "manifest.json").exists());
+        assertTrue(new File(dir, "nodes-2.json").exists());
+        assertTrue(new File(dir, "edges-bought-2.json").exists());
+
+        PropertyGraphImpl importedGraph = new PropertyGraphImpl("test");
+        importedGraph.importJsonChunks(dir, 3);
+
+        assertEquals(toJson(graph, true), toJson(importedGraph, true));
+        assertEquals(graph.numberOfNodes(), importedGraph.numberOfNodes());
+        for (EdgeType edgeType : graph.getMetadata().getEdgeTypes().elements()) {
+            EdgeType importedEdgeType = importedGraph.getEdgeType(edgeType.name());
+            assertEquals(edgeType.getSortOrder(), importedEdgeType.getSortOrder());
+            assertEquals(edgeType.hasInlineWeights(), importedEdgeType.hasInlineWeights());
+        }
+    }
+
+    @Test
+    public void testExportImportJsonChunksNoProperties() throws IOException {
+        File dir = out.newFolder();
+        graph.exportJsonChunks(dir, 4, false, false);
+
+        PropertyGraphImpl importedGraph = new PropertyGraphImpl("test");
+        importedGraph.importJsonChunks(dir, 2);
+
+        assertEquals(toJson(graph, false), toJson(importedGraph, true));
+    }
+
+    @Test
+    public void testExportImportEmptyGraph() throws IOException {
+        File dir = out.newFolder();
+        PropertyGraphImpl empty = new PropertyGraphImpl("test");
+        empty.createNodeType("user");
+        empty.exportJsonChunks(dir, 2, true, true);
+
+        PropertyGraphImpl importedGraph = new PropertyGraphImpl("test");
+        importedGraph.importJsonChunks(dir, 2);
+        assertEquals(0, importedGraph.numberOfNodes());
+        assertNotNull(importedGraph.getNodeType("user"));
+    }
+
+    @Test
+    public void testExportImportEdgeTypeNamesDifferingInCase() throws IOException {
+        File dir = out.newFolder();
+        EdgeType edgeType = graph.createEdgeType("Bought-2");
+        graph.addEdge(new NodeId(graph.getNodeType("user"), "u1"),
+                      new NodeId(graph.getNodeType("item"), "i1"), edgeType);
+        graph.exportJsonChunks(dir, 2, true, true);
+
+        assertTrue(new File(dir, "edges-%42ought%2D2-0.json").exists());
+        assertTrue(new File(dir, "edges-bought-0.json").exists());
+        PropertyGraphImpl importedGraph = new PropertyGraphImpl("test");
+        importedGraph.importJsonChunks(dir, 2);
+        assertEquals(toJson(graph, true), toJson(importedGraph, true));
+    }
+
+    @Test
+    public void testChunksAgreeWithSingleFileOnEdgesOfRemovedNodes() throws IOException {
+        File dir = out.newFolder();
+        graph.exportJsonChunks(dir, 3, true, true);
+        PropertyGraphImpl fromChunks = new PropertyGraphImpl("test");
+        fromChunks.importJsonChunks(dir, 3);
+
+        File file = out.newFile();
+        graph.exportJson(file, true, true);
+        PropertyGraphImpl fromFile = new PropertyGraphImpl("test");
+        fromFile.importJson(file);
+
+        // Neither export has the edges of u3 and i11
+        for (EdgeType edgeType : graph.getMetadata().getEdgeTypes().elements()) {
+            assertEquals(fromFile.numberOfEdges(edgeType), fromChunks.numberOfEdges(edgeType));
+        }
+        assertEquals(toJson(fromFile, true), toJson(fromChunks, true));
+        assertNull(fromChunks.getEdgeRepo().getEdge(new EdgeId(fromChunks.getEdgeType("bought"), 9)));
+    }
+
+    @Test(expected = GraphException.class)
+    public void testImportMissingManifest() throws IOException {
+        new PropertyGraphImpl("test").importJsonChunks(out.newFolder(), 2);
+    }
+
+    private String toJson(PropertyGraph g, boolean includeProperties) throws IOException {
+        File file = out.newFile();
+        g.exportJson(file, includeProperties, includeProperties);
+        return FileUtils.readFileToString(file);
+    }
+}
@@ -17,12 +17,15 @@
 package org.jon.ivmark.graphit.core.graph;
 
 import org.apache.commons.io.FileUtils;
+import org.jon.ivmark.graphit.core.graph.edge.Edge;
 import org.jon.ivmark.graphit.core.graph.edge.EdgeId;
 import org.jon.ivmark.graphit.core.graph.edge.EdgeSortOrder;
 import org.jon.ivmark.graphit.core.graph.edge.EdgeType;
+import org.jon.ivmark.graphit.core.graph.edge.repository.EdgePropertiesRepository;
 import org.jon.ivmark.graphit.core.graph.node.NodeId;
 import org.jon.ivmark.graphit.core.graph.node.NodeType;
 import org.jon.ivmark.graphit.core.io.util.ResourceUtils;
+import org.jon.ivmark.graphit.core.properties.Properties;
 import org.jon.ivmark.graphit.core.properties.PropertiesBuilder;
 import org.junit.Before;
 import org.junit.Rule;
@@ -31,7 +34,10 @@ import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import static org.junit.Assert.*;
 
@@ -144,6 +150,60 @@ public class PropertyGraphImplJsonTest {
         assertEquals(expected, fileContent);
     }
 
+    @Test
+    public void testImportJsonIntegerWeightsAndFieldOrder() throws IOException {
+        File file = out.newFile();
+        FileUtils.writeStringToFile(file, "{\"metadata\":{\"name\":\"test\","
+            + "\"nodetypes\":[\"user\"],\"edgetypes\":[{\"name\":\"knows\","
+            + "\"sortorder\":\"UNDEFINED\"}]},"
+            + "\"nodes\":[{\"name\":\"U1\",\"tags\":[\"a\",{\"b\":1}],"
+            + "\"_id\":\"u1\",\"_type\":\"user\",\"_index\":0},"
+            + "{\"_index\":1,\"_type\":\"user\",\"_id\":\"u2\"}],"
+            + "\"edges\":[{\"_weight\":2,\"since\":2012,\"_end\":1,\"_start\":0,"
+            + "\"_type\":\"knows\",\"_index\":0}]}");
+        PropertyGraphImpl importedGraph = new PropertyGraphImpl("test");
+        importedGraph.importJson(file);
+
+        NodeType user = importedGraph.getNodeType("user");
+        assertEquals("U1", importedGraph.getNode(new NodeId(user, "u1")).getProperty("name"));
+        assertEquals(Arrays.asList("a", Collections.singletonMap("b", 1)),
+                     importedGraph.getNode(new NodeId(user, "u1")).getProperty("tags"));
+        assertTrue(importedGraph.getNode(new NodeId(user, "u2")).isEmpty());
+        Edge edge = importedGraph.getEdge(new EdgeId(importedGraph.getEdgeType("knows"), 0));
+        assertEquals(2f, edge.getWeight(), 0.00001f);
+        assertEquals(2012, edge.getProperty("since"));
+        assertEquals(1, edge.getEndNode().getIndex());
+    }
+
+    @Test
+    public void testImportJsonSavesEdgePropertiesAfterTheEdge() throws IOException {
+        File file = out.newFile();
+        FileUtils.writeStringToFile(file, "{\"metadata\":{\"name\":\"test\","
+            + "\"nodetypes\":[\"user\"],\"edgetypes\":[{\"name\":\"knows\","
+            + "\"sortorder\":\"UNDEFINED\"}]},"
+            + "\"nodes\":[{\"_index\":0,\"_type\":\"user\",\"_id\":\"u1\"},"
+            + "{\"_index\":1,\"_type\":\"user\",\"_id\":\"u2\"}],"
+            + "\"edges\":[{\"_index\":0,\"_type\":\"knows\",\"_start\":0,\"_end\":1,"
+            + "\"_weight\":1,\"since\":2012}]}");
+        final PropertyGraphImpl importedGraph = new PropertyGraphImpl("test");
+        final List<EdgeId> savedBeforeEdge = new ArrayList<EdgeId>();
+        importedGraph.setEdgePropertiesRepo(new EdgePropertiesRepository(16) {
+
+            @Override
+            public void saveProperties(EdgeId id, Properties properties) {
+                if (importedGraph.getEdge(id) == null) {
+                    savedBeforeEdge.add(id);
+                }
+                super.saveProperties(id, properties);
+            }
+        });
+        importedGraph.importJson(file);
+
+        assertTrue(savedBeforeEdge.isEmpty());
+        Edge edge = importedGraph.getEdge(new EdgeId(importedGraph.getEdgeType("knows"), 0));
+        assertEquals(2012, edge.getProperty("since"));
+    }
+
     @Test
     public void testShutdownNoDataDir() throws IOException {
         graph.shutdown(); // Just make sure no exception is thrown
@@ -0,0 +1,427 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph;
+
+import org.apache.commons.io.FileUtils;
+import org.jon.ivmark.graphit.core.graph.edge.Edge;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeId;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeSortOrder;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeType;
+import org.jon.ivmark.graphit.core.graph.exception.DuplicateKeyException;
+import org.jon.ivmark.graphit.core.graph.exception.GraphException;
+import org.jon.ivmark.graphit.core.graph.node.Node;
+import org.jon.ivmark.graphit.core.graph.node.NodeId;
+import org.jon.ivmark.graphit.core.graph.node.NodeType;
+import org.jon.ivmark.graphit.core.properties.Properties;
+import org.jon.ivmark.graphit.core.properties.PropertiesBuilder;
+import org.jon.ivmark.graphit.core.properties.repository.PropertiesUpdate;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author jon
+ */
+public class PropertyGraphImplMutationLogTest {
+
+    @Rule
+    public TemporaryFolder out = new TemporaryFolder();
+
+    private File dir;
+
+    @Before
+    public void setupDir() throws IOException {
+        dir = out.newFolder("graph");
+    }
+
+    private PropertyGraphImpl openGraph() {
+        PropertyGraphImpl graph = new PropertyGraphImpl("test");
+        graph.setDataDir(dir.getAbsolutePath());
+        graph.setMutationLogEnabled(true);
+        graph.setMutationLogSyncIntervalMillis(0);
+        graph.init();
+        return graph;
+    }
+
+    private void mutate(PropertyGraphImpl graph) {
+        NodeType user = graph.getOrCreateNodeType("user");
+        NodeType item = graph.getOrCreateNodeType("item");
+        EdgeType bought = graph.getOrCreateEdgeType("bought");
+        EdgeType similar = graph.createEdgeType("similar", EdgeSortOrder.DESCENDING_WEIGHT, true);
+
+        NodeId u1 = graph.addNode(new NodeId(user, "u1")).getNodeId();
+        graph.setNodeProperties(u1, PropertiesBuilder.start().set("name", "U1").set("age", 1)
+            .build());
+        Node u2 = graph.addNode(new NodeId(user, "u2"));
+        u2.setProperty("name", "U2");
+        u2.setProperty("tags", Arrays.asList("a", "b"));
+        u2.removeProperty("tags");
+        NodeId u3 = graph.addNode(new NodeId(user, "u3")).getNodeId();
+
+        NodeId i1 = graph.addNode(new NodeId(item, "i1")).getNodeId();
+        NodeId i2 = graph.addNode(new NodeId(item, "i2")).getNodeId();
+        NodeId i3 = graph.addNode(new NodeId(item, "i3")).getNodeId();
+
+        Edge b1 = graph.addEdge(u1, i1, bought);
+        b1.setProperty("count", 2);
+        EdgeId b2 = graph.addEdge(u1, i2, bought).getEdgeId();
+        graph.addEdge(u2.getNodeId(), i2, bought);
+        graph.addEdge(u3, i3, bought);
+        graph.removeEdge(b2);
+        // Reuses the index of the removed edge
+        graph.addEdge(u3, i1, bought);
+
+        new PropertyGraphBuilder(graph)
+            .addEdge(i1, i2, similar, 0.5f)
+            .addEdge(i1, i3, similar, 0.25f)
+            .addEdge(i2, i3, similar, 0.75f)
+            .build();
+        graph.setEdgeWeight(new EdgeId(similar, 0), 0.9f);
+
+        graph.removeNode(u3);
+    }
+
+    @Test
+    public void testReplayAfterCrash() throws IOException {
+        PropertyGraphImpl graph = openGraph();
+        mutate(graph);
+
+        // Open the graph again without shutting it down
+        PropertyGraphImpl recovered = openGraph();
+        assertEquals(toJson(graph), toJson(recovered));
+        assertEquals(graph.numberOfNodes(), recovered.numberOfNodes());
+        EdgeType similar = recovered.getEdgeType("similar");
+        assertEquals(EdgeSortOrder.DESCENDING_WEIGHT, similar.getSortOrder());
+        assertTrue(similar.hasInlineWeights());
+
+        // Removed edge indexes reused by replayed edges are not handed out again
+        EdgeType bought = recovered.getEdgeType("bought");
+        Edge edge = recovered.addEdge(new NodeId(recovered.getNodeType("user"), "u1"),
+                                      new NodeId(recovered.getNodeType("item"), "i3"), bought);
+        assertEquals(4, edge.getIndex());
+        recovered.shutdown();
+    }
+
+    @Test
+    public void testReplayOnTopOfCheckpoint() throws IOException {
+        PropertyGraphImpl graph = openGraph();
+        mutate(graph);
+        graph.checkpoint();
+        assertTrue(new File(dir, "g-test.json").exists());
+        assertEquals(1, MutationLog.segments(dir, "g-test").size());
+
+        NodeId i1 = new NodeId(graph.getNodeType("item"), "i1");
+        graph.getNode(i1).setProperty("title", "I1");
+        graph.addNode(new NodeId(graph.getNodeType("item"), "i4"));
+        graph.removeNode(new NodeId(graph.getNodeType("user"), "u1"));
+
+        PropertyGraphImpl recovered = openGraph();
+        assertEquals(toJson(graph), toJson(recovered));
+        assertEquals("I1", recovered.getNode(i1).getProperty("title"));
+        recovered.shutdown();
+    }
+
+    @Test
+    public void testSegmentsSurviveFailedCheckpoints() throws IOException {
+        PropertyGraphImpl graph = openGraph();
+        mutate(graph);
+        graph.checkpoint();
+        NodeType item = graph.getNodeType("item");
+
+        // The graph file cannot be written
+        graph.addNode(new NodeId(item, "i4"));
+        File tmpFile = new File(dir, "g-test.json.tmp");
+        assertTrue(new File(tmpFile, "blocker").mkdirs());
+        try {
+            graph.checkpoint();
+            fail("Expected the checkpoint to fail");
+        } catch (GraphException e) {
+            // Expected
+        }
+        assertEquals(2, MutationLog.segments(dir, "g-test").size());
+        FileUtils.deleteDirectory(tmpFile);
+
+        // The previous graph file cannot be replaced
+        graph.addNode(new NodeId(item, "i5"));
+        assertTrue(new File(dir, "versions").createNewFile());
+        try {
+            graph.checkpoint();
+            fail("Expected the checkpoint to fail");
+        } catch (GraphException e) {
+            // Expected
+        }
+        assertEquals(3, MutationLog.segments(dir, "g-test").size());
+        assertTrue(new File(dir, "g-test.json").exists());
+        assertTrue(new File(dir, "versions").delete());
+
+        PropertyGraphImpl recovered = openGraph();
+        assertEquals(toJson(graph), toJson(recovered));
+        assertNotNull(recovered.getNode(new NodeId(item, "i4")));
+        assertNotNull(recovered.getNode(new NodeId(item, "i5")));
+        recovered.shutdown();
+    }
+
+    @Test
+    public void testReplayUpdatedProperties() throws IOException {
+        PropertyGraphImpl graph = openGraph();
+        mutate(graph);
+        NodeId i1 = new NodeId(graph.getNodeType("item"), "i1");
+        graph.updateNodeProperties(i1, new PropertiesUpdate() {
+
+            @Override
+            public void apply(Properties properties) {
+                properties.setProperty("title", "I1");
+                properties.setProperty("price", 10);
+            }
+        });
+
+        PropertyGraphImpl recovered = openGraph();
+        assertEquals(toJson(graph), toJson(recovered));
+        assertEquals("I1", recovered.getNode(i1).getProperty("title"));
+        assertEquals(10, recovered.getNode(i1).getProperty("price"));
+        recovered.shutdown();
+    }
+
+    @Test
+    public void testReplayOnTopOfGraphFileWithSameMutations() throws IOException {
+        PropertyGraphImpl graph = openGraph();
+        mutate(graph);
+        // As if crashing after persisting the graph but before deleting the log
+        graph.exportJson(new File(dir, "g-test.json"), true, true);
+
+        PropertyGraphImpl recovered = openGraph();
+        assertEquals(toJson(graph), toJson(recovered));
+        recovered.shutdown();
+    }
+
+    @Test
+    public void testReplayBatchLoggedInSeveralChunks() throws IOException {
+        PropertyGraphImpl graph = openGraph();
+        NodeType user = graph.getOrCreateNodeType("user");
+        EdgeType knows = graph.getOrCreateEdgeType("knows");
+        int nofNodes = 100;
+        for (int i = 0; i < nofNodes; i++) {
+            graph.addNode(new NodeId(user, "u" + i));
+        }
+        PropertyGraphBuilder builder = new PropertyGraphBuilder(graph);
+        int nofEdges = 10000;
+        for (int i = 0; i < nofEdges; i++) {
+            builder.addEdge(i % nofNodes, (i / nofNodes) % nofNodes, knows, i);
+        }
+        builder.build();
+        assertEquals(nofEdges, graph.numberOfEdges(knows));
+
+        PropertyGraphImpl recovered = openGraph();
+        assertEquals(nofEdges, recovered.numberOfEdges(knows));
+        assertEquals(toJson(graph), toJson(recovered));
+        recovered.shutdown();
+    }
+
+    @Test
+    public void testTornRecordIsIgnored() throws IOException {
+        PropertyGraphImpl graph = openGraph();
+        mutate(graph);
+
+        File segment = MutationLog.segments(dir, "g-test").get(0);
+        FileOutputStream output = new FileOutputStream(segment, true);
+        try {
+            output.write(new byte[] {0, 0, 0, 100, 1, 2, 3, 4, 5});
+        } finally {
+            output.close();
+        }
+
+        PropertyGraphImpl recovered = openGraph();
+        assertEquals(toJson(graph), toJson(recovered));
+        recovered.shutdown();
+    }
+
+    @Test
+    public void testShutdown() throws IOException {
+        PropertyGraphImpl graph = openGraph();
+        mutate(graph);
+        graph.shutdown();
+        assertTrue(new File(dir, "g-test.json").exists());
+        assertTrue(MutationLog.segments(dir, "g-test").isEmpty());
+
+        PropertyGraphImpl reopened = openGraph();
+        assertEquals(toJson(graph), toJson(reopened));
+        reopened.shutdown();
+    }
+
+    @Test
+    public void testBackgroundSync() throws IOException {
+        PropertyGraphImpl graph = new PropertyGraphImpl("test");
+        graph.setDataDir(dir.getAbsolutePath());
+        graph.setMutationLogEnabled(true);
+        graph.setMutationLogSyncIntervalMillis(10);
+        graph.init();
+        mutate(graph);
+        graph.shutdown();
+
+        PropertyGraphImpl reopened = openGraph();
+        assertEquals(toJson(graph), toJson(reopened));
+        reopened.shutdown();
+    }
+
+    @Test
+    public void testConcurrentReplayWithReusedEdgeIds() throws Exception {
+        final PropertyGraphImpl graph = openGraph();
+        NodeType user = graph.getOrCreateNodeType("user");
+        final EdgeType knows = graph.getOrCreateEdgeType("knows");
+        final NodeId[] users = new NodeId[8];
+        for (int i = 0; i < users.length; i++) {
+            users[i] = graph.addNode(new NodeId(user, "u" + i)).getNodeId();
+        }
+        int nofThreads = 4;
+        final int nofRounds = 100;
+        ExecutorService executor = Executors.newFixedThreadPool(nofThreads);
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int t = 0; t < nofThreads; t++) {
+            final int thread = t;
+            futures.add(executor.submit(new Runnable() {
+
+                @Override
+                public void run() {
+                    // Each removed id is immediately up for grabs by the other threads
+                    for (int i = 0; i < nofRounds; i++) {
+                        Edge edge = graph.addEdge(users[thread], users[(thread + i) % users.length], knows);
+                        edge.setProperty("round", i);
+                        if (i % 4 != 0) {
+                            graph.removeEdge(edge.getEdgeId());
+                        }
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        PropertyGraphImpl recovered = openGraph();
+        assertEquals(graph.numberOfEdges(knows), recovered.numberOfEdges(knows));
+        assertEquals(toJson(graph), toJson(recovered));
+        recovered.shutdown();
+    }
+
+    @Test
+    public void testConcurrentReplayOfSameNodeAndEdge() throws Exception {
+        final PropertyGraphImpl graph = openGraph();
+        final NodeType user = graph.getOrCreateNodeType("user");
+        EdgeType knows = graph.getOrCreateEdgeType("knows");
+        NodeId u1 = graph.addNode(new NodeId(user, "u1")).getNodeId();
+        NodeId u2 = graph.addNode(new NodeId(user, "u2")).getNodeId();
+        final EdgeId edgeId = graph.addEdge(u1, u2, knows).getEdgeId();
+        int nofThreads = 4;
+        final int nofRounds = 100;
+        ExecutorService executor = Executors.newFixedThreadPool(nofThreads);
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int t = 0; t < nofThreads; t++) {
+            final int thread = t;
+            futures.add(executor.submit(new Runnable() {
+
+                @Override
+                public void run() {
+                    // All threads add and remove the same node and set the
+                    // weight of the same edge
+                    NodeId nodeId = new NodeId(user, "shared");
+                    for (int i = 0; i < nofRounds; i++) {
+                        try {
+                            graph.addNode(nodeId);
+                        } catch (DuplicateKeyException e) {
+                            // Added by another thread
+                        }
+                        if (i % 2 == 0) {
+                            graph.removeNode(nodeId);
+                        }
+                        graph.setEdgeWeight(edgeId, thread * nofRounds + i);
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        PropertyGraphImpl recovered = openGraph();
+        assertEquals(graph.getEdge(edgeId).getWeight(), recovered.getEdge(edgeId).getWeight(), 0);
+        assertEquals(graph.numberOfNodes(), recovered.numberOfNodes());
+        assertEquals(toJson(graph), toJson(recovered));
+        recovered.shutdown();
+    }
+
+    @Test
+    public void testConcurrentReplayOfPropertyUpdates() throws Exception {
+        final PropertyGraphImpl graph = openGraph();
+        final NodeId counter = graph.addNode(new NodeId(graph.getOrCreateNodeType("counter"), "c"))
+            .getNodeId();
+        int nofThreads = 4;
+        final int nofRounds = 100;
+        ExecutorService executor = Executors.newFixedThreadPool(nofThreads);
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int t = 0; t < nofThreads; t++) {
+            final int thread = t;
+            futures.add(executor.submit(new Runnable() {
+
+                @Override
+                public void run() {
+                    for (int i = 0; i < nofRounds; i++) {
+                        graph.updateNodeProperties(counter, new PropertiesUpdate() {
+
+                            @Override
+                            public void apply(Properties properties) {
+                                Integer count = (Integer) properties.getProperty("count");
+                                properties.setProperty("count", count == null ? 1 : count + 1);
+                            }
+                        });
+                        graph.getNode(counter).setProperty("last", thread);
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertEquals(nofThreads * nofRounds, graph.getNode(counter).getProperty("count"));
+
+        PropertyGraphImpl recovered = openGraph();
+        assertEquals(graph.getNode(counter).asPropertyMap(),
+                     recovered.getNode(counter).asPropertyMap());
+        recovered.shutdown();
+    }
+
+    private String toJson(PropertyGraph g) throws IOException {
+        File file = out.newFile();
+        g.exportJson(file, true, true);
+        return FileUtils.readFileToString(file);
+    }
+}
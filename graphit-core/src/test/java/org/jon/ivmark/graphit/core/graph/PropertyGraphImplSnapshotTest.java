@@ -0,0 +1,218 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph;
+
+import org.apache.commons.io.FileUtils;
+import org.jon.ivmark.graphit.core.graph.edge.Edge;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeDirection;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeId;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeSortOrder;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeType;
+import org.jon.ivmark.graphit.core.graph.node.NodeId;
+import org.jon.ivmark.graphit.core.graph.node.NodeType;
+import org.jon.ivmark.graphit.core.properties.PropertiesBuilder;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author jon
+ */
+public class PropertyGraphImplSnapshotTest {
+
+    @Rule
+    public TemporaryFolder out = new TemporaryFolder();
+
+    private PropertyGraphImpl graph;
+
+    @Before
+    public void setupGraph() {
+        this.graph = new PropertyGraphImpl("test");
+
+        NodeType user = graph.createNodeType("user");
+        NodeType item = graph.createNodeType("item");
+
+        EdgeType bought = graph.createEdgeType("bought");
+        EdgeType recommended = graph.createEdgeType("recommended", EdgeSortOrder.DESCENDING_WEIGHT);
+        EdgeType cheaper = graph.createEdgeType("cheaper", EdgeSortOrder.ASCENDING_WEIGHT, true);
+
+        NodeId u1 = graph.addNode(new NodeId(user, "u1")).getNodeId();
+        graph.setNodeProperties(u1, PropertiesBuilder.start().set("name", "U1").set("age", 1)
+                .build());
+        NodeId u2 = graph.addNode(new NodeId(user, "u2")).getNodeId();
+        NodeId u3 = graph.addNode(new NodeId(user, "uåäö")).getNodeId();
+
+        NodeId i1 = graph.addNode(new NodeId(item, "i1")).getNodeId();
+        graph.setNodeProperties(i1, PropertiesBuilder.start()
+                .set("title", "i1").set("price", 100f).build());
+        NodeId i2 = graph.addNode(new NodeId(item, "i2")).getNodeId();
+        NodeId i3 = graph.addNode(new NodeId(item, "i3")).getNodeId();
+
+        EdgeId b1 = graph.addEdge(u1, i1, bought).getEdgeId();
+        graph.setEdgeProperties(b1, PropertiesBuilder.start().set("aliases", Arrays.asList("b1"))
+                .build());
+        EdgeId b2 = graph.addEdge(u1, i2, bought).getEdgeId();
+        graph.addEdge(u2, i2, bought);
+        graph.addEdge(u3, i3, bought);
+
+        graph.addEdge(i1, i2, recommended, 15);
+        graph.addEdge(i1, i3, recommended, 25);
+        graph.addEdge(i2, i3, recommended, 20);
+        graph.addEdge(i1, i3, recommended, 25);
+
+        graph.addEdge(i2, i1, cheaper, 1.5f);
+        graph.addEdge(i3, i1, cheaper, 0.5f);
+
+        // Leave some holes in the node and edge indexes
+        graph.removeEdge(b2);
+        graph.removeNode(u2);
+    }
+
+    @Test
+    public void testExportImportSnapshot() throws IOException {
+        File file = out.newFile();
+        graph.exportSnapshot(file, true, true);
+
+        PropertyGraphImpl importedGraph = new PropertyGraphImpl("test");
+        importedGraph.importSnapshot(file);
+
+        assertEquals(toJson(graph, true), toJson(importedGraph, true));
+        assertEquals(graph.numberOfNodes(), importedGraph.numberOfNodes());
+        for (EdgeType edgeType : graph.getMetadata().getEdgeTypes().elements()) {
+            EdgeType importedEdgeType = importedGraph.getEdgeType(edgeType.name());
+            assertEquals(edgeType.getSortOrder(), importedEdgeType.getSortOrder());
+            assertEquals(edgeType.hasInlineWeights(), importedEdgeType.hasInlineWeights());
+            assertEquals(graph.numberOfEdges(edgeType),
+                         importedGraph.numberOfEdges(importedEdgeType));
+        }
+    }
+
+    @Test
+    public void testExportImportSnapshotNoProperties() throws IOException {
+        File file = out.newFile();
+        graph.exportSnapshot(file, false, false);
+
+        PropertyGraphImpl importedGraph = new PropertyGraphImpl("test");
+        importedGraph.importSnapshot(file);
+
+        assertEquals(toJson(graph, false), toJson(importedGraph, true));
+    }
+
+    @Test
+    public void testExportImportSnapshotAddedInSeveralBatches() throws IOException {
+        PropertyGraphImpl large = new PropertyGraphImpl("test");
+        NodeType user = large.createNodeType("user");
+        EdgeType follows = large.createEdgeType("follows");
+        EdgeType rated = large.createEdgeType("rated", EdgeSortOrder.DESCENDING_WEIGHT);
+        for (int i = 0; i < 100; i++) {
+            large.addNode(new NodeId(user, "u" + i));
+        }
+        for (int i = 0; i < 150000; i++) {
+            large.addEdge(new NodeId(user, "u" + i % 100), new NodeId(user, "u" + (7 * i) % 100),
+                          i % 2 == 0 ? follows : rated, i % 13);
+        }
+        File file = out.newFile();
+        large.exportSnapshot(file, false, false);
+
+        PropertyGraphImpl importedGraph = new PropertyGraphImpl("test");
+        importedGraph.importSnapshot(file);
+
+        assertEquals(75000, importedGraph.numberOfEdges(importedGraph.getEdgeType("follows")));
+        assertEquals(75000, importedGraph.numberOfEdges(importedGraph.getEdgeType("rated")));
+        assertEquals(toJson(large, false), toJson(importedGraph, false));
+    }
+
+    @Test
+    public void testAddEdgeAfterImport() throws IOException {
+        File file = out.newFile();
+        graph.exportSnapshot(file, true, true);
+
+        PropertyGraphImpl importedGraph = new PropertyGraphImpl("test");
+        importedGraph.importSnapshot(file);
+
+        EdgeType recommended = importedGraph.getEdgeType("recommended");
+        NodeId i1 = new NodeId(importedGraph.getNodeType("item"), "i1");
+        NodeId i2 = new NodeId(importedGraph.getNodeType("item"), "i2");
+        Edge edge = importedGraph.addEdge(i2, i1, recommended, 30);
+        assertEquals(4, edge.getIndex());
+        Edge first = importedGraph.getEdges(i2, recommended, EdgeDirection.OUTGOING).iterator()
+                .next();
+        assertEquals(edge, first);
+    }
+
+    @Test
+    public void testShutdownAndInitWithSnapshot() throws IOException {
+        File dir = out.newFolder();
+        graph.setDataDir(dir.getAbsolutePath());
+        graph.setFileFormat(GraphFileFormat.SNAPSHOT);
+        graph.shutdown();
+
+        File graphFile = new File(dir, "g-test.snapshot");
+        assertTrue(graphFile.exists());
+        assertFalse(new File(dir, "g-test.json").exists());
+
+        PropertyGraphImpl g = new PropertyGraphImpl("test");
+        g.setDataDir(dir.getAbsolutePath());
+        g.setFileFormat(GraphFileFormat.SNAPSHOT);
+        g.init();
+
+        // Should have been renamed now
+        assertFalse(graphFile.exists());
+        String[] files = new File(dir, "versions").list();
+        assertEquals(1, files.length);
+        assertTrue(files[0].matches("g-test.\\d*.snapshot"));
+
+        assertEquals(toJson(graph, true), toJson(g, true));
+    }
+
+    @Test
+    public void testInitFromOtherFormat() throws IOException {
+        File dir = out.newFolder();
+        graph.setDataDir(dir.getAbsolutePath());
+        graph.shutdown();
+        assertTrue(new File(dir, "g-test.json").exists());
+
+        PropertyGraphImpl g = new PropertyGraphImpl("test");
+        g.setDataDir(dir.getAbsolutePath());
+        g.setFileFormat(GraphFileFormat.SNAPSHOT);
+        g.init();
+        assertEquals(toJson(graph, true), toJson(g, true));
+
+        g.shutdown();
+        assertTrue(new File(dir, "g-test.snapshot").exists());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testImportNonSnapshot() throws IOException {
+        File file = out.newFile();
+        graph.exportJson(file, true, true);
+        new PropertyGraphImpl("test").importSnapshot(file);
+    }
+
+    private String toJson(PropertyGraph g, boolean includeProperties) throws IOException {
+        File file = out.newFile();
+        g.exportJson(file, includeProperties, includeProperties);
+        return FileUtils.readFileToString(file);
+    }
+}
@@ -17,6 +17,7 @@
 package org.jon.ivmark.graphit.core.graph;
 
 import org.hamcrest.Matchers;
+import org.jon.ivmark.graphit.core.IntIntFloatProcedure;
 import org.jon.ivmark.graphit.core.graph.edge.Edge;
 import org.jon.ivmark.graphit.core.graph.edge.EdgeDirection;
 import org.jon.ivmark.graphit.core.graph.edge.EdgeId;
@@ -527,6 +528,41 @@ public class PropertyGraphImplTest {
         assertThat(node.getNodeId(), Matchers.is(u1));
     }
 
+    @Test
+    public void testForEachNeighborIndex() {
+        PropertyGraph graph = new PropertyGraphImpl(setupGraphMetadata());
+        new GraphBuilder(graph).addProducts("p1", "p2", "p3", "p4").similar("p1", "p2", 0.5f)
+                .similar("p3", "p1", 1.5f).similar("p1", "p4", 0.75f);
+        graph.removeNode(new NodeId(PRODUCT, "p4"));
+
+        Node p1 = graph.getNode(new NodeId(PRODUCT, "p1"));
+        final List<String> neighbors = new ArrayList<String>();
+        final PropertyGraph g = graph;
+        graph.forEachNeighborIndex(p1.getIndex(), SIMILAR, EdgeDirection.BOTH,
+                                   new IntIntFloatProcedure() {
+            @Override
+            public boolean apply(int neighborIndex, int edgeIndex, float weight) {
+                Edge edge = g.getEdge(new EdgeId(SIMILAR, edgeIndex));
+                assertThat(edge.getWeight(), Matchers.is(weight));
+                neighbors.add(g.getNode(neighborIndex).getNodeId().getId() + ":" + weight);
+                return true;
+            }
+        });
+        // p4 has been removed
+        assertThat(neighbors, Matchers.is(Arrays.asList("p2:0.5", "p3:1.5")));
+
+        final List<Integer> visited = new ArrayList<Integer>();
+        graph.forEachNeighborIndex(p1.getIndex(), SIMILAR, EdgeDirection.BOTH,
+                                   new IntIntFloatProcedure() {
+            @Override
+            public boolean apply(int neighborIndex, int edgeIndex, float weight) {
+                visited.add(neighborIndex);
+                return false;
+            }
+        });
+        assertThat(visited.size(), Matchers.is(1));
+    }
+
     @Test
     public void testRemoveUnsortedEdge() {
         PropertyGraph graph = new PropertyGraphImpl(setupGraphMetadata());
@@ -596,6 +632,27 @@ public class PropertyGraphImplTest {
         assertThat(node, Matchers.nullValue());
     }
 
+    @Test
+    public void testNumberOfNodesAndEdges() {
+        PropertyGraph graph = new PropertyGraphImpl(setupGraphMetadata());
+        assertThat(graph.numberOfNodes(), Matchers.is(0));
+        assertThat(graph.numberOfEdges(BOUGHT), Matchers.is(0));
+        new GraphBuilder(graph).addProducts("p1", "p2", "p3").addUsers("u1", "u2")
+                .buy("u1", "p1", "p2", "p3").buy("u2", "p3").similar("p1", "p2", 10);
+
+        assertThat(graph.numberOfNodes(), Matchers.is(5));
+        assertThat(graph.numberOfEdges(BOUGHT), Matchers.is(4));
+        assertThat(graph.numberOfEdges(SIMILAR), Matchers.is(1));
+        assertThat(graph.numberOfEdges(VIEWED), Matchers.is(0));
+
+        graph.removeNode(new NodeId(PRODUCT, "p2"));
+        assertThat(graph.numberOfNodes(), Matchers.is(4));
+        Edge edge = graph.getEdges(new NodeId(USER, "u2"), BOUGHT, EdgeDirection.OUTGOING)
+                .iterator().next();
+        graph.removeEdge(edge.getEdgeId());
+        assertThat(graph.numberOfEdges(BOUGHT), Matchers.is(3));
+    }
+
     @Test
     public void testNonExistingRemoveNode() {
         PropertyGraph graph = new PropertyGraphImpl(setupGraphMetadata());
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph.algorithms;
+
+import org.jon.ivmark.graphit.core.graph.PropertyGraphImpl;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeDirection;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeType;
+import org.jon.ivmark.graphit.core.graph.exception.GraphException;
+import org.jon.ivmark.graphit.core.graph.node.Node;
+import org.jon.ivmark.graphit.core.graph.node.NodeId;
+import org.jon.ivmark.graphit.core.graph.node.NodeType;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author jon
+ *
+ */
+public class GraphAlgorithmsTest {
+
+    private PropertyGraphImpl graph;
+    private NodeType city;
+    private EdgeType road;
+    private GraphAlgorithms algorithms;
+
+    @Before
+    public void setUp() {
+        graph = new PropertyGraphImpl();
+        city = graph.getOrCreateNodeType("city");
+        road = graph.getOrCreateEdgeType("road");
+        for (int i = 0; i < 7; i++) {
+            graph.addNode(id(i));
+        }
+        // 0 -> 1 -> 2 -> 3 is shorter than 0 -> 3, 4 -> 5 is separate, 6 is isolated
+        road(0, 1, 1);
+        road(1, 2, 2);
+        road(2, 3, 1);
+        road(0, 3, 5);
+        road(3, 0, 1);
+        road(4, 5, 1);
+        algorithms = graph.getAlgorithms();
+    }
+
+    @Test
+    public void testMaxNodeIndex() {
+        assertEquals(6, graph.getMaxNodeIndex());
+        assertEquals(-1, new PropertyGraphImpl().getMaxNodeIndex());
+    }
+
+    @Test
+    public void testShortestPath() {
+        ShortestPath path = algorithms.shortestPath(id(0), id(3), road, EdgeDirection.OUTGOING);
+        assertEquals(4, path.getDistance(), 0);
+        assertEquals(3, path.getLength());
+        assertEquals(Arrays.asList(id(0), id(1), id(2), id(3)), nodeIds(path));
+
+        path = algorithms.shortestPath(id(3), id(2), road, EdgeDirection.INCOMING);
+        assertEquals(1, path.getDistance(), 0);
+        assertEquals(Arrays.asList(id(3), id(2)), nodeIds(path));
+
+        path = algorithms.shortestPath(id(1), id(1), road, EdgeDirection.OUTGOING);
+        assertEquals(0, path.getDistance(), 0);
+        assertEquals(0, path.getLength());
+    }
+
+    @Test
+    public void testNoShortestPath() {
+        assertNull(algorithms.shortestPath(id(0), id(5), road, EdgeDirection.BOTH));
+        assertNull(algorithms.shortestPath(id(5), id(4), road, EdgeDirection.OUTGOING));
+    }
+
+    @Test(expected = GraphException.class)
+    public void testNegativeWeight() {
+        road(1, 6, -1);
+        algorithms.shortestPath(id(0), id(3), road, EdgeDirection.OUTGOING);
+    }
+
+    @Test
+    public void testAStarOnGrid() {
+        final int size = 20;
+        NodeType cell = graph.getOrCreateNodeType("cell");
+        EdgeType step = graph.getOrCreateEdgeType("step");
+        final int[] xs = new int[size * size + 7];
+        final int[] ys = new int[size * size + 7];
+        Random random = new Random(11);
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                Node node = graph.addNode(new NodeId(cell, x + "," + y));
+                xs[node.getIndex()] = x;
+                ys[node.getIndex()] = y;
+            }
+        }
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                NodeId from = new NodeId(cell, x + "," + y);
+                if (x + 1 < size) {
+                    graph.addEdge(from, new NodeId(cell, (x + 1) + "," + y), step, 1 + random.nextInt(3));
+                }
+                if (y + 1 < size) {
+                    graph.addEdge(from, new NodeId(cell, x + "," + (y + 1)), step, 1 + random.nextInt(3));
+                }
+            }
+        }
+        DistanceHeuristic manhattan = new DistanceHeuristic() {
+
+            @Override
+            public double estimate(int nodeIndex, int targetIndex) {
+                return Math.abs(xs[nodeIndex] - xs[targetIndex]) + Math.abs(ys[nodeIndex] - ys[targetIndex]);
+            }
+        };
+        NodeId start = new NodeId(cell, "0,0");
+        NodeId end = new NodeId(cell, (size - 1) + "," + (size - 1));
+        ShortestPath dijkstra = graph.getAlgorithms().shortestPath(start, end, step, EdgeDirection.BOTH);
+        ShortestPath aStar = graph.getAlgorithms().shortestPath(start, end, step, EdgeDirection.BOTH, manhattan);
+        assertEquals(dijkstra.getDistance(), aStar.getDistance(), 0);
+        assertEquals(start, aStar.getNodes().get(0).getNodeId());
+        assertEquals(end, aStar.getNodes().get(aStar.getLength()).getNodeId());
+    }
+
+    @Test
+    public void testBfsDistances() {
+        int[] distances = algorithms.bfsDistances(id(0), road, EdgeDirection.OUTGOING, 10);
+        assertArrayEquals(new int[] {0, 1, 2, 1, -1, -1, -1}, distances);
+
+        distances = algorithms.bfsDistances(id(0), road, EdgeDirection.INCOMING, 1);
+        assertArrayEquals(new int[] {0, -1, -1, 1, -1, -1, -1}, distances);
+
+        distances = algorithms.bfsDistances(index(2), road, EdgeDirection.BOTH, 0);
+        assertArrayEquals(new int[] {-1, -1, 0, -1, -1, -1, -1}, distances);
+    }
+
+    @Test
+    public void testConnectedComponents() {
+        graph.removeNode(id(2));
+        ConnectedComponents components = algorithms.connectedComponents(road);
+        assertEquals(3, components.getNumberOfComponents());
+        assertEquals(0, components.getComponent(index(0)));
+        assertEquals(0, components.getComponent(index(1)));
+        assertEquals(-1, components.getComponent(2));
+        assertEquals(0, components.getComponent(index(3)));
+        assertEquals(1, components.getComponent(index(4)));
+        assertEquals(1, components.getComponent(index(5)));
+        assertEquals(2, components.getComponent(index(6)));
+        assertEquals(3, components.getSize(0));
+        assertEquals(1, components.getSize(2));
+        assertEquals(0, components.getLargestComponent());
+    }
+
+    @Test
+    public void testPersonalizedPageRank() {
+        NodeScores scores = algorithms.personalizedPageRank(Arrays.asList(id(0)), road,
+                                                            EdgeDirection.OUTGOING,
+                                                            new PageRankSettings().tolerance(1e-12)
+                                                                .maxIterations(1000));
+        assertEquals(1, sum(scores), 1e-9);
+        assertEquals(0, scores.getScore(index(4)), 0);
+        assertEquals(0, scores.getScore(index(6)), 0);
+        assertEquals(index(0), scores.topK(1)[0]);
+        assertTrue(scores.getScore(index(3)) > scores.getScore(index(2)));
+        assertEquals(4, scores.topK(10).length);
+
+        // A random walk converges to the same ranks
+        double[] visits = randomWalk(index(0), 0.15, 200000);
+        for (int i = 0; i < 7; i++) {
+            assertEquals(visits[i], scores.getScore(i), 0.01);
+        }
+    }
+
+    @Test
+    public void testWeightedPageRankSendsRankAlongHeavyEdges() {
+        road(1, 4, 100);
+        NodeScores unweighted = algorithms.personalizedPageRank(Arrays.asList(id(1)), road,
+                                                                EdgeDirection.OUTGOING,
+                                                                new PageRankSettings());
+        NodeScores weighted = algorithms.personalizedPageRank(Arrays.asList(id(1)), road,
+                                                              EdgeDirection.OUTGOING,
+                                                              new PageRankSettings().weighted(true));
+        assertTrue(weighted.getScore(index(4)) > unweighted.getScore(index(4)));
+        assertTrue(weighted.getScore(index(2)) < unweighted.getScore(index(2)));
+        assertEquals(1, sum(weighted), 1e-6);
+    }
+
+    @Test
+    public void testParallelPageRank() {
+        Random random = new Random(17);
+        for (int i = 7; i < 2000; i++) {
+            graph.addNode(id(i));
+        }
+        for (int i = 0; i < 10000; i++) {
+            road(random.nextInt(2000), random.nextInt(2000), random.nextFloat());
+        }
+        List<NodeId> sources = Arrays.asList(id(0), id(10), id(100));
+        PageRankSettings settings = new PageRankSettings().weighted(true).maxIterations(30);
+        NodeScores sequential = algorithms.personalizedPageRank(sources, road, EdgeDirection.BOTH,
+                                                                settings);
+        NodeScores parallel = algorithms.personalizedPageRank(sources, road, EdgeDirection.BOTH,
+                                                              settings.parallelism(4));
+        assertEquals(sequential.getIterations(), parallel.getIterations());
+        for (int i = 0; i < 2000; i++) {
+            assertEquals(sequential.getScore(i), parallel.getScore(i), 1e-12);
+        }
+        assertArrayEquals(sequential.topK(20), parallel.topK(20));
+    }
+
+    private double[] randomWalk(int start, double restartProbability, int steps) {
+        final Random random = new Random(23);
+        double[] visits = new double[graph.getMaxNodeIndex() + 1];
+        int node = start;
+        for (int i = 0; i < steps; i++) {
+            visits[node] += 1.0 / steps;
+            final List<Integer> neighbors = new ArrayList<Integer>();
+            for (Node neighbor : graph.getNeighbors(graph.getNode(node).getNodeId(), road,
+                                                    EdgeDirection.OUTGOING)) {
+                neighbors.add(neighbor.getIndex());
+            }
+            if (neighbors.isEmpty() || random.nextDouble() < restartProbability) {
+                node = start;
+            } else {
+                node = neighbors.get(random.nextInt(neighbors.size()));
+            }
+        }
+        return visits;
+    }
+
+    private double sum(NodeScores scores) {
+        double sum = 0;
+        for (int i = 0; i <= graph.getMaxNodeIndex(); i++) {
+            sum += scores.getScore(i);
+        }
+        return sum;
+    }
+
+    private List<NodeId> nodeIds(ShortestPath path) {
+        List<NodeId> ids = new ArrayList<NodeId>();
+        for (Node node : path.getNodes()) {
+            ids.add(node.getNodeId());
+        }
+        return ids;
+    }
+
+    private void road(int from, int to, float weight) {
+        graph.addEdge(id(from), id(to), road, weight);
+    }
+
+    private NodeId id(int i) {
+        return new NodeId(city, String.valueOf(i));
+    }
+
+    private int index(int i) {
+        return graph.getNode(id(i)).getIndex();
+    }
+}
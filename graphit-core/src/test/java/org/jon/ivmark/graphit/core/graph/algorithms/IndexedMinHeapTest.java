@@ -0,0 +1,64 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph.algorithms;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author jon
+ *
+ */
+public class IndexedMinHeapTest {
+
+    @Test
+    public void testPollInKeyOrder() {
+        IndexedMinHeap heap = new IndexedMinHeap(1);
+        Random random = new Random(3);
+        double[] keys = new double[500];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = random.nextDouble();
+            heap.offer(i, keys[i] + 1);
+        }
+        // Decrease some keys, increases are ignored
+        for (int i = 0; i < keys.length; i += 3) {
+            heap.offer(i, keys[i]);
+            heap.offer(i, keys[i] + 2);
+        }
+        for (int i = 1; i < keys.length; i++) {
+            if (i % 3 != 0) {
+                keys[i] += 1;
+            }
+        }
+        assertEquals(keys.length, heap.size());
+        double[] sorted = keys.clone();
+        Arrays.sort(sorted);
+        for (double key : sorted) {
+            assertEquals(key, heap.peekKey(), 0);
+            int node = heap.poll();
+            assertEquals(key, keys[node], 0);
+            assertFalse(heap.contains(node));
+        }
+        assertTrue(heap.isEmpty());
+    }
+}
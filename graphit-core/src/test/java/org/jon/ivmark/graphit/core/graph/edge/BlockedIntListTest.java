@@ -0,0 +1,151 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph.edge;
+
+import com.google.common.primitives.Ints;
+import org.apache.mahout.math.function.IntComparator;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author jon
+ *
+ */
+public class BlockedIntListTest {
+
+    @Test
+    public void testAppendKeepsSnapshots() {
+        List<BlockedIntList> versions = new ArrayList<BlockedIntList>();
+        BlockedIntList list = BlockedIntList.EMPTY;
+        int n = 5 * BlockedIntList.MAX_BLOCK_SIZE + 3;
+        for (int i = 0; i < n; i++) {
+            versions.add(list);
+            list = list.add(i);
+        }
+        assertEquals(n, list.size());
+        for (int i = 0; i < n; i++) {
+            assertEquals(i, list.get(i));
+            assertEquals(i, versions.get(i).size());
+        }
+        // Appending to an old version must not affect newer versions
+        BlockedIntList branch = versions.get(10).add(-1);
+        assertEquals(-1, branch.get(10));
+        assertEquals(10, list.get(10));
+        assertEquals(n - 1, list.lastIndexOf(n - 1));
+    }
+
+    @Test
+    public void testRandomInsertsAndRemoves() {
+        Random random = new Random(42);
+        List<Integer> expected = new ArrayList<Integer>();
+        BlockedIntList list = BlockedIntList.EMPTY;
+        List<BlockedIntList> versions = new ArrayList<BlockedIntList>();
+        List<List<Integer>> expectedVersions = new ArrayList<List<Integer>>();
+        for (int i = 0; i < 5000; i++) {
+            if (!expected.isEmpty() && random.nextInt(4) == 0) {
+                int position = random.nextInt(expected.size());
+                expected.remove(position);
+                list = list.remove(position);
+            } else if (random.nextBoolean()) {
+                expected.add(i);
+                list = list.add(i);
+            } else {
+                int position = random.nextInt(expected.size() + 1);
+                expected.add(position, i);
+                list = list.insert(position, i);
+            }
+            if (i % 100 == 0) {
+                versions.add(list);
+                expectedVersions.add(new ArrayList<Integer>(expected));
+            }
+        }
+        assertEquals(expected, Ints.asList(list.toArray()));
+        for (int v = 0; v < versions.size(); v++) {
+            assertEquals(expectedVersions.get(v), Ints.asList(versions.get(v).toArray()));
+        }
+    }
+
+    @Test
+    public void testUpperBound() {
+        Random random = new Random(17);
+        BlockedIntList list = BlockedIntList.EMPTY;
+        List<Integer> expected = new ArrayList<Integer>();
+        IntComparator ordering = new IntComparator() {
+            @Override
+            public int compare(int o1, int o2) {
+                return o1 < o2 ? -1 : (o1 == o2 ? 0 : 1);
+            }
+        };
+        for (int i = 0; i < 1000; i++) {
+            int element = random.nextInt(200);
+            list = list.insert(list.upperBound(element, ordering), element);
+            expected.add(element);
+        }
+        Collections.sort(expected);
+        assertEquals(expected, Ints.asList(list.toArray()));
+        assertEquals(list.size(), list.upperBound(200, ordering));
+        assertEquals(0, list.upperBound(-1, ordering));
+    }
+
+    @Test
+    public void testBranchingDoesNotOverwriteOtherVersions() {
+        BlockedIntList list = BlockedIntList.EMPTY;
+        for (int i = 0; i < 10; i++) {
+            list = list.add(i);
+        }
+        BlockedIntList appended = list.add(10);
+        // list no longer owns the slack of the last block, and neither may a
+        // version derived from it
+        BlockedIntList branch = list.remove(0).add(-1);
+        assertEquals(10, appended.get(10));
+        assertEquals(-1, branch.get(9));
+        assertEquals(11, appended.size());
+        assertEquals(10, branch.size());
+    }
+
+    @Test
+    public void testWeightedMove() {
+        int size = 3 * BlockedIntList.MAX_BLOCK_SIZE;
+        int[] elements = new int[size];
+        float[] weights = new float[size];
+        List<Integer> expected = new ArrayList<Integer>();
+        for (int i = 0; i < size; i++) {
+            elements[i] = i;
+            weights[i] = i / 2f;
+            expected.add(i);
+        }
+        BlockedIntList list = BlockedIntList.of(elements, weights, 0, size);
+        Random random = new Random(3);
+        for (int i = 0; i < 1000; i++) {
+            int from = random.nextInt(size);
+            int to = random.nextInt(size);
+            int element = expected.remove(from);
+            expected.add(to, element);
+            list = list.move(from, to, element / 2f);
+        }
+        assertEquals(expected, Ints.asList(list.toArray()));
+        for (int i = 0; i < size; i++) {
+            assertEquals(list.get(i) / 2f, list.getWeight(i), 0.000001f);
+        }
+    }
+}
@@ -16,6 +16,7 @@
 
 package org.jon.ivmark.graphit.core.graph.edge;
 
+import org.apache.mahout.math.function.IntFloatProcedure;
 import org.apache.mahout.math.function.IntProcedure;
 import org.hamcrest.Matchers;
 import org.junit.Before;
@@ -27,6 +28,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.Matchers.anyInt;
@@ -333,4 +335,66 @@ public class EdgeVectorTest {
 
         assertThat(edges, Matchers.is(Arrays.asList(11, 12, 10, 13)));
     }
+
+    @Test
+    public void testInlineWeightsKeepSameOrderAsComparator() {
+        final float[] weights = new float[200];
+        EdgeWeigher weigher = new EdgeWeigher() {
+            @Override
+            public float getEdgeWeight(int edgeIndex) {
+                return weights[edgeIndex];
+            }
+        };
+        for (EdgeSortOrder sortOrder : EdgeSortOrder.values()) {
+            EdgeVector expected = new EdgeVector(1, new EdgeType("t", sortOrder));
+            expected.setEdgeComparator(sortOrder.getEdgeComparator(weigher));
+            EdgeVector inlined = new EdgeVector(1, new EdgeType("t", sortOrder, true));
+            assertThat(inlined.hasInlineWeights(), Matchers.is(true));
+
+            Random random = new Random(11);
+            for (int edgeId = 0; edgeId < weights.length; edgeId++) {
+                weights[edgeId] = random.nextInt(20);
+                expected = expected.add(edgeId);
+                inlined = inlined.add(edgeId, weights[edgeId]);
+            }
+            for (int i = 0; i < 500; i++) {
+                int edgeId = random.nextInt(weights.length);
+                weights[edgeId] = random.nextInt(20);
+                expected = expected.reindex(edgeId);
+                inlined = inlined.reindex(edgeId, weights[edgeId]);
+            }
+            assertThat(inlined.asList(), Matchers.is(expected.asList()));
+
+            final List<Float> inlinedWeights = new ArrayList<Float>();
+            inlined.forEachWeightedEdge(new IntFloatProcedure() {
+                @Override
+                public boolean apply(int edgeId, float weight) {
+                    assertThat(weight, Matchers.is(weights[edgeId]));
+                    inlinedWeights.add(weight);
+                    return true;
+                }
+            });
+            assertThat(inlinedWeights.size(), Matchers.is(weights.length));
+        }
+    }
+
+    @Test
+    public void testReindexUnchangedPositionKeepsVector() {
+        EdgeType edgeType = new EdgeType("t", EdgeSortOrder.DESCENDING_WEIGHT, true);
+        EdgeVector edgeVector = new EdgeVector(1, edgeType);
+        edgeVector = edgeVector.add(1, 3f).add(2, 2f).add(3, 1f);
+        assertThat(edgeVector.reindex(2, 2f), Matchers.sameInstance(edgeVector));
+
+        EdgeVector reindexed = edgeVector.reindex(2, 2.5f);
+        assertThat(reindexed.asList(), Matchers.is(Arrays.asList(1, 2, 3)));
+        reindexed = reindexed.reindex(3, 5f);
+        assertThat(reindexed.asList(), Matchers.is(Arrays.asList(3, 1, 2)));
+        // The original vector is not affected
+        assertThat(edgeVector.asList(), Matchers.is(Arrays.asList(1, 2, 3)));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAddWithoutWeightToInlineWeightsVector() {
+        new EdgeVector(1, new EdgeType("t", EdgeSortOrder.DESCENDING_WEIGHT, true)).add(1);
+    }
 }
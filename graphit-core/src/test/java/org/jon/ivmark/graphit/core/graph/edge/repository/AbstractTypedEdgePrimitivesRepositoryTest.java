@@ -33,7 +33,9 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.jon.ivmark.graphit.core.graph.edge.TestEdgeTypes.BOUGHT;
 import static org.jon.ivmark.graphit.core.graph.edge.TestEdgeTypes.SIMILAR;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public abstract class AbstractTypedEdgePrimitivesRepositoryTest {
 
@@ -163,9 +165,12 @@ public abstract class AbstractTypedEdgePrimitivesRepositoryTest {
     @Test
     public void testGetEdgeWeightForEdge() {
         TypedEdgePrimitivesRepository repo = createRepo(SIMILAR, 10);
-        assertTrue(repo.getEdgeWeight(0) < 0);
+        assertTrue(Float.isNaN(repo.getEdgeWeight(0)));
         repo.addWeightedEdge(0, 1, 10);
         assertEquals(10, repo.getEdgeWeight(0), 0.000001f);
+        // A negative weight is told apart from a missing edge
+        repo.addWeightedEdge(0, 2, -1);
+        assertEquals(-1, repo.getEdgeWeight(1), 0.000001f);
     }
 
     @Test
@@ -194,4 +199,30 @@ public abstract class AbstractTypedEdgePrimitivesRepositoryTest {
         assertEquals(Arrays.asList(edgeId2.getIndex(), edgeId1.getIndex(), edgeId3.getIndex()),
                      repo.getOutgoingEdges(2).asList());
     }
+
+    @Test
+    public void testAddEdgesWithDuplicateMidBatchLeavesRepoUntouched() {
+        TypedEdgePrimitivesRepository repo = createRepo(SIMILAR, 10);
+        repo.addWeightedEdge(new EdgeId(SIMILAR, 2), 7, 8, 1);
+        int[] repeated = {3, 4, 3};
+        for (int[] edgeIndexes : new int[][] {{0, 1, 2, 3}, repeated}) {
+            try {
+                repo.addWeightedEdges(edgeIndexes, new int[] {1, 1, 1, 1}, new int[] {2, 3, 4, 5},
+                                      new float[] {1, 2, 3, 4}, edgeIndexes.length);
+                fail("Expected a duplicate key exception");
+            } catch (DuplicateKeyException e) {
+                // Expected
+            }
+            assertEquals(1, repo.size());
+            assertEquals(2, repo.getMaxEdgeIndex());
+            assertTrue(repo.getOutgoingEdges(1).asList().isEmpty());
+            assertNull(repo.getEdge(new EdgeId(SIMILAR, 0)));
+            assertNull(repo.getEdge(new EdgeId(SIMILAR, 3)));
+        }
+
+        repo.addWeightedEdges(new int[] {0, 1}, new int[] {1, 1}, new int[] {2, 3},
+                              new float[] {1, 2}, 2);
+        assertEquals(3, repo.size());
+        assertEquals(Arrays.asList(1, 0), repo.getOutgoingEdges(1).asList());
+    }
 }
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph.edge.repository;
+
+import org.jon.ivmark.graphit.core.graph.edge.EdgeId;
+import org.jon.ivmark.graphit.core.graph.edge.EdgePrimitive;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeTypes;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeVector;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.jon.ivmark.graphit.core.graph.edge.TestEdgeTypes.BOUGHT;
+import static org.jon.ivmark.graphit.core.graph.edge.TestEdgeTypes.SIMILAR;
+import static org.junit.Assert.*;
+
+/**
+ * @author jon
+ *
+ */
+public class ByteBufferEdgePrimitivesBufferTest {
+
+    @Rule
+    public TemporaryFolder out = new TemporaryFolder();
+
+    @Test
+    public void testInsertGetAndRemoveAcrossPages() {
+        ByteBufferEdgePrimitivesBuffer buffer =
+            new ByteBufferEdgePrimitivesBuffer(SIMILAR, null, 2);
+        assertEquals(0, buffer.size());
+        buffer.upsert(0, 1, 2, 1.5f);
+        buffer.upsert(5, 3, 0, 2.5f);
+        assertEquals(2, buffer.size());
+        assertEquals(6, buffer.capacity());
+
+        EdgePrimitive edge = buffer.get(5);
+        assertEquals(new EdgeId(SIMILAR, 5), edge.getEdgeId());
+        assertEquals(3, edge.getStartNodeIndex());
+        assertEquals(0, edge.getEndNodeIndex());
+        assertEquals(2.5f, edge.getWeight(), 0.000001f);
+
+        for (int i = 1; i < 5; i++) {
+            assertNull(buffer.get(i));
+        }
+        assertNull(buffer.get(-1));
+        assertNull(buffer.get(6));
+
+        buffer.upsert(5, 3, 0, 3.5f);
+        assertEquals(2, buffer.size());
+        assertEquals(3.5f, buffer.get(5).getWeight(), 0.000001f);
+
+        assertEquals(edge.getEdgeId(), buffer.remove(5).getEdgeId());
+        assertNull(buffer.get(5));
+        assertNull(buffer.remove(5));
+        assertEquals(1, buffer.size());
+    }
+
+    @Test
+    public void testReopenFile() throws Exception {
+        File file = new File(out.getRoot(), "edges.bin");
+        ByteBufferEdgePrimitivesBuffer buffer = new ByteBufferEdgePrimitivesBuffer(BOUGHT, file, 4);
+        buffer.upsert(0, 0, 1, 0);
+        buffer.upsert(1, 0, 2, 0);
+        buffer.upsert(6, 2, 1, 0);
+        buffer.remove(1);
+        buffer.close();
+
+        ByteBufferEdgePrimitivesBuffer reopened =
+            new ByteBufferEdgePrimitivesBuffer(BOUGHT, file, 4);
+        assertEquals(2, reopened.size());
+        assertEquals(2, reopened.get(6).getStartNodeIndex());
+        assertNull(reopened.get(1));
+
+        TypedEdgePrimitivesRepository repo =
+            new TypedEdgePrimitivesRepositoryImpl(BOUGHT, reopened);
+        assertEquals(2, repo.size());
+        EdgeVector outgoing = repo.getOutgoingEdges(0);
+        assertEquals(Arrays.asList(0), outgoing.asList());
+        EdgeVector incoming = repo.getIncomingEdges(1);
+        assertEquals(2, incoming.size());
+        // New edges fill the gaps between restored edges, lowest first,
+        // and never reuse the index of a restored edge
+        for (int index = 1; index < 6; index++) {
+            assertEquals(index, repo.addEdge(1, 2).getIndex());
+        }
+        assertEquals(7, repo.addEdge(1, 2).getIndex());
+        reopened.close();
+    }
+
+    @Test
+    public void testReopenRepository() throws Exception {
+        File dir = out.newFolder("edges");
+        EdgeTypes edgeTypes = new EdgeTypes();
+        edgeTypes.add(BOUGHT);
+        ByteBufferEdgePrimitivesRepository repo =
+            new ByteBufferEdgePrimitivesRepository(edgeTypes, dir);
+        assertTrue(repo.getFile(BOUGHT).exists());
+        EdgeId first = repo.addEdge(0, 1, BOUGHT);
+        EdgeId second = repo.addEdge(0, 2, BOUGHT);
+        repo.addEdge(0, 3, BOUGHT);
+        repo.removeEdge(second);
+        repo.close();
+
+        ByteBufferEdgePrimitivesRepository reopened =
+            new ByteBufferEdgePrimitivesRepository(edgeTypes, dir);
+        assertEquals(2, reopened.size(BOUGHT));
+        assertEquals(1, reopened.getEdge(first).getEndNodeIndex());
+        assertEquals(second, reopened.addEdge(1, 2, BOUGHT));
+        reopened.close();
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph.edge.repository;
+
+import org.jon.ivmark.graphit.core.graph.edge.EdgeType;
+
+/**
+ * @author jon
+ *
+ */
+public class ByteBufferTypedEdgePrimitivesRepositoryTest extends
+    AbstractTypedEdgePrimitivesRepositoryTest {
+
+    @Override
+    protected TypedEdgePrimitivesRepository createRepo(EdgeType edgeType, int initialCapacity) {
+        return new TypedEdgePrimitivesRepositoryImpl(
+            edgeType, new ByteBufferEdgePrimitivesBuffer(edgeType, null, initialCapacity));
+    }
+}
@@ -67,6 +67,20 @@ public class EdgePrimitivesBufferImplTest {
         }
     }
 
+    @Test
+    public void testGetWeight() {
+        EdgePrimitivesBuffer buffer = new EdgePrimitivesBufferImpl(SIMILAR, 10);
+        buffer.upsert(2, 1, 2, 1.5f);
+        assertEquals(1.5f, buffer.getWeight(2), 0.000001f);
+        assertEquals(1, buffer.getStartNode(2));
+        assertEquals(2, buffer.getEndNode(2));
+        assertEquals(-1, buffer.getStartNode(0));
+        assertTrue(Float.isNaN(buffer.getWeight(0)));
+        assertTrue(Float.isNaN(buffer.getWeight(3)));
+        buffer.remove(2);
+        assertTrue(Float.isNaN(buffer.getWeight(2)));
+    }
+
     @Test
     public void testGetOutOfBounds() {
         EdgeType edgeType = BOUGHT;
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph.edge.repository;
+
+import org.jon.ivmark.graphit.core.graph.edge.EdgeId;
+import org.jon.ivmark.graphit.core.graph.edge.EdgePrimitive;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.jon.ivmark.graphit.core.graph.edge.TestEdgeTypes.SIMILAR;
+import static org.junit.Assert.*;
+
+/**
+ * @author jon
+ *
+ */
+public class LockFreeEdgePrimitivesBufferTest {
+
+    @Test
+    public void testInsertGetAndRemoveAcrossChunks() {
+        EdgePrimitivesBuffer buffer = new LockFreeEdgePrimitivesBuffer(SIMILAR, 0, 2);
+        assertEquals(0, buffer.size());
+        assertNull(buffer.get(0));
+        buffer.upsert(0, 1, 2, 1.5f);
+        buffer.upsert(5, 3, 0, -2.5f);
+        assertEquals(2, buffer.size());
+
+        EdgePrimitive edge = buffer.get(5);
+        assertEquals(new EdgeId(SIMILAR, 5), edge.getEdgeId());
+        assertEquals(3, edge.getStartNodeIndex());
+        assertEquals(0, edge.getEndNodeIndex());
+        assertEquals(-2.5f, edge.getWeight(), 0.000001f);
+        for (int i = 1; i < 5; i++) {
+            assertNull(buffer.get(i));
+        }
+        assertNull(buffer.get(-1));
+        assertNull(buffer.get(6));
+
+        buffer.upsert(5, 3, 0, 3.5f);
+        assertEquals(2, buffer.size());
+        assertEquals(3.5f, buffer.get(5).getWeight(), 0.000001f);
+
+        assertEquals(edge.getEdgeId(), buffer.remove(5).getEdgeId());
+        assertNull(buffer.get(5));
+        assertNull(buffer.remove(5));
+        assertEquals(1, buffer.size());
+    }
+
+    @Test
+    public void testGetWeight() {
+        EdgePrimitivesBuffer buffer = new LockFreeEdgePrimitivesBuffer(SIMILAR, 0, 2);
+        buffer.upsert(5, 1, 2, 2.5f);
+        assertEquals(2.5f, buffer.getWeight(5), 0.000001f);
+        assertEquals(1, buffer.getStartNode(5));
+        assertEquals(2, buffer.getEndNode(5));
+        assertEquals(-1, buffer.getStartNode(4));
+        assertEquals(-1, buffer.getEndNode(100));
+        assertTrue(Float.isNaN(buffer.getWeight(4)));
+        assertTrue(Float.isNaN(buffer.getWeight(100)));
+        assertTrue(Float.isNaN(buffer.getWeight(-1)));
+        buffer.remove(5);
+        assertTrue(Float.isNaN(buffer.getWeight(5)));
+    }
+
+    @Test
+    public void testReadersSeeConsistentEdges() throws InterruptedException {
+        final EdgePrimitivesBuffer buffer = new LockFreeEdgePrimitivesBuffer(SIMILAR, 16, 4);
+        final AtomicBoolean done = new AtomicBoolean(false);
+        final AtomicInteger inconsistencies = new AtomicInteger();
+        Thread[] readers = new Thread[4];
+        for (int t = 0; t < readers.length; t++) {
+            readers[t] = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    while (!done.get()) {
+                        for (int i = 0; i < 16; i++) {
+                            EdgePrimitive edge = buffer.get(i);
+                            // Writers always keep start == end == weight
+                            if (edge != null && (edge.getStartNodeIndex() != edge.getEndNodeIndex()
+                                || edge.getStartNodeIndex() != (int) edge.getWeight())) {
+                                inconsistencies.incrementAndGet();
+                            }
+                        }
+                    }
+                }
+            });
+            readers[t].start();
+        }
+        for (int n = 0; n < 20000; n++) {
+            int index = n % 16;
+            buffer.upsert(index, n, n, n);
+            if (n % 7 == 0) {
+                buffer.remove(index);
+            }
+        }
+        done.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertEquals(0, inconsistencies.get());
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph.node.repository;
+
+import org.jon.ivmark.graphit.core.graph.PropertyGraphImpl;
+import org.jon.ivmark.graphit.core.graph.node.Node;
+import org.jon.ivmark.graphit.core.graph.node.NodeId;
+import org.jon.ivmark.graphit.core.graph.node.NodeType;
+import org.jon.ivmark.graphit.core.properties.Properties;
+import org.jon.ivmark.graphit.core.properties.PropertiesBuilder;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author jon
+ */
+public class ColumnarNodePropertiesRepositoryTest {
+
+    private static final NodeType USER = new NodeType("user");
+    private static final NodeType PRODUCT = new NodeType("product");
+
+    @Rule
+    public TemporaryFolder out = new TemporaryFolder();
+
+    private NodeIdRepository nodeRepo;
+    private ColumnarNodePropertiesRepository repo;
+
+    @Before
+    public void setupRepo() {
+        this.nodeRepo = new ConcurrentNodeIdRepository();
+        this.repo = new ColumnarNodePropertiesRepository(nodeRepo);
+    }
+
+    @Test
+    public void testSetAndGetTypedValues() {
+        NodeId u1 = newNode(USER, "u1");
+        repo.setProperty(u1, "int", 1);
+        repo.setProperty(u1, "long", 2L);
+        repo.setProperty(u1, "float", 3.5f);
+        repo.setProperty(u1, "double", 4.5);
+        repo.setProperty(u1, "boolean", true);
+        repo.setProperty(u1, "string", "s");
+        repo.setProperty(u1, "list", Arrays.asList("a", "b"));
+
+        Properties properties = repo.getProperties(u1);
+        assertEquals(1, properties.getProperty("int"));
+        assertEquals(2L, properties.getProperty("long"));
+        assertEquals(3.5f, properties.getProperty("float"));
+        assertEquals(4.5, properties.getProperty("double"));
+        assertEquals(true, properties.getProperty("boolean"));
+        assertEquals("s", properties.getProperty("string"));
+        assertEquals(Arrays.asList("a", "b"), properties.getProperty("list"));
+        assertEquals(7, properties.size());
+        assertNull(properties.getProperty("missing"));
+
+        ColumnarProperties columnar = (ColumnarProperties) properties;
+        assertEquals(1, columnar.getInt("int", -1));
+        assertEquals(2L, columnar.getLong("long", -1));
+        assertEquals(3.5f, columnar.getFloat("float", -1), 0.00001f);
+        assertEquals(4.5, columnar.getDouble("double", -1), 0.00001);
+        assertEquals(1.0, columnar.getDouble("int", -1), 0.00001);
+        assertTrue(columnar.getBoolean("boolean", false));
+        assertEquals(-1, columnar.getInt("missing", -1));
+    }
+
+    @Test
+    public void testValuesAreKeptPerNode() {
+        NodeId u1 = newNode(USER, "u1");
+        NodeId u2 = newNode(USER, "u2");
+        NodeId p1 = newNode(PRODUCT, "p1");
+        repo.setProperty(u1, "name", "a");
+        repo.setProperty(u2, "name", "b");
+        repo.setProperty(u2, "age", 20);
+        repo.setProperty(p1, "name", "a");
+
+        assertEquals("a", repo.getProperties(u1).getProperty("name"));
+        assertEquals("b", repo.getProperties(u2).getProperty("name"));
+        assertEquals("a", repo.getProperties(p1).getProperty("name"));
+        assertEquals(new HashSet<String>(Arrays.asList("name")),
+                     repo.getProperties(u1).getPropertyKeys());
+        assertEquals(new HashSet<String>(Arrays.asList("name", "age")),
+                     repo.getProperties(u2).getPropertyKeys());
+        assertFalse(repo.getProperties(p1).containsProperty("age"));
+    }
+
+    @Test
+    public void testMixedValueTypes() {
+        NodeId u1 = newNode(USER, "u1");
+        NodeId u2 = newNode(USER, "u2");
+        repo.setProperty(u1, "value", 1);
+        repo.setProperty(u2, "value", "two");
+        repo.setProperty(u1, "other", 1);
+        repo.setProperty(u2, "other", null);
+
+        assertEquals(1, repo.getProperties(u1).getProperty("value"));
+        assertEquals("two", repo.getProperties(u2).getProperty("value"));
+        assertEquals(1, ((ColumnarProperties) repo.getProperties(u1)).getInt("value", -1));
+        assertTrue(repo.getProperties(u2).containsProperty("other"));
+        assertNull(repo.getProperties(u2).getProperty("other"));
+    }
+
+    @Test
+    public void testSaveAndRemoveProperties() {
+        NodeId u1 = newNode(USER, "u1");
+        repo.setProperty(u1, "old", 1);
+        repo.saveProperties(u1, PropertiesBuilder.start().set("name", "U1").set("age", 5)
+            .build());
+
+        Properties properties = repo.getProperties(u1);
+        assertFalse(properties.containsProperty("old"));
+        assertEquals("U1", properties.getProperty("name"));
+
+        // Saving a view of the node itself
+        repo.saveProperties(u1, properties);
+        assertEquals(5, repo.getProperties(u1).getProperty("age"));
+
+        repo.removeProperty(u1, "age");
+        assertFalse(repo.getProperties(u1).containsProperty("age"));
+
+        Properties removed = repo.removeProperties(u1);
+        assertEquals("U1", removed.getProperty("name"));
+        assertTrue(repo.getProperties(u1).isEmpty());
+    }
+
+    @Test
+    public void testGetPropertiesForMissingNode() {
+        assertTrue(repo.getProperties(new NodeId(USER, "missing")).isEmpty());
+        assertTrue(repo.removeProperties(new NodeId(USER, "missing")).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetPropertyForMissingNode() {
+        repo.setProperty(new NodeId(USER, "missing"), "name", "a");
+    }
+
+    @Test
+    public void testRemovedNodeIndexIsReused() {
+        PropertyGraphImpl graph = new PropertyGraphImpl("test");
+        graph.useColumnarNodeProperties();
+        NodeType user = graph.createNodeType("user");
+        Node u1 = graph.addNode(new NodeId(user, "u1"));
+        u1.setProperty("name", "U1");
+        Node removed = graph.removeNode(u1.getNodeId());
+        assertEquals("U1", removed.getProperty("name"));
+
+        Node u2 = graph.addNode(new NodeId(user, "u2"), u1.getIndex());
+        assertNull(u2.getProperty("name"));
+    }
+
+    @Test
+    public void testExportImportGraph() {
+        PropertyGraphImpl graph = new PropertyGraphImpl("test");
+        graph.useColumnarNodeProperties();
+        NodeType user = graph.createNodeType("user");
+        for (int i = 0; i < 10; i++) {
+            Node node = graph.addNode(new NodeId(user, "u" + i));
+            node.setProperty("age", i);
+            node.setProperty("score", 0.5 * i);
+        }
+        File file = new File(out.getRoot(), "graph.json");
+        graph.exportJson(file, true, true);
+
+        PropertyGraphImpl imported = new PropertyGraphImpl("test");
+        imported.useColumnarNodeProperties();
+        imported.importJson(file);
+        Node u7 = imported.getNode(new NodeId(imported.getNodeType("user"), "u7"));
+        assertEquals(7, u7.getProperty("age"));
+        assertEquals(3.5, u7.getProperty("score"));
+    }
+
+    private NodeId newNode(NodeType nodeType, String id) {
+        NodeId nodeId = new NodeId(nodeType, id);
+        nodeRepo.insert(nodeId);
+        return nodeId;
+    }
+}
@@ -16,6 +16,18 @@
 
 package org.jon.ivmark.graphit.core.graph.node.repository;
 
+import org.jon.ivmark.graphit.core.graph.exception.DuplicateKeyException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+
 /**
  * @author jon
  *
@@ -26,4 +38,41 @@ public class ConcurrentIndexedListTest extends IndexedListTest {
     protected IndexedList<String> createEmptyList() {
         return new ConcurrentIndexedList<String>(2);
     }
+
+    @Test
+    public void testConcurrentAddOfSameElements() throws Exception {
+        final IndexedList<String> list = new ConcurrentIndexedList<String>(4);
+        final int numElements = 1000;
+        int numThreads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+        for (int t = 0; t < numThreads; t++) {
+            futures.add(executor.submit(new Callable<Integer>() {
+
+                @Override
+                public Integer call() {
+                    int added = 0;
+                    for (int i = 0; i < numElements; i++) {
+                        try {
+                            list.add("E" + i);
+                            added++;
+                        } catch (DuplicateKeyException e) {
+                            // Expected, some other thread won
+                        }
+                    }
+                    return added;
+                }
+            }));
+        }
+        int added = 0;
+        for (Future<Integer> future : futures) {
+            added += future.get();
+        }
+        executor.shutdown();
+        assertEquals(numElements, added);
+        for (int i = 0; i < numElements; i++) {
+            String element = "E" + i;
+            assertEquals(element, list.get(list.indexOf(element)));
+        }
+    }
 }
@@ -128,6 +128,24 @@ public abstract class IndexedListTest {
         }
     }
 
+    @Test
+    public void testSize() {
+        IndexedList<String> list = createEmptyList();
+        assertEquals(0, list.size());
+        list.add("A");
+        list.insert(5, "B");
+        list.set(2, "C");
+        assertEquals(3, list.size());
+        list.set(2, "D");
+        assertEquals(3, list.size());
+        list.remove(0);
+        list.remove(0);
+        list.remove(3);
+        assertEquals(2, list.size());
+        list.set(5, null);
+        assertEquals(1, list.size());
+    }
+
     @Test
     public void testIterable() {
         IndexedList<String> list = createEmptyList();
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph.performance;
+
+import org.jon.ivmark.graphit.core.graph.edge.EdgePrimitive;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeType;
+import org.jon.ivmark.graphit.core.graph.edge.repository.EdgePrimitivesBuffer;
+import org.jon.ivmark.graphit.core.graph.edge.repository.EdgePrimitivesBufferImpl;
+import org.jon.ivmark.graphit.core.graph.edge.repository.LockFreeEdgePrimitivesBuffer;
+import org.jon.ivmark.graphit.test.categories.LoadTest;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares read throughput of the synchronized {@link EdgePrimitivesBufferImpl}
+ * and the {@link LockFreeEdgePrimitivesBuffer} for an increasing number of
+ * reader threads.
+ *
+ * @author jon
+ *
+ */
+@Category(LoadTest.class)
+public class EdgePrimitivesBufferLoadTest {
+
+    private static final EdgeType EDGE_TYPE = new EdgeType("similar");
+    private static final int NOF_EDGES = 1 << 20;
+    private static final int NOF_READS_PER_THREAD = 10 * NOF_EDGES;
+    private static final int MAX_THREADS = 2 * Runtime.getRuntime().availableProcessors();
+
+    @Test
+    public void testSynchronizedBuffer() throws Exception {
+        run("EdgePrimitivesBufferImpl", new EdgePrimitivesBufferImpl(EDGE_TYPE, NOF_EDGES));
+    }
+
+    @Test
+    public void testLockFreeBuffer() throws Exception {
+        run("LockFreeEdgePrimitivesBuffer", new LockFreeEdgePrimitivesBuffer(EDGE_TYPE, NOF_EDGES));
+    }
+
+    private void run(String name, EdgePrimitivesBuffer buffer) throws Exception {
+        for (int i = 0; i < NOF_EDGES; i++) {
+            buffer.upsert(i, i, i + 1, i);
+        }
+        // Warm up
+        read(buffer, 1);
+        System.out.println(String.format("\n%s - %d reads per thread", name, NOF_READS_PER_THREAD));
+        for (int nofThreads = 1; nofThreads <= MAX_THREADS; nofThreads *= 2) {
+            long t0 = System.nanoTime();
+            read(buffer, nofThreads);
+            long elapsedNanos = System.nanoTime() - t0;
+            System.out.println(String.format("Threads: %d, reads per second: %d", nofThreads,
+                                             Math.round(1e9d * nofThreads * NOF_READS_PER_THREAD
+                                                 / elapsedNanos)));
+        }
+    }
+
+    private void read(final EdgePrimitivesBuffer buffer, int nofThreads) throws Exception {
+        ExecutorService service = Executors.newFixedThreadPool(nofThreads);
+        List<Future<Long>> futures = new ArrayList<Future<Long>>();
+        for (int t = 0; t < nofThreads; t++) {
+            final int offset = t;
+            futures.add(service.submit(new Callable<Long>() {
+
+                @Override
+                public Long call() {
+                    long sum = 0;
+                    for (int i = 0; i < NOF_READS_PER_THREAD; i++) {
+                        EdgePrimitive edge = buffer.get((i + offset) & (NOF_EDGES - 1));
+                        sum += edge.getStartNodeIndex();
+                    }
+                    return sum;
+                }
+            }));
+        }
+        for (Future<Long> future : futures) {
+            // Every read edge has a start node index >= 0
+            assertTrue(future.get() >= 0);
+        }
+        service.shutdown();
+    }
+
+    public static void main(String[] args) throws Exception {
+        EdgePrimitivesBufferLoadTest test = new EdgePrimitivesBufferLoadTest();
+        test.testSynchronizedBuffer();
+        test.testLockFreeBuffer();
+    }
+}
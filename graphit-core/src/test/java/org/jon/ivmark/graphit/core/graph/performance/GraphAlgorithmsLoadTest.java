@@ -0,0 +1,171 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph.performance;
+
+import org.jon.ivmark.graphit.core.graph.PropertyGraph;
+import org.jon.ivmark.graphit.core.graph.algorithms.ConnectedComponents;
+import org.jon.ivmark.graphit.core.graph.algorithms.GraphAlgorithms;
+import org.jon.ivmark.graphit.core.graph.algorithms.NodeScores;
+import org.jon.ivmark.graphit.core.graph.algorithms.PageRankSettings;
+import org.jon.ivmark.graphit.core.graph.algorithms.ShortestPath;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeDirection;
+import org.jon.ivmark.graphit.core.graph.lastfm.LastFMGraph;
+import org.jon.ivmark.graphit.core.graph.node.Node;
+import org.jon.ivmark.graphit.core.graph.node.NodeId;
+import org.jon.ivmark.graphit.test.categories.LoadTest;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Measures the graph algorithms on the Last.FM graph: breadth first searches
+ * and connected components of the friends graph, shortest paths and
+ * personalised page ranks, sequential and parallel, of the users and artists
+ * graph.
+ *
+ * @author jon
+ *
+ */
+@Category(LoadTest.class)
+public class GraphAlgorithmsLoadTest {
+
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int ROUNDS = 10;
+
+    private static PropertyGraph graph;
+    private static List<NodeId> users;
+
+    @BeforeClass
+    public static void loadGraph() throws IOException {
+        if (graph == null) {
+            graph = LastFMGraph.load();
+            users = new ArrayList<NodeId>();
+            for (Node node : graph.getNodes()) {
+                if (node.getType().equals(LastFMGraph.USER) && users.size() < 10) {
+                    users.add(node.getNodeId());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBfsAndConnectedComponents() {
+        final GraphAlgorithms algorithms = graph.getAlgorithms();
+        time("BFS of friends", new Runnable() {
+
+            @Override
+            public void run() {
+                for (NodeId user : users) {
+                    algorithms.bfsDistances(user, LastFMGraph.FRIENDS_WITH, EdgeDirection.BOTH,
+                                            Integer.MAX_VALUE);
+                }
+            }
+        });
+        time("Connected components of friends", new Runnable() {
+
+            @Override
+            public void run() {
+                algorithms.connectedComponents(LastFMGraph.FRIENDS_WITH);
+            }
+        });
+        ConnectedComponents components = algorithms.connectedComponents(LastFMGraph.FRIENDS_WITH);
+        int largest = components.getLargestComponent();
+        System.out.println(String.format("Components: %d, largest: %d nodes",
+                                         components.getNumberOfComponents(),
+                                         components.getSize(largest)));
+    }
+
+    @Test
+    public void testShortestPaths() {
+        final GraphAlgorithms algorithms = graph.getAlgorithms();
+        time("Dijkstra between users over artists", new Runnable() {
+
+            @Override
+            public void run() {
+                for (int i = 1; i < users.size(); i++) {
+                    algorithms.shortestPath(users.get(0), users.get(i), LastFMGraph.LISTENED_TO,
+                                            EdgeDirection.BOTH);
+                }
+            }
+        });
+        ShortestPath path = algorithms.shortestPath(users.get(0), users.get(1),
+                                                    LastFMGraph.LISTENED_TO, EdgeDirection.BOTH);
+        System.out.println("Shortest path: " + path);
+    }
+
+    @Test
+    public void testPersonalizedPageRank() {
+        final GraphAlgorithms algorithms = graph.getAlgorithms();
+        final List<NodeId> sources = users.subList(0, 1);
+        final PageRankSettings sequential =
+            new PageRankSettings().weighted(true).tolerance(0).maxIterations(20);
+        final int parallelism = Runtime.getRuntime().availableProcessors();
+        final PageRankSettings parallel =
+            new PageRankSettings().weighted(true).tolerance(0).maxIterations(20)
+                .parallelism(parallelism);
+
+        time("Personalized page rank, sequential", new Runnable() {
+
+            @Override
+            public void run() {
+                algorithms.personalizedPageRank(sources, LastFMGraph.LISTENED_TO,
+                                                EdgeDirection.BOTH, sequential);
+            }
+        });
+        time("Personalized page rank, parallelism " + parallelism, new Runnable() {
+
+            @Override
+            public void run() {
+                algorithms.personalizedPageRank(sources, LastFMGraph.LISTENED_TO,
+                                                EdgeDirection.BOTH, parallel);
+            }
+        });
+        NodeScores expected = algorithms.personalizedPageRank(sources, LastFMGraph.LISTENED_TO,
+                                                              EdgeDirection.BOTH, sequential);
+        NodeScores actual = algorithms.personalizedPageRank(sources, LastFMGraph.LISTENED_TO,
+                                                            EdgeDirection.BOTH, parallel);
+        assertArrayEquals(expected.topK(20), actual.topK(20));
+        System.out.println("Top ranked: " + Arrays.toString(expected.topK(10)));
+    }
+
+    private static void time(String name, Runnable runnable) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            runnable.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            runnable.run();
+        }
+        System.out.println(String.format("%s: %.2f ms/round", name,
+                                         (System.nanoTime() - start) / ROUNDS / 1000000.0));
+    }
+
+    public static void main(String[] args) throws IOException {
+        loadGraph();
+        GraphAlgorithmsLoadTest test = new GraphAlgorithmsLoadTest();
+        test.testBfsAndConnectedComponents();
+        test.testShortestPaths();
+        test.testPersonalizedPageRank();
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph.performance;
+
+import org.jon.ivmark.graphit.core.graph.PropertyGraphBuilder;
+import org.jon.ivmark.graphit.core.graph.PropertyGraphImpl;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeSortOrder;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeType;
+import org.jon.ivmark.graphit.core.graph.node.NodeId;
+import org.jon.ivmark.graphit.core.graph.node.NodeType;
+import org.jon.ivmark.graphit.core.properties.PropertiesBuilder;
+import org.jon.ivmark.graphit.test.categories.LoadTest;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the time it takes to load a graph from json and from a binary
+ * snapshot.
+ *
+ * @author jon
+ *
+ */
+@Category(LoadTest.class)
+public class GraphSnapshotLoadTest {
+
+    private static final int NOF_USERS = 100000;
+    private static final int NOF_ITEMS = 20000;
+    private static final int NOF_EDGES_PER_USER = 20;
+    private static final int NOF_ITERATIONS = 3;
+
+    @Rule
+    public TemporaryFolder out = new TemporaryFolder();
+
+    @Test
+    public void testLoadJsonAndSnapshot() throws Exception {
+        PropertyGraphImpl graph = createGraph();
+        File json = out.newFile();
+        File snapshot = out.newFile();
+        graph.exportJson(json, true, true);
+        graph.exportSnapshot(snapshot, true, true);
+        System.out.println(String.format("\nNodes: %d, edges: %d, json: %d bytes, "
+                                             + "snapshot: %d bytes", graph.numberOfNodes(),
+                                         graph.numberOfEdges(graph.getEdgeType("bought")),
+                                         json.length(), snapshot.length()));
+
+        for (int i = 0; i < NOF_ITERATIONS; i++) {
+            long t0 = System.nanoTime();
+            PropertyGraphImpl fromJson = new PropertyGraphImpl("test");
+            fromJson.importJson(json);
+            long t1 = System.nanoTime();
+            PropertyGraphImpl fromSnapshot = new PropertyGraphImpl("test");
+            fromSnapshot.importSnapshot(snapshot);
+            long t2 = System.nanoTime();
+            System.out.println(String.format("Load json: %d ms, load snapshot: %d ms",
+                                             (t1 - t0) / 1000000, (t2 - t1) / 1000000));
+            assertEquals(fromJson.numberOfNodes(), fromSnapshot.numberOfNodes());
+        }
+    }
+
+    private PropertyGraphImpl createGraph() {
+        PropertyGraphImpl graph = new PropertyGraphImpl("test");
+        NodeType user = graph.createNodeType("user");
+        NodeType item = graph.createNodeType("item");
+        EdgeType bought = graph.createEdgeType("bought", EdgeSortOrder.DESCENDING_WEIGHT);
+
+        PropertyGraphBuilder builder = new PropertyGraphBuilder(graph);
+        for (int i = 0; i < NOF_ITEMS; i++) {
+            NodeId itemId = new NodeId(item, "i" + i);
+            builder.addNode(itemId);
+            graph.setNodeProperties(itemId, PropertiesBuilder.start().set("title", "Item " + i)
+                .set("price", i % 100).build());
+        }
+        Random random = new Random(42);
+        for (int u = 0; u < NOF_USERS; u++) {
+            NodeId userId = new NodeId(user, "u" + u);
+            builder.addNode(userId);
+            for (int e = 0; e < NOF_EDGES_PER_USER; e++) {
+                NodeId itemId = new NodeId(item, "i" + random.nextInt(NOF_ITEMS));
+                builder.addEdge(userId, itemId, bought, random.nextInt(10));
+            }
+        }
+        return builder.build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        GraphSnapshotLoadTest test = new GraphSnapshotLoadTest();
+        test.out.create();
+        try {
+            test.testLoadJsonAndSnapshot();
+        } finally {
+            test.out.delete();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph.performance;
+
+import org.jon.ivmark.graphit.core.graph.PropertyGraphBuilder;
+import org.jon.ivmark.graphit.core.graph.PropertyGraphImpl;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeSortOrder;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeType;
+import org.jon.ivmark.graphit.core.graph.node.NodeId;
+import org.jon.ivmark.graphit.core.graph.node.NodeType;
+import org.jon.ivmark.graphit.core.properties.PropertiesBuilder;
+import org.jon.ivmark.graphit.test.categories.LoadTest;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the time it takes to export and import a graph as a single json
+ * file and as json chunks written and read in parallel.
+ *
+ * @author jon
+ *
+ */
+@Category(LoadTest.class)
+public class JsonChunksLoadTest {
+
+    private static final int NOF_USERS = 100000;
+    private static final int NOF_ITEMS = 20000;
+    private static final int NOF_EDGES_PER_USER = 20;
+    private static final int NOF_ITERATIONS = 3;
+    private static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+    @Rule
+    public TemporaryFolder out = new TemporaryFolder();
+
+    @Test
+    public void testExportAndImportJsonChunks() throws Exception {
+        PropertyGraphImpl graph = createGraph();
+        System.out.println(String.format("\nNodes: %d, edges: %d, parallelism: %d",
+                                         graph.numberOfNodes(),
+                                         graph.numberOfEdges(graph.getEdgeType("bought")),
+                                         PARALLELISM));
+
+        for (int i = 0; i < NOF_ITERATIONS; i++) {
+            File json = out.newFile();
+            File chunks = out.newFolder();
+            long t0 = System.nanoTime();
+            graph.exportJson(json, true, true);
+            long t1 = System.nanoTime();
+            graph.exportJsonChunks(chunks, PARALLELISM, true, true);
+            long t2 = System.nanoTime();
+            PropertyGraphImpl fromJson = new PropertyGraphImpl("test");
+            fromJson.importJson(json);
+            long t3 = System.nanoTime();
+            PropertyGraphImpl fromChunks = new PropertyGraphImpl("test");
+            fromChunks.importJsonChunks(chunks, PARALLELISM);
+            long t4 = System.nanoTime();
+            System.out.println(String.format("Export json: %d ms, export chunks: %d ms, "
+                                                 + "import json: %d ms, import chunks: %d ms",
+                                             (t1 - t0) / 1000000, (t2 - t1) / 1000000,
+                                             (t3 - t2) / 1000000, (t4 - t3) / 1000000));
+            assertEquals(fromJson.numberOfNodes(), fromChunks.numberOfNodes());
+        }
+    }
+
+    private PropertyGraphImpl createGraph() {
+        PropertyGraphImpl graph = new PropertyGraphImpl("test");
+        NodeType user = graph.createNodeType("user");
+        NodeType item = graph.createNodeType("item");
+        EdgeType bought = graph.createEdgeType("bought", EdgeSortOrder.DESCENDING_WEIGHT);
+
+        PropertyGraphBuilder builder = new PropertyGraphBuilder(graph);
+        for (int i = 0; i < NOF_ITEMS; i++) {
+            NodeId itemId = new NodeId(item, "i" + i);
+            builder.addNode(itemId);
+            graph.setNodeProperties(itemId, PropertiesBuilder.start().set("title", "Item " + i)
+                .set("price", i % 100).build());
+        }
+        Random random = new Random(42);
+        for (int u = 0; u < NOF_USERS; u++) {
+            NodeId userId = new NodeId(user, "u" + u);
+            builder.addNode(userId);
+            for (int e = 0; e < NOF_EDGES_PER_USER; e++) {
+                NodeId itemId = new NodeId(item, "i" + random.nextInt(NOF_ITEMS));
+                builder.addEdge(userId, itemId, bought, random.nextInt(10));
+            }
+        }
+        return builder.build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        JsonChunksLoadTest test = new JsonChunksLoadTest();
+        test.out.create();
+        try {
+            test.testExportAndImportJsonChunks();
+        } finally {
+            test.out.delete();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph.performance;
+
+import org.jon.ivmark.graphit.core.graph.PropertyGraphImpl;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeType;
+import org.jon.ivmark.graphit.core.graph.node.NodeId;
+import org.jon.ivmark.graphit.core.graph.node.NodeType;
+import org.jon.ivmark.graphit.test.categories.LoadTest;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Measures the mutation throughput of a graph with and without a mutation
+ * log, for different sync intervals.
+ *
+ * @author jon
+ *
+ */
+@Category(LoadTest.class)
+public class MutationLogLoadTest {
+
+    private static final int NOF_THREADS = 8;
+    private static final int NOF_NODES = 10000;
+    private static final int NOF_EDGES_PER_THREAD = 100000;
+
+    @Rule
+    public TemporaryFolder out = new TemporaryFolder();
+
+    @Test
+    public void testMutationThroughput() throws Exception {
+        run("no log", false, 0);
+        run("log, sync each mutation", true, 0);
+        run("log, sync every 10 ms", true, 10);
+        run("log, sync every 100 ms", true, 100);
+    }
+
+    private void run(String name, boolean logEnabled, long syncIntervalMillis)
+        throws Exception {
+        final PropertyGraphImpl graph = new PropertyGraphImpl("test");
+        graph.setDataDir(out.newFolder().getAbsolutePath());
+        graph.setMutationLogEnabled(logEnabled);
+        graph.setMutationLogSyncIntervalMillis(syncIntervalMillis);
+        graph.init();
+        final NodeType user = graph.createNodeType("user");
+        final EdgeType knows = graph.createEdgeType("knows");
+        for (int i = 0; i < NOF_NODES; i++) {
+            graph.addNode(new NodeId(user, "u" + i));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(NOF_THREADS);
+        long t0 = System.nanoTime();
+        for (int t = 0; t < NOF_THREADS; t++) {
+            final Random random = new Random(t);
+            executor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    for (int i = 0; i < NOF_EDGES_PER_THREAD; i++) {
+                        NodeId start = new NodeId(user, "u" + random.nextInt(NOF_NODES));
+                        NodeId end = new NodeId(user, "u" + random.nextInt(NOF_NODES));
+                        graph.addEdge(start, end, knows, i);
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.HOURS);
+        long millis = Math.max(1, (System.nanoTime() - t0) / 1000000);
+        int nofEdges = NOF_THREADS * NOF_EDGES_PER_THREAD;
+        System.out.println(String.format("%s: %d edges in %d ms, %d edges/s", name, nofEdges,
+                                         millis, 1000L * nofEdges / millis));
+        assertEquals(nofEdges, graph.numberOfEdges(knows));
+        graph.shutdown();
+    }
+
+    public static void main(String[] args) throws Exception {
+        MutationLogLoadTest test = new MutationLogLoadTest();
+        test.out.create();
+        try {
+            test.testMutationThroughput();
+        } finally {
+            test.out.delete();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph.performance;
+
+import org.jon.ivmark.graphit.core.graph.PropertyGraphImpl;
+import org.jon.ivmark.graphit.core.graph.node.NodeId;
+import org.jon.ivmark.graphit.core.graph.node.NodeType;
+import org.jon.ivmark.graphit.core.properties.PropertiesBuilder;
+import org.jon.ivmark.graphit.test.categories.LoadTest;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the heap used by node properties stored in hash maps and stored
+ * column-wise.
+ *
+ * @author jon
+ *
+ */
+@Category(LoadTest.class)
+public class NodePropertiesMemoryLoadTest {
+
+    private static final int NOF_ITEMS = 1000000;
+
+    @Test
+    public void testNodePropertiesMemory() {
+        PropertyGraphImpl plain = createGraph(false);
+        long withoutProperties = usedMemory();
+        setProperties(plain);
+        long mapBytes = usedMemory() - withoutProperties;
+        assertEquals(NOF_ITEMS, plain.numberOfNodes());
+        plain = null;
+
+        PropertyGraphImpl columnar = createGraph(true);
+        withoutProperties = usedMemory();
+        setProperties(columnar);
+        long columnarBytes = usedMemory() - withoutProperties;
+        assertEquals(NOF_ITEMS, columnar.numberOfNodes());
+
+        System.out.println(String.format("\nItems: %d, hash map properties: %d MB (%d bytes/item),"
+                                             + " columnar properties: %d MB (%d bytes/item)",
+                                         NOF_ITEMS, mapBytes >> 20, mapBytes / NOF_ITEMS,
+                                         columnarBytes >> 20, columnarBytes / NOF_ITEMS));
+    }
+
+    private PropertyGraphImpl createGraph(boolean columnar) {
+        PropertyGraphImpl graph = new PropertyGraphImpl("test");
+        if (columnar) {
+            graph.useColumnarNodeProperties();
+        }
+        NodeType item = graph.createNodeType("item");
+        for (int i = 0; i < NOF_ITEMS; i++) {
+            graph.addNode(new NodeId(item, "i" + i));
+        }
+        return graph;
+    }
+
+    private void setProperties(PropertyGraphImpl graph) {
+        NodeType item = graph.getNodeType("item");
+        for (int i = 0; i < NOF_ITEMS; i++) {
+            NodeId nodeId = new NodeId(item, "i" + i);
+            graph.setNodeProperties(nodeId, PropertiesBuilder.start()
+                .set("price", 10.0 + i % 1000)
+                .set("stock", i % 50)
+                .set("rating", (float) (i % 5))
+                .set("sold", (long) i * 3)
+                .set("active", i % 2 == 0)
+                .build());
+        }
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    public static void main(String[] args) {
+        new NodePropertiesMemoryLoadTest().testNodePropertiesMemory();
+    }
+}
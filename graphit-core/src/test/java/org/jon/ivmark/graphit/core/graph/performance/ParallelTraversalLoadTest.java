@@ -0,0 +1,121 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph.performance;
+
+import com.google.common.base.Function;
+import com.google.common.base.Predicate;
+import org.jon.ivmark.graphit.core.graph.PropertyGraphImpl;
+import org.jon.ivmark.graphit.core.graph.edge.Edge;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeType;
+import org.jon.ivmark.graphit.core.graph.node.NodeId;
+import org.jon.ivmark.graphit.core.graph.node.NodeType;
+import org.jon.ivmark.graphit.core.graph.traversal.Counter;
+import org.jon.ivmark.graphit.core.graph.traversal.ElementCounter;
+import org.jon.ivmark.graphit.core.graph.traversal.Traversable;
+import org.jon.ivmark.graphit.test.categories.LoadTest;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares a global count over all edges of a graph traversed sequentially
+ * with the same count traversed in parallel.
+ *
+ * @author jon
+ *
+ */
+@Category(LoadTest.class)
+public class ParallelTraversalLoadTest {
+
+    private static final int NOF_NODES = 100000;
+    private static final int NOF_EDGES_PER_NODE = 10;
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int ROUNDS = 5;
+
+    private static final Function<Edge, NodeId> END_NODE = new Function<Edge, NodeId>() {
+
+        @Override
+        public NodeId apply(Edge edge) {
+            return edge.getEndNode().getNodeId();
+        }
+    };
+
+    private static final Predicate<Edge> HEAVY = new Predicate<Edge>() {
+
+        @Override
+        public boolean apply(Edge edge) {
+            return edge.getWeight() > 0.5f;
+        }
+    };
+
+    @Test
+    public void testCountEndNodes() {
+        PropertyGraphImpl graph = createGraph();
+        int parallelism = Runtime.getRuntime().availableProcessors();
+
+        int count = run(graph.getEdges(), WARMUP_ROUNDS);
+        assertEquals(count, run(graph.getEdges().parallel(parallelism), WARMUP_ROUNDS));
+
+        long start = System.nanoTime();
+        run(graph.getEdges(), ROUNDS);
+        long sequentialNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        run(graph.getEdges().parallel(parallelism), ROUNDS);
+        long parallelNanos = System.nanoTime() - start;
+
+        System.out.println(String.format("\nEdges: %d, parallelism: %d, sequential: %d ms/round,"
+                                             + " parallel: %d ms/round",
+                                         NOF_NODES * NOF_EDGES_PER_NODE, parallelism,
+                                         sequentialNanos / ROUNDS / 1000000,
+                                         parallelNanos / ROUNDS / 1000000));
+    }
+
+    private static int run(Traversable<Edge> edges, int rounds) {
+        int count = 0;
+        for (int r = 0; r < rounds; r++) {
+            Counter<NodeId> counter = edges.filter(HEAVY).transform(END_NODE)
+                .reduce(new ElementCounter<NodeId>());
+            count = counter.count(new NodeId(new NodeType("node"), "0"));
+        }
+        return count;
+    }
+
+    private static PropertyGraphImpl createGraph() {
+        PropertyGraphImpl graph = new PropertyGraphImpl();
+        NodeType nodeType = graph.getOrCreateNodeType("node");
+        EdgeType edgeType = graph.getOrCreateEdgeType("edge");
+        for (int i = 0; i < NOF_NODES; i++) {
+            graph.addNode(new NodeId(nodeType, String.valueOf(i)));
+        }
+        Random random = new Random(1);
+        for (int i = 0; i < NOF_NODES; i++) {
+            for (int j = 0; j < NOF_EDGES_PER_NODE; j++) {
+                graph.addEdge(new NodeId(nodeType, String.valueOf(i)),
+                              new NodeId(nodeType, String.valueOf(random.nextInt(NOF_NODES / 100))),
+                              edgeType, random.nextFloat());
+            }
+        }
+        return graph;
+    }
+
+    public static void main(String[] args) {
+        new ParallelTraversalLoadTest().testCountEndNodes();
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jon.ivmark.graphit.core.graph.performance;
+
+import com.google.common.base.Predicate;
+import org.jon.ivmark.graphit.core.properties.HashMapProperties;
+import org.jon.ivmark.graphit.core.properties.Properties;
+import org.jon.ivmark.graphit.core.properties.filter.FilterCondition;
+import org.jon.ivmark.graphit.core.properties.filter.PropertiesFilter;
+import org.jon.ivmark.graphit.core.properties.filter.PropertiesFilterCompiler;
+import org.jon.ivmark.graphit.core.properties.filter.PropertyFilterSettings;
+import org.jon.ivmark.graphit.test.categories.LoadTest;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the throughput of a {@link PropertiesFilter} with the same filter
+ * compiled by the {@link PropertiesFilterCompiler}.
+ *
+ * @author jon
+ *
+ */
+@Category(LoadTest.class)
+public class PropertiesFilterLoadTest {
+
+    private static final int NOF_PROPERTIES = 100000;
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int ROUNDS = 50;
+
+    @Test
+    public void testFilterThroughput() {
+        List<PropertyFilterSettings> settings = createSettings();
+        Predicate<Properties> filter = new PropertiesFilter(settings);
+        Predicate<Properties> compiled = PropertiesFilterCompiler.compile(settings);
+        Properties[] properties = createProperties();
+
+        int accepted = run(filter, properties, WARMUP_ROUNDS);
+        assertEquals(accepted, run(compiled, properties, WARMUP_ROUNDS));
+
+        long start = System.nanoTime();
+        run(filter, properties, ROUNDS);
+        long filterNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        run(compiled, properties, ROUNDS);
+        long compiledNanos = System.nanoTime() - start;
+
+        long evaluations = (long) ROUNDS * NOF_PROPERTIES;
+        System.out.println(String.format("\nEvaluations: %d, accepted: %d/round, properties filter: %d ns/op,"
+                                             + " compiled filter: %d ns/op",
+                                         evaluations, accepted / WARMUP_ROUNDS,
+                                         filterNanos / evaluations, compiledNanos / evaluations));
+    }
+
+    private static int run(Predicate<Properties> filter, Properties[] properties, int rounds) {
+        int accepted = 0;
+        for (int r = 0; r < rounds; r++) {
+            for (Properties p : properties) {
+                if (filter.apply(p)) {
+                    accepted++;
+                }
+            }
+        }
+        return accepted;
+    }
+
+    private static List<PropertyFilterSettings> createSettings() {
+        List<PropertyFilterSettings> settings = new ArrayList<PropertyFilterSettings>();
+        settings.add(new PropertyFilterSettings("price", Arrays.asList(new FilterCondition(">=", 10),
+                                                                       new FilterCondition("<", 500.0))));
+        settings.add(new PropertyFilterSettings("stock", Arrays.asList(
+            new FilterCondition("not_in", Arrays.asList(0, 1, 2, 3)))));
+        settings.add(new PropertyFilterSettings("category", Arrays.asList(
+            new FilterCondition("in", Arrays.asList("c0", "c1", "c2", "c3", "c4")))));
+        settings.add(new PropertyFilterSettings("price", Arrays.asList(new FilterCondition("!=", 100))));
+        settings.add(new PropertyFilterSettings("brand", Arrays.asList(new FilterCondition("=", "b1"))));
+        return settings;
+    }
+
+    private static Properties[] createProperties() {
+        Random random = new Random(1);
+        Properties[] properties = new Properties[NOF_PROPERTIES];
+        for (int i = 0; i < NOF_PROPERTIES; i++) {
+            Properties p = new HashMapProperties();
+            p.setProperty("price", random.nextInt(1000));
+            p.setProperty("stock", random.nextInt(20));
+            p.setProperty("category", "c" + random.nextInt(10));
+            p.setProperty("brand", "b" + random.nextInt(4));
+            properties[i] = p;
+        }
+        return properties;
+    }
+
+    public static void main(String[] args) {
+        new PropertiesFilterLoadTest().testFilterThroughput();
+    }
+}
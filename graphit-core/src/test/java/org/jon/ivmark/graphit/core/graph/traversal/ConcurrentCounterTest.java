@@ -0,0 +1,119 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph.traversal;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author jon
+ *
+ */
+public class ConcurrentCounterTest {
+
+    private static final int THREADS = 4;
+    private static final int ELEMENTS = 1000;
+    private static final int ROUNDS = 50;
+
+    @Test
+    public void testConcurrentIntCounter() throws Exception {
+        final ConcurrentIntCounter counter = new ConcurrentIntCounter(8);
+        run(new Runnable() {
+
+            @Override
+            public void run() {
+                IntCounter partial = new IntCounter();
+                for (int r = 0; r < ROUNDS; r++) {
+                    for (int i = 0; i < ELEMENTS; i++) {
+                        counter.add(i);
+                        partial.add(i);
+                    }
+                }
+                counter.addAll(partial);
+            }
+        });
+        IntCounter merged = counter.toCounter();
+        assertEquals(ELEMENTS, merged.size());
+        for (int i = 0; i < ELEMENTS; i++) {
+            assertEquals(2 * THREADS * ROUNDS, counter.count(i));
+            assertEquals(2 * THREADS * ROUNDS, merged.count(i));
+        }
+    }
+
+    @Test
+    public void testConcurrentCounter() throws Exception {
+        final ConcurrentCounter<String> counter = new ConcurrentCounter<String>(3);
+        run(new Runnable() {
+
+            @Override
+            public void run() {
+                Counter<String> partial = new Counter<String>();
+                for (int r = 0; r < ROUNDS; r++) {
+                    for (int i = 0; i < ELEMENTS; i++) {
+                        counter.add("e" + i);
+                        partial.add("e" + i);
+                    }
+                }
+                counter.addAll(partial);
+            }
+        });
+        Counter<String> merged = counter.toCounter();
+        for (int i = 0; i < ELEMENTS; i++) {
+            assertEquals(2 * THREADS * ROUNDS, counter.count("e" + i));
+            assertEquals(2 * THREADS * ROUNDS, merged.count("e" + i));
+        }
+    }
+
+    @Test
+    public void testSingleStripe() {
+        ConcurrentIntCounter counter = new ConcurrentIntCounter(1);
+        counter.add(-7, 2);
+        counter.add(7);
+        assertEquals(2, counter.count(-7));
+        assertEquals(1, counter.toCounter().count(7));
+    }
+
+    private static void run(final Runnable task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(new Callable<Void>() {
+
+                    @Override
+                    public Void call() {
+                        task.run();
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -48,6 +48,16 @@ public class CounterReducerTest {
         assertEquals(Arrays.asList(2, 1), asList(counter.iterable(CountSortOrder.ASCENDING_COUNT)));
     }
 
+    @Test
+    public void testCombine() {
+        ElementCounter<Integer> reducer = new ElementCounter<Integer>();
+        Counter<Integer> counter = reducer.combine(Arrays.asList(reducer.reduce(Arrays.asList(1, 2)),
+                                                                 reducer.reduce(Arrays.asList(2, 3))));
+        assertEquals(1, counter.count(1));
+        assertEquals(2, counter.count(2));
+        assertEquals(1, counter.count(3));
+    }
+
     private List<Integer> asList(Iterable<CountedElement<Integer>> it) {
         List<Integer> res = new ArrayList<Integer>();
         for (CountedElement<Integer> i : it) {
@@ -21,7 +21,9 @@ import org.junit.Test;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
 
 import static org.junit.Assert.assertEquals;
 
@@ -61,6 +63,45 @@ public class CounterTest {
         assertEquals(Arrays.asList(1, 2), asList(counter.iterable(CountSortOrder.DESCENDING_COUNT)));
     }
 
+    @Test
+    public void testTopK() {
+        Counter<Integer> counter = new Counter<Integer>();
+        Random random = new Random(3);
+        for (int i = 0; i < 1000; i++) {
+            counter.add(random.nextInt(100), 1 + random.nextInt(5));
+        }
+        List<CountedElement<Integer>> descending = new ArrayList<CountedElement<Integer>>();
+        for (CountedElement<Integer> element : counter.iterable(CountSortOrder.DESCENDING_COUNT)) {
+            descending.add(element);
+        }
+        for (int k : new int[] {0, 1, 10, 100, 200}) {
+            assertEquals(asList(descending.subList(0, Math.min(k, descending.size()))),
+                         asList(counter.topK(k)));
+        }
+    }
+
+    @Test
+    public void testTiesOfNonComparableElements() {
+        Counter<Object> counter = new Counter<Object>();
+        List<Object> elements = new ArrayList<Object>();
+        for (int i = 0; i < 20; i++) {
+            Object element = new Object();
+            elements.add(element);
+            counter.add(element, i % 2 == 0 ? 2 : 1);
+        }
+        List<Object> descending = new ArrayList<Object>();
+        for (CountedElement<Object> element : counter.iterable(CountSortOrder.DESCENDING_COUNT)) {
+            descending.add(element.getElement());
+        }
+        assertEquals(elements.size(), descending.size());
+        assertEquals(new HashSet<Object>(elements), new HashSet<Object>(descending));
+        List<Object> topK = new ArrayList<Object>();
+        for (CountedElement<Object> element : counter.topK(5)) {
+            topK.add(element.getElement());
+        }
+        assertEquals(descending.subList(0, 5), topK);
+    }
+
     @Test(expected = NullPointerException.class)
     public void testIllegalSortOrder() {
         Counter<Integer> counter = new Counter<Integer>();
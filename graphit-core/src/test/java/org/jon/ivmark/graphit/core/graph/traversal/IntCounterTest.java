@@ -0,0 +1,115 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph.traversal;
+
+import org.jon.ivmark.graphit.core.graph.PropertyGraphImpl;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeDirection;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeType;
+import org.jon.ivmark.graphit.core.graph.node.Node;
+import org.jon.ivmark.graphit.core.graph.node.NodeId;
+import org.jon.ivmark.graphit.core.graph.node.NodeType;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author jon
+ *
+ */
+public class IntCounterTest {
+
+    @Test
+    public void testCount() {
+        IntCounter counter = new IntCounter();
+        counter.add(1);
+        counter.add(2, 3);
+        counter.add(1);
+        assertEquals(2, counter.count(1));
+        assertEquals(3, counter.count(2));
+        assertEquals(0, counter.count(3));
+        assertEquals(2, counter.size());
+        assertEquals(Arrays.asList(2, 1), asList(counter.iterable(CountSortOrder.DESCENDING_COUNT)));
+    }
+
+    @Test
+    public void testTopK() {
+        IntCounter counter = new IntCounter();
+        Random random = new Random(5);
+        for (int i = 0; i < 2000; i++) {
+            counter.add(random.nextInt(300) - 150, 1 + random.nextInt(4));
+        }
+        List<Integer> descending = asList(counter.iterable(CountSortOrder.DESCENDING_COUNT));
+        for (int k : new int[] {0, 1, 7, 50, 300, 400}) {
+            List<CountedElement<Integer>> topK = counter.topK(k);
+            assertEquals(descending.subList(0, Math.min(k, descending.size())), asList(topK));
+            for (CountedElement<Integer> element : topK) {
+                assertEquals(counter.count(element.getElement()), element.getCount());
+            }
+        }
+    }
+
+    @Test
+    public void testAddAll() {
+        IntCounter counter = new IntCounter();
+        counter.add(1);
+        IntCounter other = new IntCounter();
+        other.add(1, 2);
+        other.add(5);
+        counter.addAll(other);
+        assertEquals(3, counter.count(1));
+        assertEquals(1, counter.count(5));
+    }
+
+    @Test
+    public void testIndexCounter() {
+        PropertyGraphImpl graph = new PropertyGraphImpl();
+        NodeType user = graph.getOrCreateNodeType("user");
+        EdgeType knows = graph.getOrCreateEdgeType("knows");
+        List<Node> neighbors = new ArrayList<Node>();
+        for (int i = 0; i < 20; i++) {
+            graph.addNode(new NodeId(user, "u" + i));
+        }
+        for (int i = 0; i < 20; i++) {
+            graph.addEdge(new NodeId(user, "u" + i), new NodeId(user, "u" + (i % 4)), knows);
+        }
+        for (int i = 0; i < 20; i++) {
+            neighbors.addAll(graph.getNeighbors(new NodeId(user, "u" + i), knows, EdgeDirection.OUTGOING).asList());
+        }
+
+        IntCounter sequential = new Traversable<Node>(neighbors).reduce(new IndexCounter<Node>());
+        IntCounter parallel = new Traversable<Node>(neighbors).parallel(4).reduce(new IndexCounter<Node>());
+        for (int i = 0; i < 4; i++) {
+            int index = graph.getNode(new NodeId(user, "u" + i)).getIndex();
+            assertEquals(5, sequential.count(index));
+            assertEquals(5, parallel.count(index));
+        }
+        assertEquals(4, parallel.size());
+    }
+
+    private List<Integer> asList(Iterable<CountedElement<Integer>> it) {
+        List<Integer> res = new ArrayList<Integer>();
+        for (CountedElement<Integer> i : it) {
+            res.add(i.getElement());
+        }
+        return res;
+    }
+}
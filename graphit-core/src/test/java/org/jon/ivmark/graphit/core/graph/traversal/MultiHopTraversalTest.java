@@ -0,0 +1,205 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph.traversal;
+
+import com.google.common.base.Predicate;
+import org.apache.mahout.math.function.IntIntProcedure;
+import org.jon.ivmark.graphit.core.graph.PropertyGraphImpl;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeDirection;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeType;
+import org.jon.ivmark.graphit.core.graph.node.Node;
+import org.jon.ivmark.graphit.core.graph.node.NodeId;
+import org.jon.ivmark.graphit.core.graph.node.NodeType;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author jon
+ *
+ */
+public class MultiHopTraversalTest {
+
+    private PropertyGraphImpl graph;
+    private NodeType user;
+    private NodeType item;
+    private EdgeType bought;
+
+    @Before
+    public void setUp() {
+        graph = new PropertyGraphImpl();
+        user = graph.getOrCreateNodeType("user");
+        item = graph.getOrCreateNodeType("item");
+        bought = graph.getOrCreateEdgeType("bought");
+        for (int i = 0; i < 4; i++) {
+            graph.addNode(new NodeId(user, "u" + i));
+            graph.addNode(new NodeId(item, "i" + i));
+        }
+        buy(0, 0);
+        buy(0, 1);
+        buy(0, 2);
+        buy(1, 0);
+        buy(1, 1);
+        buy(2, 0);
+        buy(2, 3);
+        buy(3, 2);
+    }
+
+    @Test
+    public void testCountPaths() {
+        IntCounter counts = new MultiHopTraversal(graph)
+            .hop(bought, EdgeDirection.INCOMING)
+            .hop(bought, EdgeDirection.OUTGOING)
+            .count(itemId(0));
+        assertEquals(4, counts.size());
+        assertEquals(3, counts.count(itemIndex(0)));
+        assertEquals(2, counts.count(itemIndex(1)));
+        assertEquals(1, counts.count(itemIndex(2)));
+        assertEquals(1, counts.count(itemIndex(3)));
+    }
+
+    @Test
+    public void testDistinct() {
+        IntCounter counts = new MultiHopTraversal(graph)
+            .hop(bought, EdgeDirection.INCOMING)
+            .hop(bought, EdgeDirection.OUTGOING).distinct()
+            .count(itemId(0), itemId(1));
+        assertEquals(4, counts.size());
+        assertEquals(1, counts.count(itemIndex(0)));
+        assertEquals(1, counts.count(itemIndex(1)));
+    }
+
+    @Test
+    public void testExcludeVisited() {
+        List<CountedElement<Node>> topK = new MultiHopTraversal(graph)
+            .hop(bought, EdgeDirection.INCOMING)
+            .hop(bought, EdgeDirection.OUTGOING)
+            .excludeVisited()
+            .topK(1, itemId(0));
+        assertEquals(1, topK.size());
+        assertEquals(itemId(1), topK.get(0).getElement().getNodeId());
+        assertEquals(2, topK.get(0).getCount());
+    }
+
+    @Test
+    public void testExcludeVisitedStopsOnCycles() {
+        IntCounter counts = new MultiHopTraversal(graph)
+            .hop(bought, EdgeDirection.INCOMING)
+            .hop(bought, EdgeDirection.OUTGOING)
+            .hop(bought, EdgeDirection.INCOMING)
+            .hop(bought, EdgeDirection.OUTGOING)
+            .excludeVisited()
+            .count(itemId(3));
+        // i3 <- u2 -> i0 <- u0, u1 -> i1, i2
+        assertEquals(2, counts.size());
+        assertEquals(2, counts.count(itemIndex(1)));
+        assertEquals(1, counts.count(itemIndex(2)));
+    }
+
+    @Test
+    public void testFilter() {
+        IntCounter counts = new MultiHopTraversal(graph)
+            .hop(bought, EdgeDirection.INCOMING)
+            .filter(new Predicate<Node>() {
+
+                @Override
+                public boolean apply(Node node) {
+                    return !node.getNodeId().getId().equals("u0");
+                }
+            })
+            .hop(bought, EdgeDirection.OUTGOING)
+            .count(itemId(0));
+        assertEquals(3, counts.size());
+        assertEquals(2, counts.count(itemIndex(0)));
+        assertEquals(1, counts.count(itemIndex(1)));
+        assertEquals(0, counts.count(itemIndex(2)));
+    }
+
+    @Test
+    public void testLimit() {
+        IntCounter counts = new MultiHopTraversal(graph)
+            .hop(bought, EdgeDirection.INCOMING)
+            .hop(bought, EdgeDirection.OUTGOING).limit(2)
+            .count(itemId(0));
+        assertEquals(2, counts.size());
+        assertEquals(3, counts.count(itemIndex(0)));
+        assertEquals(2, counts.count(itemIndex(1)));
+    }
+
+    @Test
+    public void testNoHops() {
+        IntCounter counts = new MultiHopTraversal(graph).count(itemId(2), new NodeId(item, "missing"));
+        assertEquals(1, counts.size());
+        assertEquals(1, counts.count(itemIndex(2)));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testModifierWithoutHop() {
+        new MultiHopTraversal(graph).distinct();
+    }
+
+    @Test
+    public void testParallelExpansion() {
+        Random random = new Random(7);
+        for (int i = 4; i < 200; i++) {
+            graph.addNode(new NodeId(user, "u" + i));
+            graph.addNode(new NodeId(item, "i" + i));
+        }
+        for (int i = 0; i < 2000; i++) {
+            buy(random.nextInt(200), random.nextInt(200));
+        }
+        NodeId[] start = {itemId(1), itemId(2), itemId(3)};
+        final IntCounter sequential = new MultiHopTraversal(graph)
+            .hop(bought, EdgeDirection.INCOMING)
+            .hop(bought, EdgeDirection.OUTGOING)
+            .hop(bought, EdgeDirection.INCOMING).limit(50)
+            .excludeVisited()
+            .count(start);
+        final IntCounter parallel = new MultiHopTraversal(graph)
+            .hop(bought, EdgeDirection.INCOMING)
+            .hop(bought, EdgeDirection.OUTGOING)
+            .hop(bought, EdgeDirection.INCOMING).limit(50)
+            .excludeVisited()
+            .parallel(4, 1)
+            .count(start);
+        assertEquals(sequential.size(), parallel.size());
+        sequential.forEach(new IntIntProcedure() {
+
+            @Override
+            public boolean apply(int node, int count) {
+                assertEquals(count, parallel.count(node));
+                return true;
+            }
+        });
+    }
+
+    private void buy(int u, int i) {
+        graph.addEdge(new NodeId(user, "u" + u), itemId(i), bought);
+    }
+
+    private NodeId itemId(int i) {
+        return new NodeId(item, "i" + i);
+    }
+
+    private int itemIndex(int i) {
+        return graph.getNode(itemId(i)).getIndex();
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.graph.traversal;
+
+import com.google.common.base.Function;
+import com.google.common.base.Predicate;
+import com.google.common.collect.Iterators;
+import org.jon.ivmark.graphit.core.graph.PropertyGraphImpl;
+import org.jon.ivmark.graphit.core.graph.edge.Edge;
+import org.jon.ivmark.graphit.core.graph.edge.EdgeType;
+import org.jon.ivmark.graphit.core.graph.node.Node;
+import org.jon.ivmark.graphit.core.graph.node.NodeId;
+import org.jon.ivmark.graphit.core.graph.node.NodeType;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author jon
+ *
+ */
+public class ParallelTraversableTest {
+
+    private final List<Integer> numbers = new ArrayList<Integer>();
+
+    @Before
+    public void setupNumbers() {
+        for (int i = 0; i < 1000; i++) {
+            numbers.add(i % 100);
+        }
+    }
+
+    @Test
+    public void testFilterAndTransform() {
+        final Set<String> threads = Collections.synchronizedSet(new HashSet<String>());
+        Traversable<Integer> parallel = new Traversable<Integer>(numbers).parallel(4).filter(
+            new Predicate<Integer>() {
+
+                @Override
+                public boolean apply(Integer i) {
+                    threads.add(Thread.currentThread().getName());
+                    return i % 3 == 0;
+                }
+            }).transform(new Function<Integer, Integer>() {
+
+                @Override
+                public Integer apply(Integer i) {
+                    return i * 2;
+                }
+            });
+        List<Integer> expected = new ArrayList<Integer>();
+        for (int i : numbers) {
+            if (i % 3 == 0) {
+                expected.add(i * 2);
+            }
+        }
+        assertEquals(expected, parallel.asList());
+        assertEquals(expected.size(), parallel.size());
+        assertFalse(threads.contains(Thread.currentThread().getName()));
+    }
+
+    @Test
+    public void testSequentialOperationsKeepOrder() {
+        ParallelTraversable<Integer> parallel = new Traversable<Integer>(numbers).parallel(8);
+        assertEquals(numbers.subList(0, 150), parallel.head(150).asList());
+        assertEquals(numbers, parallel.sequential().asList());
+        assertEquals(Integer.valueOf(42), parallel.get(142));
+    }
+
+    @Test
+    public void testUnique() {
+        List<Integer> unique = new Traversable<Integer>(numbers).parallel(3).unique().asList();
+        assertEquals(numbers.subList(0, 100), unique);
+    }
+
+    @Test
+    public void testReduce() {
+        Counter<Integer> counter = new Traversable<Integer>(numbers).parallel(4)
+            .reduce(new ElementCounter<Integer>());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(10, counter.count(i));
+        }
+        Integer sum = new Traversable<Integer>(numbers).parallel(4).reduce(new Reducer<Integer, Integer>() {
+
+            @Override
+            public Integer reduce(Iterable<Integer> input) {
+                int sum = 0;
+                for (int i : input) {
+                    sum += i;
+                }
+                return sum;
+            }
+        });
+        assertEquals(Integer.valueOf(49500), sum);
+    }
+
+    @Test
+    public void testTopK() {
+        Comparator<Integer> byLastDigit = new Comparator<Integer>() {
+
+            @Override
+            public int compare(Integer i1, Integer i2) {
+                return i1 % 10 - i2 % 10;
+            }
+        };
+        Traversable<Integer> sequential = new Traversable<Integer>(numbers);
+        assertEquals(sequential.topK(25, byLastDigit).asList(),
+                     sequential.parallel(4).topK(25, byLastDigit).asList());
+        assertEquals(Arrays.asList(9, 19, 29), sequential.parallel(4).topK(3, byLastDigit).asList());
+    }
+
+    @Test
+    public void testIndexRange() {
+        IndexRangeIterable<Integer> evens = new IndexRangeIterable<Integer>(0, 10) {
+
+            @Override
+            protected Iterator<Integer> elementsAt(int index) {
+                return index % 2 == 0 ? Iterators.forArray(index, index) : null;
+            }
+        };
+        assertEquals(Arrays.asList(0, 0, 2, 2, 4, 4, 6, 6, 8, 8), new Traversable<Integer>(evens).asList());
+        assertEquals(3, evens.split(3).size());
+        assertEquals(Arrays.asList(0, 0, 2, 2, 4, 4, 6, 6, 8, 8),
+                     new Traversable<Integer>(evens).parallel(3).asList());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testFailure() {
+        new Traversable<Integer>(numbers).parallel(2).filter(new Predicate<Integer>() {
+
+            @Override
+            public boolean apply(Integer i) {
+                throw new IllegalStateException();
+            }
+        }).size();
+    }
+
+    @Test
+    public void testGraphNodesAndEdges() {
+        PropertyGraphImpl graph = new PropertyGraphImpl();
+        NodeType user = graph.getOrCreateNodeType("user");
+        EdgeType knows = graph.getOrCreateEdgeType("knows");
+        for (int i = 0; i < 50; i++) {
+            graph.addNode(new NodeId(user, "u" + i));
+        }
+        for (int i = 0; i < 50; i++) {
+            graph.addEdge(new NodeId(user, "u" + i), new NodeId(user, "u" + ((i * 7) % 50)), knows);
+        }
+        graph.removeNode(new NodeId(user, "u3"));
+
+        assertEquals(graph.getNodes().asList(), graph.getNodes().parallel(4).asList());
+        assertEquals(49, graph.getNodes().parallel(4).size());
+        assertEquals(graph.getEdges().asList(), graph.getEdges().parallel(4).asList());
+        Counter<NodeId> counter = graph.getEdges().parallel(4).transform(new Function<Edge, NodeId>() {
+
+            @Override
+            public NodeId apply(Edge edge) {
+                return edge.getStartNode().getNodeId();
+            }
+        }).reduce(new ElementCounter<NodeId>());
+        assertEquals(1, counter.count(new NodeId(user, "u0")));
+        assertEquals(0, counter.count(new NodeId(user, "u3")));
+        assertEquals(Node.class, graph.getNodes().parallel(2).head(1).get(0).getClass());
+    }
+}
@@ -172,6 +172,21 @@ public class TraversableImplTest {
         assertEquals("12345", str);
     }
 
+    @Test
+    public void testTopK() {
+        Traversable<String> words = new Traversable<String>("bb", "a", "ccc", "dd", "e", "fff");
+        Comparator<String> byLength = new Comparator<String>() {
+
+            @Override
+            public int compare(String s1, String s2) {
+                return s1.length() - s2.length();
+            }
+        };
+        assertEquals(Arrays.asList("ccc", "fff", "bb"), words.topK(3, byLength).asList());
+        assertEquals(Arrays.asList("ccc", "fff", "bb", "dd", "a", "e"), words.topK(10, byLength).asList());
+        assertTrue(words.topK(0, byLength).isEmpty());
+    }
+
     @Test
     public void testPipeLine() {
         List<String> list =
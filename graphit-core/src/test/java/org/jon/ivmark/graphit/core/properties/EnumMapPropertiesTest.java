@@ -109,4 +109,21 @@ public class EnumMapPropertiesTest {
         assertEquals("b", map.get("B"));
     }
 
+    @Test
+    public void testGetSetByKey() {
+        PropertySchema schema = new EnumMapPropertiesFactory<AbcEnum>(AbcEnum.class).getSchema();
+        assertEquals(3, schema.size());
+        PropertyKey<?> b = schema.getKey("B");
+        assertEquals(AbcEnum.B.ordinal(), b.getSlot());
+
+        EnumMapProperties<AbcEnum> props = new EnumMapProperties<AbcEnum>(AbcEnum.class);
+        PropertyKey<Object> a = schema.declare("A", Object.class);
+        props.set(a, "a");
+        assertEquals("a", props.get(a));
+        assertEquals("a", props.getProperty("A"));
+        assertEquals("a", props.getProperty(AbcEnum.A));
+        assertTrue(props.getPropertyKeys().contains("A"));
+        assertFalse(props.getPropertyKeys().contains("B"));
+    }
+
 }
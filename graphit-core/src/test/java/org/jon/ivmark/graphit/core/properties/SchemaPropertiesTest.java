@@ -0,0 +1,144 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jon.ivmark.graphit.core.properties;
+
+import org.jon.ivmark.graphit.core.graph.PropertyGraphImpl;
+import org.jon.ivmark.graphit.core.graph.node.Node;
+import org.jon.ivmark.graphit.core.graph.node.NodeId;
+import org.jon.ivmark.graphit.core.graph.node.NodeType;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author jon
+ *
+ */
+public class SchemaPropertiesTest {
+
+    private static final PropertySchema SCHEMA = new PropertySchema();
+    private static final PropertyKey<Double> PRICE = SCHEMA.declare("price", Double.class);
+    private static final PropertyKey<Integer> STOCK = SCHEMA.declare("stock", Integer.class);
+    private static final PropertyKey<String> TITLE = SCHEMA.declare("title", String.class);
+
+    @Test
+    public void testDeclare() {
+        assertEquals(0, PRICE.getSlot());
+        assertEquals(1, STOCK.getSlot());
+        assertSame(PRICE, SCHEMA.declare("price", Double.class));
+        assertSame(TITLE, SCHEMA.getKey("title"));
+        assertNull(SCHEMA.getKey("missing"));
+        assertEquals(Arrays.asList(PRICE, STOCK, TITLE), SCHEMA.getKeys());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDeclareWithOtherType() {
+        SCHEMA.declare("price", Integer.class);
+    }
+
+    @Test
+    public void testGetAndSetByKey() {
+        SchemaProperties props = new SchemaProperties(SCHEMA);
+        assertNull(props.get(PRICE));
+        props.set(PRICE, 10.5);
+        props.set(STOCK, 3);
+        assertEquals(10.5, props.get(PRICE), 0.000001);
+        assertEquals(Integer.valueOf(3), props.get(STOCK));
+        assertEquals(10.5, props.getProperty("price"));
+        assertEquals(2, props.size());
+        assertTrue(props.containsProperty("stock"));
+        assertFalse(props.containsProperty("title"));
+    }
+
+    @Test
+    public void testSetByNameConvertsNumbers() {
+        SchemaProperties props = new SchemaProperties(SCHEMA);
+        props.setProperty("price", 10);
+        assertEquals(10.0, props.get(PRICE), 0.000001);
+        assertEquals(10.0, props.getProperty("price"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetInvalidValue() {
+        new SchemaProperties(SCHEMA).setProperty("stock", "many");
+    }
+
+    @Test
+    public void testNullValuesAndUndeclaredKeys() {
+        SchemaProperties props = new SchemaProperties(SCHEMA);
+        props.setProperty("title", null);
+        props.setProperty("color", "red");
+        assertTrue(props.containsProperty("title"));
+        assertNull(props.get(TITLE));
+        assertEquals("red", props.getProperty("color"));
+        assertEquals(new HashSet<String>(Arrays.asList("title", "color")),
+                     props.getPropertyKeys());
+
+        Map<String, Object> map = props.asPropertyMap();
+        assertEquals(2, map.size());
+        assertTrue(map.containsKey("title"));
+        assertEquals("red", map.get("color"));
+
+        assertNull(props.removeProperty("title"));
+        assertEquals("red", props.removeProperty("color"));
+        assertTrue(props.isEmpty());
+    }
+
+    @Test
+    public void testKeyDeclaredAfterCreation() {
+        PropertySchema schema = new PropertySchema();
+        SchemaProperties props = new SchemaProperties(schema);
+        PropertyKey<Long> sold = schema.declare("sold", Long.class);
+        assertNull(props.get(sold));
+        props.set(sold, 5L);
+        assertEquals(Long.valueOf(5), props.get(sold));
+    }
+
+    @Test
+    public void testKeyFromOtherSchema() {
+        PropertySchema schema = new PropertySchema();
+        PropertyKey<Integer> stock = schema.declare("stock", Integer.class);
+        SchemaProperties props = new SchemaProperties(SCHEMA);
+        props.set(stock, 5);
+        assertEquals(Integer.valueOf(5), props.get(STOCK));
+
+        HashMapProperties plain = new HashMapProperties();
+        STOCK.set(plain, 7);
+        assertEquals(Integer.valueOf(7), STOCK.get(plain));
+    }
+
+    @Test
+    public void testNodeAccessByKey() {
+        PropertyGraphImpl graph = new PropertyGraphImpl("test");
+        NodeType item = new NodeType("item", new SchemaPropertiesFactory(SCHEMA));
+        graph.getMetadata().addNodeType(item);
+        Node node = graph.addNode(new NodeId(item, "i1"));
+        node.set(PRICE, 99.0);
+        node.setProperty("title", "Item 1");
+
+        Node fetched = graph.getNode(new NodeId(item, "i1"));
+        assertEquals(99.0, fetched.get(PRICE), 0.000001);
+        assertEquals("Item 1", fetched.get(TITLE));
+        assertNull(fetched.get(STOCK));
+        assertSame(SCHEMA, item.getPropertiesFactory().getSchema());
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jon.ivmark.graphit.core.properties.filter;
+
+import com.google.common.base.Predicate;
+import org.jon.ivmark.graphit.core.properties.HashMapProperties;
+import org.jon.ivmark.graphit.core.properties.Properties;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class PropertiesFilterCompilerTest {
+
+    @Test
+    public void testNullSettingsAcceptsAll() {
+        assertTrue(PropertiesFilterCompiler.compile(null).apply(new HashMapProperties()));
+    }
+
+    @Test
+    public void testComparisons() {
+        Predicate<Properties> filter = PropertiesFilterCompiler.compile(singletonList(
+            settings("price", new FilterCondition(">", 10), new FilterCondition("lte", 20.5))));
+
+        assertFalse(filter.apply(properties("price", 10)));
+        assertTrue(filter.apply(properties("price", 10.5f)));
+        assertTrue(filter.apply(properties("price", 20L)));
+        assertTrue(filter.apply(properties("price", 20.5)));
+        assertFalse(filter.apply(properties("price", 21)));
+        assertFalse(filter.apply(new HashMapProperties()));
+    }
+
+    @Test
+    public void testIntSets() {
+        Predicate<Properties> in = PropertiesFilterCompiler.compile(singletonList(
+            settings("id", new FilterCondition("in", Arrays.asList(1, 2, 3)))));
+        Predicate<Properties> notIn = PropertiesFilterCompiler.compile(singletonList(
+            settings("id", new FilterCondition("not_in", Arrays.asList(1, 2, 3)))));
+
+        assertTrue(in.apply(properties("id", 2)));
+        assertFalse(notIn.apply(properties("id", 2)));
+        assertFalse(in.apply(properties("id", 4)));
+        assertTrue(notIn.apply(properties("id", 4)));
+        assertFalse(in.apply(properties("id", 2L)));
+        assertTrue(notIn.apply(properties("id", 2L)));
+        assertFalse(in.apply(new HashMapProperties()));
+        assertTrue(notIn.apply(new HashMapProperties()));
+    }
+
+    @Test
+    public void testLongSets() {
+        Predicate<Properties> in = PropertiesFilterCompiler.compile(singletonList(
+            settings("id", new FilterCondition("in", Arrays.asList(1L << 40, 1L << 41)))));
+
+        assertTrue(in.apply(properties("id", 1L << 40)));
+        assertFalse(in.apply(properties("id", 1L << 42)));
+    }
+
+    @Test
+    public void testMixedSets() {
+        Predicate<Properties> in = PropertiesFilterCompiler.compile(singletonList(
+            settings("category", new FilterCondition("in", Arrays.<Object>asList("a", 1)))));
+
+        assertTrue(in.apply(properties("category", "a")));
+        assertTrue(in.apply(properties("category", 1)));
+        assertFalse(in.apply(properties("category", "b")));
+    }
+
+    @Test
+    public void testEachKeyIsFetchedOnce() {
+        List<PropertyFilterSettings> settings = new ArrayList<PropertyFilterSettings>();
+        settings.add(settings("price", new FilterCondition(">", 10)));
+        settings.add(settings("name", new FilterCondition("exists", true)));
+        settings.add(settings("price", new FilterCondition("<", 20), new FilterCondition("!=", 15)));
+        Properties properties = spy(new HashMapProperties());
+        properties.setProperty("price", 12);
+        properties.setProperty("name", "test");
+
+        assertTrue(PropertiesFilterCompiler.compile(settings).apply(properties));
+        verify(properties, times(1)).getProperty("price");
+        verify(properties, times(1)).getProperty("name");
+    }
+
+    @Test
+    public void testShortCircuits() {
+        List<PropertyFilterSettings> settings = new ArrayList<PropertyFilterSettings>();
+        settings.add(settings("tags", new FilterCondition("contains", "a")));
+        settings.add(settings("name", new FilterCondition("=", "test")));
+        Properties properties = spy(new HashMapProperties());
+        properties.setProperty("name", "other");
+
+        assertFalse(PropertiesFilterCompiler.compile(settings).apply(properties));
+        verify(properties, times(0)).getProperty("tags");
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testComparisonWithoutTarget() {
+        PropertiesFilterCompiler.compile(singletonList(settings("price", new FilterCondition("<", null))));
+    }
+
+    @Test
+    public void testSameResultAsPropertiesFilter() {
+        List<PropertyFilterSettings> settings = new ArrayList<PropertyFilterSettings>();
+        settings.add(settings("price", new FilterCondition(">=", 10), new FilterCondition("<", 90.0)));
+        settings.add(settings("stock", new FilterCondition("not_in", Arrays.asList(0, 1, 2))));
+        settings.add(settings("category", new FilterCondition("in", Arrays.asList("a", "b", "c"))));
+        settings.add(settings("name", new FilterCondition("matches", "item-[0-9]*7")));
+        settings.add(settings("sold", new FilterCondition("or", Arrays.asList(
+            singletonMap("lt", 100), singletonMap("exists", false)))));
+        Predicate<Properties> expected = new PropertiesFilter(settings);
+        Predicate<Properties> compiled = PropertiesFilterCompiler.compile(settings);
+
+        Random random = new Random(17);
+        int accepted = 0;
+        for (int i = 0; i < 10000; i++) {
+            Properties properties = new HashMapProperties();
+            properties.setProperty("price", random.nextInt(100));
+            properties.setProperty("stock", random.nextInt(10));
+            properties.setProperty("category", String.valueOf((char) ('a' + random.nextInt(5))));
+            properties.setProperty("name", "item-" + i);
+            if (random.nextBoolean()) {
+                properties.setProperty("sold", random.nextInt(200));
+            }
+            boolean result = compiled.apply(properties);
+            assertEquals(expected.apply(properties), result);
+            if (result) {
+                accepted++;
+            }
+        }
+        assertTrue(accepted > 0);
+    }
+
+    private static Map<String, Object> singletonMap(String operator, Object target) {
+        return Collections.<String, Object>singletonMap(operator, target);
+    }
+
+    private static PropertyFilterSettings settings(String key, FilterCondition... conditions) {
+        return new PropertyFilterSettings(key, Arrays.asList(conditions));
+    }
+
+    private static Properties properties(String key, Object value) {
+        Properties properties = new HashMapProperties();
+        properties.setProperty(key, value);
+        return properties;
+    }
+}
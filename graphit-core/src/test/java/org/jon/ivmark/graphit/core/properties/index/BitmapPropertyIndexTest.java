@@ -0,0 +1,177 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jon.ivmark.graphit.core.properties.index;
+
+import org.jon.ivmark.graphit.core.properties.Properties;
+import org.jon.ivmark.graphit.core.properties.PropertiesBuilder;
+import org.jon.ivmark.graphit.core.properties.filter.FilterCondition;
+import org.jon.ivmark.graphit.core.properties.filter.PropertiesFilter;
+import org.jon.ivmark.graphit.core.properties.filter.PropertyFilterSettings;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.*;
+
+/**
+ * @author jon
+ */
+public class BitmapPropertyIndexTest {
+
+    private final List<Properties> entries = new ArrayList<Properties>();
+    private BitmapPropertyIndex index;
+
+    @Before
+    public void setupIndex() {
+        this.index = new BitmapPropertyIndex(4);
+        for (int i = 0; i < 12; i++) {
+            PropertiesBuilder builder = PropertiesBuilder.start().set("price", i)
+                .set("category", "c" + (i % 3)).set("in_stock", i % 2 == 0);
+            if (i % 4 != 0) {
+                builder.set("brand", "b" + (i % 4));
+            }
+            Properties properties = builder.build();
+            entries.add(properties);
+            index.add(i, properties);
+        }
+    }
+
+    @Test
+    public void testIndexedKeys() {
+        assertEquals(new HashSet<String>(Arrays.asList("category", "in_stock", "brand")),
+                     index.getIndexedKeys());
+    }
+
+    @Test
+    public void testEqualToAndIn() {
+        BitmapFilter filter = index.compile(Arrays.asList(
+            settings("in_stock", "=", true), settings("category", "IN", Arrays.asList("c0", "c1"))));
+        assertFalse(filter.hasResidualFilter());
+        assertEquals(set(0, 4, 6, 10), accepted(filter));
+    }
+
+    @Test
+    public void testExistsAndNotEqualTo() {
+        assertEquals(set(0, 4, 8), accepted(index.compile(singletonList(settings("brand", "exists", false)))));
+        assertEquals(set(0, 2, 3, 4, 6, 7, 8, 10, 11),
+                     accepted(index.compile(singletonList(settings("brand", "!=", "b1")))));
+    }
+
+    @Test
+    public void testUnknownValue() {
+        assertTrue(accepted(index.compile(singletonList(settings("category", "=", "c3")))).isEmpty());
+        assertEquals(12, accepted(index.compile(singletonList(settings("category", "NOT_IN",
+                                                                         singletonList("c3"))))).size());
+    }
+
+    @Test
+    public void testResidualFilter() {
+        BitmapFilter filter = index.compile(Arrays.asList(
+            settings("in_stock", "=", false), settings("price", ">", 5)));
+        assertTrue(filter.hasResidualFilter());
+        Set<Integer> accepted = new HashSet<Integer>();
+        for (int i : accepted(filter)) {
+            if (filter.getResidualFilter().apply(entries.get(i))) {
+                accepted.add(i);
+            }
+        }
+        assertEquals(set(7, 9, 11), accepted);
+    }
+
+    @Test
+    public void testNoFilter() {
+        BitmapFilter filter = index.compile(null);
+        assertFalse(filter.hasResidualFilter());
+        assertEquals(12, accepted(filter).size());
+    }
+
+    @Test
+    public void testSameResultAsPropertiesFilter() {
+        Random random = new Random(17);
+        String[] keys = {"category", "in_stock", "brand", "price"};
+        String[] operators = {"=", "!=", "IN", "NOT_IN", "exists"};
+        for (int i = 0; i < 500; i++) {
+            List<PropertyFilterSettings> filterSettings = new ArrayList<PropertyFilterSettings>();
+            for (int j = random.nextInt(3); j >= 0; j--) {
+                String key = keys[random.nextInt(keys.length)];
+                String operator = operators[random.nextInt(operators.length)];
+                Object target;
+                if (operator.equals("exists")) {
+                    target = random.nextBoolean();
+                } else if (operator.endsWith("IN")) {
+                    target = Arrays.asList(value(key, random), value(key, random));
+                } else {
+                    target = value(key, random);
+                }
+                filterSettings.add(settings(key, operator, target));
+            }
+            BitmapFilter filter = index.compile(filterSettings);
+            PropertiesFilter expected = new PropertiesFilter(filterSettings);
+            for (int k = 0; k < entries.size(); k++) {
+                Properties properties = entries.get(k);
+                boolean accepted = filter.accepts(k) && filter.getResidualFilter().apply(properties);
+                assertEquals(expected.apply(properties), accepted);
+            }
+        }
+    }
+
+    @Test
+    public void testHighCardinalityKeyIsNotIndexed() {
+        BitmapPropertyIndex index = new BitmapPropertyIndex(2);
+        for (int i = 0; i < 3; i++) {
+            index.add(i, PropertiesBuilder.start().set("color", "c" + i).set("size", "s" + (i % 2)).build());
+        }
+        index.add(3, PropertiesBuilder.start().set("color", "c0").build());
+        assertEquals(singletonList("size"), new ArrayList<String>(index.getIndexedKeys()));
+        assertTrue(index.compile(singletonList(settings("color", "=", "c0"))).hasResidualFilter());
+    }
+
+    private static Object value(String key, Random random) {
+        if (key.equals("in_stock")) {
+            return random.nextBoolean();
+        }
+        if (key.equals("price")) {
+            return random.nextInt(12);
+        }
+        return key.charAt(0) + "" + random.nextInt(5);
+    }
+
+    private Set<Integer> accepted(BitmapFilter filter) {
+        Set<Integer> accepted = new HashSet<Integer>();
+        for (int i = 0; i < entries.size(); i++) {
+            if (filter.accepts(i)) {
+                accepted.add(i);
+            }
+        }
+        return accepted;
+    }
+
+    private static Set<Integer> set(Integer... indexes) {
+        return new HashSet<Integer>(Arrays.asList(indexes));
+    }
+
+    private static PropertyFilterSettings settings(String key, String operator, Object target) {
+        return new PropertyFilterSettings(key, singletonList(new FilterCondition(operator, target)));
+    }
+}
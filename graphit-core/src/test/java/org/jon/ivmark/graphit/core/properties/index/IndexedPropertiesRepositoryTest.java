@@ -0,0 +1,172 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jon.ivmark.graphit.core.properties.index;
+
+import com.google.common.base.Function;
+import org.jon.ivmark.graphit.core.properties.HashMapProperties;
+import org.jon.ivmark.graphit.core.properties.Properties;
+import org.jon.ivmark.graphit.core.properties.PropertiesBuilder;
+import org.jon.ivmark.graphit.core.properties.filter.FilterCondition;
+import org.jon.ivmark.graphit.core.properties.filter.PropertyFilterSettings;
+import org.jon.ivmark.graphit.core.properties.repository.ConcurrentHashMapPropertiesRepository;
+import org.jon.ivmark.graphit.core.properties.repository.PropertiesUpdate;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.*;
+
+/**
+ * @author jon
+ */
+public class IndexedPropertiesRepositoryTest {
+
+    private static final Function<String, String> PREFIX = new Function<String, String>() {
+
+        @Override
+        public String apply(String id) {
+            return id.substring(0, 1);
+        }
+    };
+
+    private IndexedPropertiesRepository<String, String> repo;
+
+    @Before
+    public void setupRepo() {
+        this.repo = new IndexedPropertiesRepository<String, String>(
+            new ConcurrentHashMapPropertiesRepository<String>(16) {
+
+                @Override
+                protected Properties createEmptyProperties(String id) {
+                    return new HashMapProperties();
+                }
+            }, PREFIX);
+        for (int i = 0; i < 10; i++) {
+            repo.saveProperties("a" + i, PropertiesBuilder.start().set("price", i)
+                .set("category", "c" + (i % 3)).build());
+            repo.saveProperties("b" + i, PropertiesBuilder.start().set("price", i).build());
+        }
+    }
+
+    @Test
+    public void testCreateIndex() {
+        repo.createIndex("a", "category", PropertyIndexType.HASH, ids("a"));
+
+        assertEquals(set("a0", "a3", "a6", "a9"), find("a", "category", "=", "c0"));
+        assertEquals(set("category"), repo.getIndexedKeys("a"));
+        assertTrue(repo.getIndexedKeys("b").isEmpty());
+        assertNull(repo.find("b", filter("category", "=", "c0")));
+        assertNull(repo.find("a", filter("price", "=", 1)));
+    }
+
+    @Test
+    public void testIndexFollowsWrites() {
+        repo.createIndex("a", "category", PropertyIndexType.HASH, ids("a"));
+
+        repo.setProperty("a0", "category", "c1");
+        repo.removeProperty("a3", "category");
+        repo.removeProperties("a6");
+        repo.saveProperties("a10", PropertiesBuilder.start().set("category", "c0").build());
+        repo.updateProperties("a1", new PropertiesUpdate() {
+
+            @Override
+            public void apply(Properties properties) {
+                properties.setProperty("category", "c0");
+            }
+        });
+
+        assertEquals(set("a1", "a9", "a10"), find("a", "category", "=", "c0"));
+        assertEquals(set("a0", "a4", "a7"), find("a", "category", "=", "c1"));
+    }
+
+    @Test
+    public void testIn() {
+        repo.createIndex("a", "category", PropertyIndexType.HASH, ids("a"));
+
+        assertEquals(set("a0", "a2", "a3", "a5", "a6", "a8", "a9"),
+                     find("a", "category", "in", Arrays.asList("c0", "c2", "c3")));
+    }
+
+    @Test
+    public void testRange() {
+        repo.createIndex("a", "price", PropertyIndexType.SORTED, ids("a"));
+        repo.setProperty("a9", "price", 5.5);
+        List<PropertyFilterSettings> filter = singletonList(new PropertyFilterSettings(
+            "price", Arrays.asList(new FilterCondition(">", 3L), new FilterCondition("<=", 5.5),
+                                   new FilterCondition(">=", 2))));
+
+        assertEquals(set("a4", "a5", "a9"), new HashSet<String>(repo.find("a", filter)));
+        assertEquals(set("a0", "a1"), find("a", "price", "lt", 2));
+    }
+
+    @Test
+    public void testHashIndexHasNoRanges() {
+        repo.createIndex("a", "price", PropertyIndexType.HASH, ids("a"));
+
+        assertNull(repo.find("a", filter("price", "lt", 2)));
+        assertEquals(set("a2"), find("a", "price", "=", 2));
+    }
+
+    @Test
+    public void testMostSelectiveIndexIsUsed() {
+        repo.createIndex("a", "price", PropertyIndexType.SORTED, ids("a"));
+        repo.createIndex("a", "category", PropertyIndexType.HASH, ids("a"));
+        List<PropertyFilterSettings> filter = new ArrayList<PropertyFilterSettings>();
+        filter.add(new PropertyFilterSettings("category", singletonList(new FilterCondition("=", "c1"))));
+        filter.add(new PropertyFilterSettings("price", singletonList(new FilterCondition(">", 7))));
+
+        assertEquals(set("a8", "a9"), new HashSet<String>(repo.find("a", filter)));
+    }
+
+    @Test
+    public void testDropIndex() {
+        repo.createIndex("a", "category", PropertyIndexType.HASH, ids("a"));
+
+        assertTrue(repo.dropIndex("a", "category"));
+        assertFalse(repo.dropIndex("a", "category"));
+        assertNull(repo.find("a", filter("category", "=", "c0")));
+        repo.setProperty("a0", "category", "c1");
+        assertEquals("c1", repo.getProperties("a0").getProperty("category"));
+    }
+
+    private Set<String> find(String partition, String key, String operator, Object target) {
+        return new HashSet<String>(repo.find(partition, filter(key, operator, target)));
+    }
+
+    private static List<PropertyFilterSettings> filter(String key, String operator, Object target) {
+        return singletonList(new PropertyFilterSettings(key, singletonList(new FilterCondition(operator, target))));
+    }
+
+    private static List<String> ids(String partition) {
+        List<String> ids = new ArrayList<String>();
+        for (int i = 0; i < 10; i++) {
+            ids.add(partition + i);
+        }
+        return ids;
+    }
+
+    private static Set<String> set(String... ids) {
+        return new HashSet<String>(Arrays.asList(ids));
+    }
+}
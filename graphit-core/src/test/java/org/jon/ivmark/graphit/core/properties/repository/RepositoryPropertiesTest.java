@@ -0,0 +1,109 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jon.ivmark.graphit.core.properties.repository;
+
+import org.jon.ivmark.graphit.core.properties.HashMapProperties;
+import org.jon.ivmark.graphit.core.properties.Properties;
+import org.jon.ivmark.graphit.core.properties.PropertyKey;
+import org.jon.ivmark.graphit.core.properties.PropertySchema;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author jon
+ *
+ */
+public class RepositoryPropertiesTest {
+
+    private PropertiesRepository<Integer> repo;
+
+    @Before
+    public void setupRepo() {
+        this.repo = spy(new ConcurrentHashMapPropertiesRepository<Integer>(10) {
+
+            @Override
+            protected Properties createEmptyProperties(Integer id) {
+                return new HashMapProperties();
+            }
+        });
+    }
+
+    @Test
+    public void testReadsAreBoundOnce() {
+        repo.setProperty(1, "A", "a");
+        RepositoryProperties<Integer> properties = new RepositoryProperties<Integer>(1, repo);
+        assertEquals("a", properties.getProperty("A"));
+        assertTrue(properties.containsProperty("A"));
+        assertEquals(1, properties.size());
+        verify(repo, times(1)).getProperties(1);
+    }
+
+    @Test
+    public void testWritesOnlyGoToRepo() {
+        RepositoryProperties<Integer> properties = new RepositoryProperties<Integer>(1, repo);
+        assertTrue(properties.isEmpty());
+        properties.setProperty("A", "a");
+        assertEquals("a", properties.getProperty("A"));
+        assertEquals("a", repo.getProperties(1).getProperty("A"));
+
+        assertEquals("a", properties.removeProperty("A"));
+        assertNull(properties.getProperty("A"));
+        assertFalse(repo.getProperties(1).containsProperty("A"));
+    }
+
+    @Test
+    public void testSetByKey() {
+        PropertyKey<Integer> count = new PropertySchema().declare("count", Integer.class);
+        RepositoryProperties<Integer> properties = new RepositoryProperties<Integer>(1, repo);
+        properties.set(count, 3);
+        assertEquals(Integer.valueOf(3), properties.get(count));
+        assertEquals(3, repo.getProperties(1).getProperty("count"));
+    }
+
+    @Test
+    public void testUpdateProperties() {
+        RepositoryProperties<Integer> properties = new RepositoryProperties<Integer>(1, repo);
+        properties.getProperty("A");
+        properties.updateProperties(new PropertiesUpdate() {
+
+            @Override
+            public void apply(Properties properties) {
+                properties.setProperty("A", "a");
+                properties.setProperty("B", "b");
+                properties.removeProperty("C");
+            }
+        });
+        verify(repo, times(1)).updateProperties(eq(1), any(PropertiesUpdate.class));
+        verify(repo, never()).setProperty(anyInt(), anyString(), anyObject());
+        assertEquals("a", properties.getProperty("A"));
+        assertEquals("b", properties.getProperty("B"));
+    }
+
+    @Test
+    public void testMissingProperties() {
+        @SuppressWarnings("unchecked")
+        PropertiesRepository<Integer> nullRepo = mock(PropertiesRepository.class);
+        RepositoryProperties<Integer> properties =
+            new RepositoryProperties<Integer>(1, nullRepo);
+        assertNull(properties.getProperty("A"));
+        assertTrue(properties.getPropertyKeys().isEmpty());
+    }
+}
@@ -21,7 +21,7 @@ import com.google.common.base.Predicate;
 import org.codehaus.jackson.annotate.JsonIgnore;
 import org.codehaus.jackson.annotate.JsonProperty;
 import org.jon.ivmark.graphit.core.properties.Properties;
-import org.jon.ivmark.graphit.core.properties.filter.PropertiesFilter;
+import org.jon.ivmark.graphit.core.properties.filter.PropertiesFilterCompiler;
 import org.jon.ivmark.graphit.core.properties.filter.PropertyFilterSettings;
 
 import java.util.List;
@@ -50,7 +50,7 @@ public class CompositeRecommendationSettings {
         this.maxNumberOfRecommendedItems = maxNumberOfRecommendedItems;
         this.fallbackTo = fallbackTo;
         this.filterSettings = filterSettings;
-        this.filter = new PropertiesFilter(filterSettings);
+        this.filter = PropertiesFilterCompiler.compile(filterSettings);
         this.recommendationSettings = recommendationSettings;
         Preconditions.checkArgument(recommendationSettings != null);
     }
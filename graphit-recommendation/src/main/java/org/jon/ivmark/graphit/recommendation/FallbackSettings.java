@@ -20,7 +20,7 @@ import com.google.common.base.Predicate;
 import org.codehaus.jackson.annotate.JsonIgnore;
 import org.codehaus.jackson.annotate.JsonProperty;
 import org.jon.ivmark.graphit.core.properties.Properties;
-import org.jon.ivmark.graphit.core.properties.filter.PropertiesFilter;
+import org.jon.ivmark.graphit.core.properties.filter.PropertiesFilterCompiler;
 import org.jon.ivmark.graphit.core.properties.filter.PropertyFilterSettings;
 
 import java.util.HashMap;
@@ -37,7 +37,7 @@ public class FallbackSettings {
                             @JsonProperty("filter") List<PropertyFilterSettings> filterSettings) {
         this.id = id;
         this.filterSettings = filterSettings;
-        this.filter = new PropertiesFilter(filterSettings);
+        this.filter = PropertiesFilterCompiler.compile(filterSettings);
     }
 
     public String getId() {
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2012 Jon Ivmark
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jon.ivmark.graphit.recommendation;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.MapMaker;
+import org.jon.ivmark.graphit.core.properties.filter.PropertyFilterSettings;
+import org.jon.ivmark.graphit.core.properties.index.BitmapFilter;
+import org.jon.ivmark.graphit.core.properties.index.BitmapPropertyIndex;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Filter settings compiled against item bitmaps. Settings are compiled once
+ * per settings instance, since the same settings are used for every request.
+ * The settings must not be changed once they have been compiled.
+ *
+ * @author jon
+ *
+ */
+public class ItemBitmapFilters {
+
+    private final BitmapPropertyIndex itemBitmaps;
+    // Weak keys are compared by identity, and are dropped with their settings
+    private final ConcurrentMap<List<PropertyFilterSettings>, BitmapFilter> compiled =
+            new MapMaker().weakKeys().makeMap();
+
+    public ItemBitmapFilters(BitmapPropertyIndex itemBitmaps) {
+        Preconditions.checkNotNull(itemBitmaps);
+        this.itemBitmaps = itemBitmaps;
+    }
+
+    /**
+     * Gets the given filter settings compiled against the item bitmaps.
+     */
+    public BitmapFilter get(List<PropertyFilterSettings> filterSettings) {
+        if (filterSettings == null) {
+            return itemBitmaps.compile(null);
+        }
+        BitmapFilter filter = compiled.get(filterSettings);
+        if (filter == null) {
+            // Settings compiled concurrently compile to equal filters, so either may win
+            filter = itemBitmaps.compile(filterSettings);
+            BitmapFilter existing = compiled.putIfAbsent(filterSettings, filter);
+            if (existing != null) {
+                filter = existing;
+            }
+        }
+        return filter;
+    }
+}
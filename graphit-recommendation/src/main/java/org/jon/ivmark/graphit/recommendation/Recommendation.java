@@ -18,6 +18,7 @@ package org.jon.ivmark.graphit.recommendation;
 
 import com.google.common.base.Predicate;
 import org.jon.ivmark.graphit.core.properties.Properties;
+import org.jon.ivmark.graphit.core.properties.filter.PropertyFilterSettings;
 
 import java.util.List;
 import java.util.Set;
@@ -26,6 +27,8 @@ public interface Recommendation extends Iterable<Item> {
 
     Recommendation filter(Predicate<Properties> filter);
 
+    Recommendation filter(List<PropertyFilterSettings> filterSettings);
+
     Recommendation discard(Set<String> itemIds);
 
     Recommendation limit(int maxNumberOfItems);
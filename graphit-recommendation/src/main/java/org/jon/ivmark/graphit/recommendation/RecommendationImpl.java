@@ -20,6 +20,9 @@ import com.google.common.base.Predicate;
 import org.jon.ivmark.graphit.core.graph.node.Node;
 import org.jon.ivmark.graphit.core.graph.traversal.Traversable;
 import org.jon.ivmark.graphit.core.properties.Properties;
+import org.jon.ivmark.graphit.core.properties.filter.PropertiesFilterCompiler;
+import org.jon.ivmark.graphit.core.properties.filter.PropertyFilterSettings;
+import org.jon.ivmark.graphit.core.properties.index.BitmapFilter;
 
 import java.util.Iterator;
 import java.util.List;
@@ -28,24 +31,48 @@ import java.util.Set;
 public class RecommendationImpl implements Recommendation {
 
     private final Traversable<Node> recommendation;
+    private final ItemBitmapFilters itemBitmaps;
 
     public RecommendationImpl(Traversable<Node> recommendation) {
+        this(recommendation, null);
+    }
+
+    /**
+     * Creates a recommendation where filter settings are pre filtered by the
+     * given filters over item bitmaps, if not null.
+     */
+    public RecommendationImpl(Traversable<Node> recommendation, ItemBitmapFilters itemBitmaps) {
         this.recommendation = recommendation;
+        this.itemBitmaps = itemBitmaps;
     }
 
     @Override
     public Recommendation filter(final Predicate<Properties> filter) {
-        return new RecommendationImpl(recommendation.filter(new RecommendationPropertiesFilter(filter)));
+        return new RecommendationImpl(recommendation.filter(new RecommendationPropertiesFilter(filter)), itemBitmaps);
+    }
+
+    @Override
+    public Recommendation filter(List<PropertyFilterSettings> filterSettings) {
+        if (itemBitmaps == null) {
+            return filter(PropertiesFilterCompiler.compile(filterSettings));
+        }
+        BitmapFilter bitmapFilter = itemBitmaps.get(filterSettings);
+        Traversable<Node> filtered = recommendation.filter(new BitmapNodeFilter(bitmapFilter));
+        if (bitmapFilter.hasResidualFilter()) {
+            // Properties are only loaded for the items accepted by the bitmaps
+            filtered = filtered.filter(new RecommendationPropertiesFilter(bitmapFilter.getResidualFilter()));
+        }
+        return new RecommendationImpl(filtered, itemBitmaps);
     }
 
     @Override
     public Recommendation discard(final Set<String> itemIds) {
-        return new RecommendationImpl(recommendation.filter(new DiscardItemsFilter(itemIds)));
+        return new RecommendationImpl(recommendation.filter(new DiscardItemsFilter(itemIds)), itemBitmaps);
     }
 
     @Override
     public Recommendation limit(int maxNumberOfItems) {
-        return new RecommendationImpl(recommendation.head(maxNumberOfItems));
+        return new RecommendationImpl(recommendation.head(maxNumberOfItems), itemBitmaps);
     }
 
     @Override
@@ -20,7 +20,7 @@ import com.google.common.base.Predicate;
 import org.codehaus.jackson.annotate.JsonIgnore;
 import org.codehaus.jackson.annotate.JsonProperty;
 import org.jon.ivmark.graphit.core.properties.Properties;
-import org.jon.ivmark.graphit.core.properties.filter.PropertiesFilter;
+import org.jon.ivmark.graphit.core.properties.filter.PropertiesFilterCompiler;
 import org.jon.ivmark.graphit.core.properties.filter.PropertyFilterSettings;
 
 import java.util.Collections;
@@ -41,7 +41,7 @@ public class RecommendationSettings {
         this.similarityType = similarityType;
         this.maxNumberOfRecommendedItems = maxNumberOfRecommendedItems;
         this.filterSettings = filterSettings;
-        this.filter = new PropertiesFilter(filterSettings);
+        this.filter = PropertiesFilterCompiler.compile(filterSettings);
     }
 
     public String getSimilarityType() {
@@ -18,10 +18,11 @@ package org.jon.ivmark.graphit.recommendation.repository;
 
 import com.google.common.base.Preconditions;
 import org.jon.ivmark.graphit.core.graph.node.NodeId;
-import org.jon.ivmark.graphit.core.properties.HashMapProperties;
 import org.jon.ivmark.graphit.core.properties.Properties;
 import org.jon.ivmark.graphit.core.properties.repository.PropertiesRepository;
+import org.jon.ivmark.graphit.core.properties.repository.PropertiesUpdate;
 import org.jon.ivmark.graphit.recommendation.GraphConstants;
+import org.jon.ivmark.graphit.recommendation.ImmutableItemProperties;
 import org.jon.ivmark.graphit.recommendation.Item;
 
 public class ItemNodeRepository implements PropertiesRepository<NodeId> {
@@ -39,7 +40,8 @@ public class ItemNodeRepository implements PropertiesRepository<NodeId> {
         if (item == null) {
             return null;
         }
-        return new HashMapProperties(item.getProperties());
+        // A read only view, items are never updated through the graph
+        return new ImmutableItemProperties(item);
     }
 
     @Override
@@ -61,4 +63,9 @@ public class ItemNodeRepository implements PropertiesRepository<NodeId> {
     public void removeProperty(NodeId id, String key) {
         throw new UnsupportedOperationException();
     }
+
+    @Override
+    public void updateProperties(NodeId id, PropertiesUpdate update) {
+        throw new UnsupportedOperationException();
+    }
 }
@@ -21,6 +21,7 @@ import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
 import org.jon.ivmark.graphit.core.graph.traversal.Traversable;
 import org.jon.ivmark.graphit.core.properties.Properties;
+import org.jon.ivmark.graphit.core.properties.filter.PropertyFilterSettings;
 import org.jon.ivmark.graphit.recommendation.*;
 import org.jon.ivmark.graphit.recommendation.repository.Fallbacks;
 import org.jon.ivmark.graphit.recommendation.repository.ItemRepository;
@@ -55,17 +56,17 @@ public class ItemBasedRecommendationService {
         int maxNumberOfRecommendedItems = recommendationSettings.getMaxNumberOfRecommendedItems();
         List<Item> result = new ArrayList<Item>(maxNumberOfRecommendedItems);
 
-        Predicate<Properties> commonFilter = recommendationSettings.filter();
+        List<PropertyFilterSettings> commonFilter = recommendationSettings.getFilterSettings();
 
         for (RecommendationSettings rs : recommendationSettings.getRecommendationSettings()) {
             if (result.size() == maxNumberOfRecommendedItems) {
                 break;
             }
 
-            Predicate<Properties> filter = Predicates.and(commonFilter, rs.filter());
             int numItems = Math.min(maxNumberOfRecommendedItems - result.size(), rs.getMaxNumberOfRecommendedItems());
-            Recommendation recommendation =
-                    recommender.recommend(itemId, rs.getSimilarityType()).filter(filter).limit(numItems);
+            Recommendation recommendation = recommender.recommend(itemId, rs.getSimilarityType());
+            // Passed as the settings instances, so that the recommender compiles each of them once
+            recommendation = filter(filter(recommendation, commonFilter), rs.getFilterSettings()).limit(numItems);
             addRecommendedItems(result, recommendation);
         }
 
@@ -74,6 +75,11 @@ public class ItemBasedRecommendationService {
         return result;
     }
 
+    private static Recommendation filter(Recommendation recommendation,
+                                         List<PropertyFilterSettings> filterSettings) {
+        return filterSettings == null ? recommendation : recommendation.filter(filterSettings);
+    }
+
     private Iterable<Item> getFallback(CompositeRecommendationSettings recommendationSettings, int numItems) {
         if (numItems == 0) {
             return Collections.emptyList();
@@ -18,11 +18,12 @@ package org.jon.ivmark.graphit.recommendation.service;
 
 import com.google.common.base.Preconditions;
 import org.jon.ivmark.graphit.core.graph.PropertyGraph;
+import org.jon.ivmark.graphit.core.graph.PropertyGraphBuilder;
 import org.jon.ivmark.graphit.core.graph.PropertyGraphImpl;
 import org.jon.ivmark.graphit.core.graph.edge.EdgeType;
 import org.jon.ivmark.graphit.core.graph.node.Node;
-import org.jon.ivmark.graphit.core.graph.node.NodeId;
 import org.jon.ivmark.graphit.core.graph.traversal.Traversable;
+import org.jon.ivmark.graphit.core.properties.index.BitmapPropertyIndex;
 import org.jon.ivmark.graphit.recommendation.*;
 import org.jon.ivmark.graphit.recommendation.repository.ItemNodeRepository;
 import org.jon.ivmark.graphit.recommendation.repository.ItemRepository;
@@ -35,20 +36,28 @@ import static org.jon.ivmark.graphit.recommendation.RecommendationGraphMetadata.
 public class ItemBasedRecommenderImpl implements ItemBasedRecommender {
 
     private final PropertyGraph similarites;
+    private final ItemBitmapFilters itemBitmaps;
 
     public ItemBasedRecommenderImpl(ItemRepository itemRepository,
                                     List<Similarities> similaritiesList) {
-        this(createGraph(itemRepository, similaritiesList));
+        this(createGraph(itemRepository, similaritiesList), true);
     }
 
     ItemBasedRecommenderImpl(PropertyGraph similarites) {
+        this(similarites, false);
+    }
+
+    private ItemBasedRecommenderImpl(PropertyGraph similarites, boolean indexItems) {
         this.similarites = similarites;
+        // Without an item index all conditions are residual, but are still only compiled once
+        this.itemBitmaps =
+                new ItemBitmapFilters(indexItems ? indexItems(similarites) : new BitmapPropertyIndex());
     }
 
     @Override
     public Recommendation recommend(String itemId, String similarityType) {
         Traversable<Node> similar = getSimilarItems(itemId, new EdgeType(similarityType));
-        return new RecommendationImpl(similar);
+        return new RecommendationImpl(similar, itemBitmaps);
     }
 
     @Override
@@ -67,26 +76,31 @@ public class ItemBasedRecommenderImpl implements ItemBasedRecommender {
 
         PropertyGraphImpl graph = new PropertyGraphImpl(getMetadata());
         graph.setNodePropertiesRepo(new ItemNodeRepository(itemRepository));
+        PropertyGraphBuilder builder = new PropertyGraphBuilder(graph);
         for (Similarities similarities : similaritiesList) {
-            addEdges(graph, similarities.getSimilarities(), new EdgeType(similarities.getSimilarityType()));
+            addEdges(builder, similarities.getSimilarities(), new EdgeType(similarities.getSimilarityType()));
         }
 
-        return graph;
+        return builder.build();
     }
 
-    private static void addEdges(PropertyGraph graph, Iterable<Similarity> similarities, final EdgeType edgeType) {
-        for (Similarity similarity : similarities) {
-            NodeId source = ItemId.withId(similarity.getSource());
-            NodeId similar = ItemId.withId(similarity.getSimilar());
-            addNode(graph, source);
-            addNode(graph, similar);
-            graph.addEdge(source, similar, edgeType, similarity.getSimilarity());
+    private static BitmapPropertyIndex indexItems(PropertyGraph similarites) {
+        // Items are never updated through the graph, so the bitmaps are built once
+        BitmapPropertyIndex itemBitmaps = new BitmapPropertyIndex();
+        for (Node node : similarites.getNodes()) {
+            if (node.getType().equals(GraphConstants.ITEM)) {
+                itemBitmaps.add(node.getIndex(), node);
+            }
         }
+        return itemBitmaps;
     }
 
-    private static void addNode(PropertyGraph graph, NodeId nodeId) {
-        if (graph.getNode(nodeId) == null) {
-            graph.addNode(nodeId);
+    private static void addEdges(PropertyGraphBuilder builder, Iterable<Similarity> similarities,
+                                 final EdgeType edgeType) {
+        for (Similarity similarity : similarities) {
+            Node source = builder.addNode(ItemId.withId(similarity.getSource()));
+            Node similar = builder.addNode(ItemId.withId(similarity.getSimilar()));
+            builder.addEdge(source.getIndex(), similar.getIndex(), edgeType, similarity.getSimilarity());
         }
     }
 
@@ -19,9 +19,15 @@ package org.jon.ivmark.graphit.recommendation;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
 import org.jon.ivmark.graphit.core.graph.node.Node;
+import org.jon.ivmark.graphit.core.graph.node.NodeId;
 import org.jon.ivmark.graphit.core.graph.node.NodeType;
 import org.jon.ivmark.graphit.core.graph.traversal.Traversable;
+import org.jon.ivmark.graphit.core.properties.HashMapProperties;
 import org.jon.ivmark.graphit.core.properties.Properties;
+import org.jon.ivmark.graphit.core.properties.PropertiesBuilder;
+import org.jon.ivmark.graphit.core.properties.filter.FilterCondition;
+import org.jon.ivmark.graphit.core.properties.filter.PropertyFilterSettings;
+import org.jon.ivmark.graphit.core.properties.index.BitmapPropertyIndex;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -32,6 +38,7 @@ import java.util.*;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -75,6 +82,39 @@ public class RecommendationImplTest {
         verify(traversable).filter(any(RecommendationPropertiesFilter.class));
     }
 
+    @Test
+    public void testFilterSettingsWithBitmaps() {
+        BitmapPropertyIndex bitmaps = new BitmapPropertyIndex();
+        List<Node> nodes = new ArrayList<Node>();
+        for (int i = 0; i < 6; i++) {
+            Properties properties = PropertiesBuilder.start().set("OnSale", i % 2 == 0).set("Price", i * 10).build();
+            bitmaps.add(i, properties);
+            nodes.add(new Node(i, new NodeId(ITEM, "i" + i), new HashMapProperties(properties.asPropertyMap())));
+        }
+
+        Recommendation recommendation = new RecommendationImpl(new Traversable<Node>(nodes), new ItemBitmapFilters(bitmaps));
+        List<PropertyFilterSettings> filter = Arrays.asList(
+            new PropertyFilterSettings("OnSale", Arrays.asList(new FilterCondition("=", true))),
+            new PropertyFilterSettings("Price", Arrays.asList(new FilterCondition(">", 10))));
+        List<Item> items = recommendation.filter(filter).get();
+
+        assertThat(items.size(), is(2));
+        assertThat(items.get(0).getItemId(), is("i2"));
+        assertThat(items.get(1).getItemId(), is("i4"));
+    }
+
+    @Test
+    public void testFilterSettingsAreCompiledOnce() {
+        BitmapPropertyIndex bitmaps = new BitmapPropertyIndex();
+        bitmaps.add(0, PropertiesBuilder.start().set("OnSale", true).build());
+        ItemBitmapFilters filters = new ItemBitmapFilters(bitmaps);
+        List<PropertyFilterSettings> filter = Arrays.asList(
+            new PropertyFilterSettings("OnSale", Arrays.asList(new FilterCondition("=", true))));
+
+        assertThat(filters.get(filter), sameInstance(filters.get(filter)));
+        assertThat(filters.get(filter).accepts(0), is(true));
+    }
+
     @Test
     public void testDiscard() {
         when(traversable.filter(any(DiscardItemsFilter.class))).thenReturn(traversable);
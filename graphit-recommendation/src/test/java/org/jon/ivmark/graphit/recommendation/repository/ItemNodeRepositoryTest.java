@@ -83,4 +83,9 @@ public class ItemNodeRepositoryTest {
     public void testRemoveProperty() {
        repository.removeProperty(null, null);
     }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testUpdateProperties() {
+        repository.updateProperties(null, null);
+    }
 }
@@ -18,10 +18,10 @@ package org.jon.ivmark.graphit.tinkerpop.blueprints;
 
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
-import com.google.common.base.Predicate;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.Iterables;
 import com.tinkerpop.blueprints.*;
+import com.tinkerpop.blueprints.util.PropertyFilteredIterable;
 import org.jon.ivmark.graphit.core.graph.edge.EdgeId;
 import org.jon.ivmark.graphit.core.graph.edge.EdgeType;
 import org.jon.ivmark.graphit.core.graph.edge.EdgeTypes;
@@ -30,21 +30,30 @@ import org.jon.ivmark.graphit.core.graph.node.NodeId;
 import org.jon.ivmark.graphit.core.graph.node.NodeType;
 import org.jon.ivmark.graphit.core.graph.PropertyGraph;
 import org.jon.ivmark.graphit.core.graph.edge.EdgeDirection;
+import org.jon.ivmark.graphit.core.properties.index.PropertyIndexType;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArraySet;
 
 /**
- * A {@link Graph} implementation wrapping a {@link PropertyGraph}.
+ * A {@link Graph} implementation wrapping a {@link PropertyGraph}. Key
+ * indexes are backed by property indexes on all node or edge types.
  *
  * @author jon
  *
  */
-public class BlueprintsGraph implements Graph {
+public class BlueprintsGraph implements KeyIndexableGraph {
 
     private final PropertyGraph graph;
     private final Features graphFeatures;
     private final BlueprintsEdgesRepository edgesRepo;
+    private final Set<String> vertexKeys = new CopyOnWriteArraySet<String>();
+    private final Set<String> edgeKeys = new CopyOnWriteArraySet<String>();
 
     private static final NodeType DEFAULT_NODE_TYPE = new NodeType("_default_node_type");
     private static final EdgeType DEFAULT_EDGE_TYPE = new EdgeType("_default_edge_type");
@@ -83,9 +92,9 @@ public class BlueprintsGraph implements Graph {
         features.supportsIndices = Boolean.FALSE;
         features.supportsVertexIndex = Boolean.FALSE;
         features.supportsEdgeIndex = Boolean.FALSE;
-        features.supportsKeyIndices = Boolean.FALSE;
-        features.supportsVertexKeyIndex = Boolean.FALSE;
-        features.supportsEdgeKeyIndex = Boolean.FALSE;
+        features.supportsKeyIndices = Boolean.TRUE;
+        features.supportsVertexKeyIndex = Boolean.TRUE;
+        features.supportsEdgeKeyIndex = Boolean.TRUE;
         features.supportsEdgeIteration = Boolean.TRUE;
         features.supportsVertexIteration = Boolean.TRUE;
         features.supportsTransactions = Boolean.FALSE;
@@ -101,6 +110,36 @@ public class BlueprintsGraph implements Graph {
         return graph.getMetadata().getOrCreateEdgeType(edgeLabel);
     }
 
+    /**
+     * Makes sure all indexed vertex keys are indexed for a node type.
+     */
+    private void indexNodeType(NodeType nodeType) {
+        if (vertexKeys.isEmpty()) {
+            return;
+        }
+        Set<String> indexedKeys = graph.getNodeIndexKeys(nodeType);
+        for (String key : vertexKeys) {
+            if (!indexedKeys.contains(key)) {
+                graph.createNodeIndex(nodeType, key, PropertyIndexType.HASH);
+            }
+        }
+    }
+
+    /**
+     * Makes sure all indexed edge keys are indexed for an edge type.
+     */
+    private void indexEdgeType(EdgeType edgeType) {
+        if (edgeKeys.isEmpty()) {
+            return;
+        }
+        Set<String> indexedKeys = graph.getEdgeIndexKeys(edgeType);
+        for (String key : edgeKeys) {
+            if (!indexedKeys.contains(key)) {
+                graph.createEdgeIndex(edgeType, key, PropertyIndexType.HASH);
+            }
+        }
+    }
+
     /**
      * Converts a {@link Direction} to an {@link EdgeDirection}.
      *
@@ -147,7 +186,8 @@ public class BlueprintsGraph implements Graph {
     @Override
     public Vertex addVertex(Object id) {
         NodeId nodeId = getNodeId(id);
-        graph.getMetadata().getOrCreateNodeType(nodeId.getNodeType().name());
+        NodeType nodeType = graph.getMetadata().getOrCreateNodeType(nodeId.getNodeType().name());
+        indexNodeType(nodeType);
         Node node = graph.addNode(nodeId);
         return transformNode(node);
     }
@@ -187,13 +227,20 @@ public class BlueprintsGraph implements Graph {
 
     @Override
     public Iterable<Vertex> getVertices(String key, Object value) {
-        Iterable<Vertex> vertices = getVertices();
-        return Iterables.filter(vertices, new ElementPropertyFilter(key, value));
+        if (vertexKeys.contains(key)) {
+            List<Iterable<Vertex>> vertices = new ArrayList<Iterable<Vertex>>();
+            for (NodeType nodeType : graph.getMetadata().getNodeTypes().elements()) {
+                vertices.add(graph.getNodes(nodeType, key, value).transform(new VertexTransformer(this)));
+            }
+            return Iterables.concat(vertices);
+        }
+        return new PropertyFilteredIterable<Vertex>(key, value, getVertices());
     }
 
     @Override
     public Edge addEdge(Object ignored, Vertex outVertex, Vertex inVertex, String label) {
         EdgeType edgeType = getEdgeType(label);
+        indexEdgeType(edgeType);
         NodeId startNodeId = getNodeId(outVertex.getId());
         NodeId endNodeId = getNodeId(inVertex.getId());
         org.jon.ivmark.graphit.core.graph.edge.Edge edge =
@@ -240,8 +287,59 @@ public class BlueprintsGraph implements Graph {
 
     @Override
     public Iterable<Edge> getEdges(String key, Object value) {
-        Iterable<Edge> edges = getEdges();
-        return Iterables.filter(edges, new ElementPropertyFilter(key, value));
+        if (edgeKeys.contains(key)) {
+            List<Iterable<Edge>> edges = new ArrayList<Iterable<Edge>>();
+            for (EdgeType edgeType : getEdgeTypes().elements()) {
+                edges.add(graph.getEdges(edgeType, key, value).transform(new EdgeTransformer(this)));
+            }
+            return Iterables.concat(edges);
+        }
+        return new PropertyFilteredIterable<Edge>(key, value, getEdges());
+    }
+
+    @Override
+    public <T extends Element> void createKeyIndex(String key, Class<T> elementClass) {
+        Preconditions.checkArgument(key != null);
+        if (Vertex.class.isAssignableFrom(elementClass)) {
+            vertexKeys.add(key);
+            for (NodeType nodeType : graph.getMetadata().getNodeTypes().elements()) {
+                indexNodeType(nodeType);
+            }
+        } else if (Edge.class.isAssignableFrom(elementClass)) {
+            edgeKeys.add(key);
+            for (EdgeType edgeType : getEdgeTypes().elements()) {
+                indexEdgeType(edgeType);
+            }
+        } else {
+            throw new IllegalArgumentException("Not an indexable element class: " + elementClass);
+        }
+    }
+
+    @Override
+    public <T extends Element> void dropKeyIndex(String key, Class<T> elementClass) {
+        if (Vertex.class.isAssignableFrom(elementClass)) {
+            vertexKeys.remove(key);
+            for (NodeType nodeType : graph.getMetadata().getNodeTypes().elements()) {
+                graph.dropNodeIndex(nodeType, key);
+            }
+        } else if (Edge.class.isAssignableFrom(elementClass)) {
+            edgeKeys.remove(key);
+            for (EdgeType edgeType : getEdgeTypes().elements()) {
+                graph.dropEdgeIndex(edgeType, key);
+            }
+        } else {
+            throw new IllegalArgumentException("Not an indexable element class: " + elementClass);
+        }
+    }
+
+    @Override
+    public <T extends Element> Set<String> getIndexedKeys(Class<T> elementClass) {
+        if (Vertex.class.isAssignableFrom(elementClass)) {
+            return new HashSet<String>(vertexKeys);
+        } else if (Edge.class.isAssignableFrom(elementClass)) {
+            return new HashSet<String>(edgeKeys);
+        }
+        throw new IllegalArgumentException("Not an indexable element class: " + elementClass);
     }
 
     private PropertyGraph getGraphService() {
@@ -349,20 +447,4 @@ public class BlueprintsGraph implements Graph {
         }
 
     }
-
-    private static final class ElementPropertyFilter implements Predicate<Element> {
-
-        private final String key;
-        private final Object value;
-
-        private ElementPropertyFilter(String key, Object value) {
-            this.key = key;
-            this.value = value;
-        }
-
-        @Override
-        public boolean apply(Element element) {
-            return element != null && value.equals(element.getProperty(key));
-        }
-    }
 }
@@ -47,6 +47,12 @@ public class BlueprintsGraphTest extends GraphTest {
         printTestPerformance("GraphTestSuite", this.stopWatch());
     }
 
+    public void testKeyIndexableGraphTestSuite() throws Exception {
+        this.stopWatch();
+        doTestSuite(new KeyIndexableGraphTestSuite(this));
+        printTestPerformance("KeyIndexableGraphTestSuite", this.stopWatch());
+    }
+
     @Override
     public void doTestSuite(final TestSuite testSuite) throws Exception {
         for (Method method : testSuite.getClass().getDeclaredMethods()) {